@@ -0,0 +1,421 @@
+package task.loans.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.Loan;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * Audit log of the quotes returned, written off the quote path.
+ * <p>
+ * A quote thread only stamps the time and puts the loan into a bounded lock-free queue, see {@link AuditQueue};
+ * if the queue is full, the record is dropped and counted, or the thread waits for room, by the
+ * {@link Overflow} policy. A single writer thread encodes the records, see {@link AuditCodec}, into a large
+ * buffer, and appends the buffer to the current file by one write whenever it is full or the queue is drained.
+ * Files are forced to the disk at most once per sync interval (group sync), and on rotation and close.
+ * A file is rotated once it reaches the size limit; files are named by the sequence number of their first record,
+ * and are read by {@link AuditReader}.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class AuditLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    static final String FILE_PREFIX = "audit-";
+    static final String FILE_SUFFIX = ".log";
+
+    /**
+     * Time the writer waits for records when the queue is drained.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /**
+     * Time a quote thread waits for room in the queue, if it has to.
+     */
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    /**
+     * What a quote thread does when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * Drop the record and count it, never wait.
+         */
+        DROP,
+        /**
+         * Wait for the writer to make room, so that every quote is recorded.
+         */
+        BLOCK
+    }
+
+    private final Path directory;
+    private final long maxFileSize;
+    private final long syncIntervalNanos;
+    private final Overflow overflow;
+    private final AuditQueue<Entry> queue;
+    private final ByteBuffer buffer;
+    private final Thread writer;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Number of the quote threads between checking the log is open and queueing their records: the writer
+     * stops only once there are none, so that every record is either written or counted as dropped.
+     */
+    private final AtomicInteger publishing = new AtomicInteger();
+    private volatile long written;
+    private volatile long syncs;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * File being appended to, confined to the writer thread.
+     */
+    private FileChannel file;
+    private long fileSize;
+    private long nextSequence;
+    private int buffered;
+    private long unsyncedSince = -1;
+
+    private AuditLog(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.maxFileSize = builder.maxFileSize;
+        this.syncIntervalNanos = builder.syncInterval.toNanos();
+        this.overflow = builder.overflow;
+        this.queue = new AuditQueue<>(builder.queueCapacity);
+        this.buffer = ByteBuffer.allocateDirect(builder.batchSize);
+        Files.createDirectories(directory);
+        SortedMap<Long, Path> files = files(directory);
+        if (!files.isEmpty()) {
+            long last = files.lastKey();
+            nextSequence = last + AuditReader.readFile(files.get(last), record -> {
+            });
+        }
+        openFile();
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Record the loan returned now, by the overflow policy if the queue is full. Thread-safe.
+     *
+     * @param term number of monthly repayments of the loan
+     * @param loan loan returned
+     * @return Whether the record is queued, {@code false} if it is dropped or the log is closed or failed.
+     */
+    public boolean record(int term, Loan loan) {
+        publishing.incrementAndGet();
+        try {
+            if (closed || failure != null) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            Entry entry = new Entry(System.currentTimeMillis(), term, loan);
+            while (!queue.offer(entry)) {
+                if (overflow == Overflow.DROP || closed || failure != null) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            return true;
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return Number of the records written to the files, not necessarily forced to the disk yet.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return Number of the records dropped: by the overflow policy, after close or failure, or not encodable.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Number of times the files have been forced to the disk.
+     */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Stop taking records, write all the queued ones, force the file to the disk and close it.
+     * Records made concurrently with closing are either written or dropped, and counted either way.
+     *
+     * @throws IOException if the records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IOException("Audit log failed", failure);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Entry entry = queue.poll();
+                if (entry != null) {
+                    append(entry);
+                    continue;
+                }
+                flush();
+                syncIfDue();
+                if (closed && isDrained()) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            sync();
+            file.close();
+        } catch (IOException ex) {
+            failure = ex;
+            logger.error("Audit log failed, records are dropped from now on", ex);
+            try {
+                file.close();
+            } catch (IOException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            dropped.addAndGet(buffered);
+            while (!isDrained()) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether no record is queued nor being queued. Once the log is closed or failed,
+     * no record is queued after that.
+     */
+    private boolean isDrained() {
+        return publishing.get() == 0 && queue.isEmpty();
+    }
+
+    private void append(Entry entry) throws IOException {
+        try {
+            encode(entry);
+        } catch (BufferOverflowException ex) {
+            flush();
+            encode(entry);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Quote not recorded: {}", ex.getMessage());
+            dropped.incrementAndGet();
+            return;
+        }
+        nextSequence++;
+        buffered++;
+        if (fileSize + buffer.position() >= maxFileSize) {
+            flush();
+            sync();
+            file.close();
+            openFile();
+        }
+    }
+
+    private void encode(Entry entry) {
+        AuditCodec.encode(buffer, nextSequence, entry.timeMillis, entry.term, entry.loan);
+    }
+
+    /**
+     * Append the records buffered to the file by one write.
+     */
+    private void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += file.write(buffer);
+        }
+        buffer.clear();
+        written += buffered;
+        buffered = 0;
+        if (unsyncedSince < 0) {
+            unsyncedSince = System.nanoTime();
+        }
+        syncIfDue();
+    }
+
+    /**
+     * Force the file to the disk if the sync interval has passed since the first record not forced was written.
+     */
+    private void syncIfDue() throws IOException {
+        if (unsyncedSince >= 0 && System.nanoTime() - unsyncedSince >= syncIntervalNanos) {
+            sync();
+        }
+    }
+
+    private void sync() throws IOException {
+        if (unsyncedSince < 0) {
+            return;
+        }
+        file.force(false);
+        syncs++;
+        unsyncedSince = -1;
+    }
+
+    private void openFile() throws IOException {
+        file = FileChannel.open(filePath(directory, nextSequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileSize = 0;
+    }
+
+    static Path filePath(Path directory, long firstSequence) {
+        return directory.resolve(format("%s%020d%s", FILE_PREFIX, firstSequence, FILE_SUFFIX));
+    }
+
+    /**
+     * @return Files found in the directory by the sequence numbers of their first records.
+     */
+    static SortedMap<Long, Path> files(Path directory) throws IOException {
+        SortedMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                files.put(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())),
+                        path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Loan queued with its term and time.
+     */
+    private static final class Entry {
+        private final long timeMillis;
+        private final int term;
+        private final Loan loan;
+
+        Entry(long timeMillis, int term, Loan loan) {
+            this.timeMillis = timeMillis;
+            this.term = term;
+            this.loan = loan;
+        }
+    }
+
+    public static final class Builder {
+        private Path directory;
+        private long maxFileSize = 64L << 20;
+        private Duration syncInterval = Duration.ofSeconds(1);
+        private Overflow overflow = Overflow.DROP;
+        private int queueCapacity = 1 << 16;
+        private int batchSize = 1 << 20;
+
+        private Builder() {
+        }
+
+        /**
+         * @param directory directory of the files, created if missing; the sequence continues after the files
+         *                  found in it, the last one is left as it is and a new one is started
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param maxFileSize size to rotate the files at, bytes
+         */
+        public Builder maxFileSize(long maxFileSize) {
+            checkArgument(maxFileSize > 0, "File size must be positive");
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * @param syncInterval time records may stay written but not forced to the disk at most,
+         *                     {@link Duration#ZERO} to force every batch
+         */
+        public Builder syncInterval(Duration syncInterval) {
+            checkArgument(!syncInterval.isNegative(), "Sync interval must not be negative");
+            this.syncInterval = syncInterval;
+            return this;
+        }
+
+        public Builder overflow(Overflow overflow) {
+            this.overflow = overflow;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity number of records queued at most, a power of two
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            checkArgument(queueCapacity > 0 && Integer.bitCount(queueCapacity) == 1,
+                    "Queue capacity must be a power of two: %s", queueCapacity);
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize size of the buffer appended to the file by one write, bytes
+         */
+        public Builder batchSize(int batchSize) {
+            checkArgument(batchSize >= AuditCodec.HEADER_SIZE + AuditCodec.MAX_BODY_SIZE,
+                    "Batch size must fit a record: %s", batchSize);
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Open a new file in the directory and start the writer.
+         *
+         * @throws IOException if the directory could not be created or read, or the file could not be created
+         */
+        public AuditLog build() throws IOException {
+            checkState(directory != null, "Directory is required");
+            return new AuditLog(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package task.loans.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded lock-free queue of many producers and a single consumer, on a ring of slots.
+ * <p>
+ * A producer claims the next slot by advancing the tail with CAS, provided the slot has been consumed,
+ * and publishes the element into it; the consumer takes the element of the head slot once published,
+ * clears the slot and advances the head. Neither side ever waits for the other one.
+ */
+@ParametersAreNonnullByDefault
+final class AuditQueue<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity number of elements queued at most, a power of two
+     */
+    AuditQueue(int capacity) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a power of two: %s",
+                capacity);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Queue the element, thread-safe.
+     *
+     * @return Whether the element is queued, {@code false} if the queue is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            if (position - head.get() > mask) {
+                return false;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.lazySet((int) position & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take the head element, by the consumer thread only.
+     *
+     * @return The element, or {@code null} if the queue is empty or the head element is not published yet.
+     */
+    @Nullable
+    E poll() {
+        long position = head.get();
+        int slot = (int) position & mask;
+        E element = slots.get(slot);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(slot, null);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * @return Whether no element has been queued but not taken yet.
+     */
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,77 @@
+package task.loans.audit;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Reader of the files written by {@link AuditLog}.
+ * <p>
+ * A file is read up to its end or up to the first torn or corrupt record: the tail of the last file
+ * may be lost if the process stopped before the file was forced to the disk.
+ */
+@ParametersAreNonnullByDefault
+public final class AuditReader {
+
+    private AuditReader() {
+        // no instantiation
+    }
+
+    /**
+     * Read the records of all the files of the directory in order.
+     *
+     * @param directory audit log directory
+     * @param consumer  called for every valid record
+     * @return Number of the records read.
+     * @throws IOException if a file could not be read, or a record with valid checksum could not be decoded
+     */
+    public static long read(Path directory, Consumer<AuditRecord> consumer) throws IOException {
+        long count = 0;
+        for (Path file : AuditLog.files(directory).values()) {
+            count += readFile(file, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * Read the records of the file in order.
+     *
+     * @return Number of the valid records of the file.
+     * @see #read(Path, Consumer)
+     */
+    static long readFile(Path file, Consumer<AuditRecord> consumer) throws IOException {
+        long count = 0;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            while (true) {
+                byte[] body;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > AuditCodec.MAX_BODY_SIZE) {
+                        return count;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException ex) {
+                    return count;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                if (AuditCodec.checksum(record) != checksum) {
+                    return count;
+                }
+                consumer.accept(AuditCodec.decode(record));
+                count++;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package task.loans.audit;
+
+import java.time.Instant;
+import java.util.Objects;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.core.Loan;
+
+/**
+ * Quote recorded by the audit log: the loan returned, its term and the moment it was returned.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class AuditRecord {
+
+    private final long sequence;
+    private final long timeMillis;
+    private final int term;
+    private final Loan loan;
+
+    AuditRecord(long sequence, long timeMillis, int term, Loan loan) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.term = term;
+        this.loan = loan;
+    }
+
+    /**
+     * @return Number of the record in the log, starting from 0 and increasing by 1 with every record.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Moment the loan was returned, in milliseconds.
+     */
+    public Instant getTime() {
+        return Instant.ofEpochMilli(timeMillis);
+    }
+
+    public int getTerm() {
+        return term;
+    }
+
+    public Loan getLoan() {
+        return loan;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AuditRecord record = (AuditRecord) o;
+        return sequence == record.sequence &&
+                timeMillis == record.timeMillis &&
+                term == record.term &&
+                Objects.equals(loan, record.loan);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, timeMillis, term, loan);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("sequence", sequence)
+                .append("time", getTime())
+                .append("term", term)
+                .append("loan", loan)
+                .toString();
+    }
+}
@@ -0,0 +1,194 @@
+package task.loans.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Benchmark results saved to compare later runs with, e.g. of the next version.
+ * <p>
+ * The file is plain text to be kept in version control next to the code it measures: the environment
+ * the benchmarks were run in, as {@code # key=value} lines, then a line per benchmark,
+ * {@code name,sample,sample...} in nanoseconds per operation. Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class Baseline {
+
+    /**
+     * Extension of the baseline files, named by the version benchmarked in a directory of baselines.
+     */
+    public static final String SUFFIX = ".csv";
+
+    private static final String PROPERTY_PREFIX = "# ";
+
+    private final Map<String, String> environment;
+    private final List<BenchmarkResult> results;
+
+    private Baseline(Map<String, String> environment, List<BenchmarkResult> results) {
+        this.environment = Collections.unmodifiableMap(environment);
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return Baseline of the results of this run, in the current environment.
+     */
+    public static Baseline of(List<BenchmarkResult> results) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("created", Instant.now().toString());
+        environment.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        environment.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        return new Baseline(environment, new ArrayList<>(results));
+    }
+
+    /**
+     * @throws IOException if the file could not be read or is malformed
+     */
+    public static Baseline read(Path file) throws IOException {
+        Map<String, String> environment = new LinkedHashMap<>();
+        List<BenchmarkResult> results = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith(PROPERTY_PREFIX)) {
+                    int separator = line.indexOf('=');
+                    if (separator > 0) {
+                        environment.put(line.substring(PROPERTY_PREFIX.length(), separator).trim(),
+                                line.substring(separator + 1).trim());
+                    }
+                    continue;
+                }
+                results.add(parseResult(file, lineNumber, line));
+            }
+        }
+        return new Baseline(environment, results);
+    }
+
+    /**
+     * Find the baseline of the latest version older than the one given, e.g. of the release before it,
+     * among the files {@code <version>.csv} of the directory.
+     *
+     * @param directory directory of the baselines, may be missing
+     * @param version   version benchmarked
+     * @return The baseline file, or empty if there is none of an older version.
+     * @throws IOException if the directory could not be read
+     */
+    public static Optional<Path> findPrevious(Path directory, String version) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        Path previous = null;
+        String previousVersion = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String fileVersion = name.substring(0, name.length() - SUFFIX.length());
+                if (compareVersions(fileVersion, version) < 0
+                        && (previousVersion == null || compareVersions(fileVersion, previousVersion) > 0)) {
+                    previous = file;
+                    previousVersion = fileVersion;
+                }
+            }
+        }
+        return Optional.ofNullable(previous);
+    }
+
+    /**
+     * Compare versions as Maven does in the common cases: numbers separated by dots, compared as numbers,
+     * then a qualifier after a dash, e.g. {@code -SNAPSHOT}, which makes a version older than the same one
+     * without a qualifier.
+     */
+    static int compareVersions(String first, String second) {
+        String[] firstParts = first.split("-", 2);
+        String[] secondParts = second.split("-", 2);
+        String[] firstNumbers = firstParts[0].split("\\.");
+        String[] secondNumbers = secondParts[0].split("\\.");
+        for (int i = 0; i < Math.max(firstNumbers.length, secondNumbers.length); i++) {
+            int compared = compareNumbers(i < firstNumbers.length ? firstNumbers[i] : "0",
+                    i < secondNumbers.length ? secondNumbers[i] : "0");
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        if (firstParts.length != secondParts.length) {
+            return firstParts.length == 1 ? 1 : -1;
+        }
+        return firstParts.length == 1 ? 0 : firstParts[1].compareTo(secondParts[1]);
+    }
+
+    private static int compareNumbers(String first, String second) {
+        if (first.matches("\\d{1,18}") && second.matches("\\d{1,18}")) {
+            return Long.compare(Long.parseLong(first), Long.parseLong(second));
+        }
+        return first.compareTo(second);
+    }
+
+    /**
+     * @throws IOException if the file could not be written
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> property : environment.entrySet()) {
+                out.write(PROPERTY_PREFIX + property.getKey() + "=" + property.getValue());
+                out.newLine();
+            }
+            for (BenchmarkResult result : results) {
+                out.write(result.getName());
+                for (double sample : result.getSamples()) {
+                    out.write(',');
+                    out.write(String.valueOf(sample));
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return Environment of the run: time, JVM, OS and number of processors, unmodifiable.
+     */
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * @return Results in the order they were run, unmodifiable.
+     */
+    public List<BenchmarkResult> getResults() {
+        return results;
+    }
+
+    private static BenchmarkResult parseResult(Path file, int lineNumber, String line) throws IOException {
+        String[] cells = line.split(",");
+        try {
+            double[] samples = new double[cells.length - 1];
+            for (int i = 1; i < cells.length; i++) {
+                samples[i - 1] = Double.parseDouble(cells[i].trim());
+            }
+            return new BenchmarkResult(cells[0].trim(), samples);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed baseline " + file + " at line " + lineNumber + ": " + ex.getMessage(),
+                    ex);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package task.loans.bench;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Operation measured by {@link BenchmarkRunner}.
+ */
+@ParametersAreNonnullByDefault
+@FunctionalInterface
+public interface Benchmark {
+
+    /**
+     * Run the operation once.
+     *
+     * @param invocation number of the invocation, to vary the input by
+     * @return Result of the operation, consumed by the runner so that it is not optimized away.
+     * @throws Exception if the operation failed, the benchmark is aborted then
+     */
+    Object invoke(int invocation) throws Exception;
+}
@@ -0,0 +1,81 @@
+package task.loans.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Samples of a benchmark: average times of an operation over a number of runs, nanoseconds per operation.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class BenchmarkResult {
+
+    private final String name;
+    private final double[] samples;
+
+    /**
+     * @param name    benchmark name, no commas nor line breaks
+     * @param samples nanoseconds per operation, at least one
+     */
+    public BenchmarkResult(String name, double[] samples) {
+        checkArgument(!name.isEmpty() && name.indexOf(',') < 0 && name.indexOf('\n') < 0,
+                "Benchmark name must be non-empty, no commas nor line breaks: %s", name);
+        checkArgument(samples.length > 0, "Samples expected: %s", name);
+        this.name = name;
+        this.samples = samples.clone();
+    }
+
+    /**
+     * Pool the samples of the benchmarks of a number of runs, e.g. in separate JVMs.
+     *
+     * @param runs results of every run
+     * @return Results with the samples of all the runs, in the order of the first run they appear in.
+     */
+    public static List<BenchmarkResult> pool(List<List<BenchmarkResult>> runs) {
+        Map<String, double[]> pooled = new LinkedHashMap<>();
+        for (List<BenchmarkResult> run : runs) {
+            for (BenchmarkResult result : run) {
+                double[] previous = pooled.getOrDefault(result.name, new double[0]);
+                double[] samples = Arrays.copyOf(previous, previous.length + result.samples.length);
+                System.arraycopy(result.samples, 0, samples, previous.length, result.samples.length);
+                pooled.put(result.name, samples);
+            }
+        }
+        List<BenchmarkResult> results = new ArrayList<>(pooled.size());
+        pooled.forEach((name, samples) -> results.add(new BenchmarkResult(name, samples)));
+        return results;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Copy of the samples, nanoseconds per operation.
+     */
+    public double[] getSamples() {
+        return samples.clone();
+    }
+
+    public double getMedian() {
+        return Statistics.median(samples);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("name", name)
+                .append("median", getMedian())
+                .append("samples", Arrays.toString(samples))
+                .toString();
+    }
+}
@@ -0,0 +1,154 @@
+package task.loans.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Runs benchmarks one by one on the calling thread and samples the average time per operation.
+ * <p>
+ * A benchmark is first run for the warm-up time, so that the code is compiled, doubling the number
+ * of operations run between reading the clock until it takes a good fraction of a sample. Then every sample
+ * runs as many such batches as fit in the sample time, and takes the elapsed time per operation.
+ * The results of the operations are compared to an object loaded from a volatile field, so that
+ * the operations cannot be optimized away.
+ */
+@ParametersAreNonnullByDefault
+public class BenchmarkRunner {
+
+    /**
+     * Part of the sample time a batch takes at least, once calibrated.
+     */
+    private static final int BATCHES_PER_SAMPLE = 20;
+
+    private final long warmupNanos;
+    private final int samples;
+    private final long sampleNanos;
+
+    private volatile Object trap = new Object();
+    private volatile long sink;
+
+    private BenchmarkRunner(Builder builder) {
+        this.warmupNanos = builder.warmup.toNanos();
+        this.samples = builder.samples;
+        this.sampleNanos = builder.sampleTime.toNanos();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run the benchmarks in order.
+     *
+     * @param benchmarks benchmarks by their names
+     * @param progress   called with the result of every benchmark once it is run
+     * @return Results in the order of the benchmarks.
+     * @throws IllegalStateException if a benchmark failed
+     */
+    public List<BenchmarkResult> run(Map<String, Benchmark> benchmarks, Consumer<BenchmarkResult> progress) {
+        List<BenchmarkResult> results = new ArrayList<>(benchmarks.size());
+        for (Map.Entry<String, Benchmark> benchmark : benchmarks.entrySet()) {
+            BenchmarkResult result = run(benchmark.getKey(), benchmark.getValue());
+            progress.accept(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * @throws IllegalStateException if the benchmark failed
+     */
+    public BenchmarkResult run(String name, Benchmark benchmark) {
+        try {
+            int batch = 1;
+            int invocation = 0;
+            long warmupStart = System.nanoTime();
+            while (System.nanoTime() - warmupStart < warmupNanos) {
+                long start = System.nanoTime();
+                invocation = runBatch(benchmark, invocation, batch);
+                if (System.nanoTime() - start < sampleNanos / BATCHES_PER_SAMPLE && batch < 1 << 30) {
+                    batch <<= 1;
+                }
+            }
+
+            double[] times = new double[samples];
+            for (int i = 0; i < samples; i++) {
+                long operations = 0;
+                long start = System.nanoTime();
+                long elapsed;
+                do {
+                    invocation = runBatch(benchmark, invocation, batch);
+                    operations += batch;
+                    elapsed = System.nanoTime() - start;
+                } while (elapsed < sampleNanos);
+                times[i] = elapsed / (double) operations;
+            }
+            return new BenchmarkResult(name, times);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Benchmark " + name + " failed", ex);
+        }
+    }
+
+    /**
+     * @return Number of the next invocation.
+     */
+    private int runBatch(Benchmark benchmark, int firstInvocation, int batch) throws Exception {
+        Object trap = this.trap;
+        long matched = 0;
+        int invocation = firstInvocation;
+        for (int i = 0; i < batch; i++) {
+            if (benchmark.invoke(invocation++) == trap) {
+                matched++;
+            }
+        }
+        sink += matched;
+        return invocation;
+    }
+
+    public static final class Builder {
+        private Duration warmup = Duration.ofSeconds(2);
+        private int samples = 20;
+        private Duration sampleTime = Duration.ofMillis(100);
+
+        private Builder() {
+        }
+
+        /**
+         * @param warmup time every benchmark is run for before sampling
+         */
+        public Builder warmup(Duration warmup) {
+            checkArgument(!warmup.isNegative(), "Warm-up must not be negative");
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * @param samples number of the samples of every benchmark, at least 2 for comparing
+         */
+        public Builder samples(int samples) {
+            checkArgument(samples > 0, "Number of samples must be positive");
+            this.samples = samples;
+            return this;
+        }
+
+        /**
+         * @param sampleTime time every sample runs for at least
+         */
+        public Builder sampleTime(Duration sampleTime) {
+            checkArgument(!sampleTime.isNegative() && !sampleTime.isZero(), "Sample time must be positive");
+            this.sampleTime = sampleTime;
+            return this;
+        }
+
+        public BenchmarkRunner build() {
+            return new BenchmarkRunner(this);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package task.loans.bench;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.BatchPricer;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.core.OrderBook;
+import task.loans.core.QuoteCache;
+import task.loans.io.CsvInputReader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Benchmarks of the hot paths: reading the market, building the book and quoting.
+ * <p>
+ * The market is generated from a fixed seed, so the benchmarks of different versions run
+ * against the same offers and amounts, and their results can be compared.
+ */
+@ParametersAreNonnullByDefault
+public final class BenchmarkSuite {
+
+    private static final long SEED = 42;
+
+    /**
+     * Number of the distinct amounts quoted, cycled through.
+     */
+    private static final int AMOUNTS = 1024;
+
+    private BenchmarkSuite() {
+        // no instantiation
+    }
+
+    /**
+     * @param offers number of the offers of the market, positive value
+     * @return Benchmarks by their names, in the order to run.
+     */
+    public static Map<String, Benchmark> standard(int offers) {
+        checkArgument(offers > 0, "Number of offers must be positive");
+        Random random = new Random(SEED);
+        List<LendingOffer> market = new ArrayList<>(offers);
+        StringBuilder csv = new StringBuilder("Lender,Rate,Available\n");
+        for (int i = 0; i < offers; i++) {
+            BigDecimal rate = BigDecimal.valueOf(40 + random.nextInt(160), 3);
+            BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(200_000), 2);
+            market.add(new LendingOffer("Lender" + i, rate, amount));
+            csv.append("Lender").append(i).append(',').append(rate).append(',').append(amount).append('\n');
+        }
+        byte[] csvBytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        BigDecimal[] amounts = new BigDecimal[AMOUNTS];
+        long[] principals = new long[AMOUNTS];
+        double[] rates = new double[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            amounts[i] = BigDecimal.valueOf(100_000 + random.nextInt(1_400_001), 2);
+            principals[i] = amounts[i].unscaledValue().longValueExact();
+            rates[i] = (40 + random.nextInt(160)) / 1000.0;
+        }
+        LoanCalculator calculator = new LoanCalculator(market);
+        QuoteCache cache = new QuoteCache(calculator, 4096);
+        BatchPricer pricer = BatchPricer.builder().build();
+        CsvInputReader reader = new CsvInputReader(true);
+
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("CsvInputReader.read", i -> reader.read(new ByteArrayInputStream(csvBytes)));
+        benchmarks.put("CsvInputReader.readBook", i -> reader.readBook(new ByteArrayInputStream(csvBytes)));
+        benchmarks.put("OrderBook.build", i -> {
+            OrderBook.Builder builder = OrderBook.builder();
+            market.forEach(builder::add);
+            return builder.build();
+        });
+        benchmarks.put("LoanCalculator.calculate", i -> calculator.calculate(amounts[i & (AMOUNTS - 1)], 36));
+        benchmarks.put("QuoteCache.calculate", i -> cache.calculate(amounts[i & (AMOUNTS - 1)], 36));
+        benchmarks.put("BatchPricer.price", i -> pricer.price(principals, rates));
+        return benchmarks;
+    }
+}
@@ -0,0 +1,160 @@
+package task.loans.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Comparison of a benchmark run with the baseline, benchmark by benchmark.
+ * <p>
+ * A benchmark is changed only if both the samples differ significantly, by the Mann-Whitney U test
+ * at the significance level, and the median differs by more than the threshold: a slowdown lost in the noise
+ * of the samples is not reported, nor is a difference too small to matter, however consistent.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class Comparison {
+
+    /**
+     * Outcome of a benchmark.
+     */
+    public enum Verdict {
+        REGRESSION, IMPROVEMENT, UNCHANGED, ADDED, REMOVED
+    }
+
+    private final List<Entry> entries;
+
+    private Comparison(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @param baseline  results to compare with
+     * @param current   results of this run
+     * @param alpha     significance level of the test, in range (0, 1), e.g. 0.01
+     * @param threshold relative change of the median which matters, non-negative, e.g. 0.05 for 5%
+     * @return Entries of the benchmarks of this run in order, then of the ones missing from it.
+     */
+    public static Comparison of(Baseline baseline, List<BenchmarkResult> current, double alpha, double threshold) {
+        checkArgument(alpha > 0 && alpha < 1, "Significance level must be in range (0, 1): %s", alpha);
+        checkArgument(threshold >= 0, "Threshold must be non-negative: %s", threshold);
+        Map<String, BenchmarkResult> previous = new LinkedHashMap<>();
+        baseline.getResults().forEach(result -> previous.put(result.getName(), result));
+        List<Entry> entries = new ArrayList<>();
+        for (BenchmarkResult result : current) {
+            BenchmarkResult before = previous.remove(result.getName());
+            if (before == null) {
+                entries.add(new Entry(result.getName(), Verdict.ADDED, null, result.getMedian(), Double.NaN));
+                continue;
+            }
+            double pValue = Statistics.mannWhitneyPValue(before.getSamples(), result.getSamples());
+            double change = result.getMedian() / before.getMedian() - 1;
+            Verdict verdict = Verdict.UNCHANGED;
+            if (pValue < alpha && Math.abs(change) > threshold) {
+                verdict = change > 0 ? Verdict.REGRESSION : Verdict.IMPROVEMENT;
+            }
+            entries.add(new Entry(result.getName(), verdict, before.getMedian(), result.getMedian(), pValue));
+        }
+        for (BenchmarkResult missing : previous.values()) {
+            entries.add(new Entry(missing.getName(), Verdict.REMOVED, missing.getMedian(), null, Double.NaN));
+        }
+        return new Comparison(entries);
+    }
+
+    /**
+     * @return Entries of the benchmarks, unmodifiable.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public boolean hasRegressions() {
+        return entries.stream().anyMatch(entry -> entry.getVerdict() == Verdict.REGRESSION);
+    }
+
+    /**
+     * @return Table of the medians, changes, p-values and verdicts, a line per benchmark.
+     */
+    public String format() {
+        int width = entries.stream().mapToInt(entry -> entry.getName().length()).max().orElse(0);
+        String row = "%-" + Math.max(width, 9) + "s %16s %16s %9s %8s  %s";
+        StringBuilder table = new StringBuilder(String.format(row, "Benchmark", "Baseline, ns/op", "Current, ns/op",
+                "Change", "p-value", "Verdict"));
+        for (Entry entry : entries) {
+            table.append(System.lineSeparator()).append(String.format(row, entry.getName(),
+                    entry.baselineMedian == null ? "-" : String.format("%.1f", entry.baselineMedian),
+                    entry.currentMedian == null ? "-" : String.format("%.1f", entry.currentMedian),
+                    Double.isNaN(entry.getChange()) ? "-" : String.format("%+.1f%%", entry.getChange() * 100),
+                    Double.isNaN(entry.pValue) ? "-" : String.format("%.4f", entry.pValue),
+                    entry.verdict));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Comparison of a benchmark. Instances of this class are immutable.
+     */
+    public static final class Entry {
+        private final String name;
+        private final Verdict verdict;
+        @Nullable
+        private final Double baselineMedian;
+        @Nullable
+        private final Double currentMedian;
+        private final double pValue;
+
+        Entry(String name, Verdict verdict, @Nullable Double baselineMedian, @Nullable Double currentMedian,
+              double pValue) {
+            this.name = name;
+            this.verdict = verdict;
+            this.baselineMedian = baselineMedian;
+            this.currentMedian = currentMedian;
+            this.pValue = pValue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        /**
+         * @return Relative change of the median, e.g. 0.3 if 30% slower; NaN if added or removed.
+         */
+        public double getChange() {
+            if (baselineMedian == null || currentMedian == null) {
+                return Double.NaN;
+            }
+            return currentMedian / baselineMedian - 1;
+        }
+
+        /**
+         * @return P-value of the samples of the baseline and of the current run, NaN if added or removed.
+         */
+        public double getPValue() {
+            return pValue;
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("name", name)
+                    .append("verdict", verdict)
+                    .append("baselineMedian", baselineMedian)
+                    .append("currentMedian", currentMedian)
+                    .append("pValue", pValue)
+                    .toString();
+        }
+    }
+}
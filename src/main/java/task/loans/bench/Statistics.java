@@ -0,0 +1,85 @@
+package task.loans.bench;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Statistics of the benchmark samples.
+ */
+@ParametersAreNonnullByDefault
+final class Statistics {
+
+    private Statistics() {
+        // no instantiation
+    }
+
+    static double median(double[] samples) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Two-sided Mann-Whitney U test of the samples coming from the same distribution, by the normal
+     * approximation with the tie correction and the continuity correction.
+     * <p>
+     * Unlike comparing the means, the test does not assume the times are normally distributed,
+     * and is not thrown off by a few outliers such as the samples hit by a GC pause.
+     *
+     * @return P-value: the probability of samples at least as different if the distribution is the same.
+     */
+    static double mannWhitneyPValue(double[] first, double[] second) {
+        int n1 = first.length;
+        int n2 = second.length;
+        int n = n1 + n2;
+        double[] values = new double[n];
+        System.arraycopy(first, 0, values, 0, n1);
+        System.arraycopy(second, 0, values, n1, n2);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double firstRanks = 0;
+        double ties = 0;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            while (end < n && values[order[end]] == values[order[start]]) {
+                end++;
+            }
+            double rank = (start + end + 1) / 2.0;
+            for (int i = start; i < end; i++) {
+                if (order[i] < n1) {
+                    firstRanks += rank;
+                }
+            }
+            double tied = end - start;
+            ties += tied * tied * tied - tied;
+            start = end;
+        }
+
+        double u = firstRanks - n1 * (n1 + 1) / 2.0;
+        double mean = n1 * (double) n2 / 2;
+        double variance = n1 * (double) n2 / 12 * ((n + 1) - ties / ((double) n * (n - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        double z = Math.max(0, Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+        return Math.min(1, 2 * (1 - normalCdf(z)));
+    }
+
+    /**
+     * Standard normal distribution function, by the approximation of the error function
+     * with the absolute error below 1.5e-7 (Abramowitz and Stegun, 7.1.26).
+     */
+    static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027
+                + t * 1.061405429)))) * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+}
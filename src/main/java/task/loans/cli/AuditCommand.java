@@ -0,0 +1,60 @@
+package task.loans.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.audit.AuditReader;
+import task.loans.audit.AuditRecord;
+import task.loans.core.Loan;
+
+/**
+ * The {@value LoansCLI#AUDIT} command: print the quotes recorded by the audit log as CSV,
+ * unavailable loans with {@code -1} rate and repayments.
+ */
+@ParametersAreNonnullByDefault
+class AuditCommand {
+
+    private static final String HEADER = "Sequence,Time,Term,Requested,Rate,Monthly,Total";
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private AuditCommand() {
+        // no instantiation
+    }
+
+    static void run(String... args) {
+        Parser parser = new Parser(LoansCLI.class.getCanonicalName() + " " + LoansCLI.AUDIT);
+        AuditParams params = parser.parseAudit(args);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+        try {
+            out.write(HEADER);
+            out.write(System.lineSeparator());
+            AuditReader.read(Paths.get(params.directory), record -> {
+                try {
+                    out.write(format(record));
+                    out.write(System.lineSeparator());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static String format(AuditRecord record) {
+        Loan loan = record.getLoan();
+        return record.getSequence() + "," + record.getTime() + "," + record.getTerm() + ","
+                + loan.getRequestedAmount().toPlainString() + "," + loan.getRate().toPlainString() + ","
+                + loan.getMonthlyRepayment().toPlainString() + "," + loan.getTotalRepayment().toPlainString();
+    }
+}
@@ -0,0 +1,47 @@
+package task.loans.cli;
+
+import java.io.File;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * CLI arguments of the {@value LoansCLI#AUDIT} command.
+ */
+@ParametersAreNonnullByDefault
+class AuditParams {
+
+    /**
+     * Flag: help requested.
+     */
+    @Parameter(names = {"-h", "--help"}, help = true, description = "Display this page.")
+    boolean help;
+
+    /**
+     * Directory of the audit log to print.
+     */
+    @Parameter(required = true, description = "Audit log directory")
+    String directory;
+
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the directory does not exist
+     */
+    void validate() {
+        if (!new File(directory).isDirectory()) {
+            throw new ParameterException("Audit log directory not found: " + directory);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("help", help)
+                .append("directory", directory)
+                .toString();
+    }
+}
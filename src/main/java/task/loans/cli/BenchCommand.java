@@ -0,0 +1,147 @@
+package task.loans.cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.bench.Baseline;
+import task.loans.bench.Benchmark;
+import task.loans.bench.BenchmarkResult;
+import task.loans.bench.BenchmarkRunner;
+import task.loans.bench.BenchmarkSuite;
+import task.loans.bench.Comparison;
+
+/**
+ * The {@value LoansCLI#BENCH} command: run the benchmarks, save them as the baseline and compare them
+ * with the baseline, exiting with 1 on regressions.
+ * <p>
+ * The benchmarks are run in a number of JVMs one after another, and their samples are pooled: the code
+ * is compiled differently by every JVM, so the samples of a single one would show a difference between
+ * two runs of the same code as significant.
+ */
+@ParametersAreNonnullByDefault
+class BenchCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchCommand.class);
+
+    private BenchCommand() {
+        // no instantiation
+    }
+
+    static void run(String... args) {
+        Parser parser = new Parser(LoansCLI.class.getCanonicalName() + " " + LoansCLI.BENCH);
+        BenchParams params = parser.parseBench(args);
+
+        try {
+            if (params.forkOutput != null) {
+                Baseline.of(runHere(params)).write(Paths.get(params.forkOutput));
+                return;
+            }
+            Path baselineFile = params.baselineFile == null ? null : baselineToCompare(params);
+            Baseline baseline = baselineFile == null ? null : Baseline.read(baselineFile);
+            List<BenchmarkResult> results = params.forks == 0 ? runHere(params) : runForks(params);
+            for (BenchmarkResult result : results) {
+                logger.info("{}: {} ns/op", result.getName(), String.format("%.1f", result.getMedian()));
+            }
+
+            if (params.saveFile != null) {
+                Path file = BenchParams.isDirectory(params.saveFile)
+                        ? Paths.get(params.saveFile, params.version + Baseline.SUFFIX) : Paths.get(params.saveFile);
+                Baseline.of(results).write(file);
+                logger.info("Baseline saved to {}", file);
+            }
+            if (baseline != null) {
+                Comparison comparison = Comparison.of(baseline, results, params.alpha, params.threshold);
+                logger.info("Compared with {} of {}{}{}", baselineFile, baseline.getEnvironment(),
+                        System.lineSeparator(), comparison.format());
+                if (comparison.hasRegressions()) {
+                    logger.error("Performance regressed");
+                    System.exit(1);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return The baseline file, or the latest one of a version older than the one benchmarked
+     * in the directory of the baselines.
+     * @throws IOException if the directory holds none
+     */
+    private static Path baselineToCompare(BenchParams params) throws IOException {
+        if (!BenchParams.isDirectory(params.baselineFile)) {
+            return Paths.get(params.baselineFile);
+        }
+        Path directory = Paths.get(params.baselineFile);
+        Optional<Path> previous = Baseline.findPrevious(directory, params.version);
+        if (!previous.isPresent()) {
+            throw new IOException("No baseline of a version older than " + params.version + " in " + directory
+                    + ", the one of a release is saved by --save " + directory + " --version <release>");
+        }
+        return previous.get();
+    }
+
+    private static List<BenchmarkResult> runHere(BenchParams params) {
+        Map<String, Benchmark> benchmarks = BenchmarkSuite.standard(params.offers);
+        if (params.only != null) {
+            Pattern only = Pattern.compile(params.only);
+            benchmarks.keySet().removeIf(name -> !only.matcher(name).find());
+        }
+        BenchmarkRunner runner = BenchmarkRunner.builder()
+                .warmup(Duration.ofMillis(params.warmupMillis))
+                .samples(params.samples)
+                .sampleTime(Duration.ofMillis(params.sampleMillis))
+                .build();
+        return runner.run(benchmarks, result -> logger.debug("{}: {} ns/op", result.getName(), result.getMedian()));
+    }
+
+    /**
+     * Run the benchmarks in new JVMs of the same classpath one by one, and pool their samples.
+     */
+    private static List<BenchmarkResult> runForks(BenchParams params) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<List<BenchmarkResult>> runs = new ArrayList<>(params.forks);
+        for (int fork = 1; fork <= params.forks; fork++) {
+            logger.info("Running the benchmarks, JVM {} of {}", fork, params.forks);
+            Path output = Files.createTempFile("loans-bench", ".csv");
+            try {
+                List<String> command = new ArrayList<>(Arrays.asList(java,
+                        "-cp", System.getProperty("java.class.path"), LoansCLI.class.getName(), LoansCLI.BENCH,
+                        "--fork-output", output.toString(),
+                        "--offers", String.valueOf(params.offers),
+                        "--samples", String.valueOf(params.samples),
+                        "--sample-time", String.valueOf(params.sampleMillis),
+                        "--warmup", String.valueOf(params.warmupMillis)));
+                if (params.only != null) {
+                    command.addAll(Arrays.asList("--only", params.only));
+                }
+                Process process = new ProcessBuilder(command).inheritIO().start();
+                int status = process.waitFor();
+                if (status != 0) {
+                    throw new IOException("Benchmark JVM exited with " + status);
+                }
+                runs.add(Baseline.read(output).getResults());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Benchmarks interrupted", ex);
+            } finally {
+                Files.deleteIfExists(output);
+            }
+        }
+        return BenchmarkResult.pool(runs);
+    }
+}
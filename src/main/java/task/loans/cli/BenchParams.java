@@ -0,0 +1,132 @@
+package task.loans.cli;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.bench.Baseline;
+
+/**
+ * CLI arguments of the {@value LoansCLI#BENCH} command.
+ */
+@ParametersAreNonnullByDefault
+class BenchParams {
+
+    /**
+     * Flag: help requested.
+     */
+    @Parameter(names = {"-h", "--help"}, help = true, description = "Display this page.")
+    boolean help;
+
+    /**
+     * Baseline file to save the results to, or directory of the baselines.
+     */
+    @Parameter(names = {"--save"}, description = "Save the results as the baseline file, e.g. benchmarks/1.0.csv, "
+            + "or as the one of --version in the directory of the baselines, e.g. benchmarks")
+    String saveFile;
+
+    /**
+     * Baseline file to compare the results with, or directory of the baselines.
+     */
+    @Parameter(names = {"--compare"}, description = "Compare the results with the baseline file, "
+            + "or with the latest one of a version older than --version in the directory of the baselines; "
+            + "exit with 1 on regressions")
+    String baselineFile;
+
+    /**
+     * Version benchmarked, naming its baseline in a directory of the baselines.
+     */
+    @Parameter(names = {"--version"}, description = "Version benchmarked, required with a directory of the baselines")
+    String version;
+
+    @Parameter(names = {"--only"}, description = "Run only the benchmarks with names matching the regular expression")
+    String only;
+
+    @Parameter(names = {"--offers"}, description = "Number of the offers of the market generated")
+    int offers = 10_000;
+
+    /**
+     * Number of JVMs to run the benchmarks in one after another, 0 to run them in this one.
+     */
+    @Parameter(names = {"--forks"}, description = "Number of JVMs to run the benchmarks in, pooling the samples; "
+            + "0 to run in this one")
+    int forks = 3;
+
+    /**
+     * File a forked JVM saves its results to, for the JVM which forked it.
+     */
+    @Parameter(names = {"--fork-output"}, hidden = true)
+    String forkOutput;
+
+    @Parameter(names = {"-n", "--samples"}, description = "Number of samples of every benchmark in every JVM")
+    int samples = 10;
+
+    @Parameter(names = {"--sample-time"}, description = "Time every sample runs for, milliseconds")
+    int sampleMillis = 100;
+
+    @Parameter(names = {"-w", "--warmup"}, description = "Warm-up time of every benchmark, milliseconds")
+    int warmupMillis = 2_000;
+
+    @Parameter(names = {"--alpha"}, description = "Significance level of the difference from the baseline")
+    double alpha = 0.01;
+
+    @Parameter(names = {"--threshold"}, description = "Relative change of the median which is reported, "
+            + "e.g. 0.1 for 10%")
+    double threshold = 0.10;
+
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the parameters are inconsistent
+     */
+    void validate() {
+        if (offers <= 0 || samples < 2 || sampleMillis <= 0 || warmupMillis < 0 || forks < 0) {
+            throw new ParameterException("Offers and sample time must be positive, samples at least 2, "
+                    + "warm-up and forks non-negative");
+        }
+        if (!(alpha > 0 && alpha < 1) || threshold < 0) {
+            throw new ParameterException("Significance level must be in range (0, 1), threshold non-negative");
+        }
+        if (version == null && (isDirectory(saveFile) || isDirectory(baselineFile))) {
+            throw new ParameterException("Version is required with a directory of the baselines");
+        }
+        if (only != null) {
+            try {
+                Pattern.compile(only);
+            } catch (PatternSyntaxException ex) {
+                throw new ParameterException("Malformed --only expression: " + ex.getDescription());
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the path names a directory of the baselines, not a baseline file.
+     */
+    static boolean isDirectory(@Nullable String path) {
+        return path != null && !path.endsWith(Baseline.SUFFIX);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("help", help)
+                .append("saveFile", saveFile)
+                .append("baselineFile", baselineFile)
+                .append("version", version)
+                .append("only", only)
+                .append("offers", offers)
+                .append("forks", forks)
+                .append("forkOutput", forkOutput)
+                .append("samples", samples)
+                .append("sampleMillis", sampleMillis)
+                .append("warmupMillis", warmupMillis)
+                .append("alpha", alpha)
+                .append("threshold", threshold)
+                .toString();
+    }
+}
@@ -0,0 +1,85 @@
+package task.loans.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.LoanCalculator;
+import task.loans.core.PartitionedCalculator;
+import task.loans.io.CsvInputReader;
+import task.loans.load.AmountDistribution;
+import task.loans.load.LoadGenerator;
+import task.loans.load.LoadReport;
+import task.loans.load.QuoteTarget;
+import task.loans.partition.RemotePartition;
+
+/**
+ * The {@value LoansCLI#LOAD_TEST} command: drive the quote path with load and report latencies and throughput.
+ */
+@ParametersAreNonnullByDefault
+class LoadTestCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestCommand.class);
+
+    private LoadTestCommand() {
+        // no instantiation
+    }
+
+    static void run(String... args) {
+        Parser parser = new Parser(LoansCLI.class.getCanonicalName() + " " + LoansCLI.LOAD_TEST);
+        LoadTestParams params = parser.parseLoadTest(args);
+
+        List<RemotePartition> partitions = new ArrayList<>();
+        QuoteTarget.Factory targets;
+        if (params.server != null) {
+            targets = QuoteTarget.remote(params.server, params.term);
+        } else if (params.partitions != null) {
+            try {
+                for (InetSocketAddress address : params.partitions) {
+                    partitions.add(RemotePartition.connect(address));
+                }
+            } catch (IOException ex) {
+                closeAll(partitions);
+                throw new UncheckedIOException(ex);
+            }
+            targets = QuoteTarget.partitioned(new PartitionedCalculator(partitions), params.term);
+        } else {
+            CsvInputReader reader = new CsvInputReader(params.skipLine, params.customSeparator);
+            targets = QuoteTarget.inProcess(new LoanCalculator(reader.read(new File(params.marketFile))), params.term);
+        }
+        LoadGenerator generator = LoadGenerator.builder()
+                .threads(params.threads)
+                .rate(params.rate)
+                .duration(Duration.ofSeconds(params.durationSeconds))
+                .warmup(Duration.ofSeconds(params.warmupSeconds))
+                .amounts(AmountDistribution.parse(params.amounts))
+                .build();
+        try {
+            LoadReport report = generator.run(targets);
+            logger.info(report.format());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Load test interrupted", ex);
+        } finally {
+            closeAll(partitions);
+        }
+    }
+
+    private static void closeAll(List<RemotePartition> partitions) {
+        for (RemotePartition partition : partitions) {
+            try {
+                partition.close();
+            } catch (IOException ex) {
+                logger.warn("Could not close partition {}", partition.getAddress(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package task.loans.cli;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.core.LoanCalculator;
+import task.loans.load.AmountDistribution;
+import task.loans.server.QuoteProtocol;
+
+/**
+ * CLI arguments of the {@value LoansCLI#LOAD_TEST} command.
+ */
+@ParametersAreNonnullByDefault
+class LoadTestParams {
+
+    /**
+     * Flag: help requested.
+     */
+    @Parameter(names = {"-h", "--help"}, help = true, description = "Display this page.")
+    boolean help;
+
+    /**
+     * Input CSV market file to quote against in-process.
+     */
+    @Parameter(description = "Input file (CSV, may be gzipped) to quote against in-process")
+    String marketFile;
+
+    /**
+     * Quote server to load instead of quoting in-process.
+     */
+    @Parameter(names = {"--server"}, description = "Load the quote server at host:port instead",
+            converter = AddressConverter.class)
+    InetSocketAddress server;
+
+    /**
+     * Partition servers to quote against by rate ranges instead of quoting in-process.
+     */
+    @Parameter(names = {"--partitions"}, description = "Quote against the market partitions at host:port,... "
+            + "instead", converter = AddressConverter.class)
+    List<InetSocketAddress> partitions;
+
+    @Parameter(names = {"-t", "--threads"}, description = "Number of load generating threads")
+    int threads = 1;
+
+    /**
+     * Target rate, requests per second in total; 0 for closed loop: as many as the target serves.
+     */
+    @Parameter(names = {"-r", "--rate"}, description = "Requests per second in total, 0 for as many as served")
+    double rate;
+
+    @Parameter(names = {"-d", "--duration"}, description = "Measured duration, seconds")
+    int durationSeconds = 10;
+
+    @Parameter(names = {"-w", "--warmup"}, description = "Warm-up duration, not measured, seconds")
+    int warmupSeconds = 2;
+
+    @Parameter(names = {"--amounts"}, description = "Amounts distribution: fixed:AMOUNT, uniform:MIN:MAX "
+            + "or normal:MEAN:STDDEV")
+    String amounts = "uniform:1000:15000";
+
+    @Parameter(names = {"--term"}, description = "Loan term, months")
+    int term = LoanCalculator.DEFAULT_TERM;
+
+    /**
+     * Custom separator to use reading the CSV file.
+     */
+    @Parameter(names = {"-s", "--sep"}, description = "Custom CSV cells separator",
+            converter = Params.CharacterConverter.class)
+    Character customSeparator;
+
+    /**
+     * Flag: start scanning CSV file from the second line.
+     */
+    @Parameter(names = {"-l", "--line-skip"}, description = "Skip first line (header row) in CSV")
+    boolean skipLine;
+
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the parameters are inconsistent
+     */
+    void validate() {
+        int targets = (marketFile == null ? 0 : 1) + (server == null ? 0 : 1) + (partitions == null ? 0 : 1);
+        if (targets != 1) {
+            throw new ParameterException("Exactly one of the market file, the server or the partitions "
+                    + "addresses is required");
+        }
+        if (threads <= 0 || rate < 0 || durationSeconds <= 0 || warmupSeconds < 0) {
+            throw new ParameterException("Threads and duration must be positive, rate and warm-up non-negative");
+        }
+        if (term <= 0 || term > QuoteProtocol.MAX_TERM) {
+            throw new ParameterException("Term must be in range [1, " + QuoteProtocol.MAX_TERM + "]");
+        }
+        try {
+            AmountDistribution.parse(amounts);
+        } catch (IllegalArgumentException ex) {
+            throw new ParameterException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("help", help)
+                .append("marketFile", marketFile)
+                .append("server", server)
+                .append("partitions", partitions)
+                .append("threads", threads)
+                .append("rate", rate)
+                .append("durationSeconds", durationSeconds)
+                .append("warmupSeconds", warmupSeconds)
+                .append("amounts", amounts)
+                .append("term", term)
+                .append("customSeparator", customSeparator)
+                .append("skipLine", skipLine)
+                .toString();
+    }
+
+    private static class AddressConverter implements IStringConverter<InetSocketAddress> {
+        @Override
+        public InetSocketAddress convert(String value) {
+            int colon = value.lastIndexOf(':');
+            try {
+                return new InetSocketAddress(value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+                throw new ParameterException("host:port expected, got " + value);
+            }
+        }
+    }
+}
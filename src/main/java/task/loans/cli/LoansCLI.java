@@ -1,15 +1,44 @@
 package task.loans.cli;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import task.loans.audit.AuditLog;
+import task.loans.core.CheapestLevels;
+import task.loans.core.ExternalBookBuilder;
+import task.loans.core.LendingOffer;
 import task.loans.core.Loan;
 import task.loans.core.LoanCalculator;
+import task.loans.core.MarketBook;
+import task.loans.core.MarketStatistics;
+import task.loans.core.OffHeapOrderBook;
+import task.loans.core.OrderBook;
 import task.loans.io.CsvInputReader;
+import task.loans.io.CsvValidator;
 import task.loans.io.ResultFormatter;
+import task.loans.io.StatisticsFormatter;
+import task.loans.io.ValidationReport;
+import task.loans.server.QuoteServer;
 
 import static task.loans.core.Money.decimal;
 
@@ -21,6 +50,35 @@ public class LoansCLI {
 
     private static final Logger logger = LoggerFactory.getLogger(LoansCLI.class);
 
+    /**
+     * Command measuring the latency of quoting under load, given as the first argument.
+     */
+    static final String LOAD_TEST = "loadtest";
+
+    /**
+     * Command stressing the market with random perturbations, given as the first argument.
+     */
+    static final String SIMULATE = "simulate";
+
+    /**
+     * Command serving a rate range partition of the market, given as the first argument.
+     */
+    static final String PARTITION = "partition";
+
+    /**
+     * Command printing the audit log, given as the first argument.
+     */
+    static final String AUDIT = "audit";
+
+    /**
+     * Command running the benchmarks and comparing them with the baseline, given as the first argument.
+     */
+    static final String BENCH = "bench";
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private static final long MIB = 1 << 20;
+
     private final Params params;
 
     private LoansCLI(String[] args) {
@@ -30,6 +88,26 @@ public class LoansCLI {
 
     public static void main(String... args) {
         try {
+            if (args.length > 0 && LOAD_TEST.equals(args[0])) {
+                LoadTestCommand.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+            if (args.length > 0 && SIMULATE.equals(args[0])) {
+                SimulateCommand.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+            if (args.length > 0 && PARTITION.equals(args[0])) {
+                PartitionCommand.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+            if (args.length > 0 && AUDIT.equals(args[0])) {
+                AuditCommand.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+            if (args.length > 0 && BENCH.equals(args[0])) {
+                BenchCommand.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
             new LoansCLI(args).run();
         } catch (RuntimeException ex) {
             logger.error(ex.getCause().getMessage());
@@ -39,10 +117,212 @@ public class LoansCLI {
 
     private void run() {
         CsvInputReader reader = new CsvInputReader(params.skipLine, params.customSeparator);
-        LoanCalculator calculator = new LoanCalculator(reader.read(new File(params.marketFile)));
-        Loan result = calculator.calculate(decimal(params.loanAmount));
+        OffHeapOrderBook mapped = mapBook();
+        if (mapped != null && (params.validate || params.bookFile != null)) {
+            throw new UncheckedIOException(new IOException("Market is an order book file already: "
+                    + params.marketFile));
+        }
+        if (params.validate) {
+            ValidationReport report = validateMarket(false);
+            if (report.getInvalidRows() > 0) {
+                throw new UncheckedIOException(new IOException("Market has invalid rows: "
+                        + report.getInvalidRows()));
+            }
+            return;
+        }
+        if (params.bookFile != null) {
+            writeBook(reader);
+            return;
+        }
+        if (params.statistics) {
+            printStatistics(reader, mapped);
+            return;
+        }
+        LoanCalculator calculator;
+        if (mapped != null) {
+            calculator = new LoanCalculator(mapped);
+        } else if (params.skipInvalid) {
+            calculator = new LoanCalculator(validateMarket(true).getBook().get());
+        } else if (params.servePort != null || params.filter) {
+            calculator = new LoanCalculator(readMarket(reader));
+        } else {
+            calculator = new LoanCalculator(readCheapestLevels(reader));
+        }
+        if (params.servePort != null) {
+            serve(calculator);
+            return;
+        }
+        if (params.filter) {
+            filter(calculator);
+            return;
+        }
+        Loan result = requestedAmount(calculator)
+                .map(amount -> calculator.calculate(decimal(amount)))
+                .orElse(Loan.unavailable(BigDecimal.ZERO));
         String output = new ResultFormatter().format(result);
         logger.info(output);
     }
 
+    /**
+     * Single pass over the market data: no offers are kept in memory, only the order book.
+     */
+    private void printStatistics(CsvInputReader reader, @Nullable OffHeapOrderBook mapped) {
+        MarketBook book;
+        if (mapped != null) {
+            book = mapped;
+        } else if (params.skipInvalid) {
+            book = validateMarket(true).getBook().get();
+        } else {
+            book = Params.STDIN.equals(params.marketFile)
+                    ? reader.readBook(System.in)
+                    : reader.readBook(new File(params.marketFile));
+        }
+        logger.info(new StatisticsFormatter(true).format(new MarketStatistics(book)));
+    }
+
+    /**
+     * Quote amounts from the standard input until its end.
+     * Neither stream is closed.
+     */
+    private void filter(LoanCalculator calculator) {
+        Reader in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+        try {
+            new QuoteFilter(calculator, new ResultFormatter()).run(in, out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Serve quotes until the process is terminated.
+     */
+    private void serve(LoanCalculator calculator) {
+        try {
+            AuditLog audit = params.auditDirectory == null ? null
+                    : AuditLog.builder().directory(Paths.get(params.auditDirectory)).build();
+            QuoteServer server = new QuoteServer(calculator, new InetSocketAddress(params.servePort), params.eventLoops,
+                    audit);
+            server.start();
+            logger.info("Serving quotes at {}", server.getAddress());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                    if (audit != null) {
+                        audit.close();
+                    }
+                } catch (IOException ex) {
+                    logger.warn("Could not stop the server", ex);
+                }
+            }));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return Amount requested explicitly or the largest allowed amount satisfying the inverse query,
+     * if there is such.
+     */
+    private Optional<Integer> requestedAmount(LoanCalculator calculator) {
+        if (params.loanAmount != null) {
+            return Optional.of(params.loanAmount);
+        }
+        BigDecimal maxAmount = params.maxRate != null
+                ? calculator.maxAmountAtRate(params.maxRate)
+                : calculator.maxAmountForMonthlyRepayment(params.maxMonthlyRepayment);
+        return Params.allowedAmountNotAbove(maxAmount);
+    }
+
+    /**
+     * Check every row of the market data in parallel, and log the counts and the invalid rows.
+     *
+     * @param buildBook whether to aggregate the valid rows into the order book
+     */
+    private ValidationReport validateMarket(boolean buildBook) {
+        CsvValidator.Builder builder = CsvValidator.builder()
+                .skipFirstLine(params.skipLine)
+                .maxReported(params.maxReported);
+        if (params.customSeparator != null) {
+            builder.separator(params.customSeparator);
+        }
+        CsvValidator validator = builder.build();
+        ValidationReport report;
+        try {
+            if (Params.STDIN.equals(params.marketFile)) {
+                report = buildBook ? validator.readBook(System.in) : validator.validate(System.in);
+            } else {
+                File file = new File(params.marketFile);
+                report = buildBook ? validator.readBook(file) : validator.validate(file);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        logger.info("Rows: {}, valid: {}, invalid: {}", report.getRows(), report.getValidRows(),
+                report.getInvalidRows());
+        report.getReported().forEach(row -> logger.warn("{}", row));
+        if (report.isTruncated()) {
+            logger.warn("... and {} more invalid rows", report.getInvalidRows() - report.getReported().size());
+        }
+        return report;
+    }
+
+    /**
+     * Single pass over the market data keeping only the cheapest levels covering the largest loan allowed:
+     * a single quote, even an inverse one capped at that loan, never needs the rest.
+     */
+    private OrderBook readCheapestLevels(CsvInputReader reader) {
+        CheapestLevels levels = new CheapestLevels(BigDecimal.valueOf(Params.MAX_AMOUNT));
+        if (Params.STDIN.equals(params.marketFile)) {
+            reader.forEachOffer(System.in, levels::add);
+        } else {
+            reader.forEachOffer(new File(params.marketFile), levels::add);
+        }
+        logger.debug("Kept {} rate levels of the market supplying {}", levels.getLevels(), levels.getTotalSupply());
+        return levels.build();
+    }
+
+    /**
+     * Aggregate the market into the order book file out of core, with the runs spilled next to the file.
+     */
+    private void writeBook(CsvInputReader reader) {
+        Path file = Paths.get(params.bookFile).toAbsolutePath();
+        try (ExternalBookBuilder builder = new ExternalBookBuilder(file.getParent(), params.sortMemory * MIB)) {
+            if (Params.STDIN.equals(params.marketFile)) {
+                reader.forEachOffer(System.in, builder::add);
+            } else {
+                reader.forEachOffer(new File(params.marketFile), builder::add);
+            }
+            int runs = builder.getRuns();
+            OffHeapOrderBook book = builder.write(file);
+            logger.info("Order book of {} bytes written to {}, merged of {} sorted runs", book.byteSize(), file,
+                    runs + 1);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return Order book the market file is, as written by {@code --write-book}, or {@code null} for market data.
+     */
+    @Nullable
+    private OffHeapOrderBook mapBook() {
+        if (Params.STDIN.equals(params.marketFile)) {
+            return null;
+        }
+        Path file = Paths.get(params.marketFile);
+        try {
+            return Files.isRegularFile(file) && OffHeapOrderBook.isBook(file) ? OffHeapOrderBook.map(file) : null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<LendingOffer> readMarket(CsvInputReader reader) {
+        if (Params.STDIN.equals(params.marketFile)) {
+            return reader.read(System.in);
+        }
+        return reader.read(new File(params.marketFile));
+    }
+
 }
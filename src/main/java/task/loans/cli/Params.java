@@ -1,5 +1,9 @@
 package task.loans.cli;
 
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import com.beust.jcommander.IParameterValidator;
@@ -18,9 +22,14 @@ import static java.lang.String.format;
 class Params {
 
     private static final int MIN_AMOUNT = 1_000;
-    private static final int MAX_AMOUNT = 15_000;
+    static final int MAX_AMOUNT = 15_000;
     private static final int MOD_AMOUNT = 100;
 
+    /**
+     * Market file name standing for the standard input.
+     */
+    static final String STDIN = "-";
+
     /**
      * Flag: help requested.
      */
@@ -28,18 +37,96 @@ class Params {
     boolean help;
 
     /**
-     * Input CSV market file.
+     * Input CSV market file, plain or gzip-compressed, or {@value STDIN} for the standard input.
      */
-    @Parameter(required = true, description = "Input file (CSV)")
+    @Parameter(required = true, description = "Input file (CSV, may be gzipped, '-' for stdin)")
     String marketFile;
 
     /**
      * Requested loan amount.
      */
-    @Parameter(required = true, names = {"-a", "--amount"}, description = "Loan amount (1_000 : 100 : 15_000)",
+    @Parameter(names = {"-a", "--amount"}, description = "Loan amount (1_000 : 100 : 15_000)",
             validateWith = LoanAmountValidator.class)
     Integer loanAmount;
 
+    /**
+     * Inverse query: the highest acceptable annual interest rate.
+     */
+    @Parameter(names = {"-r", "--max-rate"}, description = "Quote the largest loan at this rate at most, e.g. 0.07",
+            validateWith = NonNegativeValidator.class)
+    BigDecimal maxRate;
+
+    /**
+     * Inverse query: the highest acceptable monthly repayment.
+     */
+    @Parameter(names = {"-m", "--max-monthly"}, description = "Quote the largest loan with this monthly repayment "
+            + "at most", validateWith = NonNegativeValidator.class)
+    BigDecimal maxMonthlyRepayment;
+
+    /**
+     * Flag: print market depth and statistics instead of a quote.
+     */
+    @Parameter(names = {"--stats"}, description = "Print market depth and statistics (JSON) instead of a quote")
+    boolean statistics;
+
+    /**
+     * Flag: check every row of the market data and report the invalid ones instead of a quote.
+     */
+    @Parameter(names = {"--validate"}, description = "Check every row of the market and report the invalid ones "
+            + "instead of a quote")
+    boolean validate;
+
+    /**
+     * Flag: build the market of the valid rows, reporting the invalid ones, rather than failing on the first one.
+     */
+    @Parameter(names = {"--skip-invalid"}, description = "Quote from the valid rows of the market only, "
+            + "reporting the invalid ones")
+    boolean skipInvalid;
+
+    /**
+     * Number of the invalid rows reported at most.
+     */
+    @Parameter(names = {"--max-reported"}, description = "Number of the invalid rows reported at most")
+    int maxReported = 100;
+
+    /**
+     * Order book file to aggregate the market into out of core, instead of a quote.
+     */
+    @Parameter(names = {"--write-book"}, description = "Aggregate the market into this order book file, sorting "
+            + "it on disk, instead of a quote. The file is read back as the market, e.g. to quote from it")
+    String bookFile;
+
+    /**
+     * Heap used to sort the market writing the order book file, in MiB.
+     */
+    @Parameter(names = {"--sort-memory"}, description = "Heap used to sort the market writing the order book file, "
+            + "MiB")
+    int sortMemory = 64;
+
+    /**
+     * Flag: quote amounts read line by line from the standard input.
+     */
+    @Parameter(names = {"--filter"}, description = "Quote amounts read from stdin line by line, one quote per line")
+    boolean filter;
+
+    /**
+     * Serve quotes over the binary protocol at this TCP port.
+     */
+    @Parameter(names = {"--serve"}, description = "Serve quotes over the binary protocol at this port")
+    Integer servePort;
+
+    /**
+     * Number of server event loop threads.
+     */
+    @Parameter(names = {"--event-loops"}, description = "Number of server event loop threads")
+    int eventLoops = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Directory of the audit log recording every quote served.
+     */
+    @Parameter(names = {"--audit"}, description = "Record every quote served to the audit log in this directory")
+    String auditDirectory;
+
     /**
      * Custom separator to use reading the CSV file.
      */
@@ -54,18 +141,91 @@ class Params {
     @Parameter(names = {"-l", "--line-skip"}, description = "Skip first line (header row) in CSV")
     boolean skipLine;
 
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the parameters are inconsistent
+     */
+    void validate() {
+        long queries = Stream.of(loanAmount, maxRate, maxMonthlyRepayment).filter(p -> p != null).count()
+                + (statistics ? 1 : 0) + (filter ? 1 : 0) + (servePort != null ? 1 : 0) + (validate ? 1 : 0)
+                + (bookFile != null ? 1 : 0);
+        if (queries != 1) {
+            throw new ParameterException("Exactly one of the options is required: [-a | --amount], [-r | --max-rate], "
+                    + "[-m | --max-monthly], [--stats], [--filter], [--serve], [--validate], [--write-book]");
+        }
+        if (validate && skipInvalid) {
+            throw new ParameterException("Invalid rows are only skipped building the market");
+        }
+        if (bookFile != null && skipInvalid) {
+            throw new ParameterException("Invalid rows are only skipped building the market in memory");
+        }
+        if (sortMemory <= 0) {
+            throw new ParameterException("Sort memory must be positive");
+        }
+        if (maxReported < 0) {
+            throw new ParameterException("Number of the invalid rows reported must be non-negative");
+        }
+        if (filter && STDIN.equals(marketFile)) {
+            throw new ParameterException("Market cannot be read from stdin in filter mode");
+        }
+        if (eventLoops <= 0) {
+            throw new ParameterException("Number of event loops must be positive");
+        }
+        if (auditDirectory != null && servePort == null) {
+            throw new ParameterException("Audit log is only written serving quotes");
+        }
+    }
+
+    /**
+     * @param amount requested loan amount
+     * @throws IllegalArgumentException if the amount cannot be requested
+     */
+    static void checkLoanAmount(int amount) {
+        checkArgument(amount >= MIN_AMOUNT, "amount must be not less than %s", MIN_AMOUNT);
+        checkArgument(amount <= MAX_AMOUNT, "amount must be not greater than %s", MAX_AMOUNT);
+        checkArgument((amount - MIN_AMOUNT) % MOD_AMOUNT == 0, "allowed amount value step is %s", MOD_AMOUNT);
+    }
+
+    /**
+     * Round the amount down to the closest loan amount which can be requested.
+     *
+     * @param amount any amount
+     * @return The greatest allowed loan amount not exceeding the specified one,
+     * or nothing if it is less than the minimal allowed amount.
+     */
+    static Optional<Integer> allowedAmountNotAbove(BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.valueOf(MIN_AMOUNT)) < 0) {
+            return Optional.empty();
+        }
+        int capped = amount.min(BigDecimal.valueOf(MAX_AMOUNT)).intValue();
+        return Optional.of(capped - (capped - MIN_AMOUNT) % MOD_AMOUNT);
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
                 .append("help", help)
                 .append("marketFile", marketFile)
                 .append("loanAmount", loanAmount)
+                .append("maxRate", maxRate)
+                .append("maxMonthlyRepayment", maxMonthlyRepayment)
+                .append("statistics", statistics)
+                .append("validate", validate)
+                .append("skipInvalid", skipInvalid)
+                .append("maxReported", maxReported)
+                .append("bookFile", bookFile)
+                .append("sortMemory", sortMemory)
+                .append("filter", filter)
+                .append("servePort", servePort)
+                .append("eventLoops", eventLoops)
+                .append("auditDirectory", auditDirectory)
                 .append("customSeparator", customSeparator)
                 .append("skipLine", skipLine)
                 .toString();
     }
 
-    private static class CharacterConverter implements IStringConverter<Character> {
+    static class CharacterConverter implements IStringConverter<Character> {
         @Override
         public Character convert(String string) {
             if (string.length() != 1) {
@@ -75,14 +235,22 @@ class Params {
         }
     }
 
+    public static class NonNegativeValidator implements IParameterValidator {
+        @Override
+        public void validate(String name, String value) {
+            try {
+                checkArgument(new BigDecimal(value).compareTo(BigDecimal.ZERO) >= 0, "must be non-negative");
+            } catch (IllegalArgumentException ex) {
+                throw new ParameterException(format("Illegal %s parameter value: %s", name, ex.getMessage()));
+            }
+        }
+    }
+
     public static class LoanAmountValidator implements IParameterValidator {
         @Override
         public void validate(String name, String value) {
             try {
-                int amount = Integer.parseInt(value);
-                checkArgument(amount >= MIN_AMOUNT, "amount must be not less than %d", MIN_AMOUNT);
-                checkArgument(amount <= MAX_AMOUNT, "amount must be not greater than %d", MAX_AMOUNT);
-                checkArgument((amount - MIN_AMOUNT) % MOD_AMOUNT == 0, "allowed amount value step is %d", MOD_AMOUNT);
+                checkLoanAmount(Integer.parseInt(value));
             } catch (IllegalArgumentException ex) {
                 throw new ParameterException(format("Illegal %s parameter value: %s", name, ex.getMessage()));
             }
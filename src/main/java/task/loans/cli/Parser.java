@@ -1,5 +1,7 @@
 package task.loans.cli;
 
+import java.util.function.BooleanSupplier;
+
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import com.beust.jcommander.JCommander;
@@ -20,6 +22,41 @@ class Parser {
 
     Params parse(String... args) {
         Params params = new Params();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    LoadTestParams parseLoadTest(String... args) {
+        LoadTestParams params = new LoadTestParams();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    SimulateParams parseSimulate(String... args) {
+        SimulateParams params = new SimulateParams();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    PartitionParams parsePartition(String... args) {
+        PartitionParams params = new PartitionParams();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    AuditParams parseAudit(String... args) {
+        AuditParams params = new AuditParams();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    BenchParams parseBench(String... args) {
+        BenchParams params = new BenchParams();
+        parse(params, () -> params.help, params::validate, args);
+        return params;
+    }
+
+    private void parse(Object params, BooleanSupplier help, Runnable validation, String... args) {
         JCommander commander = JCommander.newBuilder()
                 .programName(programName)
                 .addObject(params)
@@ -29,11 +66,15 @@ class Parser {
         } catch (ParameterException exc) {
             printErrorAndExit(exc);
         }
-        if (params.help) {
+        if (help.getAsBoolean()) {
             commander.usage();
             System.exit(0);
         }
-        return params;
+        try {
+            validation.run();
+        } catch (ParameterException exc) {
+            printErrorAndExit(exc);
+        }
     }
 
     private static void printErrorAndExit(ParameterException t) {
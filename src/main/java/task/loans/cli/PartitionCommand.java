@@ -0,0 +1,58 @@
+package task.loans.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.BookPartition;
+import task.loans.core.OrderBook;
+import task.loans.io.CsvInputReader;
+import task.loans.partition.PartitionServer;
+
+/**
+ * The {@value LoansCLI#PARTITION} command: serve the levels of the market within a rate range
+ * to the coordinators, until the process is stopped.
+ */
+@ParametersAreNonnullByDefault
+class PartitionCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionCommand.class);
+
+    private PartitionCommand() {
+        // no instantiation
+    }
+
+    static void run(String... args) {
+        Parser parser = new Parser(LoansCLI.class.getCanonicalName() + " " + LoansCLI.PARTITION);
+        PartitionParams params = parser.parsePartition(args);
+
+        CsvInputReader reader = new CsvInputReader(params.skipLine, params.customSeparator);
+        OrderBook.Builder builder = OrderBook.builder();
+        reader.forEachOffer(new File(params.marketFile), offer -> {
+            if (BookPartition.inRange(offer, params.rateFrom, params.rateTo)) {
+                builder.add(offer);
+            }
+        });
+        BookPartition partition = new BookPartition(builder.build());
+        try {
+            PartitionServer server = new PartitionServer(partition, new InetSocketAddress(params.port));
+            server.start();
+            logger.info("Serving partition of {} levels at {}", partition.getSummary().getLevels(),
+                    server.getAddress());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ex) {
+                    logger.warn("Could not stop the partition server", ex);
+                }
+            }));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
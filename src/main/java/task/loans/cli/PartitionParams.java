@@ -0,0 +1,80 @@
+package task.loans.cli;
+
+import java.math.BigDecimal;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * CLI arguments of the {@value LoansCLI#PARTITION} command.
+ */
+@ParametersAreNonnullByDefault
+class PartitionParams {
+
+    /**
+     * Flag: help requested.
+     */
+    @Parameter(names = {"-h", "--help"}, help = true, description = "Display this page.")
+    boolean help;
+
+    /**
+     * Input CSV market file, only the offers within the rate range are kept.
+     */
+    @Parameter(required = true, description = "Input file (CSV, may be gzipped) of the whole market")
+    String marketFile;
+
+    @Parameter(names = {"--rate-from"}, description = "The lowest rate of the partition, inclusive")
+    BigDecimal rateFrom;
+
+    @Parameter(names = {"--rate-to"}, description = "The highest rate of the partition, exclusive")
+    BigDecimal rateTo;
+
+    /**
+     * Port to serve the partition at, 0 for any free one.
+     */
+    @Parameter(names = {"-p", "--port"}, description = "Serve the partition at this port, 0 for any free one")
+    int port;
+
+    /**
+     * Custom separator to use reading the CSV file.
+     */
+    @Parameter(names = {"-s", "--sep"}, description = "Custom CSV cells separator",
+            converter = Params.CharacterConverter.class)
+    Character customSeparator;
+
+    /**
+     * Flag: start scanning CSV file from the second line.
+     */
+    @Parameter(names = {"-l", "--line-skip"}, description = "Skip first line (header row) in CSV")
+    boolean skipLine;
+
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the parameters are inconsistent
+     */
+    void validate() {
+        if (rateFrom != null && rateTo != null && rateFrom.compareTo(rateTo) >= 0) {
+            throw new ParameterException("Rate range must not be empty");
+        }
+        if (port < 0 || port > 0xFFFF) {
+            throw new ParameterException("Port must be in range [0, 65535]");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("help", help)
+                .append("marketFile", marketFile)
+                .append("rateFrom", rateFrom)
+                .append("rateTo", rateTo)
+                .append("port", port)
+                .append("customSeparator", customSeparator)
+                .append("skipLine", skipLine)
+                .toString();
+    }
+}
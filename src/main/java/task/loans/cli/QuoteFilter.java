@@ -0,0 +1,72 @@
+package task.loans.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.io.ResultFormatter;
+
+import static task.loans.core.Money.decimal;
+
+/**
+ * Streaming quote filter: reads requested amounts line by line and writes one quote per line.
+ * <p>
+ * The output is flushed once all the input available so far is quoted, or after {@value #FLUSH_LINES}
+ * quotes, whichever comes first: typing amounts one by one gets answers right away, while huge piped
+ * inputs are written in large chunks. Writing blocks while the consumer is slow, so does reading then.
+ */
+@ParametersAreNonnullByDefault
+class QuoteFilter {
+
+    private static final int FLUSH_LINES = 4096;
+
+    private final LoanCalculator calculator;
+    private final ResultFormatter formatter;
+
+    QuoteFilter(LoanCalculator calculator, ResultFormatter formatter) {
+        this.calculator = calculator;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Quote every non-blank line of the input until its end. Lines which are not allowed loan amounts
+     * are answered with an error message instead of a quote, the filter goes on.
+     *
+     * @param in  requested amounts, one per line; not closed
+     * @param out quotes, one per line; flushed, not closed
+     * @throws IOException if reading or writing failed
+     */
+    void run(Reader in, Writer out) throws IOException {
+        BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        int pending = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            String amount = line.trim();
+            if (amount.isEmpty()) {
+                continue;
+            }
+            out.write(quote(amount));
+            out.write(System.lineSeparator());
+            if (++pending == FLUSH_LINES || !lines.ready()) {
+                out.flush();
+                pending = 0;
+            }
+        }
+        out.flush();
+    }
+
+    private String quote(String amount) {
+        try {
+            int loanAmount = Integer.parseInt(amount);
+            Params.checkLoanAmount(loanAmount);
+            Loan loan = calculator.calculate(decimal(loanAmount));
+            return formatter.formatLine(loan);
+        } catch (IllegalArgumentException ex) {
+            return "Illegal amount " + amount + ": " + ex.getMessage();
+        }
+    }
+}
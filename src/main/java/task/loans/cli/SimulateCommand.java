@@ -0,0 +1,52 @@
+package task.loans.cli;
+
+import java.io.File;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.io.CsvInputReader;
+import task.loans.simulation.MarketSimulator;
+import task.loans.simulation.SimulationReport;
+
+/**
+ * The {@value LoansCLI#SIMULATE} command: stress the market with random perturbations
+ * and report the distributions of the quotes as the scenarios complete.
+ */
+@ParametersAreNonnullByDefault
+class SimulateCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulateCommand.class);
+
+    private SimulateCommand() {
+        // no instantiation
+    }
+
+    static void run(String... args) {
+        Parser parser = new Parser(LoansCLI.class.getCanonicalName() + " " + LoansCLI.SIMULATE);
+        SimulateParams params = parser.parseSimulate(args);
+
+        CsvInputReader reader = new CsvInputReader(params.skipLine, params.customSeparator);
+        MarketSimulator simulator = MarketSimulator.builder()
+                .amounts(params.amounts)
+                .scenarios(params.scenarios)
+                .seed(params.seed)
+                .threads(params.threads)
+                .term(params.term)
+                .marketShift(params.marketShift)
+                .rateShift(params.rateShift)
+                .dropout(params.dropout)
+                .amountShock(params.amountShock)
+                .reportEvery(params.reportEvery)
+                .build();
+        try {
+            SimulationReport report = simulator.run(reader.read(new File(params.marketFile)),
+                    progress -> logger.info(progress.format()));
+            logger.info(report.format());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation interrupted", ex);
+        }
+    }
+}
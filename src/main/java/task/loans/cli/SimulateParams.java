@@ -0,0 +1,124 @@
+package task.loans.cli;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.core.LoanCalculator;
+
+/**
+ * CLI arguments of the {@value LoansCLI#SIMULATE} command.
+ */
+@ParametersAreNonnullByDefault
+class SimulateParams {
+
+    /**
+     * Flag: help requested.
+     */
+    @Parameter(names = {"-h", "--help"}, help = true, description = "Display this page.")
+    boolean help;
+
+    /**
+     * Input CSV file of the base market.
+     */
+    @Parameter(required = true, description = "Input file (CSV, may be gzipped) of the base market")
+    String marketFile;
+
+    @Parameter(names = {"-a", "--amounts"}, description = "Loan amounts to quote in every scenario, comma separated")
+    List<BigDecimal> amounts = new ArrayList<>(Arrays.asList(
+            BigDecimal.valueOf(1_000), BigDecimal.valueOf(5_000), BigDecimal.valueOf(15_000)));
+
+    @Parameter(names = {"-n", "--scenarios"}, description = "Number of scenarios")
+    long scenarios = 1_000_000;
+
+    @Parameter(names = {"--seed"}, description = "Seed of the random perturbations")
+    long seed = 42;
+
+    /**
+     * Number of simulating threads, all the cores by default.
+     */
+    @Parameter(names = {"-t", "--threads"}, description = "Number of simulating threads")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = {"--market-shift"}, description = "Standard deviation of the shift of all the rates")
+    double marketShift;
+
+    @Parameter(names = {"--rate-shift"}, description = "Standard deviation of the shift of every rate")
+    double rateShift;
+
+    @Parameter(names = {"--dropout"}, description = "Probability of a lender to withdraw its offers")
+    double dropout;
+
+    @Parameter(names = {"--amount-shock"}, description = "Standard deviation of the log of the factor "
+            + "scaling every amount offered")
+    double amountShock;
+
+    /**
+     * Report the distributions every that many scenarios, 0 for the final ones only.
+     */
+    @Parameter(names = {"--report-every"}, description = "Report distributions every that many scenarios, "
+            + "0 for the final ones only")
+    long reportEvery = 100_000;
+
+    @Parameter(names = {"--term"}, description = "Loan term, months")
+    int term = LoanCalculator.DEFAULT_TERM;
+
+    /**
+     * Custom separator to use reading the CSV file.
+     */
+    @Parameter(names = {"-s", "--sep"}, description = "Custom CSV cells separator",
+            converter = Params.CharacterConverter.class)
+    Character customSeparator;
+
+    /**
+     * Flag: start scanning CSV file from the second line.
+     */
+    @Parameter(names = {"-l", "--line-skip"}, description = "Skip first line (header row) in CSV")
+    boolean skipLine;
+
+    /**
+     * Check the constraints JCommander cannot express.
+     *
+     * @throws ParameterException if the parameters are inconsistent
+     */
+    void validate() {
+        if (amounts.isEmpty() || amounts.stream().anyMatch(amount -> amount.signum() <= 0)) {
+            throw new ParameterException("Amounts must be positive");
+        }
+        if (scenarios <= 0 || threads <= 0 || term <= 0 || reportEvery < 0) {
+            throw new ParameterException("Scenarios, threads and term must be positive, report interval non-negative");
+        }
+        if (term > LoanCalculator.MAX_TERM) {
+            throw new ParameterException("Term must be " + LoanCalculator.MAX_TERM + " months at most");
+        }
+        if (marketShift < 0 || rateShift < 0 || amountShock < 0 || dropout < 0 || dropout > 1) {
+            throw new ParameterException("Shifts and shock must be non-negative, dropout in range [0, 1]");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("help", help)
+                .append("marketFile", marketFile)
+                .append("amounts", amounts)
+                .append("scenarios", scenarios)
+                .append("seed", seed)
+                .append("threads", threads)
+                .append("marketShift", marketShift)
+                .append("rateShift", rateShift)
+                .append("dropout", dropout)
+                .append("amountShock", amountShock)
+                .append("reportEvery", reportEvery)
+                .append("term", term)
+                .append("customSeparator", customSeparator)
+                .append("skipLine", skipLine)
+                .toString();
+    }
+}
@@ -0,0 +1,265 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.roundingMode;
+
+/**
+ * Prices batches of (principal, annual rate) pairs for a fixed term, in cents.
+ * <p>
+ * The repayments are calculated in {@code double} over primitive arrays, in loops without
+ * per element branches which the JIT can vectorize, on a fork/join pool in chunks of {@value #CHUNK}.
+ * Then they are reconciled with the {@link BigDecimal} engine of {@link LoanCalculator}:
+ * every value is rounded to {@value Money#CENT_SCALE} digits {@link java.math.RoundingMode#HALF_EVEN},
+ * and the ones whose error bound straddles a rounding boundary are calculated by the engine instead.
+ * So the results are the same as the engine would give. To check the error bound holds, every
+ * {@link Builder#verifyEvery(int) n-th} pair is calculated by the engine too, and any fast result
+ * rounded differently is replaced and reported in {@link BatchQuotes#getMismatches()}.
+ */
+@ParametersAreNonnullByDefault
+public class BatchPricer {
+
+    /**
+     * Number of the pairs priced by one fork/join task at most.
+     */
+    static final int CHUNK = 4096;
+
+    private static final double CENTS = 100;
+    private static final double EPSILON = Math.ulp(1.0);
+    private static final double MAX_PRINCIPAL = 1e13;
+
+    private final int term;
+    private final int verifyEvery;
+    private final ForkJoinPool pool;
+    private final BigDecimal repayments;
+
+    private BatchPricer(Builder builder) {
+        this.term = builder.term;
+        this.verifyEvery = builder.verifyEvery;
+        this.pool = builder.pool;
+        this.repayments = BigDecimal.valueOf(term);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param principals  principal amounts in pence, positive values
+     * @param annualRates annual interest rates, non-negative values, taken as their shortest decimal
+     *                    representation by the engine, see {@link BigDecimal#valueOf(double)}
+     * @return Repayments of the pairs in cents, in the order of the pairs.
+     * @throws IllegalArgumentException if the arrays differ in length or hold a value out of range
+     */
+    public BatchQuotes price(long[] principals, double[] annualRates) {
+        checkArgument(principals.length == annualRates.length, "Got %s principals but %s rates",
+                principals.length, annualRates.length);
+        for (int i = 0; i < principals.length; i++) {
+            if (principals[i] <= 0 || principals[i] > MAX_PRINCIPAL
+                    || !(annualRates[i] >= 0 && annualRates[i] < Double.POSITIVE_INFINITY)) {
+                throw new IllegalArgumentException("Illegal principal " + principals[i] + " or rate "
+                        + annualRates[i] + " at " + i);
+            }
+        }
+        long[] monthly = new long[principals.length];
+        long[] total = new long[principals.length];
+        Reconciliation reconciliation = pool.invoke(
+                new PricingTask(principals, annualRates, monthly, total, 0, principals.length));
+        return new BatchQuotes(monthly, total, reconciliation.mismatches(), reconciliation.verified);
+    }
+
+    /**
+     * Price the pairs of the range in {@code double}, round them and reconcile the uncertain ones.
+     */
+    private Reconciliation priceChunk(long[] principals, double[] annualRates, long[] monthly, long[] total,
+                                      int from, int to) {
+        int size = to - from;
+        double[] payment = new double[size];
+        double[] growth = new double[size];
+        double[] tolerance = new double[size];
+        compoundGrowth(annualRates, from, growth, payment);
+
+        for (int i = 0; i < size; i++) {
+            double monthlyRate = annualRates[from + i] / 12;
+            double principal = principals[from + i] / CENTS;
+            double r = growth[i];
+            double amplification = monthlyRate == 0 ? 0 : r / (r - 1);
+            double compound = monthlyRate * principal * amplification;
+            double flat = principal / term;
+            payment[i] = (monthlyRate == 0 ? flat : compound) * CENTS;
+            tolerance[i] = payment[i] * EPSILON * (4 * (2 * term + 64) * (1 + amplification) + 16);
+        }
+
+        Reconciliation reconciliation = new Reconciliation();
+        for (int i = 0; i < size; i++) {
+            double monthlyCents = Math.rint(payment[i]);
+            double totalCents = Math.rint(payment[i] * term);
+            monthly[from + i] = (long) monthlyCents;
+            total[from + i] = (long) totalCents;
+            boolean certain = distanceToHalf(payment[i]) > tolerance[i]
+                    && distanceToHalf(payment[i] * term) > tolerance[i] * term + Math.ulp(payment[i] * term);
+            if (!certain || verifyEvery > 0 && (from + i) % verifyEvery == 0) {
+                reconcile(principals, annualRates, monthly, total, from + i, certain, reconciliation);
+            }
+        }
+        return reconciliation;
+    }
+
+    /**
+     * Calculate {@code (1 + Rm)^N} by squaring, one pass over the chunk per bit of the term.
+     *
+     * @param scratch array of the chunk size to hold the powers of {@code 1 + Rm}
+     */
+    private void compoundGrowth(double[] annualRates, int from, double[] growth, double[] scratch) {
+        int size = growth.length;
+        for (int i = 0; i < size; i++) {
+            scratch[i] = 1 + annualRates[from + i] / 12;
+            growth[i] = 1;
+        }
+        for (int bits = term; bits != 0; bits >>>= 1) {
+            if ((bits & 1) != 0) {
+                for (int i = 0; i < size; i++) {
+                    growth[i] *= scratch[i];
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                scratch[i] *= scratch[i];
+            }
+        }
+    }
+
+    /**
+     * @return Distance of the value to the nearest rounding boundary, i.e. half of a cent,
+     * {@code NaN} if the value is not finite.
+     */
+    private static double distanceToHalf(double cents) {
+        return Math.abs(cents - Math.floor(cents) - 0.5);
+    }
+
+    /**
+     * Replace the fast results of the pair with the engine ones.
+     *
+     * @param certain whether the fast results were expected to be the same, so a difference is a mismatch
+     */
+    private void reconcile(long[] principals, double[] annualRates, long[] monthly, long[] total, int i,
+                           boolean certain, Reconciliation reconciliation) {
+        BigDecimal payment = LoanCalculator.monthlyRepayment(BigDecimal.valueOf(principals[i], CENT_SCALE),
+                BigDecimal.valueOf(annualRates[i]), term);
+        long exactMonthly = cents(payment);
+        long exactTotal = cents(payment.multiply(repayments));
+        reconciliation.verified++;
+        if (certain && (monthly[i] != exactMonthly || total[i] != exactTotal)) {
+            reconciliation.add(i);
+        }
+        monthly[i] = exactMonthly;
+        total[i] = exactTotal;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(CENT_SCALE, roundingMode()).unscaledValue().longValueExact();
+    }
+
+    private class PricingTask extends RecursiveTask<Reconciliation> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] principals;
+        private final double[] annualRates;
+        private final long[] monthly;
+        private final long[] total;
+        private final int from;
+        private final int to;
+
+        PricingTask(long[] principals, double[] annualRates, long[] monthly, long[] total, int from, int to) {
+            this.principals = principals;
+            this.annualRates = annualRates;
+            this.monthly = monthly;
+            this.total = total;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Reconciliation compute() {
+            if (to - from <= CHUNK) {
+                return priceChunk(principals, annualRates, monthly, total, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            PricingTask right = new PricingTask(principals, annualRates, monthly, total, middle, to);
+            right.fork();
+            Reconciliation left = new PricingTask(principals, annualRates, monthly, total, from, middle).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * Number of the pairs calculated by the engine, and the ones expected to be rounded the same
+     * by the fast path but which were not, ascending.
+     */
+    private static class Reconciliation {
+        private int verified;
+        private int[] mismatches = new int[0];
+        private int size;
+
+        void add(int index) {
+            if (size == mismatches.length) {
+                mismatches = Arrays.copyOf(mismatches, Math.max(4, size * 2));
+            }
+            mismatches[size++] = index;
+        }
+
+        Reconciliation merge(Reconciliation following) {
+            verified += following.verified;
+            for (int i = 0; i < following.size; i++) {
+                add(following.mismatches[i]);
+            }
+            return this;
+        }
+
+        int[] mismatches() {
+            return Arrays.copyOf(mismatches, size);
+        }
+    }
+
+    public static final class Builder {
+        private int term = LoanCalculator.DEFAULT_TERM;
+        private int verifyEvery = 1024;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder() {
+        }
+
+        /**
+         * @param term number of monthly repayments, positive value
+         */
+        public Builder term(int term) {
+            checkArgument(term > 0, "Term must be positive");
+            this.term = term;
+            return this;
+        }
+
+        /**
+         * @param verifyEvery calculate every n-th pair by the engine too, 0 for only the uncertain ones
+         */
+        public Builder verifyEvery(int verifyEvery) {
+            checkArgument(verifyEvery >= 0, "Verification interval must be non-negative");
+            this.verifyEvery = verifyEvery;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public BatchPricer build() {
+            return new BatchPricer(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package task.loans.core;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Repayments of a batch priced by {@link BatchPricer}, in cents.
+ */
+@ParametersAreNonnullByDefault
+public class BatchQuotes {
+
+    private final long[] monthlyRepayments;
+    private final long[] totalRepayments;
+    private final int[] mismatches;
+    private final int verified;
+
+    BatchQuotes(long[] monthlyRepayments, long[] totalRepayments, int[] mismatches, int verified) {
+        this.monthlyRepayments = monthlyRepayments;
+        this.totalRepayments = totalRepayments;
+        this.mismatches = mismatches;
+        this.verified = verified;
+    }
+
+    public int size() {
+        return monthlyRepayments.length;
+    }
+
+    public long getMonthlyRepayment(int index) {
+        return monthlyRepayments[index];
+    }
+
+    public long getTotalRepayment(int index) {
+        return totalRepayments[index];
+    }
+
+    /**
+     * @return Number of the pairs calculated by the {@link java.math.BigDecimal} engine too.
+     */
+    public int getVerified() {
+        return verified;
+    }
+
+    /**
+     * @return Indexes of the pairs, ascending, whose fast results were rounded differently from the engine
+     * and were replaced with the engine results. Empty unless the error bound of the fast path is broken.
+     */
+    public int[] getMismatches() {
+        return mismatches.clone();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("size", size())
+                .append("verified", verified)
+                .append("mismatches", mismatches.length)
+                .toString();
+    }
+}
@@ -0,0 +1,78 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Partition held in this process: the levels of an order book with their cumulative sums,
+ * answering in O(log(n)). Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public class BookPartition implements Partition {
+
+    private final MarketBook book;
+    private final Summary summary;
+
+    /**
+     * @param book levels of the partition, at {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE},
+     *             see {@link OrderBook#builder()}
+     * @throws IllegalArgumentException if the book is at other scales
+     */
+    public BookPartition(MarketBook book) {
+        checkArgument(book.rateScale() == RATE_SCALE && book.amountScale() == CENT_SCALE,
+                "Book must be at rate scale %s and amount scale %s", RATE_SCALE, CENT_SCALE);
+        this.book = book;
+        int levels = book.size();
+        this.summary = new Summary(levels, levels == 0 ? 0 : book.rate(0), levels == 0 ? 0 : book.rate(levels - 1),
+                book.totalSupply(), book.weightedSumBelow(levels));
+    }
+
+    /**
+     * Build the partition of the offers within the rate range, skipping the other ones.
+     *
+     * @param offers   market offers, quantized as read from the market data
+     * @param rateFrom the lowest rate of the range inclusive, {@code null} if unbounded
+     * @param rateTo   the highest rate of the range exclusive, {@code null} if unbounded
+     * @return Partition of the offers in range.
+     */
+    public static BookPartition of(Iterable<LendingOffer> offers, @Nullable BigDecimal rateFrom,
+                                   @Nullable BigDecimal rateTo) {
+        OrderBook.Builder builder = OrderBook.builder();
+        for (LendingOffer offer : offers) {
+            if (inRange(offer, rateFrom, rateTo)) {
+                builder.add(offer);
+            }
+        }
+        return new BookPartition(builder.build());
+    }
+
+    /**
+     * @return Whether the offer's rate is within the range, bounds as in {@link #of}.
+     */
+    public static boolean inRange(LendingOffer offer, @Nullable BigDecimal rateFrom, @Nullable BigDecimal rateTo) {
+        return (rateFrom == null || offer.getRate().compareTo(rateFrom) >= 0)
+                && (rateTo == null || offer.getRate().compareTo(rateTo) < 0);
+    }
+
+    @Override
+    public Summary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount is negative or above the total amount of the partition
+     */
+    @Override
+    public Cut cut(long amount) {
+        checkArgument(amount >= 0 && amount <= summary.getTotalAmount() && summary.getLevels() > 0,
+                "Amount %s is out of the partition range [0, %s]", amount, summary.getTotalAmount());
+        int level = book.levelCovering(amount);
+        return new Cut(book.rate(level), book.amountBelow(level), book.weightedSumBelow(level));
+    }
+}
@@ -0,0 +1,120 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Single-use order book builder keeping only the cheapest rate levels needed to quote loans up to a maximum amount.
+ * <p>
+ * A quote of an amount only depends on the cheapest levels covering it. So once the levels kept cover
+ * the maximum amount, an offer more expensive than all of them is dropped at once, and a cheaper one evicts
+ * the most expensive levels no longer needed: they are held in a max-heap by rate. Memory is proportional
+ * to the number of the levels covering the maximum amount, not to the market. The total supply of all the offers
+ * is summed up exactly.
+ * <p>
+ * The order book built quotes every amount up to the maximum exactly as the book of all the offers does,
+ * including the largest amounts at a rate or monthly repayment capped at the maximum; it is no good for
+ * larger amounts or market statistics. Offers must be quantized to {@link Money#RATE_SCALE} and
+ * {@link Money#CENT_SCALE}, as offers read from the market data are.
+ */
+@ParametersAreNonnullByDefault
+public final class CheapestLevels {
+
+    private final long maxAmount;
+
+    private final Map<Long, Level> levels = new HashMap<>();
+    private final PriorityQueue<Level> mostExpensiveFirst =
+            new PriorityQueue<>(Comparator.comparingLong((Level level) -> level.rate).reversed());
+
+    private long keptAmount;
+    private long totalSupply;
+
+    /**
+     * @param maxAmount largest amount to be quoted, non-negative, rounded up to cents
+     */
+    public CheapestLevels(BigDecimal maxAmount) {
+        checkArgument(maxAmount.signum() >= 0, "Maximum amount must be non-negative");
+        this.maxAmount = OrderBook.unscaled(maxAmount.setScale(CENT_SCALE, RoundingMode.CEILING), CENT_SCALE);
+    }
+
+    /**
+     * Add an offer, keeping its level only if it is among the cheapest ones covering the maximum amount.
+     *
+     * @param offer offer with rate and amount not finer than the market scales
+     * @return This builder.
+     * @throws IllegalArgumentException if the offer's values cannot be represented at the market scales,
+     *                                  or the total supply overflows
+     */
+    public CheapestLevels add(LendingOffer offer) {
+        checkArgument(offer.getRate().scale() <= RATE_SCALE, "Rate scale exceeds %s: %s", RATE_SCALE, offer);
+        checkArgument(offer.getAmount().scale() <= CENT_SCALE, "Amount scale exceeds %s: %s", CENT_SCALE, offer);
+        long rate = OrderBook.unscaled(offer.getRate(), RATE_SCALE);
+        long amount = OrderBook.unscaled(offer.getAmount(), CENT_SCALE);
+        totalSupply = OrderBook.add(totalSupply, amount);
+        if (keptAmount >= maxAmount && !levels.isEmpty() && rate > mostExpensiveFirst.peek().rate) {
+            return this;
+        }
+        Level level = levels.get(rate);
+        if (level == null) {
+            level = new Level(rate);
+            levels.put(rate, level);
+            mostExpensiveFirst.add(level);
+        }
+        level.amount += amount;
+        keptAmount += amount;
+        while (levels.size() > 1 && keptAmount - mostExpensiveFirst.peek().amount >= maxAmount) {
+            Level evicted = mostExpensiveFirst.poll();
+            levels.remove(evicted.rate);
+            keptAmount -= evicted.amount;
+        }
+        return this;
+    }
+
+    /**
+     * @return Sum of the amounts of all the offers added, kept or not.
+     */
+    public BigDecimal getTotalSupply() {
+        return BigDecimal.valueOf(totalSupply, CENT_SCALE);
+    }
+
+    /**
+     * @return Number of the rate levels kept.
+     */
+    public int getLevels() {
+        return levels.size();
+    }
+
+    /**
+     * @return Order book of the levels kept.
+     */
+    public OrderBook build() {
+        long[] rates = levels.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] amounts = new long[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            amounts[i] = levels.get(rates[i]).amount;
+        }
+        return OrderBook.create(RATE_SCALE, CENT_SCALE, rates, amounts);
+    }
+
+    /**
+     * Amount offered at a rate, ordered in the heap by the rate which never changes.
+     */
+    private static final class Level {
+        private final long rate;
+        private long amount;
+
+        Level(long rate) {
+            this.rate = rate;
+        }
+    }
+}
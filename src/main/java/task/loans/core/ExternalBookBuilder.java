@@ -0,0 +1,316 @@
+package task.loans.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Single-use order book builder for markets too large for the heap: external merge sort into a book file.
+ * <p>
+ * Offers are buffered in two primitive arrays up to the memory given. A full buffer is aggregated into
+ * rate levels, as {@link OrderBook} does, and spilled to the directory as a sorted run, gzip-compressed.
+ * Writing the book, the runs are merged k-way by a heap of their heads, summing the amounts of equal rates,
+ * each run read sequentially through its own share of the memory. If there are too many runs for the shares
+ * to be of a reasonable size, or for the files open at once, they are merged in several passes. The single
+ * run left is written to the {@link OffHeapOrderBook} file in one more sequential pass, and the file is mapped
+ * for quoting.
+ * <p>
+ * Heap use is bounded by the memory given, whatever the number of the offers or of their rate levels.
+ * The book is exactly the one {@link OrderBook#builder()} builds of the same offers.
+ */
+@ParametersAreNonnullByDefault
+public final class ExternalBookBuilder implements Closeable {
+
+    /**
+     * Least memory the builder may be given.
+     */
+    public static final long MIN_MEMORY = 1 << 16;
+
+    /**
+     * Heap used per offer buffered: its rate and amount, and the arrays they are aggregated with.
+     */
+    private static final int BYTES_PER_OFFER = 5 * Long.BYTES;
+
+    /**
+     * Least buffer to read or write a run through, so that the disk is accessed sequentially.
+     */
+    static final int MIN_BUFFER_SIZE = 1 << 12;
+
+    private static final int MAX_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Runs merged at once at most: each one holds a file and an inflater with its native memory open.
+     */
+    static final int MAX_FAN_IN = 128;
+
+    /**
+     * Buffers of every stream of a run: of the gzip stream and of the buffered one over it.
+     */
+    private static final int BUFFERS_PER_STREAM = 2;
+
+    private static final String RUN_PREFIX = "market-run";
+    private static final String RUN_SUFFIX = ".gz";
+
+    private final Path directory;
+    private final long memory;
+    private final List<Run> runs = new ArrayList<>();
+
+    private long[] rates;
+    private long[] amounts;
+    private int offers;
+    private boolean written;
+
+    /**
+     * @param directory directory for the runs spilled, deleted when the book is written or the builder closed
+     * @param memory    bytes of the heap to buffer offers in and to merge the runs with,
+     *                  at least {@value #MIN_MEMORY}
+     */
+    public ExternalBookBuilder(Path directory, long memory) {
+        checkArgument(memory >= MIN_MEMORY, "Memory must be at least %s bytes", MIN_MEMORY);
+        this.directory = directory;
+        this.memory = memory;
+        int capacity = (int) Math.min(memory / BYTES_PER_OFFER, Integer.MAX_VALUE - 8);
+        this.rates = new long[capacity];
+        this.amounts = new long[capacity];
+    }
+
+    /**
+     * Add an offer, spilling the offers buffered as a sorted run if the buffer is full.
+     *
+     * @param offer offer with rate and amount not finer than the market scales
+     * @return This builder.
+     * @throws IllegalArgumentException if the offer's values cannot be represented at the market scales
+     * @throws UncheckedIOException     if the run could not be spilled
+     */
+    public ExternalBookBuilder add(LendingOffer offer) {
+        checkArgument(offer.getRate().scale() <= RATE_SCALE, "Rate scale exceeds %s: %s", RATE_SCALE, offer);
+        checkArgument(offer.getAmount().scale() <= CENT_SCALE, "Amount scale exceeds %s: %s", CENT_SCALE, offer);
+        return add(OrderBook.unscaled(offer.getRate(), RATE_SCALE), OrderBook.unscaled(offer.getAmount(), CENT_SCALE));
+    }
+
+    /**
+     * Add an offer.
+     *
+     * @param rate   unscaled annual interest rate at {@link Money#RATE_SCALE}
+     * @param amount unscaled amount offered at {@link Money#CENT_SCALE}, non-negative
+     * @return This builder.
+     */
+    ExternalBookBuilder add(long rate, long amount) {
+        checkState(!written, "Book is already written");
+        if (offers == rates.length) {
+            try {
+                spill();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        rates[offers] = rate;
+        amounts[offers] = amount;
+        offers++;
+        return this;
+    }
+
+    /**
+     * @return Number of the sorted runs spilled so far.
+     */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Merge the runs into the book file, atomically replacing the existing one, and delete them.
+     *
+     * @param file file to write the book to
+     * @return Book mapped from the file written.
+     * @throws IOException              if the runs could not be read or the file written
+     * @throws IllegalArgumentException if the sums of the market overflow, as building the book in memory
+     */
+    public OffHeapOrderBook write(Path file) throws IOException {
+        checkState(!written, "Book is already written");
+        written = true;
+        try {
+            spill();
+            rates = null;
+            amounts = null;
+            int fanIn = fanIn(memory);
+            while (runs.size() > 1) {
+                merge(new ArrayList<>(runs.subList(0, Math.min(fanIn, runs.size()))));
+            }
+            Run run = runs.get(0);
+            OrderBook.checkWeightedSums(run.totalAmount, run.maxRate);
+            checkArgument(run.levels <= OffHeapOrderBook.MAX_LEVELS, "Book of %s levels is too large", run.levels);
+            try (DataInputStream levels = run.open(bufferSize(1))) {
+                OffHeapOrderBook.write(file, RATE_SCALE, CENT_SCALE, (int) run.levels, levels);
+            }
+        } finally {
+            close();
+        }
+        return OffHeapOrderBook.map(file);
+    }
+
+    /**
+     * Delete the runs spilled, if the book is not written.
+     *
+     * @throws IOException if a run could not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        written = true;
+        rates = null;
+        amounts = null;
+        for (Run run : runs) {
+            Files.deleteIfExists(run.file);
+        }
+        runs.clear();
+    }
+
+    /**
+     * Aggregate the offers buffered into a sorted run, even an empty one.
+     */
+    private void spill() throws IOException {
+        long[][] levels = OrderBook.aggregate(rates, amounts, offers);
+        offers = 0;
+        Run run = new Run(Files.createTempFile(directory, RUN_PREFIX, RUN_SUFFIX));
+        runs.add(run);
+        try (DataOutputStream out = run.create(bufferSize(1))) {
+            for (int level = 0; level < levels[0].length; level++) {
+                run.write(out, levels[0][level], levels[1][level]);
+            }
+        }
+    }
+
+    /**
+     * Merge the runs into a new one at the end of the runs, summing the amounts of equal rates, and delete them.
+     */
+    private void merge(List<Run> merged) throws IOException {
+        int bufferSize = bufferSize(merged.size() + 1);
+        Run run = new Run(Files.createTempFile(directory, RUN_PREFIX, RUN_SUFFIX));
+        runs.add(run);
+        List<RunReader> readers = new ArrayList<>();
+        try (DataOutputStream out = run.create(bufferSize)) {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(Comparator.comparingLong(reader -> reader.rate));
+            for (Run input : merged) {
+                RunReader reader = new RunReader(input, bufferSize);
+                readers.add(reader);
+                advance(reader, heads);
+            }
+            while (!heads.isEmpty()) {
+                RunReader head = heads.poll();
+                long rate = head.rate;
+                long amount = head.amount;
+                advance(head, heads);
+                while (!heads.isEmpty() && heads.peek().rate == rate) {
+                    RunReader same = heads.poll();
+                    amount = OrderBook.add(amount, same.amount);
+                    advance(same, heads);
+                }
+                run.write(out, rate, amount);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+        runs.removeAll(merged);
+        for (Run input : merged) {
+            Files.delete(input.file);
+        }
+    }
+
+    private static void advance(RunReader reader, PriorityQueue<RunReader> heads) throws IOException {
+        if (reader.next()) {
+            heads.add(reader);
+        }
+    }
+
+    /**
+     * @return Number of the runs merged at once, so that each of them and the output run get
+     * {@link #MIN_BUFFER_SIZE} buffers at least, within {@link #MAX_FAN_IN}.
+     */
+    static int fanIn(long memory) {
+        return (int) Math.max(2, Math.min(MAX_FAN_IN, memory / (BUFFERS_PER_STREAM * MIN_BUFFER_SIZE) - 1));
+    }
+
+    /**
+     * @return Size of each buffer of the streams open at once, for them to share the memory.
+     */
+    private int bufferSize(int streams) {
+        return (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, memory / (BUFFERS_PER_STREAM * streams)));
+    }
+
+    /**
+     * Spilled file of levels sorted by rate ascending: pairs of unscaled rate and amount, gzip-compressed.
+     */
+    private static final class Run {
+        private final Path file;
+        private long levels;
+        private long totalAmount;
+        private long maxRate;
+
+        Run(Path file) {
+            this.file = file;
+        }
+
+        DataOutputStream create(int bufferSize) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(file), bufferSize), bufferSize));
+        }
+
+        DataInputStream open(int bufferSize) throws IOException {
+            return new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file), bufferSize), bufferSize));
+        }
+
+        void write(DataOutputStream out, long rate, long amount) throws IOException {
+            out.writeLong(rate);
+            out.writeLong(amount);
+            levels++;
+            totalAmount = OrderBook.add(totalAmount, amount);
+            maxRate = rate;
+        }
+    }
+
+    /**
+     * Head of a run being merged.
+     */
+    private static final class RunReader {
+        private final DataInputStream in;
+        private long remaining;
+        private long rate;
+        private long amount;
+
+        RunReader(Run run, int bufferSize) throws IOException {
+            this.in = run.open(bufferSize);
+            this.remaining = run.levels;
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            rate = in.readLong();
+            amount = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package task.loans.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Dictionary of lender names: every distinct name is stored once, as UTF-8 bytes, and referred to by an int id.
+ * <p>
+ * Names are looked up in an open addressing hash table of ids, so no {@code String} is kept in memory,
+ * and are decoded only when requested by {@link #name(int)}. Their hashes are the ones of the {@code String}s,
+ * so offers are hashed and compared without decoding.
+ * <p>
+ * Interning is not thread-safe; once filled, the dictionary may be read concurrently.
+ */
+@ParametersAreNonnullByDefault
+public final class LenderDictionary {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private byte[][] names = new byte[INITIAL_CAPACITY][];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Slots holding {@code id + 1}, 0 for the empty ones. Length is a power of two, at least twice the size.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * @param name lender name, not blank
+     * @return Id of the name, the same for all the equal names interned.
+     * @throws IllegalArgumentException if the name is blank
+     */
+    public int intern(String name) {
+        checkArgument(!isBlank(name), "Lender name should not be blank");
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = name.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        for (int entry = table[slot]; entry != 0; entry = table[slot]) {
+            int id = entry - 1;
+            if (hashes[id] == hash && Arrays.equals(names[id], bytes)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(bytes, hash, slot);
+    }
+
+    /**
+     * @param id id returned by {@link #intern(String)}
+     * @return Lender name, decoded anew on every call.
+     */
+    public String name(int id) {
+        checkArgument(contains(id), "Unknown lender id %s", id);
+        return new String(names[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Number of distinct names.
+     */
+    public int size() {
+        return size;
+    }
+
+    boolean contains(int id) {
+        return id >= 0 && id < size;
+    }
+
+    /**
+     * @return Hash code of the name, equal to the one of the decoded {@code String}.
+     */
+    int hash(int id) {
+        return hashes[id];
+    }
+
+    /**
+     * @return {@code true} if the names are equal, compared as encoded.
+     */
+    static boolean sameName(LenderDictionary dictionary, int id, LenderDictionary other, int otherId) {
+        return dictionary.hashes[id] == other.hashes[otherId]
+                && Arrays.equals(dictionary.names[id], other.names[otherId]);
+    }
+
+    private int add(byte[] bytes, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = bytes;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -13,12 +13,16 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 /**
  * Core entity: an offer to lend some money to a prospective borrower.
  * <p>
+ * The lender name is either held as is, or as an id in a {@link LenderDictionary} shared by many offers.
+ * <p>
  * Instances of this class are self-validated and immutable.
  */
 @ParametersAreNonnullByDefault
 public class LendingOffer {
 
     private final String lenderName;
+    private final LenderDictionary dictionary;
+    private final int lenderId;
     private final BigDecimal rate;
     private final BigDecimal amount;
 
@@ -31,15 +35,35 @@ public class LendingOffer {
      */
     public LendingOffer(String lenderName, BigDecimal rate, BigDecimal amount) {
         this.lenderName = lenderName;
+        this.dictionary = null;
+        this.lenderId = -1;
         this.rate = rate;
         this.amount = amount;
+        checkArgument(lenderName != null, "Lender name must be non-null");
+        checkArgument(!isBlank(lenderName), "Lender name should not be blank");
         validate();
     }
 
-    private void validate() {
-        checkArgument(lenderName != null, "Lender name must be non-null");
-        checkArgument(!isBlank(lenderName), "Lender name should not be blank");
+    /**
+     * Create instance referring to the lender name by id.
+     *
+     * @param dictionary    dictionary holding the lender name, non-null.
+     * @param lenderId      id of the lender name in the dictionary.
+     * @param rate          <i>annual</i> interest rate, non-null, non-negative.
+     * @param amount        amount of money offered, non-null, non-negative.
+     */
+    public LendingOffer(LenderDictionary dictionary, int lenderId, BigDecimal rate, BigDecimal amount) {
+        this.lenderName = null;
+        this.dictionary = dictionary;
+        this.lenderId = lenderId;
+        this.rate = rate;
+        this.amount = amount;
+        checkArgument(dictionary != null, "Lender dictionary must be non-null");
+        checkArgument(dictionary.contains(lenderId), "Unknown lender id %s", lenderId);
+        validate();
+    }
 
+    private void validate() {
         checkArgument(rate != null, "Rate must be non-null");
         checkArgument(rate.compareTo(BigDecimal.ZERO) >= 0, "Rate value must be non-negative");
 
@@ -49,10 +73,10 @@ public class LendingOffer {
     }
 
     /**
-     * @return Lender's name.
+     * @return Lender's name, decoded from the dictionary if the offer refers to one.
      */
     public String getLenderName() {
-        return lenderName;
+        return lenderName != null ? lenderName : dictionary.name(lenderId);
     }
 
     /**
@@ -78,20 +102,40 @@ public class LendingOffer {
             return false;
         }
         LendingOffer that = (LendingOffer) o;
-        return Objects.equals(lenderName, that.lenderName) &&
-                Objects.equals(rate, that.rate) &&
-                Objects.equals(amount, that.amount);
+        return Objects.equals(rate, that.rate) &&
+                Objects.equals(amount, that.amount) &&
+                sameLender(that);
+    }
+
+    private boolean sameLender(LendingOffer that) {
+        if (dictionary != null && dictionary == that.dictionary) {
+            return lenderId == that.lenderId;
+        }
+        if (dictionary != null && that.dictionary != null) {
+            return LenderDictionary.sameName(dictionary, lenderId, that.dictionary, that.lenderId);
+        }
+        return lenderHash() == that.lenderHash() && getLenderName().equals(that.getLenderName());
     }
 
+    /**
+     * @return Hash code of the lender name, without decoding it.
+     */
+    private int lenderHash() {
+        return lenderName != null ? lenderName.hashCode() : dictionary.hash(lenderId);
+    }
+
+    /**
+     * @return The same as {@code Objects.hash(getLenderName(), rate, amount)}, without decoding the name.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(lenderName, rate, amount);
+        return (31 * (31 + lenderHash()) + rate.hashCode()) * 31 + amount.hashCode();
     }
 
     @Override
     public String toString() {
         return new ToStringBuilder(this)
-                .append("lenderName", lenderName)
+                .append("lenderName", getLenderName())
                 .append("rate", rate)
                 .append("amount", amount)
                 .toString();
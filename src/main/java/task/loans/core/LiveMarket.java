@@ -0,0 +1,117 @@
+package task.loans.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Market changing offer by offer: the current offers by their ids.
+ * <p>
+ * The calculator is built from the current offers on demand and reused until the next change.
+ * Since the order book does not depend on the order of the offers, markets holding equal offers
+ * quote exactly the same loans.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class LiveMarket {
+
+    private final Map<Long, LendingOffer> offers;
+    private LoanCalculator calculator;
+
+    /**
+     * Create empty market.
+     */
+    public LiveMarket() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * Create market holding the offers.
+     *
+     * @param offers offers by their ids, copied
+     */
+    public LiveMarket(Map<Long, LendingOffer> offers) {
+        this.offers = new HashMap<>(offers);
+    }
+
+    /**
+     * Check that the event can be applied to the market as it is now.
+     *
+     * @param event market change
+     * @throws IllegalArgumentException if the offer to add is there already, or the one to withdraw or amend is not
+     */
+    public void check(MarketEvent event) {
+        check(event, offers.containsKey(event.getOfferId()));
+    }
+
+    /**
+     * Check that the event can be applied to a market holding its offer or not.
+     *
+     * @param event   market change
+     * @param present whether the market holds the offer of the event
+     * @throws IllegalArgumentException if the offer to add is there already, or the one to withdraw or amend is not
+     */
+    public static void check(MarketEvent event, boolean present) {
+        if (event.getType() == MarketEvent.Type.ADD) {
+            checkArgument(!present, "Offer %s is on the market already", event.getOfferId());
+        } else {
+            checkArgument(present, "Offer %s is not on the market", event.getOfferId());
+        }
+    }
+
+    /**
+     * Apply the event to the market.
+     *
+     * @param event market change
+     * @throws IllegalArgumentException if the event cannot be applied, see {@link #check(MarketEvent)}
+     */
+    public void apply(MarketEvent event) {
+        check(event);
+        if (event.getType() == MarketEvent.Type.WITHDRAW) {
+            offers.remove(event.getOfferId());
+        } else {
+            offers.put(event.getOfferId(), event.getOffer()
+                    .orElseThrow(() -> new IllegalArgumentException("Offer expected: " + event)));
+        }
+        calculator = null;
+    }
+
+    /**
+     * @return Current offers by their ids, unmodifiable view.
+     */
+    public Map<Long, LendingOffer> getOffers() {
+        return Collections.unmodifiableMap(offers);
+    }
+
+    /**
+     * @return Calculator quoting loans against the current offers.
+     */
+    public LoanCalculator getCalculator() {
+        if (calculator == null) {
+            calculator = new LoanCalculator(new ArrayList<>(offers.values()));
+        }
+        return calculator;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return offers.equals(((LiveMarket) o).offers);
+    }
+
+    @Override
+    public int hashCode() {
+        return offers.hashCode();
+    }
+}
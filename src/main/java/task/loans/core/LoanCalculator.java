@@ -1,24 +1,19 @@
 package task.loans.core;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.List;
-import java.util.Map;
-import java.util.SortedMap;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import javax.util.streamex.EntryStream;
-import javax.util.streamex.StreamEx;
-
-import com.google.common.collect.ImmutableSortedMap;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkState;
 import static task.loans.core.Money.CENT_SCALE;
 import static task.loans.core.Money.MONEY_CONTEXT;
 import static task.loans.core.Money.RATE_SCALE;
 import static task.loans.core.Money.decimal;
-import static task.loans.core.Money.numericallyEqual;
 import static task.loans.core.Money.roundingMode;
 
 @ParametersAreNonnullByDefault
@@ -27,26 +22,55 @@ public class LoanCalculator {
     private static final int MONTHS_IN_YEAR = 12;
 
     /**
-     * Number of monthly payments.
+     * Precision of the compound growth factor: the exact power has thousands of digits for long terms,
+     * the 16 extra digits are guard digits of {@code r-1} the repayment is divided by. A factor near one
+     * loses its leading digits subtracting one, {@link #powerContext} widens the precision by them.
+     */
+    private static final MathContext POWER_CONTEXT =
+            new MathContext(MONEY_CONTEXT.getPrecision() + 16, RoundingMode.HALF_EVEN);
+
+    /**
+     * Default number of monthly payments.
      */
-    private static final int REPAYMENTS = 36;
+    public static final int DEFAULT_TERM = 36;
 
-    private final SortedMap<BigDecimal, BigDecimal> offers;
+    /**
+     * Greatest number of monthly payments, 50 years: the compound growth factor of any rate stays
+     * within the range of {@link BigDecimal}.
+     */
+    public static final int MAX_TERM = 600;
+
+    private final MarketBook book;
     private final BigDecimal totalSupply;
+    private final MarketStatistics statistics;
 
     /**
      * Create an immutable instance and prepare data structure for further calculations.
-     * Time complexity: O(n*log(n)).
+     * Time complexity: O(n) for quantized rates, O(n*log(n)) in general.
      *
      * @param offers list of offers from the lenders, i.e. market data.
+     * @see OrderBook#of(List)
      */
     public LoanCalculator(List<LendingOffer> offers) {
-        SortedMap<BigDecimal, BigDecimal> map = StreamEx.of(offers)
-                .mapToEntry(LendingOffer::getRate, LendingOffer::getAmount)
-                .toSortedMap(BigDecimal::add);
+        this(OrderBook.of(offers));
+    }
+
+    /**
+     * Create an immutable instance over the prepared order book.
+     *
+     * @param book market data aggregated by rate levels
+     */
+    public LoanCalculator(MarketBook book) {
+        this.book = book;
+        this.totalSupply = BigDecimal.valueOf(book.totalSupply(), book.amountScale());
+        this.statistics = new MarketStatistics(book);
+    }
 
-        this.offers = ImmutableSortedMap.copyOfSorted(map);
-        this.totalSupply = offers.stream().map(LendingOffer::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * @return Depth and statistics of the market, computed once on construction.
+     */
+    public MarketStatistics getStatistics() {
+        return statistics;
     }
 
     /**
@@ -59,96 +83,236 @@ public class LoanCalculator {
      * or {@link Loan#unavailable} – if the request cannot be satisfied by the market.
      */
     public Loan calculate(BigDecimal requestedAmount) {
+        return calculate(requestedAmount, DEFAULT_TERM);
+    }
+
+    /**
+     * Calculate compound loan of the specified amount and term satisfied by the offers.
+     *
+     * @param requestedAmount total amount of loan requested, non-negative value
+     * @param term            number of monthly repayments in range {@code [1, MAX_TERM]}
+     * @return {@link Loan} instance with calculated compound rate and repayment amounts,
+     * or {@link Loan#unavailable} – if the request cannot be satisfied by the market.
+     * @see #calculate(BigDecimal)
+     */
+    public Loan calculate(BigDecimal requestedAmount, int term) {
         checkArgument(requestedAmount.compareTo(BigDecimal.ZERO) >= 0, "Loan amount must be non-negative");
+        checkArgument(term > 0 && term <= MAX_TERM, "Loan term must be in range [1, %s]", MAX_TERM);
         if (totalSupply.compareTo(requestedAmount) < 0) {
             return Loan.unavailable(requestedAmount);
         }
-        return new InternalCalculator(requestedAmount).getResult();
+        return new InternalCalculator(requestedAmount, term).getResult();
+    }
+
+    /**
+     * Find the largest loan whose effective annual rate (before rounding) does not exceed the specified one.
+     * Time complexity: O(log(n)).
+     *
+     * @param maxRate the highest acceptable annual interest rate, non-negative value
+     * @return The largest loan amount available at the rate, with scale of the market amounts.
+     */
+    public BigDecimal maxAmountAtRate(BigDecimal maxRate) {
+        checkArgument(maxRate.compareTo(BigDecimal.ZERO) >= 0, "Rate must be non-negative");
+        // effective rate grows with the amount, as the levels are taken from the cheapest one
+        int levels = lastSatisfying(book.size(),
+                level -> weightedSumBelow(level).compareTo(maxRate.multiply(amountBelow(level))) <= 0);
+        if (levels == book.size()) {
+            return totalSupply;
+        }
+        // (W + r * x) / (A + x) <= maxRate, where r > maxRate
+        BigDecimal headroom = maxRate.multiply(amountBelow(levels)).subtract(weightedSumBelow(levels));
+        BigDecimal rateExcess = BigDecimal.valueOf(book.rate(levels), book.rateScale()).subtract(maxRate);
+        BigDecimal partial = headroom.divide(rateExcess, book.amountScale(), RoundingMode.FLOOR);
+        return amountBelow(levels).add(partial);
+    }
+
+    /**
+     * Find the largest loan of {@value #DEFAULT_TERM} months term
+     * whose monthly repayment (before rounding) does not exceed the specified one.
+     * Time complexity: O(log(n) * log(m)), m – amount of the market level holding the result.
+     *
+     * @param maxMonthlyRepayment the highest acceptable monthly repayment, non-negative value
+     * @return The largest loan amount available under the budget, with scale of the market amounts.
+     */
+    public BigDecimal maxAmountForMonthlyRepayment(BigDecimal maxMonthlyRepayment) {
+        checkArgument(maxMonthlyRepayment.compareTo(BigDecimal.ZERO) >= 0, "Repayment must be non-negative");
+        // monthly repayment grows with the amount, and so does the effective rate
+        LongPredicate affordable = amount -> amount == 0 || new InternalCalculator(unscaledAmount(amount), DEFAULT_TERM)
+                .getMonthlyRepayment().compareTo(maxMonthlyRepayment) <= 0;
+        int levels = lastSatisfying(book.size(), level -> affordable.test(book.amountBelow(level)));
+        if (levels == book.size()) {
+            return totalSupply;
+        }
+        long low = book.amountBelow(levels);
+        long high = book.amountBelow(levels + 1);
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (affordable.test(middle)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return unscaledAmount(low);
+    }
+
+    /**
+     * @param max        upper bound of the argument
+     * @param monotonous predicate which holds for 0 and, once failed, fails for all the greater arguments
+     * @return The greatest argument in range {@code [0, max]} satisfying the predicate.
+     */
+    private static int lastSatisfying(int max, IntPredicate monotonous) {
+        int low = 0;
+        int high = max;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (monotonous.test(middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private BigDecimal amountBelow(int level) {
+        return unscaledAmount(book.amountBelow(level));
+    }
+
+    private BigDecimal weightedSumBelow(int level) {
+        return BigDecimal.valueOf(book.weightedSumBelow(level), book.rateScale() + book.amountScale());
+    }
+
+    private BigDecimal unscaledAmount(long amount) {
+        return BigDecimal.valueOf(amount, book.amountScale());
     }
 
     private class InternalCalculator {
         private final BigDecimal requestedAmount;
-        private final Map<BigDecimal, BigDecimal> loans;
+        private final int repayments;
 
-        InternalCalculator(BigDecimal requestedAmount) {
+        InternalCalculator(BigDecimal requestedAmount, int repayments) {
             this.requestedAmount = requestedAmount;
-            this.loans = createLoansMap(requestedAmount);
+            this.repayments = repayments;
         }
 
         Loan getResult() {
-            BigDecimal compoundAnnualRate = calculateEffectiveAnnualRate();
-            BigDecimal monthlyRepayment = getMonthlyRepayment(compoundAnnualRate);
-            BigDecimal totalRepayment = monthlyRepayment.multiply(decimal(REPAYMENTS));
-            return Loan.builder()
-                    .requestedAmount(requestedAmount)
-                    .monthlyRepayment(monthlyRepayment.setScale(CENT_SCALE, roundingMode()))
-                    .totalRepayment(totalRepayment.setScale(CENT_SCALE, roundingMode()))
-                    .rate(compoundAnnualRate.setScale(RATE_SCALE, roundingMode()))
-                    .build();
+            return loan(requestedAmount, repayments, calculateWeightedSum());
+        }
+
+        /**
+         * Weighted (by amount) average of the rates of the cheapest levels covering the requested amount.
+         */
+        private BigDecimal calculateEffectiveAnnualRate() {
+            return effectiveAnnualRate(requestedAmount, calculateWeightedSum());
         }
 
         /**
-         * Build compound loan table.
+         * Take the cheapest levels fully while they do not cover the requested amount,
+         * and the remainder from the next one.
          *
-         * @param requestedAmount amount requested by a borrower
-         * @return Map: rate -> amount, with sum of values equal to requested amount.
+         * @return Sum of rates weighted by the amounts taken, the sum of amounts equal to requested amount.
          */
-        private Map<BigDecimal, BigDecimal> createLoansMap(BigDecimal requestedAmount) {
-            Map<BigDecimal, BigDecimal> map = new HashMap<>();
-            BigDecimal need = requestedAmount;
-            for (Map.Entry<BigDecimal, BigDecimal> offer : offers.entrySet()) {
-                BigDecimal offeredAmount = offer.getValue();
-                BigDecimal amountToTake = offeredAmount.min(need);
-                map.put(offer.getKey(), amountToTake);
-                need = need.subtract(amountToTake);
-                if (numericallyEqual(need, BigDecimal.ZERO)) {
-                    break;
-                }
-                checkState(need.compareTo(BigDecimal.ZERO) > 0, "Wrong state encountered during calculations");
+        private BigDecimal calculateWeightedSum() {
+            long need = requestedAmount.setScale(book.amountScale(), RoundingMode.CEILING)
+                    .unscaledValue().longValueExact();
+            int level = book.levelCovering(need);
+            BigDecimal sum = weightedSumBelow(level);
+            if (level == book.size()) {
+                return sum;
             }
-            return map;
+            BigDecimal remainder = requestedAmount.subtract(amountBelow(level));
+            return sum.add(BigDecimal.valueOf(book.rate(level), book.rateScale()).multiply(remainder));
         }
 
         /**
-         * Weighted (by amount) average of the rates from the loans table.
+         * @return Monthly repayment before rounding.
          */
-        private BigDecimal calculateEffectiveAnnualRate() {
-            BigDecimal weightedSum = EntryStream.of(loans)
-                    .mapKeyValue(BigDecimal::multiply)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            return weightedSum.divide(requestedAmount, MONEY_CONTEXT);
+        BigDecimal getMonthlyRepayment() {
+            return getMonthlyRepayment(calculateEffectiveAnnualRate());
         }
 
         private BigDecimal getMonthlyRepayment(BigDecimal annualRate) {
-            return calculateMonthlyRepayment(requestedAmount, toMonthlyInterestRate(annualRate));
+            return monthlyRepayment(requestedAmount, annualRate, repayments);
         }
+    }
 
-        /**
-         * Rm = Ry / {@value MONTHS_IN_YEAR}
-         *
-         * @param annualInterestRate annual interest rate
-         * @return Monthly interest rate.
-         */
-        private BigDecimal toMonthlyInterestRate(BigDecimal annualInterestRate) {
-            return annualInterestRate.divide(decimal(MONTHS_IN_YEAR), MONEY_CONTEXT);
-        }
+    /**
+     * @param requestedAmount total amount of loan requested
+     * @param repayments      number of monthly repayments
+     * @param weightedSum     sum of the rates of the levels taken weighted by the amounts taken,
+     *                        the sum of amounts equal to the requested amount
+     * @return Loan with the rate and repayments rounded.
+     */
+    static Loan loan(BigDecimal requestedAmount, int repayments, BigDecimal weightedSum) {
+        BigDecimal compoundAnnualRate = effectiveAnnualRate(requestedAmount, weightedSum);
+        BigDecimal monthlyRepayment = monthlyRepayment(requestedAmount, compoundAnnualRate, repayments);
+        BigDecimal totalRepayment = monthlyRepayment.multiply(decimal(repayments));
+        return Loan.builder()
+                .requestedAmount(requestedAmount)
+                .monthlyRepayment(monthlyRepayment.setScale(CENT_SCALE, roundingMode()))
+                .totalRepayment(totalRepayment.setScale(CENT_SCALE, roundingMode()))
+                .rate(compoundAnnualRate.setScale(RATE_SCALE, roundingMode()))
+                .build();
+    }
 
-        /**
-         * Calculate monthly repayment having principal amount,
-         * interest rate per repayment period (one month), and number of repayments ({@value #REPAYMENTS}).
-         *
-         * @param principal             principal amount, P
-         * @param monthlyInterestRate   monthly interest rate, Rm
-         * @return {@code Rm * P * r / (r-1)},<br/>
-         * where {@code r = (1+Rm)^N}, N – number of repayments
-         */
-        private BigDecimal calculateMonthlyRepayment(BigDecimal principal, BigDecimal monthlyInterestRate) {
-            if (monthlyInterestRate.compareTo(BigDecimal.ZERO) == 0) {
-                return principal.divide(decimal(REPAYMENTS), MONEY_CONTEXT);
-            }
-            BigDecimal r = BigDecimal.ONE.add(monthlyInterestRate).pow(REPAYMENTS);
-            return monthlyInterestRate.multiply(principal).multiply(r)
-                    .divide(r.subtract(BigDecimal.ONE), MONEY_CONTEXT);
+    private static BigDecimal effectiveAnnualRate(BigDecimal requestedAmount, BigDecimal weightedSum) {
+        return weightedSum.divide(requestedAmount, MONEY_CONTEXT);
+    }
+
+    /**
+     * @param principal  principal amount
+     * @param annualRate annual interest rate
+     * @param repayments number of monthly repayments
+     * @return Monthly repayment before rounding.
+     */
+    static BigDecimal monthlyRepayment(BigDecimal principal, BigDecimal annualRate, int repayments) {
+        return calculateMonthlyRepayment(principal, toMonthlyInterestRate(annualRate), repayments);
+    }
+
+    /**
+     * Rm = Ry / {@value MONTHS_IN_YEAR}
+     *
+     * @param annualInterestRate annual interest rate
+     * @return Monthly interest rate.
+     */
+    private static BigDecimal toMonthlyInterestRate(BigDecimal annualInterestRate) {
+        return annualInterestRate.divide(decimal(MONTHS_IN_YEAR), MONEY_CONTEXT);
+    }
+
+    /**
+     * Calculate monthly repayment having principal amount,
+     * interest rate per repayment period (one month), and number of repayments.
+     *
+     * @param principal           principal amount, P
+     * @param monthlyInterestRate monthly interest rate, Rm
+     * @param repayments          number of repayments, N
+     * @return {@code Rm * P * r / (r-1)},<br/>
+     * where {@code r = (1+Rm)^N}
+     */
+    private static BigDecimal calculateMonthlyRepayment(BigDecimal principal, BigDecimal monthlyInterestRate,
+                                                        int repayments) {
+        if (monthlyInterestRate.compareTo(BigDecimal.ZERO) == 0) {
+            return principal.divide(decimal(repayments), MONEY_CONTEXT);
         }
+        BigDecimal r = BigDecimal.ONE.add(monthlyInterestRate)
+                .pow(repayments, powerContext(monthlyInterestRate, repayments));
+        return monthlyInterestRate.multiply(principal).multiply(r)
+                .divide(r.subtract(BigDecimal.ONE), MONEY_CONTEXT);
+    }
+
+    /**
+     * {@code r-1} is at least {@code N*Rm}: the digits cancelled subtracting one are at most the zeros
+     * of {@code N*Rm} after the decimal point, and the one before it.
+     *
+     * @param monthlyInterestRate monthly interest rate, Rm
+     * @param repayments          number of repayments, N
+     * @return {@link #POWER_CONTEXT} widened by the digits cancelled in {@code r-1}.
+     */
+    private static MathContext powerContext(BigDecimal monthlyInterestRate, int repayments) {
+        BigDecimal growth = monthlyInterestRate.multiply(BigDecimal.valueOf(repayments));
+        int cancelled = growth.scale() - growth.precision() + 1;
+        return cancelled <= 0 ? POWER_CONTEXT
+                : new MathContext(POWER_CONTEXT.getPrecision() + cancelled, POWER_CONTEXT.getRoundingMode());
     }
 }
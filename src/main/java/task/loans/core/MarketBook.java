@@ -0,0 +1,96 @@
+package task.loans.core;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Market data aggregated by rate levels, as read by {@link LoanCalculator} and {@link MarketStatistics}.
+ * <p>
+ * Levels are sorted by rate ascending, rates and amounts are unscaled at {@link #rateScale()}
+ * and {@link #amountScale()}. Implementations are immutable and read without allocating,
+ * so a quote costs the same whether the book lives on the heap, see {@link OrderBook},
+ * or off it, see {@link OffHeapOrderBook}.
+ */
+@ParametersAreNonnullByDefault
+public abstract class MarketBook {
+
+    MarketBook() {
+        // implemented in this package only
+    }
+
+    /**
+     * @return Number of rate levels.
+     */
+    abstract int size();
+
+    /**
+     * @return Scale of the unscaled rates.
+     */
+    abstract int rateScale();
+
+    /**
+     * @return Scale of the unscaled amounts.
+     */
+    abstract int amountScale();
+
+    /**
+     * Find the number of levels with rates not above the specified one.
+     * Time complexity: O(log(n)).
+     *
+     * @param rate unscaled annual interest rate
+     * @return Index of the first level with rate above the specified one, or {@link #size()} if there is none.
+     */
+    abstract int levelsNotAbove(long rate);
+
+    /**
+     * @param level rate level index, 0 – the lowest rate
+     * @return Unscaled annual interest rate of the level.
+     */
+    abstract long rate(int level);
+
+    /**
+     * @param level rate level index, 0 – the lowest rate
+     * @return Unscaled amount offered at the level.
+     */
+    abstract long amount(int level);
+
+    /**
+     * @param level rate level index in range {@code [0, size()]}
+     * @return Unscaled sum of the amounts offered at the levels cheaper than the specified one.
+     */
+    abstract long amountBelow(int level);
+
+    /**
+     * @param level rate level index in range {@code [0, size()]}
+     * @return Unscaled sum of the amounts offered at the levels cheaper than the specified one,
+     * weighted by the levels' rates, at scale {@code rateScale() + amountScale()}.
+     */
+    abstract long weightedSumBelow(int level);
+
+    /**
+     * Find the level at which the specified amount is covered.
+     * Time complexity: O(log(n)).
+     *
+     * @param amount unscaled amount
+     * @return The lowest level index such that the levels up to it inclusive offer at least the amount,
+     * or {@link #size()} if the whole market does not cover the amount.
+     */
+    abstract int levelCovering(long amount);
+
+    /**
+     * @return Unscaled sum of all the amounts offered.
+     */
+    long totalSupply() {
+        return amountBelow(size());
+    }
+
+    /**
+     * Memory footprint of the book, e.g. to budget the markets held at once. Estimated as the four
+     * {@code long} sections of the levels {@link OrderBook} and {@link OffHeapOrderBook} hold,
+     * whether on the heap or off it.
+     *
+     * @return Number of bytes the book's levels take.
+     */
+    public long byteSize() {
+        return OffHeapOrderBook.byteSize(size());
+    }
+}
@@ -0,0 +1,100 @@
+package task.loans.core;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Core entity: change of a lending offer on the live market.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public class MarketEvent {
+
+    public enum Type {
+        /**
+         * New offer placed.
+         */
+        ADD,
+        /**
+         * Offer withdrawn by the lender.
+         */
+        WITHDRAW,
+        /**
+         * Offer replaced by the lender, e.g. with another rate or amount.
+         */
+        AMEND
+    }
+
+    private final Type type;
+    private final long offerId;
+    private final LendingOffer offer;
+
+    private MarketEvent(Type type, long offerId, @Nullable LendingOffer offer) {
+        checkArgument(offerId >= 0, "Offer id must be non-negative");
+        this.type = type;
+        this.offerId = offerId;
+        this.offer = offer;
+    }
+
+    public static MarketEvent add(long offerId, LendingOffer offer) {
+        return new MarketEvent(Type.ADD, offerId, offer);
+    }
+
+    public static MarketEvent withdraw(long offerId) {
+        return new MarketEvent(Type.WITHDRAW, offerId, null);
+    }
+
+    public static MarketEvent amend(long offerId, LendingOffer offer) {
+        return new MarketEvent(Type.AMEND, offerId, offer);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getOfferId() {
+        return offerId;
+    }
+
+    /**
+     * @return Offer added or the new version of the amended one, nothing for the withdrawals.
+     */
+    public Optional<LendingOffer> getOffer() {
+        return Optional.ofNullable(offer);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MarketEvent that = (MarketEvent) o;
+        return type == that.type &&
+                offerId == that.offerId &&
+                Objects.equals(offer, that.offer);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, offerId, offer);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("type", type)
+                .append("offerId", offerId)
+                .append("offer", offer)
+                .toString();
+    }
+}
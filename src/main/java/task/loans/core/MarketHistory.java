@@ -0,0 +1,180 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Market changing offer by offer, which quotes loans as of any moment of its retained history.
+ * <p>
+ * Every change makes a new version of the order book sharing all the unchanged levels with the previous one,
+ * see {@link PersistentBook}: the memory grows with the number of changes, by O(log(n)) per change,
+ * not with the number of versions times the size of the market. A quote as of a moment finds the version
+ * in force by binary search, O(log(v)), and is then calculated against it in O(log(n)), with no book built.
+ * Quotes are exactly the same as {@link LoanCalculator} gives for the offers on the market at the moment.
+ * <p>
+ * Offers must be quantized to {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE}, as offers read from
+ * the market data are. Instances of this class are not thread-safe, the calculators they return are.
+ */
+@ParametersAreNonnullByDefault
+public class MarketHistory {
+
+    private final Map<Long, LendingOffer> offers = new HashMap<>();
+    private final List<Instant> times = new ArrayList<>();
+    private final List<PersistentBook> versions = new ArrayList<>();
+
+    /**
+     * Create history of a market empty since ever.
+     */
+    public MarketHistory() {
+        times.add(Instant.MIN);
+        versions.add(PersistentBook.EMPTY);
+    }
+
+    /**
+     * Apply the event to the market, making a new version in force from the moment.
+     *
+     * @param event market change
+     * @param at    moment of the change, not before the latest one
+     * @throws IllegalArgumentException if the moment is before the latest change, the event cannot be applied,
+     *                                  see {@link LiveMarket#check(MarketEvent)}, or the offer's values are not
+     *                                  quantized or out of the supported range
+     */
+    public void apply(MarketEvent event, Instant at) {
+        checkArgument(!at.isBefore(latest()), "Change at %s is before the latest one at %s", at, latest());
+        LendingOffer previous = offers.get(event.getOfferId());
+        if (event.getType() == MarketEvent.Type.ADD) {
+            checkArgument(previous == null, "Offer %s is on the market already", event.getOfferId());
+        } else {
+            checkArgument(previous != null, "Offer %s is not on the market", event.getOfferId());
+        }
+        PersistentBook book = versions.get(versions.size() - 1);
+        if (previous != null) {
+            book = book.update(unscaled(previous.getRate(), RATE_SCALE), -1,
+                    -unscaled(previous.getAmount(), CENT_SCALE));
+        }
+        if (event.getType() != MarketEvent.Type.WITHDRAW) {
+            LendingOffer offer = event.getOffer()
+                    .orElseThrow(() -> new IllegalArgumentException("Offer expected: " + event));
+            book = book.update(unscaled(offer.getRate(), RATE_SCALE), 1, unscaled(offer.getAmount(), CENT_SCALE));
+            offers.put(event.getOfferId(), offer);
+        } else {
+            offers.remove(event.getOfferId());
+        }
+        times.add(at);
+        versions.add(book);
+    }
+
+    /**
+     * Calculate loan of {@value LoanCalculator#DEFAULT_TERM} months term as of the moment.
+     *
+     * @see #calculate(BigDecimal, int, Instant)
+     */
+    public Loan calculate(BigDecimal requestedAmount, Instant asOf) {
+        return calculate(requestedAmount, LoanCalculator.DEFAULT_TERM, asOf);
+    }
+
+    /**
+     * Calculate loan as the market quoted it at the moment, i.e. after all the changes made by then.
+     *
+     * @param requestedAmount total amount of loan requested, non-negative value
+     * @param term            number of monthly repayments, positive value
+     * @param asOf            moment of the quote
+     * @return Loan as {@link LoanCalculator#calculate(BigDecimal, int)} of the offers on the market at the moment.
+     * @throws IllegalArgumentException if the moment is before the retained history
+     */
+    public Loan calculate(BigDecimal requestedAmount, int term, Instant asOf) {
+        return getCalculator(asOf).calculate(requestedAmount, term);
+    }
+
+    /**
+     * @param asOf moment of the market
+     * @return Calculator quoting loans against the offers on the market at the moment.
+     * @throws IllegalArgumentException if the moment is before the retained history
+     */
+    public LoanCalculator getCalculator(Instant asOf) {
+        return new LoanCalculator(versions.get(versionAt(asOf)));
+    }
+
+    /**
+     * Discard the versions replaced before the moment: the history is retained from the version in force then.
+     *
+     * @param from the earliest moment to quote as of
+     */
+    public void retainFrom(Instant from) {
+        int first = versionAt(from.isBefore(times.get(0)) ? times.get(0) : from);
+        times.subList(0, first).clear();
+        versions.subList(0, first).clear();
+    }
+
+    /**
+     * @return The earliest moment quotes can be calculated as of, {@link Instant#MIN} if all the history is retained.
+     */
+    public Instant getRetainedFrom() {
+        return times.get(0);
+    }
+
+    /**
+     * @return Number of the versions retained.
+     */
+    public int getVersions() {
+        return versions.size();
+    }
+
+    /**
+     * @return Current offers by their ids, unmodifiable view.
+     */
+    public Map<Long, LendingOffer> getOffers() {
+        return Collections.unmodifiableMap(offers);
+    }
+
+    /**
+     * @return Number of the distinct book nodes of the versions retained.
+     */
+    int countNodes() {
+        return PersistentBook.countNodes(versions);
+    }
+
+    private Instant latest() {
+        return times.get(times.size() - 1);
+    }
+
+    /**
+     * @return Index of the latest version made not after the moment.
+     */
+    private int versionAt(Instant moment) {
+        checkArgument(!moment.isBefore(times.get(0)), "History before %s is not retained, requested %s",
+                times.get(0), moment);
+        int low = 0;
+        int high = times.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (times.get(middle).isAfter(moment)) {
+                high = middle - 1;
+            } else {
+                low = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long unscaled(BigDecimal value, int scale) {
+        try {
+            return value.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException(format("Value is not quantized or out of supported range: %s", value),
+                    ex);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static task.loans.core.Money.MONEY_CONTEXT;
+
+/**
+ * Market snapshot statistics: total supply, rates distribution and cumulative depth by rate.
+ * <p>
+ * Aggregates are computed once on construction, queries take O(1) or O(log(n)), n – number of rate levels.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public class MarketStatistics {
+
+    private final MarketBook book;
+    private final BigDecimal totalSupply;
+    private final Optional<BigDecimal> minRate;
+    private final Optional<BigDecimal> maxRate;
+    private final Optional<BigDecimal> averageRate;
+
+    /**
+     * Create instance.
+     *
+     * @param book market data aggregated by rate levels
+     */
+    public MarketStatistics(MarketBook book) {
+        this.book = book;
+        this.totalSupply = amount(book.totalSupply());
+        this.minRate = book.size() == 0 ? Optional.empty() : Optional.of(rate(book.rate(0)));
+        this.maxRate = book.size() == 0 ? Optional.empty() : Optional.of(rate(book.rate(book.size() - 1)));
+        this.averageRate = book.totalSupply() == 0 ? Optional.empty() : Optional.of(
+                BigDecimal.valueOf(book.weightedSumBelow(book.size()), book.rateScale() + book.amountScale())
+                        .divide(totalSupply, MONEY_CONTEXT));
+    }
+
+    /**
+     * @return Number of distinct rate levels.
+     */
+    public int getLevels() {
+        return book.size();
+    }
+
+    /**
+     * @return Sum of all the amounts offered.
+     */
+    public BigDecimal getTotalSupply() {
+        return totalSupply;
+    }
+
+    /**
+     * @return The lowest rate offered, or nothing if the market is empty.
+     */
+    public Optional<BigDecimal> getMinRate() {
+        return minRate;
+    }
+
+    /**
+     * @return The highest rate offered, or nothing if the market is empty.
+     */
+    public Optional<BigDecimal> getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * @return Volume-weighted average rate of the market, or nothing if the market has no supply.
+     */
+    public Optional<BigDecimal> getAverageRate() {
+        return averageRate;
+    }
+
+    /**
+     * Volume-weighted rate percentile. Time complexity: O(log(n)).
+     *
+     * @param fraction share of the total supply, in range {@code [0, 1]}, e.g. 0.5 for the median
+     * @return The lowest rate such that the levels up to it offer the specified share of the total supply,
+     * or nothing if the market is empty.
+     */
+    public Optional<BigDecimal> getPercentileRate(BigDecimal fraction) {
+        checkArgument(fraction.compareTo(BigDecimal.ZERO) >= 0 && fraction.compareTo(BigDecimal.ONE) <= 0,
+                "Fraction must be in range [0, 1]");
+        if (book.size() == 0) {
+            return Optional.empty();
+        }
+        long need = totalSupply.multiply(fraction).setScale(book.amountScale(), RoundingMode.CEILING)
+                .unscaledValue().longValueExact();
+        return Optional.of(rate(book.rate(book.levelCovering(need))));
+    }
+
+    /**
+     * Cumulative depth. Time complexity: O(log(n)).
+     *
+     * @param rate annual interest rate
+     * @return Sum of the amounts offered at the rates not above the specified one.
+     */
+    public BigDecimal getDepthAt(BigDecimal rate) {
+        if (rate.signum() < 0) {
+            return amount(0);
+        }
+        if (maxRate.map(max -> rate.compareTo(max) >= 0).orElse(true)) {
+            return totalSupply;
+        }
+        long unscaledRate = rate.setScale(book.rateScale(), RoundingMode.FLOOR).unscaledValue().longValueExact();
+        return amount(book.amountBelow(book.levelsNotAbove(unscaledRate)));
+    }
+
+    /**
+     * Cumulative depth strictly below the rate. Time complexity: O(log(n)).
+     *
+     * @param rate annual interest rate
+     * @return Sum of the amounts offered at the rates below the specified one.
+     */
+    public BigDecimal getDepthBelow(BigDecimal rate) {
+        if (rate.signum() <= 0) {
+            return amount(0);
+        }
+        if (maxRate.map(max -> rate.compareTo(max) > 0).orElse(true)) {
+            return totalSupply;
+        }
+        long unscaledRate = rate.setScale(book.rateScale(), RoundingMode.CEILING).unscaledValue().longValueExact();
+        return amount(book.amountBelow(book.levelsNotAbove(unscaledRate - 1)));
+    }
+
+    /**
+     * @return Depth curve: view of the rate levels sorted by rate ascending, with cumulative amounts.
+     */
+    public List<DepthLevel> getDepth() {
+        return new AbstractList<DepthLevel>() {
+            @Override
+            public DepthLevel get(int index) {
+                return new DepthLevel(rate(book.rate(index)), amount(book.amount(index)),
+                        amount(book.amountBelow(index + 1)));
+            }
+
+            @Override
+            public int size() {
+                return book.size();
+            }
+        };
+    }
+
+    private BigDecimal rate(long unscaled) {
+        return BigDecimal.valueOf(unscaled, book.rateScale());
+    }
+
+    private BigDecimal amount(long unscaled) {
+        return BigDecimal.valueOf(unscaled, book.amountScale());
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("levels", getLevels())
+                .append("totalSupply", totalSupply)
+                .append("minRate", minRate)
+                .append("maxRate", maxRate)
+                .append("averageRate", averageRate)
+                .toString();
+    }
+
+    /**
+     * Point of the depth curve: rate level with the amount offered at it and at all the cheaper levels.
+     * Instances of this class are immutable.
+     */
+    public static class DepthLevel {
+        private final BigDecimal rate;
+        private final BigDecimal amount;
+        private final BigDecimal cumulativeAmount;
+
+        DepthLevel(BigDecimal rate, BigDecimal amount, BigDecimal cumulativeAmount) {
+            this.rate = rate;
+            this.amount = amount;
+            this.cumulativeAmount = cumulativeAmount;
+        }
+
+        public BigDecimal getRate() {
+            return rate;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public BigDecimal getCumulativeAmount() {
+            return cumulativeAmount;
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("rate", rate)
+                    .append("amount", amount)
+                    .append("cumulativeAmount", cumulativeAmount)
+                    .toString();
+        }
+    }
+}
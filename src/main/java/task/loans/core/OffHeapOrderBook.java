@@ -0,0 +1,297 @@
+package task.loans.core;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Order book held outside of the Java heap, in a direct or a memory-mapped file buffer.
+ * <p>
+ * The heap holds just this object and the buffer's one, so however large the market,
+ * the book adds nothing for the garbage collector to trace or copy. Reads are absolute,
+ * so they allocate nothing and the instance can be shared by threads.
+ * <p>
+ * Layout, little-endian: header of {@value #HEADER_SIZE} bytes
+ * {@code int magic, int version, int rateScale, int amountScale, int size}, then four sections
+ * of {@code long}s, each contiguous for the binary searches and sequential scans over it:
+ * rates and amounts of the {@code size} levels, cumulative amounts and cumulative rate-weighted
+ * amounts of {@code size + 1} elements, as in {@link OrderBook}.
+ */
+@ParametersAreNonnullByDefault
+public final class OffHeapOrderBook extends MarketBook {
+
+    static final int HEADER_SIZE = 32;
+
+    private static final int MAGIC = 0x4c4f4231;
+    private static final int VERSION = 1;
+
+    /**
+     * Most rate levels the book holds: the sections must fit into a single buffer.
+     */
+    static final int MAX_LEVELS = (Integer.MAX_VALUE - HEADER_SIZE) / (4 * Long.BYTES) - 1;
+
+    private final ByteBuffer buffer;
+    private final int rateScale;
+    private final int amountScale;
+    private final int size;
+    private final int amountsOffset;
+    private final int amountsBelowOffset;
+    private final int weightedSumsBelowOffset;
+
+    private OffHeapOrderBook(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an order book");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported order book version " + buffer.getInt(4));
+        }
+        this.rateScale = buffer.getInt(8);
+        this.amountScale = buffer.getInt(12);
+        this.size = buffer.getInt(16);
+        if (size < 0 || size > MAX_LEVELS || buffer.capacity() != byteSize(size)) {
+            throw new IOException("Order book of " + size + " levels is " + buffer.capacity() + " bytes long");
+        }
+        this.amountsOffset = HEADER_SIZE + size * Long.BYTES;
+        this.amountsBelowOffset = amountsOffset + size * Long.BYTES;
+        this.weightedSumsBelowOffset = amountsBelowOffset + (size + 1) * Long.BYTES;
+    }
+
+    /**
+     * Copy the book into a direct buffer.
+     *
+     * @param book book to copy
+     * @return Off-heap copy of the book.
+     */
+    public static OffHeapOrderBook copyOf(MarketBook book) {
+        checkArgument(book.size() <= MAX_LEVELS, "Book of %s levels is too large", book.size());
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) byteSize(book.size()));
+        write(book, buffer);
+        try {
+            return new OffHeapOrderBook(buffer);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Order book written is unreadable", ex);
+        }
+    }
+
+    /**
+     * Write the book to a file, atomically replacing the existing one.
+     *
+     * @param book book to write
+     * @param file file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void write(MarketBook book, Path file) throws IOException {
+        checkArgument(book.size() <= MAX_LEVELS, "Book of %s levels is too large", book.size());
+        writeAtomically(file, book.size(), buffer -> write(book, buffer));
+    }
+
+    /**
+     * Write the book of the levels read in a single sequential pass, atomically replacing the existing file.
+     * The levels' sums are accumulated on the way, so none of the levels is held in memory.
+     *
+     * @param file        file to write to
+     * @param rateScale   scale of the unscaled rates
+     * @param amountScale scale of the unscaled amounts
+     * @param size        number of the levels
+     * @param levels      {@code size} pairs of {@code long}s: unscaled rate and amount, rates strictly ascending,
+     *                    their weighted sums checked not to overflow, see {@link OrderBook#checkWeightedSums}
+     * @throws IOException if the levels could not be read or the file written
+     */
+    static void write(Path file, int rateScale, int amountScale, int size, DataInput levels) throws IOException {
+        checkArgument(size >= 0 && size <= MAX_LEVELS, "Book of %s levels is too large", size);
+        writeAtomically(file, size, buffer -> {
+            writeHeader(buffer, rateScale, amountScale, size);
+            int amountsOffset = HEADER_SIZE + size * Long.BYTES;
+            int amountsBelowOffset = amountsOffset + size * Long.BYTES;
+            int weightedSumsBelowOffset = amountsBelowOffset + (size + 1) * Long.BYTES;
+            long amountBelow = 0;
+            long weightedSumBelow = 0;
+            buffer.putLong(amountsBelowOffset, amountBelow);
+            buffer.putLong(weightedSumsBelowOffset, weightedSumBelow);
+            long previousRate = Long.MIN_VALUE;
+            for (int level = 0; level < size; level++) {
+                long rate = levels.readLong();
+                long amount = levels.readLong();
+                checkArgument(level == 0 || rate > previousRate, "Levels are not sorted by rate: %s after %s",
+                        rate, previousRate);
+                previousRate = rate;
+                amountBelow = OrderBook.add(amountBelow, amount);
+                weightedSumBelow += rate * amount;
+                buffer.putLong(HEADER_SIZE + level * Long.BYTES, rate);
+                buffer.putLong(amountsOffset + level * Long.BYTES, amount);
+                buffer.putLong(amountsBelowOffset + (level + 1) * Long.BYTES, amountBelow);
+                buffer.putLong(weightedSumsBelowOffset + (level + 1) * Long.BYTES, weightedSumBelow);
+            }
+        });
+    }
+
+    /**
+     * Write the book's buffer to a temporary file, mapped, then move it in place.
+     */
+    private static void writeAtomically(Path file, int size, BufferWriter writer) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, byteSize(size));
+            writer.write(buffer.order(ByteOrder.LITTLE_ENDIAN));
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Check whether the file starts as an order book does, e.g. to tell it from market data.
+     *
+     * @param file existing file
+     * @return {@code true} if the file starts with the order book magic number.
+     * @throws IOException if the file could not be read
+     */
+    public static boolean isBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // until the magic is read or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Map the book file read-only. The pages are loaded by the operating system on demand,
+     * and are shared by the processes mapping the same file.
+     *
+     * @param file file written by {@link #write(MarketBook, Path)}
+     * @return Book backed by the file.
+     * @throws IOException if the file could not be mapped or is not an order book
+     */
+    public static OffHeapOrderBook map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Order book file is too large: " + channel.size() + " bytes");
+            }
+            return new OffHeapOrderBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static void write(MarketBook book, ByteBuffer buffer) {
+        writeHeader(buffer, book.rateScale(), book.amountScale(), book.size());
+        buffer.position(HEADER_SIZE);
+        for (int level = 0; level < book.size(); level++) {
+            buffer.putLong(book.rate(level));
+        }
+        for (int level = 0; level < book.size(); level++) {
+            buffer.putLong(book.amount(level));
+        }
+        for (int level = 0; level <= book.size(); level++) {
+            buffer.putLong(book.amountBelow(level));
+        }
+        for (int level = 0; level <= book.size(); level++) {
+            buffer.putLong(book.weightedSumBelow(level));
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int rateScale, int amountScale, int size) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, rateScale)
+                .putInt(12, amountScale)
+                .putInt(16, size);
+    }
+
+    static long byteSize(int levels) {
+        return HEADER_SIZE + (4L * levels + 2) * Long.BYTES;
+    }
+
+    /**
+     * @return Number of bytes the book takes off the heap.
+     */
+    @Override
+    public long byteSize() {
+        return buffer.capacity();
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    int rateScale() {
+        return rateScale;
+    }
+
+    @Override
+    int amountScale() {
+        return amountScale;
+    }
+
+    @Override
+    int levelsNotAbove(long rate) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rate(middle) <= rate) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    long rate(int level) {
+        return buffer.getLong(HEADER_SIZE + level * Long.BYTES);
+    }
+
+    @Override
+    long amount(int level) {
+        return buffer.getLong(amountsOffset + level * Long.BYTES);
+    }
+
+    @Override
+    long amountBelow(int level) {
+        return buffer.getLong(amountsBelowOffset + level * Long.BYTES);
+    }
+
+    @Override
+    long weightedSumBelow(int level) {
+        return buffer.getLong(weightedSumsBelowOffset + level * Long.BYTES);
+    }
+
+    @Override
+    int levelCovering(long amount) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (amountBelow(middle + 1) < amount) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Filler of the mapped book file.
+     */
+    private interface BufferWriter {
+        void write(ByteBuffer buffer) throws IOException;
+    }
+}
@@ -0,0 +1,343 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Market order book: amounts offered by the lenders aggregated by rate level.
+ * <p>
+ * Levels are kept in two parallel primitive arrays sorted by rate ascending:
+ * unscaled rates at {@link #rateScale()} and unscaled amounts at {@link #amountScale()}.
+ * The scales are the finest ones found in the market, but not coarser than
+ * {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE}, so no value is ever rounded.
+ * <p>
+ * Cumulative amounts and cumulative rate-weighted amounts of the levels are precomputed,
+ * so that the cheapest levels covering any amount are found by binary search.
+ * <p>
+ * The book can be built incrementally, offer by offer, with no list of offers kept in memory,
+ * see {@link #builder()}.
+ * <p>
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class OrderBook extends MarketBook {
+
+    private final int rateScale;
+    private final int amountScale;
+    private final long[] rates;
+    private final long[] amounts;
+
+    /**
+     * Sums of the amounts of levels below the index, {@code size() + 1} elements.
+     */
+    private final long[] amountsBelow;
+
+    /**
+     * Sums of the rate-weighted amounts of levels below the index, {@code size() + 1} elements.
+     */
+    private final long[] weightedSumsBelow;
+
+    private OrderBook(int rateScale, int amountScale, long[] rates, long[] amounts,
+                      long[] amountsBelow, long[] weightedSumsBelow) {
+        this.rateScale = rateScale;
+        this.amountScale = amountScale;
+        this.rates = rates;
+        this.amounts = amounts;
+        this.amountsBelow = amountsBelow;
+        this.weightedSumsBelow = weightedSumsBelow;
+    }
+
+    /**
+     * Aggregate the offers into rate levels.
+     * Time complexity: O(n) for quantized rates, see {@link Builder}.
+     *
+     * @param offers list of offers from the lenders, i.e. market data.
+     * @return Order book instance.
+     * @throws IllegalArgumentException if amounts or rate-weighted amounts of the market
+     *                                  do not fit into {@code long} at the book scales.
+     */
+    static OrderBook of(List<LendingOffer> offers) {
+        int rateScale = RATE_SCALE;
+        int amountScale = CENT_SCALE;
+        for (LendingOffer offer : offers) {
+            rateScale = Math.max(rateScale, offer.getRate().scale());
+            amountScale = Math.max(amountScale, offer.getAmount().scale());
+        }
+        Builder builder = new Builder(rateScale, amountScale);
+        for (LendingOffer offer : offers) {
+            builder.add(unscaled(offer.getRate(), rateScale), unscaled(offer.getAmount(), amountScale));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create builder for the offers quantized to {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE},
+     * as offers read from the market data are.
+     *
+     * @return New builder instance.
+     */
+    public static Builder builder() {
+        return new Builder(RATE_SCALE, CENT_SCALE);
+    }
+
+    /**
+     * Aggregate arbitrary rate levels.
+     * Time complexity: O(n*log(n)), primitive sort of the rates and binary search of each offer's level.
+     *
+     * @param offerRates   unscaled offer rates
+     * @param offerAmounts unscaled offer amounts
+     * @param n            number of offers in the arrays
+     * @return Two arrays: sorted distinct rates and aggregated amounts.
+     */
+    static long[][] aggregate(long[] offerRates, long[] offerAmounts, int n) {
+        long[] levels = Arrays.copyOf(offerRates, n);
+        Arrays.sort(levels);
+        int size = distinct(levels);
+
+        long[] levelAmounts = new long[size];
+        for (int i = 0; i < n; i++) {
+            int level = Arrays.binarySearch(levels, 0, size, offerRates[i]);
+            levelAmounts[level] = add(levelAmounts[level], offerAmounts[i]);
+        }
+        return new long[][]{Arrays.copyOf(levels, size), levelAmounts};
+    }
+
+    static OrderBook create(int rateScale, int amountScale, long[] rates, long[] amounts) {
+        int size = rates.length;
+        long[] amountsBelow = new long[size + 1];
+        for (int i = 0; i < size; i++) {
+            amountsBelow[i + 1] = add(amountsBelow[i], amounts[i]);
+        }
+        checkWeightedSums(amountsBelow[size], size == 0 ? 0 : rates[size - 1]);
+        long[] weightedSumsBelow = new long[size + 1];
+        for (int i = 0; i < size; i++) {
+            weightedSumsBelow[i + 1] = weightedSumsBelow[i] + rates[i] * amounts[i];
+        }
+        return new OrderBook(rateScale, amountScale, rates, amounts, amountsBelow, weightedSumsBelow);
+    }
+
+    /**
+     * Check the rate-weighted amounts of the levels fit into {@code long}, whatever their rates.
+     *
+     * @param totalAmount unscaled sum of the amounts of all the levels
+     * @param maxRate     unscaled rate of the most expensive level, non-negative
+     * @throws IllegalArgumentException if the weighted sum could overflow
+     */
+    static void checkWeightedSums(long totalAmount, long maxRate) {
+        if (maxRate != 0 && totalAmount > Long.MAX_VALUE / maxRate) {
+            throw new IllegalArgumentException("Market is too large: weighted rate sums overflow");
+        }
+    }
+
+    /**
+     * Move distinct values of the sorted array to its beginning.
+     *
+     * @return Number of distinct values.
+     */
+    private static int distinct(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size;
+    }
+
+    static long unscaled(BigDecimal value, int scale) {
+        try {
+            return value.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException(format("Value is out of supported range: %s", value), ex);
+        }
+    }
+
+    static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Market is too large: amounts sum overflows", ex);
+        }
+    }
+
+    @Override
+    int size() {
+        return rates.length;
+    }
+
+    @Override
+    int rateScale() {
+        return rateScale;
+    }
+
+    @Override
+    int amountScale() {
+        return amountScale;
+    }
+
+    @Override
+    int levelsNotAbove(long rate) {
+        int index = Arrays.binarySearch(rates, rate);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    @Override
+    long rate(int level) {
+        return rates[level];
+    }
+
+    @Override
+    long amount(int level) {
+        return amounts[level];
+    }
+
+    @Override
+    long amountBelow(int level) {
+        return amountsBelow[level];
+    }
+
+    @Override
+    long weightedSumBelow(int level) {
+        return weightedSumsBelow[level];
+    }
+
+    @Override
+    int levelCovering(long amount) {
+        int low = 0;
+        int high = rates.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (amountsBelow[middle + 1] < amount) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Single-use order book builder accepting unscaled offers at fixed scales.
+     * <p>
+     * Rates are quantized, so real markets only have a small set of rate levels.
+     * Offers with unscaled rates below {@value #BUCKETS} are accumulated by counting sort
+     * right into an array indexed by the rate, i.e. in O(1) per offer, with no comparisons.
+     * Outliers are collected aside and aggregated by the general O(m*log(m)) path on {@link #build()}.
+     */
+    public static final class Builder {
+
+        /**
+         * Number of directly indexed rate levels: up to 1638.3% at {@link Money#RATE_SCALE}.
+         */
+        static final int BUCKETS = 1 << 14;
+
+        private static final int INITIAL_OUTLIERS_CAPACITY = 16;
+
+        private final int rateScale;
+        private final int amountScale;
+
+        private final long[] bucketAmounts = new long[BUCKETS];
+        private final BitSet bucketsUsed = new BitSet(BUCKETS);
+
+        private long[] outlierRates = new long[INITIAL_OUTLIERS_CAPACITY];
+        private long[] outlierAmounts = new long[INITIAL_OUTLIERS_CAPACITY];
+        private int outliers;
+
+        /**
+         * @param rateScale   scale of unscaled rates to be added
+         * @param amountScale scale of unscaled amounts to be added
+         */
+        Builder(int rateScale, int amountScale) {
+            this.rateScale = rateScale;
+            this.amountScale = amountScale;
+        }
+
+        /**
+         * Add an offer.
+         *
+         * @param offer offer with rate and amount not finer than the builder scales
+         * @return This builder.
+         * @throws IllegalArgumentException if the offer's values cannot be represented at the builder scales
+         */
+        public Builder add(LendingOffer offer) {
+            checkArgument(offer.getRate().scale() <= rateScale, "Rate scale exceeds %s: %s", rateScale, offer);
+            checkArgument(offer.getAmount().scale() <= amountScale, "Amount scale exceeds %s: %s", amountScale, offer);
+            return add(unscaled(offer.getRate(), rateScale), unscaled(offer.getAmount(), amountScale));
+        }
+
+        /**
+         * Add an offer.
+         *
+         * @param rate   unscaled annual interest rate, non-negative
+         * @param amount unscaled amount offered, non-negative
+         * @return This builder.
+         */
+        Builder add(long rate, long amount) {
+            if (rate < BUCKETS) {
+                bucketAmounts[(int) rate] = OrderBook.add(bucketAmounts[(int) rate], amount);
+                bucketsUsed.set((int) rate);
+                return this;
+            }
+            if (outliers == outlierRates.length) {
+                outlierRates = Arrays.copyOf(outlierRates, outliers * 2);
+                outlierAmounts = Arrays.copyOf(outlierAmounts, outliers * 2);
+            }
+            outlierRates[outliers] = rate;
+            outlierAmounts[outliers] = amount;
+            outliers++;
+            return this;
+        }
+
+        /**
+         * Add all the offers added to the other builder, e.g. filled by another thread.
+         *
+         * @param other builder of the same scales, left as it is
+         * @return This builder.
+         * @throws IllegalArgumentException if the scales differ, or the sums overflow
+         */
+        public Builder addAll(Builder other) {
+            checkArgument(other.rateScale == rateScale && other.amountScale == amountScale,
+                    "Builder scales differ: %s and %s", other.rateScale + "/" + other.amountScale,
+                    rateScale + "/" + amountScale);
+            for (int rate = other.bucketsUsed.nextSetBit(0); rate >= 0; rate = other.bucketsUsed.nextSetBit(rate + 1)) {
+                add(rate, other.bucketAmounts[rate]);
+            }
+            for (int i = 0; i < other.outliers; i++) {
+                add(other.outlierRates[i], other.outlierAmounts[i]);
+            }
+            return this;
+        }
+
+        /**
+         * @return Order book of all the offers added.
+         * @throws IllegalArgumentException if the sums overflow
+         */
+        public OrderBook build() {
+            long[][] outlierLevels = aggregate(outlierRates, outlierAmounts, outliers);
+            int bucketLevels = bucketsUsed.cardinality();
+            int size = bucketLevels + outlierLevels[0].length;
+
+            long[] rates = new long[size];
+            long[] amounts = new long[size];
+            int level = 0;
+            for (int rate = bucketsUsed.nextSetBit(0); rate >= 0; rate = bucketsUsed.nextSetBit(rate + 1)) {
+                rates[level] = rate;
+                amounts[level] = bucketAmounts[rate];
+                level++;
+            }
+            // all the outliers are more expensive than any bucketed level
+            System.arraycopy(outlierLevels[0], 0, rates, bucketLevels, outlierLevels[0].length);
+            System.arraycopy(outlierLevels[1], 0, amounts, bucketLevels, outlierLevels[1].length);
+            return create(rateScale, amountScale, rates, amounts);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package task.loans.core;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Slice of the market rate levels within a rate range, possibly held by another process,
+ * as read by {@link PartitionedCalculator}.
+ * <p>
+ * Rates and amounts are unscaled at {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE}.
+ */
+@ParametersAreNonnullByDefault
+public interface Partition {
+
+    /**
+     * @return Totals of the partition, which never change.
+     */
+    Summary getSummary();
+
+    /**
+     * Find the cheapest level of the partition covering the amount.
+     *
+     * @param amount unscaled amount, non-negative, not above the total amount of the partition
+     * @return Rate of the level, and the sums of the levels of the partition below it.
+     * @throws IOException if the partition could not be reached
+     */
+    Cut cut(long amount) throws IOException;
+
+    /**
+     * Number of the levels of a partition, their rates range and sums. Instances of this class are immutable.
+     */
+    final class Summary {
+        private final int levels;
+        private final long minRate;
+        private final long maxRate;
+        private final long totalAmount;
+        private final long weightedSum;
+
+        /**
+         * @param minRate     unscaled rate of the cheapest level, 0 if none
+         * @param maxRate     unscaled rate of the most expensive level, 0 if none
+         * @param totalAmount unscaled sum of the amounts of the levels
+         * @param weightedSum unscaled sum of the amounts weighted by the rates of the levels
+         */
+        public Summary(int levels, long minRate, long maxRate, long totalAmount, long weightedSum) {
+            this.levels = levels;
+            this.minRate = minRate;
+            this.maxRate = maxRate;
+            this.totalAmount = totalAmount;
+            this.weightedSum = weightedSum;
+        }
+
+        public int getLevels() {
+            return levels;
+        }
+
+        public long getMinRate() {
+            return minRate;
+        }
+
+        public long getMaxRate() {
+            return maxRate;
+        }
+
+        public long getTotalAmount() {
+            return totalAmount;
+        }
+
+        public long getWeightedSum() {
+            return weightedSum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Summary summary = (Summary) o;
+            return levels == summary.levels &&
+                    minRate == summary.minRate &&
+                    maxRate == summary.maxRate &&
+                    totalAmount == summary.totalAmount &&
+                    weightedSum == summary.weightedSum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(levels, minRate, maxRate, totalAmount, weightedSum);
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("levels", levels)
+                    .append("minRate", minRate)
+                    .append("maxRate", maxRate)
+                    .append("totalAmount", totalAmount)
+                    .append("weightedSum", weightedSum)
+                    .toString();
+        }
+    }
+
+    /**
+     * Level covering an amount and the sums of the levels of the partition below it.
+     * Instances of this class are immutable.
+     */
+    final class Cut {
+        private final long rate;
+        private final long amountBelow;
+        private final long weightedSumBelow;
+
+        /**
+         * @param rate             unscaled rate of the level covering the amount
+         * @param amountBelow      unscaled sum of the amounts of the cheaper levels of the partition
+         * @param weightedSumBelow unscaled sum of the amounts of the cheaper levels weighted by their rates
+         */
+        public Cut(long rate, long amountBelow, long weightedSumBelow) {
+            this.rate = rate;
+            this.amountBelow = amountBelow;
+            this.weightedSumBelow = weightedSumBelow;
+        }
+
+        public long getRate() {
+            return rate;
+        }
+
+        public long getAmountBelow() {
+            return amountBelow;
+        }
+
+        public long getWeightedSumBelow() {
+            return weightedSumBelow;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Cut cut = (Cut) o;
+            return rate == cut.rate &&
+                    amountBelow == cut.amountBelow &&
+                    weightedSumBelow == cut.weightedSumBelow;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rate, amountBelow, weightedSumBelow);
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("rate", rate)
+                    .append("amountBelow", amountBelow)
+                    .append("weightedSumBelow", weightedSumBelow)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package task.loans.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Calculator of the market partitioned by rate ranges, e.g. held by a number of processes.
+ * <p>
+ * The partitions are ordered by rate, and their totals are summed up once on construction.
+ * So the partition holding the cheapest level which covers an amount is found by binary search of the
+ * cumulative totals, and only that partition is asked for the level: a quote costs a single call
+ * to a single partition, whatever their number. Quotes are exactly the same as {@link LoanCalculator}
+ * gives for the whole market.
+ * <p>
+ * Instances of this class are thread-safe if the partitions are.
+ */
+@ParametersAreNonnullByDefault
+public class PartitionedCalculator {
+
+    private final List<Partition> partitions = new ArrayList<>();
+
+    /**
+     * Sums of the amounts of partitions below the index, {@code partitions + 1} elements.
+     */
+    private final long[] amountsBelow;
+
+    /**
+     * Sums of the rate-weighted amounts of partitions below the index, {@code partitions + 1} elements.
+     */
+    private final long[] weightedSumsBelow;
+
+    /**
+     * @param partitions partitions of the market in any order, empty ones ignored
+     * @throws IllegalArgumentException if the rate ranges of the partitions overlap, or the sums overflow
+     */
+    public PartitionedCalculator(List<? extends Partition> partitions) {
+        for (Partition partition : partitions) {
+            if (partition.getSummary().getLevels() > 0) {
+                this.partitions.add(partition);
+            }
+        }
+        this.partitions.sort(Comparator.comparingLong(partition -> partition.getSummary().getMinRate()));
+
+        int size = this.partitions.size();
+        amountsBelow = new long[size + 1];
+        weightedSumsBelow = new long[size + 1];
+        for (int i = 0; i < size; i++) {
+            Partition.Summary summary = this.partitions.get(i).getSummary();
+            if (i > 0) {
+                Partition.Summary previous = this.partitions.get(i - 1).getSummary();
+                checkArgument(previous.getMaxRate() < summary.getMinRate(), "Partitions overlap: %s and %s",
+                        previous, summary);
+            }
+            try {
+                amountsBelow[i + 1] = Math.addExact(amountsBelow[i], summary.getTotalAmount());
+                weightedSumsBelow[i + 1] = Math.addExact(weightedSumsBelow[i], summary.getWeightedSum());
+            } catch (ArithmeticException ex) {
+                throw new IllegalArgumentException("Market is too large: amounts sum overflows", ex);
+            }
+        }
+    }
+
+    /**
+     * @return Sum of all the amounts offered.
+     */
+    public BigDecimal getTotalSupply() {
+        return BigDecimal.valueOf(amountsBelow[partitions.size()], CENT_SCALE);
+    }
+
+    /**
+     * Calculate loan of {@value LoanCalculator#DEFAULT_TERM} months term.
+     *
+     * @see #calculate(BigDecimal, int)
+     */
+    public Loan calculate(BigDecimal requestedAmount) throws IOException {
+        return calculate(requestedAmount, LoanCalculator.DEFAULT_TERM);
+    }
+
+    /**
+     * Calculate compound loan of the specified amount and term satisfied by the offers of all the partitions.
+     *
+     * @param requestedAmount total amount of loan requested, non-negative value
+     * @param term            number of monthly repayments in range {@code [1, LoanCalculator.MAX_TERM]}
+     * @return Loan as {@link LoanCalculator#calculate(BigDecimal, int)} of the whole market.
+     * @throws IOException if the partition holding the level covering the amount could not be reached
+     */
+    public Loan calculate(BigDecimal requestedAmount, int term) throws IOException {
+        checkArgument(requestedAmount.compareTo(BigDecimal.ZERO) >= 0, "Loan amount must be non-negative");
+        checkArgument(term > 0 && term <= LoanCalculator.MAX_TERM, "Loan term must be in range [1, %s]",
+                LoanCalculator.MAX_TERM);
+        if (getTotalSupply().compareTo(requestedAmount) < 0) {
+            return Loan.unavailable(requestedAmount);
+        }
+        long need = requestedAmount.setScale(CENT_SCALE, RoundingMode.CEILING).unscaledValue().longValueExact();
+        int index = partitionCovering(need);
+        if (index == partitions.size()) {
+            return LoanCalculator.loan(requestedAmount, term, weightedSum(weightedSumsBelow[index]));
+        }
+        Partition.Cut cut = partitions.get(index).cut(need - amountsBelow[index]);
+        BigDecimal amountBelow = BigDecimal.valueOf(amountsBelow[index] + cut.getAmountBelow(), CENT_SCALE);
+        BigDecimal remainder = requestedAmount.subtract(amountBelow);
+        BigDecimal sum = weightedSum(weightedSumsBelow[index] + cut.getWeightedSumBelow())
+                .add(BigDecimal.valueOf(cut.getRate(), RATE_SCALE).multiply(remainder));
+        return LoanCalculator.loan(requestedAmount, term, sum);
+    }
+
+    /**
+     * @return The lowest partition index such that the partitions up to it inclusive offer at least the amount,
+     * or the number of partitions if there is none.
+     */
+    private int partitionCovering(long amount) {
+        int low = 0;
+        int high = partitions.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (amountsBelow[middle + 1] < amount) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static BigDecimal weightedSum(long unscaled) {
+        return BigDecimal.valueOf(unscaled, RATE_SCALE + CENT_SCALE);
+    }
+}
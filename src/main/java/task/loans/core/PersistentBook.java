@@ -0,0 +1,313 @@
+package task.loans.core;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static task.loans.core.Money.CENT_SCALE;
+import static task.loans.core.Money.RATE_SCALE;
+
+/**
+ * Persistent order book: a version of the rate levels which is never changed, updates return new versions.
+ * <p>
+ * Levels are the nodes of an AVL tree by rate, each node holding the number of the levels, the amounts and
+ * the rate-weighted amounts of its subtree. An update copies only the nodes on the path to the level changed
+ * and rebalances the copies, so it creates O(log(n)) nodes and shares all the other ones with the previous
+ * version. The levels are found by their indices, amounts or rates descending the tree, all in O(log(n)).
+ * <p>
+ * Rates and amounts are unscaled at {@link Money#RATE_SCALE} and {@link Money#CENT_SCALE}.
+ * A level is kept while it holds offers, even of zero amounts, so a version has the same levels
+ * as the {@link OrderBook} of the same offers. Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+final class PersistentBook extends MarketBook {
+
+    /**
+     * Empty book, the first version of any history.
+     */
+    static final PersistentBook EMPTY = new PersistentBook(null);
+
+    @Nullable
+    private final Node root;
+
+    private PersistentBook(@Nullable Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Add offers to a level, or withdraw them from it.
+     *
+     * @param rate         unscaled rate of the level
+     * @param offersChange number of the offers added, negative if withdrawn
+     * @param amountChange sum of their unscaled amounts, negative if withdrawn
+     * @return New version of the book.
+     * @throws IllegalArgumentException if the amounts or rate-weighted amounts of the book overflow
+     */
+    PersistentBook update(long rate, int offersChange, long amountChange) {
+        try {
+            return new PersistentBook(update(root, rate, offersChange, amountChange));
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Market is too large: amounts sum overflows", ex);
+        }
+    }
+
+    /**
+     * @return Number of the distinct nodes of the versions.
+     */
+    static int countNodes(Iterable<PersistentBook> versions) {
+        Map<Object, Boolean> seen = new IdentityHashMap<>();
+        int count = 0;
+        for (PersistentBook version : versions) {
+            count += countNew(version.root, seen);
+        }
+        return count;
+    }
+
+    @Override
+    int size() {
+        return size(root);
+    }
+
+    @Override
+    int rateScale() {
+        return RATE_SCALE;
+    }
+
+    @Override
+    int amountScale() {
+        return CENT_SCALE;
+    }
+
+    @Override
+    int levelsNotAbove(long rate) {
+        int count = 0;
+        for (Node node = root; node != null; ) {
+            if (node.rate <= rate) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    long rate(int level) {
+        return select(level).rate;
+    }
+
+    @Override
+    long amount(int level) {
+        return select(level).amount;
+    }
+
+    @Override
+    long amountBelow(int level) {
+        long sum = 0;
+        int remaining = level;
+        for (Node node = root; node != null; ) {
+            int leftSize = size(node.left);
+            if (remaining <= leftSize) {
+                node = node.left;
+            } else {
+                sum += totalAmount(node.left) + node.amount;
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    long weightedSumBelow(int level) {
+        long sum = 0;
+        int remaining = level;
+        for (Node node = root; node != null; ) {
+            int leftSize = size(node.left);
+            if (remaining <= leftSize) {
+                node = node.left;
+            } else {
+                sum += totalWeighted(node.left) + node.rate * node.amount;
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    int levelCovering(long amount) {
+        int covering = size(root);
+        int levelsBefore = 0;
+        long amountBefore = 0;
+        for (Node node = root; node != null; ) {
+            long throughNode = amountBefore + totalAmount(node.left) + node.amount;
+            if (throughNode >= amount) {
+                covering = levelsBefore + size(node.left);
+                node = node.left;
+            } else {
+                amountBefore = throughNode;
+                levelsBefore += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return covering;
+    }
+
+    private Node select(int level) {
+        if (level < 0 || level >= size(root)) {
+            throw new IndexOutOfBoundsException("Level " + level + " of " + size(root));
+        }
+        int remaining = level;
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (remaining < leftSize) {
+                node = node.left;
+            } else if (remaining == leftSize) {
+                return node;
+            } else {
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Nullable
+    private static Node update(@Nullable Node node, long rate, int offersChange, long amountChange) {
+        if (node == null) {
+            if (offersChange <= 0) {
+                throw new IllegalStateException("No level at rate " + rate);
+            }
+            return new Node(rate, offersChange, amountChange, null, null);
+        }
+        if (rate < node.rate) {
+            return balance(node.withChildren(update(node.left, rate, offersChange, amountChange), node.right));
+        }
+        if (rate > node.rate) {
+            return balance(node.withChildren(node.left, update(node.right, rate, offersChange, amountChange)));
+        }
+        int offers = node.offers + offersChange;
+        if (offers == 0) {
+            return remove(node);
+        }
+        return new Node(rate, offers, Math.addExact(node.amount, amountChange), node.left, node.right);
+    }
+
+    @Nullable
+    private static Node remove(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(new Node(successor.rate, successor.offers, successor.amount,
+                node.left, removeMin(node.right)));
+    }
+
+    @Nullable
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.withChildren(removeMin(node.left), node.right));
+    }
+
+    private static Node balance(Node node) {
+        int skew = height(node.left) - height(node.right);
+        if (skew > 1) {
+            Node left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.withChildren(left, node.right));
+        }
+        if (skew < -1) {
+            Node right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.withChildren(node.left, right));
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        return left.withChildren(left.left, node.withChildren(left.right, node.right));
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        return right.withChildren(node.withChildren(node.left, right.left), right.right);
+    }
+
+    private static int countNew(@Nullable Node node, Map<Object, Boolean> seen) {
+        if (node == null || seen.put(node, Boolean.TRUE) != null) {
+            return 0;
+        }
+        return 1 + countNew(node.left, seen) + countNew(node.right, seen);
+    }
+
+    private static int size(@Nullable Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(@Nullable Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static long totalAmount(@Nullable Node node) {
+        return node == null ? 0 : node.totalAmount;
+    }
+
+    private static long totalWeighted(@Nullable Node node) {
+        return node == null ? 0 : node.totalWeighted;
+    }
+
+    /**
+     * Rate level with the aggregates of its subtree.
+     */
+    private static final class Node {
+        private final long rate;
+        private final int offers;
+        private final long amount;
+        @Nullable
+        private final Node left;
+        @Nullable
+        private final Node right;
+        private final int height;
+        private final int size;
+        private final long totalAmount;
+        private final long totalWeighted;
+
+        /**
+         * @throws ArithmeticException if the aggregates overflow
+         */
+        Node(long rate, int offers, long amount, @Nullable Node left, @Nullable Node right) {
+            this.rate = rate;
+            this.offers = offers;
+            this.amount = amount;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(PersistentBook.height(left), PersistentBook.height(right)) + 1;
+            this.size = PersistentBook.size(left) + PersistentBook.size(right) + 1;
+            this.totalAmount = Math.addExact(Math.addExact(PersistentBook.totalAmount(left), amount),
+                    PersistentBook.totalAmount(right));
+            this.totalWeighted = Math.addExact(Math.addExact(PersistentBook.totalWeighted(left),
+                    Math.multiplyExact(rate, amount)), PersistentBook.totalWeighted(right));
+        }
+
+        Node withChildren(@Nullable Node newLeft, @Nullable Node newRight) {
+            return new Node(rate, offers, amount, newLeft, newRight);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Direct-mapped cache of the quotes of one calculator, by requested amount and term.
+ * <p>
+ * Every amount and term map to a single slot, the latest quote calculated replaces the one in it.
+ * A hit allocates nothing: the slot is found by the hash code of the amount, compared by
+ * {@link BigDecimal#equals}, and the very same {@link Loan} instance is returned.
+ * <p>
+ * Instances of this class are thread-safe: slots hold immutable entries, a racing update
+ * at worst evicts a quote which is then calculated again.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteCache {
+
+    private final LoanCalculator calculator;
+    private final Entry[] slots;
+    private final int mask;
+
+    /**
+     * @param calculator calculator to quote the misses
+     * @param capacity   number of slots, positive value, rounded up to a power of two
+     */
+    public QuoteCache(LoanCalculator calculator, int capacity) {
+        checkArgument(capacity > 0 && capacity <= 1 << 30, "Capacity must be in range [1, 2^30]");
+        this.calculator = calculator;
+        this.slots = new Entry[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * @return The same as {@link LoanCalculator#calculate(BigDecimal, int)}, possibly the same instance
+     * as returned earlier for an equal amount and term.
+     */
+    public Loan calculate(BigDecimal requestedAmount, int term) {
+        int slot = slot(requestedAmount, term);
+        Entry entry = slots[slot];
+        if (entry != null && entry.term == term && entry.amount.equals(requestedAmount)) {
+            return entry.loan;
+        }
+        Loan loan = calculator.calculate(requestedAmount, term);
+        slots[slot] = new Entry(requestedAmount, term, loan);
+        return loan;
+    }
+
+    /**
+     * @return Quote cached for the amount and term, or {@code null} if it would have to be calculated.
+     */
+    @Nullable
+    public Loan getCached(BigDecimal requestedAmount, int term) {
+        Entry entry = slots[slot(requestedAmount, term)];
+        return entry != null && entry.term == term && entry.amount.equals(requestedAmount) ? entry.loan : null;
+    }
+
+    public LoanCalculator getCalculator() {
+        return calculator;
+    }
+
+    private int slot(BigDecimal requestedAmount, int term) {
+        return spread(requestedAmount.hashCode() * 31 + term) & mask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        private final BigDecimal amount;
+        private final int term;
+        private final Loan loan;
+
+        Entry(BigDecimal amount, int term, Loan loan) {
+            this.amount = amount;
+            this.term = term;
+            this.loan = loan;
+        }
+    }
+}
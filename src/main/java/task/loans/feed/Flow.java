@@ -0,0 +1,70 @@
+package task.loans.feed;
+
+/**
+ * Interfaces of reactive streams with demand-driven backpressure,
+ * the same as {@code java.util.concurrent.Flow} of Java 9 which this project cannot target yet.
+ * <p>
+ * A {@link Subscriber} receives items only as many as it has requested through its {@link Subscription},
+ * so a slow one is never sent more than it can take.
+ */
+public final class Flow {
+
+    private Flow() {
+        // no instantiation
+    }
+
+    /**
+     * Producer of items for the subscribers.
+     *
+     * @param <T> type of items
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Add subscriber: it is called {@link Subscriber#onSubscribe} first, then receives the items requested.
+         *
+         * @param subscriber subscriber to add
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items. Its methods are called sequentially, never concurrently.
+     *
+     * @param <T> type of items
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        /**
+         * Terminal: the subscription failed, no more items follow.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Terminal: the publisher finished, no more items follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link of a subscriber to its publisher.
+     */
+    public interface Subscription {
+
+        /**
+         * Add demand: the subscriber is ready to receive {@code n} more items.
+         *
+         * @param n number of items, positive value, otherwise the subscriber receives an error
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving items, possibly not immediately.
+         */
+        void cancel();
+    }
+}
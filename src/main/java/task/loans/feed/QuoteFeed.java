@@ -0,0 +1,186 @@
+package task.loans.feed;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.LendingOffer;
+import task.loans.core.LiveMarket;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.core.MarketEvent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Live market pushing quotes to the subscribers of amounts and terms as the market changes.
+ * <p>
+ * A quote only depends on the levels cheaper than the one covering its amount. So a change of
+ * the offers at a rate leaves the quotes of the amounts the cheaper levels cover as they are:
+ * the subscriptions are indexed by amount, and a change recalculates just the quotes of the amounts
+ * above the depth below its rate. Subscribers receive a quote only if it differs from the previous one.
+ * <p>
+ * Quotes are delivered on the executor, see {@link QuoteSubscription} for the backpressure.
+ * Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteFeed implements Closeable {
+
+    private final LiveMarket market;
+    private final Executor executor;
+    private final int bufferSize;
+
+    /**
+     * Quotes subscribed to by amount (compared by value) and term.
+     */
+    private final NavigableMap<BigDecimal, Map<Integer, Topic>> topics = new TreeMap<>();
+
+    private long recalculations;
+    private boolean closed;
+
+    /**
+     * @param market     market to apply the changes to, not to be changed otherwise
+     * @param executor   executor to deliver the quotes on
+     * @param bufferSize number of quotes buffered per subscriber at most, positive value
+     */
+    public QuoteFeed(LiveMarket market, Executor executor, int bufferSize) {
+        checkArgument(bufferSize > 0, "Buffer size must be positive");
+        this.market = market;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Publisher of the quotes of the amount and term: a subscriber receives the current quote first,
+     * then every different one as the market changes.
+     *
+     * @param amount requested amount, non-negative value
+     * @param term   number of monthly repayments, positive value
+     * @return Publisher, each subscriber subscribed separately.
+     */
+    public Flow.Publisher<Loan> quotes(BigDecimal amount, int term) {
+        checkArgument(amount.signum() >= 0, "Loan amount must be non-negative");
+        checkArgument(term > 0, "Loan term must be positive");
+        return subscriber -> subscribe(amount, term, subscriber);
+    }
+
+    /**
+     * Apply the change to the market and publish the quotes it changes.
+     *
+     * @param event market change
+     * @throws IllegalArgumentException if the event cannot be applied, see {@link LiveMarket#check(MarketEvent)}
+     * @throws IllegalStateException    if the feed is closed
+     */
+    public synchronized void apply(MarketEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Quote feed is closed");
+        }
+        market.check(event);
+        BigDecimal unaffected = market.getCalculator().getStatistics().getDepthBelow(lowestRateChanged(event));
+        market.apply(event);
+
+        LoanCalculator calculator = market.getCalculator();
+        for (Topic topic : topicsOf(topics.tailMap(unaffected, false))) {
+            recalculations++;
+            topic.update(calculator.calculate(topic.amount, topic.term));
+        }
+    }
+
+    /**
+     * Complete all the subscriptions, after the quotes buffered for them.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Topic topic : topicsOf(topics)) {
+            topic.subscriptions.forEach(QuoteSubscription::complete);
+        }
+        topics.clear();
+    }
+
+    /**
+     * @return Number of quotes recalculated on the market changes so far.
+     */
+    synchronized long getRecalculations() {
+        return recalculations;
+    }
+
+    private synchronized void subscribe(BigDecimal amount, int term, Flow.Subscriber<? super Loan> subscriber) {
+        Topic topic = closed ? null : topics.computeIfAbsent(amount, key -> new HashMap<>())
+                .computeIfAbsent(term, key -> new Topic(amount, term, market.getCalculator().calculate(amount, term)));
+        QuoteSubscription subscription = new QuoteSubscription(subscriber, executor, bufferSize,
+                () -> unsubscribe(amount, term));
+        if (topic == null) {
+            subscription.fail(new IllegalStateException("Quote feed is closed"));
+            return;
+        }
+        topic.subscriptions.add(subscription);
+        subscription.publish(topic.latest);
+    }
+
+    private synchronized void unsubscribe(BigDecimal amount, int term) {
+        Map<Integer, Topic> terms = topics.get(amount);
+        Topic topic = terms == null ? null : terms.get(term);
+        if (topic == null) {
+            return;
+        }
+        topic.subscriptions.removeIf(QuoteSubscription::isCancelled);
+        if (topic.subscriptions.isEmpty()) {
+            terms.remove(term);
+            if (terms.isEmpty()) {
+                topics.remove(amount);
+            }
+        }
+    }
+
+    /**
+     * @return Copy of the topics, as a subscriber may unsubscribe while they are published to.
+     */
+    private static List<Topic> topicsOf(Map<BigDecimal, Map<Integer, Topic>> byAmount) {
+        List<Topic> copy = new ArrayList<>();
+        byAmount.values().forEach(terms -> copy.addAll(terms.values()));
+        return copy;
+    }
+
+    /**
+     * @return The lowest rate of the offers added, withdrawn or replaced by the event.
+     */
+    private BigDecimal lowestRateChanged(MarketEvent event) {
+        Optional<BigDecimal> added = event.getOffer().map(LendingOffer::getRate);
+        if (event.getType() == MarketEvent.Type.ADD) {
+            return added.get();
+        }
+        BigDecimal removed = market.getOffers().get(event.getOfferId()).getRate();
+        return added.filter(rate -> rate.compareTo(removed) < 0).orElse(removed);
+    }
+
+    private static class Topic {
+        private final BigDecimal amount;
+        private final int term;
+        private final List<QuoteSubscription> subscriptions = new CopyOnWriteArrayList<>();
+        private Loan latest;
+
+        Topic(BigDecimal amount, int term, Loan latest) {
+            this.amount = amount;
+            this.term = term;
+            this.latest = latest;
+        }
+
+        void update(Loan loan) {
+            if (!loan.equals(latest)) {
+                latest = loan;
+                subscriptions.forEach(subscription -> subscription.publish(loan));
+            }
+        }
+    }
+}
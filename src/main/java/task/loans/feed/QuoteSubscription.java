@@ -0,0 +1,184 @@
+package task.loans.feed;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Loan;
+
+/**
+ * Subscription to the quotes of one amount and term, delivering them on the executor.
+ * <p>
+ * Quotes published are kept in a bounded buffer until requested. A subscriber which does not
+ * request in time misses the oldest of them: it is only interested in the latest quote anyway,
+ * and the publisher neither waits for it nor keeps more for it than the buffer holds.
+ * Deliveries to a subscriber are serialized, {@link Flow.Subscriber#onSubscribe} first,
+ * and never run on the publisher's thread unless the executor does so.
+ */
+@ParametersAreNonnullByDefault
+class QuoteSubscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super Loan> subscriber;
+    private final Executor executor;
+    private final int capacity;
+    private final Runnable onCancel;
+
+    private final ArrayDeque<Loan> buffer;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+    private long dropped;
+
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+    @Nullable
+    private volatile Throwable error;
+    private boolean subscribed;
+    private boolean terminated;
+
+    /**
+     * @param capacity number of quotes buffered at most
+     * @param onCancel called once the subscription is cancelled, from any thread
+     */
+    QuoteSubscription(Flow.Subscriber<? super Loan> subscriber, Executor executor, int capacity, Runnable onCancel) {
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.onCancel = onCancel;
+        this.buffer = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Buffer the quote for delivery, dropping the oldest one buffered if full. Never blocks.
+     */
+    void publish(Loan loan) {
+        if (cancelled) {
+            return;
+        }
+        synchronized (buffer) {
+            if (buffer.size() == capacity) {
+                buffer.pollFirst();
+                dropped++;
+            }
+            buffer.addLast(loan);
+        }
+        schedule();
+    }
+
+    /**
+     * Complete the subscription once the quotes buffered are delivered.
+     */
+    void complete() {
+        completed = true;
+        schedule();
+    }
+
+    /**
+     * Fail the subscription right away, dropping the quotes buffered.
+     */
+    void fail(Throwable throwable) {
+        error = throwable;
+        schedule();
+    }
+
+    /**
+     * @return Number of quotes dropped so far as the subscriber did not request them in time.
+     */
+    long getDropped() {
+        synchronized (buffer) {
+            return dropped;
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("Requested number must be positive: " + n));
+            return;
+        }
+        demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        schedule();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            onCancel.run();
+        }
+    }
+
+    private void schedule() {
+        if (pendingDrains.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Deliver quotes while requested, then a terminal signal if due.
+     * Runs one at a time: a drain scheduled while one runs is taken over by it.
+     */
+    private void drain() {
+        int missed = 1;
+        do {
+            deliver();
+            missed = pendingDrains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver() {
+        if (!subscribed) {
+            subscribed = true;
+            try {
+                subscriber.onSubscribe(this);
+            } catch (RuntimeException ex) {
+                cancel();
+            }
+        }
+        while (!terminated && !cancelled) {
+            Throwable failure = error;
+            if (failure != null) {
+                terminate();
+                subscriber.onError(failure);
+                return;
+            }
+            Loan next = null;
+            if (demand.get() > 0) {
+                synchronized (buffer) {
+                    next = buffer.pollFirst();
+                }
+            }
+            if (next == null) {
+                if (completed && isBufferEmpty()) {
+                    terminate();
+                    subscriber.onComplete();
+                }
+                return;
+            }
+            demand.decrementAndGet();
+            try {
+                subscriber.onNext(next);
+            } catch (RuntimeException ex) {
+                cancel();
+            }
+        }
+    }
+
+    private boolean isBufferEmpty() {
+        synchronized (buffer) {
+            return buffer.isEmpty();
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        cancel();
+    }
+}
@@ -0,0 +1,159 @@
+package task.loans.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Gzip-inflating stream which decompresses on a background thread,
+ * so that inflation of the next chunks overlaps with the consumer parsing the current one.
+ * <p>
+ * Closing does not interrupt the background thread: an interrupt closes an interruptible channel the
+ * compressed data is read from, which belongs to the caller. The thread stops once its pending read returns.
+ * <p>
+ * Instances of this class are not thread-safe: only one consumer thread is expected.
+ */
+@ParametersAreNonnullByDefault
+class AsyncInflatingInputStream extends InputStream {
+
+    /**
+     * Number of inflated chunks the background thread may run ahead of the consumer.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * End of data marker, compared by identity.
+     */
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread inflater;
+
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private byte[] current = END;
+    private int position;
+    private boolean finished;
+
+    /**
+     * Create instance and start inflating immediately.
+     *
+     * @param compressed gzip-compressed data, will be closed by the background thread when exhausted
+     *                   or after this stream is closed
+     * @param chunkSize  size of inflated chunks handed over to the consumer
+     */
+    AsyncInflatingInputStream(InputStream compressed, int chunkSize) {
+        inflater = new Thread(() -> inflate(compressed, chunkSize), "market-inflater");
+        inflater.setDaemon(true);
+        inflater.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        chunks.clear();     // wakes the background thread up, it puts at most a chunk and the end marker more
+    }
+
+    /**
+     * Make sure the current chunk has unread bytes.
+     *
+     * @return {@code false} if the end of data is reached.
+     */
+    private boolean fill() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (position < current.length) {
+            return true;
+        }
+        byte[] next = take();
+        if (next == END) {
+            finished = true;
+            if (failure != null) {
+                throw new IOException("Could not inflate market data", failure);
+            }
+            return false;
+        }
+        current = next;
+        position = 0;
+        return true;
+    }
+
+    private byte[] take() throws IOException {
+        try {
+            return chunks.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for inflated market data");
+        }
+    }
+
+    private void inflate(InputStream compressed, int chunkSize) {
+        try (InputStream in = new GZIPInputStream(compressed, chunkSize)) {
+            int length = chunkSize;
+            while (!closed && length == chunkSize) {
+                byte[] chunk = new byte[chunkSize];
+                length = readFully(in, chunk);
+                if (length > 0) {
+                    chunks.put(length == chunkSize ? chunk : Arrays.copyOf(chunk, length));
+                }
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] chunk) throws IOException {
+        int total = 0;
+        while (total < chunk.length) {
+            int count = in.read(chunk, total, chunk.length - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+}
@@ -1,28 +1,49 @@
 package task.loans.io;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import au.com.bytecode.opencsv.CSVParser;
 import au.com.bytecode.opencsv.CSVReader;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import task.loans.core.LenderDictionary;
 import task.loans.core.LendingOffer;
+import task.loans.core.OrderBook;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 import static task.loans.core.Money.decimal;
 import static task.loans.core.Money.rate;
 
 /**
  * Reader extracting market data from CSV file.
+ * <p>
+ * Input may be gzip-compressed, it is recognized and inflated transparently.
+ * <p>
+ * Lender names of the offers read into a list at once refer to one {@link LenderDictionary},
+ * so that names repeated across millions of rows are kept in memory once. Offers streamed one by one
+ * hold their own names instead, so that the memory of a single pass does not grow with the lenders.
+ *
+ * @see MarketInput
  */
 @ParametersAreNonnullByDefault
 public class CsvInputReader {
@@ -57,7 +78,7 @@ public class CsvInputReader {
     /**
      * Read market data from the input CSV file.
      *
-     * @param csvFile input file to read data from
+     * @param csvFile input file to read data from, plain or gzip-compressed
      * @return List of lending offers.
      * @see LendingOffer
      * @throws RuntimeException if any of these situations occurs:
@@ -68,25 +89,156 @@ public class CsvInputReader {
      * </ul>
      */
     public List<LendingOffer> read(File csvFile) {
-        FileReader fileReader = onExceptionRethrow(() -> new FileReader(csvFile),
+        List<LendingOffer> offers = new ArrayList<>();
+        forEachOffer(csvFile, offers::add, true);
+        return offers;
+    }
+
+    /**
+     * Read market data from the input stream, e.g. standard input.
+     * The stream is consumed up to the end, but is not closed.
+     *
+     * @param csvStream CSV data stream, plain or gzip-compressed
+     * @return List of lending offers.
+     * @throws RuntimeException if IO exception caught or data format is incorrect
+     * @see #read(File)
+     */
+    public List<LendingOffer> read(InputStream csvStream) {
+        List<LendingOffer> offers = new ArrayList<>();
+        forEachOffer(csvStream, offers::add, true);
+        return offers;
+    }
+
+    /**
+     * Read market data from the channel. The channel is consumed up to the end, but is not closed.
+     *
+     * @param csvChannel CSV data channel, plain or gzip-compressed
+     * @return List of lending offers.
+     * @throws RuntimeException if IO exception caught or data format is incorrect
+     * @see #read(File)
+     */
+    public List<LendingOffer> read(ReadableByteChannel csvChannel) {
+        return read(Channels.newInputStream(csvChannel));
+    }
+
+    /**
+     * Read market data right into the order book in a single pass, keeping no offers in memory.
+     *
+     * @param csvFile input file to read data from, plain or gzip-compressed
+     * @return Order book of the market.
+     * @throws RuntimeException on the same conditions as {@link #read(File)}
+     */
+    public OrderBook readBook(File csvFile) {
+        OrderBook.Builder builder = OrderBook.builder();
+        forEachOffer(csvFile, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Read market data right into the order book in a single pass, keeping no offers in memory.
+     * The stream is consumed up to the end, but is not closed.
+     *
+     * @param csvStream CSV data stream, plain or gzip-compressed
+     * @return Order book of the market.
+     * @throws RuntimeException on the same conditions as {@link #read(InputStream)}
+     */
+    public OrderBook readBook(InputStream csvStream) {
+        OrderBook.Builder builder = OrderBook.builder();
+        forEachOffer(csvStream, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Stream market data from the input CSV file, offer by offer.
+     *
+     * @param csvFile  input file to read data from, plain or gzip-compressed
+     * @param consumer receiver of the offers, in order of the file rows
+     * @throws RuntimeException on the same conditions as {@link #read(File)}
+     */
+    public void forEachOffer(File csvFile, Consumer<LendingOffer> consumer) {
+        forEachOffer(csvFile, consumer, false);
+    }
+
+    private void forEachOffer(File csvFile, Consumer<LendingOffer> consumer, boolean internLenders) {
+        FileInputStream fileStream = onExceptionRethrow(() -> new FileInputStream(csvFile),
                 "File not found: " + csvFile.getName());
+        try (InputStream in = fileStream) {
+            forEachOffer(in, consumer, internLenders);
+        } catch (IOException ex) {
+            throw new InternalException(ex);
+        }
+    }
 
-        CSVReader csvReader = new CSVReader(fileReader, separator,
-                CSVParser.DEFAULT_QUOTE_CHARACTER, skipFirstLine ? 1 : 0);
+    /**
+     * Stream market data from the input stream, offer by offer.
+     * The stream is consumed up to the end, but is not closed.
+     *
+     * @param csvStream CSV data stream, plain or gzip-compressed
+     * @param consumer  receiver of the offers, in order of the stream rows
+     * @throws RuntimeException on the same conditions as {@link #read(InputStream)}
+     */
+    public void forEachOffer(InputStream csvStream, Consumer<LendingOffer> consumer) {
+        forEachOffer(csvStream, consumer, false);
+    }
+
+    private void forEachOffer(InputStream csvStream, Consumer<LendingOffer> consumer, boolean internLenders) {
+        InputStream plain = onExceptionRethrow(() -> MarketInput.open(new CloseShieldInputStream(csvStream)),
+                "Could not read input CSV file");
 
-        return readAll(csvReader).stream().map(this::convert).collect(toList());
+        Interner interner = new Interner(internLenders);
+        try (CSVReader csvReader = new CSVReader(new InputStreamReader(plain, UTF_8), separator,
+                CSVParser.DEFAULT_QUOTE_CHARACTER, skipFirstLine ? 1 : 0)) {
+            for (String[] row = readNext(csvReader); row != null; row = readNext(csvReader)) {
+                consumer.accept(convert(row, interner));
+            }
+        } catch (IOException ex) {
+            throw new InternalException(ex);
+        }
     }
 
-    private List<String[]> readAll(CSVReader reader) {
-        return onExceptionRethrow(reader::readAll, "Could not read input CSV file");
+    @Nullable
+    private String[] readNext(CSVReader reader) {
+        return onExceptionRethrow(reader::readNext, "Could not read input CSV file");
     }
 
-    private LendingOffer convert(String[] row) {
+    private LendingOffer convert(String[] row, Interner interner) {
         checkArgument(row.length == 3, "Invalid row length. Row: %s",
                 stream(row).collect(joining(",", "[", "]")));
 
-        return onExceptionRethrow(() -> new LendingOffer(row[0], rate(row[1]), decimal(row[2])),
-                "Improper input data format");
+        return onExceptionRethrow(() -> interner.offer(row[0], interner.decimal(rate(row[1])),
+                interner.decimal(decimal(row[2]))), "Improper input data format");
+    }
+
+    /**
+     * Shares the values repeated across the rows of one input: lender names by a dictionary, if requested,
+     * and decimals, i.e. rates and round amounts, by a bounded cache.
+     */
+    private static class Interner {
+        private static final int MAX_DECIMALS = 1 << 16;
+
+        @Nullable
+        private final LenderDictionary lenders;
+        private final Map<BigDecimal, BigDecimal> decimals = new HashMap<>();
+
+        Interner(boolean internLenders) {
+            this.lenders = internLenders ? new LenderDictionary() : null;
+        }
+
+        LendingOffer offer(String lender, BigDecimal rate, BigDecimal amount) {
+            return lenders == null ? new LendingOffer(lender, rate, amount)
+                    : new LendingOffer(lenders, lenders.intern(lender), rate, amount);
+        }
+
+        BigDecimal decimal(BigDecimal value) {
+            BigDecimal shared = decimals.get(value);
+            if (shared != null) {
+                return shared;
+            }
+            if (decimals.size() < MAX_DECIMALS) {
+                decimals.put(value, value);
+            }
+            return value;
+        }
     }
 
     private static <T> T onExceptionRethrow(MethodCall<T> methodCall, String failMessage) {
@@ -0,0 +1,510 @@
+package task.loans.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import au.com.bytecode.opencsv.CSVParser;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import task.loans.core.LendingOffer;
+import task.loans.core.Money;
+import task.loans.core.OrderBook;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Validation pass over CSV market data reporting every invalid row, rather than failing on the first one
+ * as {@link CsvInputReader} does, so that a large file is fixed in one go.
+ * <p>
+ * The data is read by the calling thread in blocks of whole lines, and the blocks are parsed on the fork/join pool
+ * in parallel, a bounded number of them at a time. Plain rows are split from the bytes by hand and every cell
+ * is checked before a value is created from it, so invalid rows cost no exceptions. A row is valid if
+ * {@link CsvInputReader} accepts it and the order book can hold it: three cells, a lender name which is not blank,
+ * and a decimal rate and amount, not negative once rounded to the market scales and within the range of the
+ * order book.
+ * The invalid rows are counted, and the ones of the lowest line numbers are reported with the reasons, up to
+ * the limit. On request, the valid rows are aggregated into an order book too, by a builder per block.
+ * <p>
+ * Rows holding a quote or an escape character are split by the same opencsv parser as {@link CsvInputReader}
+ * uses, so that they are unquoted and unescaped exactly as read; line breaks inside quotes are not supported,
+ * the rows are reported as invalid. Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class CsvValidator {
+
+    private static final byte QUOTE = CSVParser.DEFAULT_QUOTE_CHARACTER;
+    private static final byte ESCAPE = CSVParser.DEFAULT_ESCAPE_CHARACTER;
+    private static final int CELLS = 3;
+
+    /**
+     * Absolute value of decimal exponents accepted at most, so that no huge number is ever expanded.
+     */
+    private static final int MAX_EXPONENT = 100;
+
+    /**
+     * Number of characters of an invalid cell quoted in the reason at most.
+     */
+    private static final int MAX_QUOTED_LENGTH = 40;
+
+    private final boolean skipFirstLine;
+    private final byte separator;
+    private final int maxReported;
+    private final int blockSize;
+    private final ForkJoinPool pool;
+
+    private CsvValidator(Builder builder) {
+        this.skipFirstLine = builder.skipFirstLine;
+        this.separator = (byte) builder.separator;
+        this.maxReported = builder.maxReported;
+        this.blockSize = builder.blockSize;
+        this.pool = builder.pool;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Check all the rows of the file.
+     *
+     * @param csvFile market data, plain or gzip-compressed
+     * @return Report of the rows, with no order book.
+     * @throws IOException if the file could not be read
+     */
+    public ValidationReport validate(File csvFile) throws IOException {
+        try (InputStream in = new FileInputStream(csvFile)) {
+            return scan(in, false);
+        }
+    }
+
+    /**
+     * Check all the rows of the stream up to its end. The stream is not closed.
+     *
+     * @param csvStream market data, plain or gzip-compressed
+     * @return Report of the rows, with no order book.
+     * @throws IOException if the stream could not be read
+     */
+    public ValidationReport validate(InputStream csvStream) throws IOException {
+        return scan(csvStream, false);
+    }
+
+    /**
+     * Check all the rows of the file and aggregate the valid ones into the order book.
+     *
+     * @param csvFile market data, plain or gzip-compressed
+     * @return Report of the rows, with the order book of the valid ones.
+     * @throws IOException              if the file could not be read
+     * @throws IllegalArgumentException if the amounts of the valid rows sum up beyond the order book range
+     */
+    public ValidationReport readBook(File csvFile) throws IOException {
+        try (InputStream in = new FileInputStream(csvFile)) {
+            return scan(in, true);
+        }
+    }
+
+    /**
+     * Check all the rows of the stream up to its end and aggregate the valid ones into the order book.
+     * The stream is not closed.
+     *
+     * @see #readBook(File)
+     */
+    public ValidationReport readBook(InputStream csvStream) throws IOException {
+        return scan(csvStream, true);
+    }
+
+    private ValidationReport scan(InputStream csvStream, boolean buildBook) throws IOException {
+        Report report = new Report(buildBook);
+        Deque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        int maxPending = Math.max(2, pool.getParallelism() * 2);
+        try (InputStream in = MarketInput.open(new CloseShieldInputStream(csvStream))) {
+            byte[] data = new byte[blockSize];
+            int length = 0;
+            boolean first = true;
+            for (int read = in.read(data); read >= 0; read = in.read(data, length, data.length - length)) {
+                length += read;
+                if (length < data.length) {
+                    continue;
+                }
+                int end = lastLineEnd(data, length);
+                if (end == 0) {
+                    // a line longer than the block
+                    data = Arrays.copyOf(data, data.length * 2);
+                    continue;
+                }
+                byte[] next = new byte[Math.max(blockSize, 2 * (length - end))];
+                System.arraycopy(data, end, next, 0, length - end);
+                pending.add(submit(data, end, first && skipFirstLine, buildBook));
+                first = false;
+                data = next;
+                length -= end;
+                while (pending.size() > maxPending) {
+                    report.add(pending.poll().join());
+                }
+            }
+            if (length > 0) {
+                pending.add(submit(data, length, first && skipFirstLine, buildBook));
+            }
+        } catch (IOException | RuntimeException ex) {
+            pending.forEach(task -> task.cancel(false));
+            throw ex;
+        }
+        for (ForkJoinTask<Block> task : pending) {
+            report.add(task.join());
+        }
+        return report.build();
+    }
+
+    private ForkJoinTask<Block> submit(byte[] data, int length, boolean skipFirst, boolean buildBook) {
+        return pool.submit(() -> new Block(buildBook).parse(data, length, skipFirst));
+    }
+
+    /**
+     * @return Index after the last line feed of the data, 0 if there is none.
+     */
+    private static int lastLineEnd(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Totals of the blocks added in order.
+     */
+    private final class Report {
+        private final List<ValidationReport.InvalidRow> reported = new ArrayList<>();
+        private final OrderBook.Builder book;
+        private long lines;
+        private long rows;
+        private long invalidRows;
+
+        Report(boolean buildBook) {
+            this.book = buildBook ? OrderBook.builder() : null;
+        }
+
+        void add(Block block) {
+            for (ValidationReport.InvalidRow row : block.reported) {
+                if (reported.size() == maxReported) {
+                    break;
+                }
+                reported.add(new ValidationReport.InvalidRow(lines + row.getLine(), row.getReason()));
+            }
+            lines += block.lines;
+            rows += block.rows;
+            invalidRows += block.invalidRows;
+            if (book != null) {
+                book.addAll(block.book);
+            }
+        }
+
+        ValidationReport build() {
+            return new ValidationReport(rows, invalidRows, reported, book == null ? null : book.build());
+        }
+    }
+
+    /**
+     * Rows of a block of whole lines, parsed by one thread, with the cells of the current row.
+     */
+    private final class Block {
+        private final List<ValidationReport.InvalidRow> reported = new ArrayList<>();
+        private final OrderBook.Builder book;
+        private int lines;
+        private int rows;
+        private int invalidRows;
+
+        /**
+         * Cells of the current row unquoted, and their bounds in it.
+         */
+        private byte[] cells = new byte[256];
+        private final int[] cellStarts = new int[CELLS];
+        private final int[] cellEnds = new int[CELLS];
+
+        private BigDecimal value;
+
+        /**
+         * Parser of the rows with quotes or escapes, configured as the one of {@link CsvInputReader}'s reader.
+         */
+        private final CSVParser parser = new CSVParser((char) separator, CSVParser.DEFAULT_QUOTE_CHARACTER,
+                CSVParser.DEFAULT_ESCAPE_CHARACTER, CSVParser.DEFAULT_STRICT_QUOTES,
+                CSVParser.DEFAULT_IGNORE_LEADING_WHITESPACE);
+
+        Block(boolean buildBook) {
+            this.book = buildBook ? OrderBook.builder() : null;
+        }
+
+        /**
+         * @param skipFirst whether the first line is not a row, e.g. a header
+         * @return This block, with the line numbers relative to it.
+         */
+        Block parse(byte[] data, int length, boolean skipFirst) {
+            for (int start = 0; start < length; ) {
+                int end = start;
+                while (end < length && data[end] != '\n') {
+                    end++;
+                }
+                lines++;
+                if (!skipFirst || lines > 1) {
+                    rows++;
+                    String reason = check(data, start, end > start && data[end - 1] == '\r' ? end - 1 : end);
+                    if (reason != null) {
+                        invalidRows++;
+                        if (reported.size() < maxReported) {
+                            reported.add(new ValidationReport.InvalidRow(lines, reason));
+                        }
+                    }
+                }
+                start = end + 1;
+            }
+            return this;
+        }
+
+        /**
+         * Check the row, and add it to the book if valid and requested.
+         *
+         * @return Reason the row is invalid, or {@code null} if it is valid.
+         */
+        @Nullable
+        private String check(byte[] data, int start, int end) {
+            int count = split(data, start, end);
+            if (count < 0) {
+                return "Quote is not closed";
+            }
+            if (count != CELLS) {
+                return "Expected " + CELLS + " cells, found " + count;
+            }
+            if (isBlank(0)) {
+                return "Lender name is blank";
+            }
+            String reason = decimalCell(1, "Rate", Money::rate);
+            if (reason != null) {
+                return reason;
+            }
+            BigDecimal offerRate = value;
+            reason = decimalCell(2, "Amount", Money::decimal);
+            if (reason != null) {
+                return reason;
+            }
+            if (book != null) {
+                book.add(new LendingOffer(new String(cells, cellStarts[0], cellEnds[0] - cellStarts[0], UTF_8),
+                        offerRate, value));
+            }
+            return null;
+        }
+
+        /**
+         * Split the row into the cells at the separators, by hand if it holds neither a quote nor an escape
+         * character, by the parser otherwise.
+         *
+         * @return Number of the cells, or -1 if a quote is not closed.
+         */
+        private int split(byte[] data, int start, int end) {
+            if (cells.length < end - start) {
+                cells = new byte[Math.max(end - start, cells.length * 2)];
+            }
+            int count = 0;
+            int out = 0;
+            int cellStart = 0;
+            for (int i = start; i < end; i++) {
+                byte b = data[i];
+                if (b == QUOTE || b == ESCAPE) {
+                    return parse(data, start, end);
+                }
+                if (b == separator) {
+                    setCell(count++, cellStart, out);
+                    cellStart = out;
+                } else {
+                    cells[out++] = b;
+                }
+            }
+            setCell(count++, cellStart, out);
+            return count;
+        }
+
+        /**
+         * Split the row into the cells by the parser, unquoting and unescaping them.
+         *
+         * @return Number of the cells, or -1 if a quote is not closed.
+         */
+        private int parse(byte[] data, int start, int end) {
+            String[] parsed;
+            try {
+                parsed = parser.parseLine(new String(data, start, end - start, UTF_8));
+            } catch (IOException ex) {
+                return -1;
+            }
+            int out = 0;
+            for (int cell = 0; cell < Math.min(parsed.length, CELLS); cell++) {
+                byte[] bytes = parsed[cell].getBytes(UTF_8);
+                if (cells.length < out + bytes.length) {
+                    cells = Arrays.copyOf(cells, Math.max(out + bytes.length, cells.length * 2));
+                }
+                System.arraycopy(bytes, 0, cells, out, bytes.length);
+                setCell(cell, out, out + bytes.length);
+                out += bytes.length;
+            }
+            return parsed.length;
+        }
+
+        private void setCell(int cell, int start, int end) {
+            if (cell < CELLS) {
+                cellStarts[cell] = start;
+                cellEnds[cell] = end;
+            }
+        }
+
+        private boolean isBlank(int cell) {
+            for (int i = cellStarts[cell]; i < cellEnds[cell]; i++) {
+                byte b = cells[i];
+                if (b != ' ' && (b < '\t' || b > '\r') && (b < 0x1C || b > 0x1F)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Check the cell is a decimal which is not negative once rounded to the market scale and fits the order book,
+         * and keep its value rounded.
+         *
+         * @param round creates the value rounded to the market scale of a valid decimal
+         * @return Reason the cell is invalid, or {@code null} if it is valid.
+         */
+        @Nullable
+        private String decimalCell(int cell, String name, Function<String, BigDecimal> round) {
+            if (!isDecimal(cells, cellStarts[cell], cellEnds[cell])) {
+                return name + " is not a decimal: " + quote(cell);
+            }
+            BigDecimal rounded = round.apply(new String(cells, cellStarts[cell], cellEnds[cell] - cellStarts[cell],
+                    US_ASCII));
+            if (rounded.signum() < 0) {
+                return name + " is negative: " + quote(cell);
+            }
+            if (rounded.unscaledValue().bitLength() >= Long.SIZE) {
+                return name + " is out of supported range: " + quote(cell);
+            }
+            value = rounded;
+            return null;
+        }
+
+        private String quote(int cell) {
+            String text = new String(cells, cellStarts[cell], cellEnds[cell] - cellStarts[cell], UTF_8);
+            return text.length() <= MAX_QUOTED_LENGTH ? text : text.substring(0, MAX_QUOTED_LENGTH) + "...";
+        }
+    }
+
+    /**
+     * @return {@code true} if the bytes are a decimal as {@link BigDecimal#BigDecimal(String)} accepts,
+     * with the exponent of at most {@value #MAX_EXPONENT} in absolute value.
+     */
+    static boolean isDecimal(byte[] bytes, int start, int end) {
+        int i = start;
+        if (i < end && (bytes[i] == '+' || bytes[i] == '-')) {
+            i++;
+        }
+        int digits = 0;
+        for (; i < end && isDigit(bytes[i]); i++) {
+            digits++;
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && isDigit(bytes[i]); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            if (i < end && (bytes[i] == '+' || bytes[i] == '-')) {
+                i++;
+            }
+            int exponentStart = i;
+            int exponent = 0;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                exponent = Math.min(exponent * 10 + bytes[i] - '0', MAX_EXPONENT + 1);
+            }
+            if (i == exponentStart || exponent > MAX_EXPONENT) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    public static final class Builder {
+        private boolean skipFirstLine;
+        private char separator = CSVParser.DEFAULT_SEPARATOR;
+        private int maxReported = 100;
+        private int blockSize = 1 << 20;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder() {
+        }
+
+        /**
+         * @param skipFirstLine whether the first line is not a row, e.g. a header
+         */
+        public Builder skipFirstLine(boolean skipFirstLine) {
+            this.skipFirstLine = skipFirstLine;
+            return this;
+        }
+
+        /**
+         * @param separator cells separator, an ASCII character other than the quote and the escape character
+         */
+        public Builder separator(char separator) {
+            checkArgument(separator < 0x80 && separator != QUOTE && separator != ESCAPE
+                            && separator != '\n' && separator != '\r',
+                    "Separator must be an ASCII character, not a quote, escape or line break: %s", separator);
+            this.separator = separator;
+            return this;
+        }
+
+        /**
+         * @param maxReported number of the invalid rows reported at most, the rest are only counted
+         */
+        public Builder maxReported(int maxReported) {
+            checkArgument(maxReported >= 0, "Number of the rows reported must be non-negative");
+            this.maxReported = maxReported;
+            return this;
+        }
+
+        /**
+         * @param blockSize size of the blocks of lines parsed in parallel, bytes; grown for longer lines
+         */
+        public Builder blockSize(int blockSize) {
+            checkArgument(blockSize > 0, "Block size must be positive");
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public CsvValidator build() {
+            return new CsvValidator(this);
+        }
+    }
+}
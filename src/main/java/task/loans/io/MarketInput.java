@@ -0,0 +1,62 @@
+package task.loans.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Opening of raw market data sources.
+ * <p>
+ * Gzip-compressed input is recognized by its magic header and inflated on the fly,
+ * so neither the caller nor the file system has to keep an uncompressed copy.
+ */
+@ParametersAreNonnullByDefault
+public class MarketInput {
+
+    /**
+     * Read buffer size used for raw and inflated market data.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private MarketInput() {
+        // no instantiation
+    }
+
+    /**
+     * Wrap the source into a buffered stream of plain market data.
+     *
+     * @param source raw data stream, plain or gzip-compressed
+     * @return Stream of uncompressed data. Closing it closes the source as well.
+     * @throws IOException if the stream header could not be read
+     */
+    public static InputStream open(InputStream source) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(source, BUFFER_SIZE);
+        if (isGzip(buffered)) {
+            return new AsyncInflatingInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    /**
+     * @see #open(InputStream)
+     */
+    public static InputStream open(ReadableByteChannel source) throws IOException {
+        return open(Channels.newInputStream(source));
+    }
+
+    private static boolean isGzip(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        try {
+            return in.read() == GZIP_MAGIC_FIRST && in.read() == GZIP_MAGIC_SECOND;
+        } finally {
+            in.reset();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package task.loans.io;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.regex.Pattern;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -17,6 +18,8 @@ public class ResultFormatter {
 
     private static final String RESOURCE_NAME = "result_format.txt";
     private static final String FORMAT = readFormatFromResource();
+    private static final Pattern LINE_BREAK = Pattern.compile("\\R");
+    private static final String LINE_SEPARATOR = "; ";
     private static final String UNAVAILABLE = "Lending for the specified amount is currently unavailable";
 
     public String format(Loan result) {
@@ -27,6 +30,13 @@ public class ResultFormatter {
                 result.getMonthlyRepayment(), result.getTotalRepayment());
     }
 
+    /**
+     * @return The same as {@link #format(Loan)}, but in one line.
+     */
+    public String formatLine(Loan result) {
+        return LINE_BREAK.matcher(format(result)).replaceAll(LINE_SEPARATOR);
+    }
+
     private static String readFormatFromResource() {
         try {
             return String.join("",
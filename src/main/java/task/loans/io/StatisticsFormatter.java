@@ -0,0 +1,88 @@
+package task.loans.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.MarketStatistics;
+import task.loans.core.MarketStatistics.DepthLevel;
+
+/**
+ * JSON export of market statistics.
+ */
+@ParametersAreNonnullByDefault
+public class StatisticsFormatter {
+
+    /**
+     * Supply shares of the exported rate percentiles, named after them.
+     */
+    private static final String[] PERCENTILES = {"1", "5", "10", "25", "50", "75", "90", "95", "99"};
+
+    private final boolean withDepth;
+
+    /**
+     * Create new formatter instance.
+     *
+     * @param withDepth flag, if {@code true} – the depth curve is exported as well, one element per rate level
+     */
+    public StatisticsFormatter(boolean withDepth) {
+        this.withDepth = withDepth;
+    }
+
+    public String format(MarketStatistics statistics) {
+        StringBuilder json = new StringBuilder();
+        try {
+            write(statistics, json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);     // never thrown by StringBuilder
+        }
+        return json.toString();
+    }
+
+    /**
+     * Write the statistics as JSON object. The depth curve is written level by level, with no intermediate copy.
+     *
+     * @param statistics market statistics
+     * @param out        destination
+     * @throws IOException if thrown by the destination
+     */
+    public void write(MarketStatistics statistics, Appendable out) throws IOException {
+        out.append("{\n");
+        out.append("  \"levels\": ").append(String.valueOf(statistics.getLevels())).append(",\n");
+        out.append("  \"totalSupply\": ").append(number(statistics.getTotalSupply())).append(",\n");
+        out.append("  \"minRate\": ").append(number(statistics.getMinRate())).append(",\n");
+        out.append("  \"maxRate\": ").append(number(statistics.getMaxRate())).append(",\n");
+        out.append("  \"averageRate\": ").append(number(statistics.getAverageRate())).append(",\n");
+        out.append("  \"percentileRates\": {");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            BigDecimal fraction = new BigDecimal(PERCENTILES[i]).movePointLeft(2);
+            out.append(i == 0 ? "" : ",").append("\n    \"p").append(PERCENTILES[i]).append("\": ")
+                    .append(number(statistics.getPercentileRate(fraction)));
+        }
+        out.append("\n  }");
+        if (withDepth) {
+            out.append(",\n  \"depth\": [");
+            String separator = "";
+            for (DepthLevel level : statistics.getDepth()) {
+                out.append(separator).append("\n    {\"rate\": ").append(number(level.getRate()))
+                        .append(", \"amount\": ").append(number(level.getAmount()))
+                        .append(", \"cumulativeAmount\": ").append(number(level.getCumulativeAmount()))
+                        .append('}');
+                separator = ",";
+            }
+            out.append("\n  ]");
+        }
+        out.append("\n}");
+    }
+
+    private static String number(Optional<BigDecimal> value) {
+        return value.map(StatisticsFormatter::number).orElse("null");
+    }
+
+    private static String number(BigDecimal value) {
+        return value.toPlainString();
+    }
+}
@@ -0,0 +1,106 @@
+package task.loans.io;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.core.OrderBook;
+
+/**
+ * Outcome of a validation pass over market data, see {@link CsvValidator}: the counts of the rows,
+ * the invalid rows found first, and the order book of the valid ones if it was requested.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public final class ValidationReport {
+
+    private final long rows;
+    private final long invalidRows;
+    private final List<InvalidRow> reported;
+    private final OrderBook book;
+
+    ValidationReport(long rows, long invalidRows, List<InvalidRow> reported, @Nullable OrderBook book) {
+        this.rows = rows;
+        this.invalidRows = invalidRows;
+        this.reported = Collections.unmodifiableList(reported);
+        this.book = book;
+    }
+
+    /**
+     * @return Number of the data rows scanned, the header line skipped is not counted.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getValidRows() {
+        return rows - invalidRows;
+    }
+
+    public long getInvalidRows() {
+        return invalidRows;
+    }
+
+    /**
+     * @return The invalid rows of the lowest line numbers in order, up to the limit of the validator.
+     */
+    public List<InvalidRow> getReported() {
+        return reported;
+    }
+
+    /**
+     * @return {@code true} if more rows are invalid than reported.
+     */
+    public boolean isTruncated() {
+        return invalidRows > reported.size();
+    }
+
+    /**
+     * @return Order book of the valid rows, if it was requested.
+     */
+    public Optional<OrderBook> getBook() {
+        return Optional.ofNullable(book);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("rows", rows)
+                .append("invalidRows", invalidRows)
+                .append("reported", reported)
+                .toString();
+    }
+
+    /**
+     * Row rejected, with the reason. Instances of this class are immutable.
+     */
+    public static final class InvalidRow {
+        private final long line;
+        private final String reason;
+
+        InvalidRow(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * @return Line number of the row in the data, starting from 1, header line included.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + reason;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package task.loans.load;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Distribution of the requested loan amounts, in whole pence.
+ */
+@ParametersAreNonnullByDefault
+@FunctionalInterface
+public interface AmountDistribution {
+
+    /**
+     * @return Next amount, positive, with no fractions of a penny.
+     */
+    BigDecimal next(Random random);
+
+    /**
+     * Parse distribution specification, amounts in pounds:
+     * <ul>
+     * <li>{@code fixed:AMOUNT}</li>
+     * <li>{@code uniform:MIN:MAX}</li>
+     * <li>{@code normal:MEAN:STDDEV}, truncated to {@code [0.01, 2 * MEAN]}</li>
+     * </ul>
+     *
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    static AmountDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    checkArgument(parts.length == 2, "fixed:AMOUNT expected");
+                    return fixed(pence(parts[1]));
+                case "uniform":
+                    checkArgument(parts.length == 3, "uniform:MIN:MAX expected");
+                    return uniform(pence(parts[1]), pence(parts[2]));
+                case "normal":
+                    checkArgument(parts.length == 3, "normal:MEAN:STDDEV expected");
+                    return normal(pence(parts[1]), pence(parts[2]));
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + parts[0]);
+            }
+        } catch (NumberFormatException | ArithmeticException ex) {
+            throw new IllegalArgumentException("Malformed amount distribution: " + spec, ex);
+        }
+    }
+
+    static AmountDistribution fixed(long pence) {
+        checkArgument(pence > 0, "Amount must be positive");
+        BigDecimal amount = BigDecimal.valueOf(pence, 2);
+        return random -> amount;
+    }
+
+    static AmountDistribution uniform(long minPence, long maxPence) {
+        checkArgument(minPence > 0 && minPence <= maxPence, "Amounts range must be positive and non-empty");
+        long span = maxPence - minPence + 1;
+        return random -> BigDecimal.valueOf(minPence + (long) (random.nextDouble() * span), 2);
+    }
+
+    static AmountDistribution normal(long meanPence, long deviationPence) {
+        checkArgument(meanPence > 0 && deviationPence >= 0, "Mean must be positive, deviation non-negative");
+        return random -> {
+            long pence = Math.round(meanPence + random.nextGaussian() * deviationPence);
+            return BigDecimal.valueOf(Math.max(1, Math.min(2 * meanPence, pence)), 2);
+        };
+    }
+
+    static long pence(String pounds) {
+        return new BigDecimal(pounds).movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,122 @@
+package task.loans.load;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * High dynamic range histogram of non-negative values, e.g. latencies in nanoseconds.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly. Larger ones are counted in log-linear buckets:
+ * every power of two range is split into {@value #HALF_SUB_BUCKETS} equal sub-buckets, so any value
+ * is reported with relative error below 0.1%, from nanoseconds to days, in a fixed amount of memory.
+ * <p>
+ * Instances of this class are not thread-safe: record into one histogram per thread and {@link #add} them up.
+ */
+@ParametersAreNonnullByDefault
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = Long.SIZE - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS];
+    private long totalCount;
+    private long max;
+    private double sum;
+
+    /**
+     * @param value non-negative value
+     */
+    public void record(long value) {
+        checkArgument(value >= 0, "Value must be non-negative");
+        counts[index(value)]++;
+        totalCount++;
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    /**
+     * Add all the values recorded by the other histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        max = Math.max(max, other.max);
+        sum += other.sum;
+    }
+
+    /**
+     * Forget all the values recorded, to reuse the histogram.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return Mean of the values recorded, 0 if none.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * @param percentile percentile in range {@code [0, 100]}
+     * @return The highest value equivalent to the smallest value such that the percentile
+     * of the values recorded are not greater than it; 0 if none recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be in range [0, 100]");
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return The greatest value counted in the bucket, {@link Long#MAX_VALUE} if its range reaches beyond.
+     */
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        if (shift >= Long.SIZE - 1 || subBucket + 1 > Long.MAX_VALUE >>> shift) {
+            return Long.MAX_VALUE;
+        }
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
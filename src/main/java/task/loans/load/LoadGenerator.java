@@ -0,0 +1,217 @@
+package task.loans.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Loan;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Drives a quote path with requests from a number of threads, and records the latencies.
+ * <p>
+ * With a target rate, the load is open-loop: every thread sends its requests by a fixed schedule,
+ * and the latency of a request is measured from the time it was scheduled at, not from the time
+ * it was actually sent. So a stall delaying the following requests shows in all their latencies,
+ * instead of being hidden by the generator waiting for it (coordinated omission).
+ * Without a target rate, every thread sends its next request as soon as the previous one completes.
+ */
+@ParametersAreNonnullByDefault
+public class LoadGenerator {
+
+    private final int threads;
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final AmountDistribution amounts;
+    private final long seed;
+
+    private LoadGenerator(Builder builder) {
+        this.threads = builder.threads;
+        this.rate = builder.rate;
+        this.duration = builder.duration;
+        this.warmup = builder.warmup;
+        this.amounts = builder.amounts;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run the load, blocking for the warm-up and the measured duration.
+     *
+     * @param targets opens quote path per thread
+     * @return Latencies and throughput of the requests scheduled after the warm-up.
+     * @throws IllegalStateException if a target could not be opened or closed
+     */
+    public LoadReport run(QuoteTarget.Factory targets) throws InterruptedException {
+        long period = rate > 0 ? Math.max(1, Math.round(threads * 1e9 / rate)) : 0;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Worker> workers = new ArrayList<>(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(targets, start + period * i / threads, period, measureFrom, end,
+                    new Random(seed + i), done, failure);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Quote target failed", failure.get());
+        }
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        long errors = 0;
+        long unavailable = 0;
+        for (Worker worker : workers) {
+            latencies.add(worker.latencies);
+            errors += worker.errors;
+            unavailable += worker.unavailable;
+        }
+        return new LoadReport(latencies, errors, unavailable, duration);
+    }
+
+    private class Worker implements Runnable {
+        private final QuoteTarget.Factory targets;
+        private final long first;
+        private final long period;
+        private final long measureFrom;
+        private final long end;
+        private final Random random;
+        private final CountDownLatch done;
+        private final AtomicReference<Exception> failure;
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long errors;
+        private long unavailable;
+
+        Worker(QuoteTarget.Factory targets, long first, long period, long measureFrom, long end,
+               Random random, CountDownLatch done, AtomicReference<Exception> failure) {
+            this.targets = targets;
+            this.first = first;
+            this.period = period;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.random = random;
+            this.done = done;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try (QuoteTarget target = targets.open()) {
+                long scheduled = first;
+                while (scheduled < end) {
+                    waitUntil(scheduled);
+                    long sent = period > 0 ? scheduled : System.nanoTime();
+                    Loan loan = quote(target);
+                    long latency = System.nanoTime() - sent;
+                    if (sent >= measureFrom) {
+                        latencies.record(latency);
+                        if (loan == null) {
+                            errors++;
+                        } else if (loan.getRate().signum() < 0) {
+                            unavailable++;
+                        }
+                    }
+                    scheduled = period > 0 ? scheduled + period : System.nanoTime();
+                }
+            } catch (Exception ex) {
+                failure.compareAndSet(null, ex);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * @return Loan quoted or {@code null} if the request failed.
+         */
+        @Nullable
+        private Loan quote(QuoteTarget target) {
+            try {
+                return target.quote(amounts.next(random));
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+
+        private void waitUntil(long time) {
+            for (long now = System.nanoTime(); now < time; now = System.nanoTime()) {
+                LockSupport.parkNanos(time - now);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int threads = 1;
+        private double rate;
+        private Duration duration = Duration.ofSeconds(10);
+        private Duration warmup = Duration.ofSeconds(2);
+        private AmountDistribution amounts = AmountDistribution.uniform(1_000_00, 15_000_00);
+        private long seed = 42;
+
+        private Builder() {
+        }
+
+        /**
+         * @param threads number of load generating threads, positive value
+         */
+        public Builder threads(int threads) {
+            checkArgument(threads > 0, "Number of threads must be positive");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param rate total requests per second, 0 for as many as the target can serve
+         */
+        public Builder rate(double rate) {
+            checkArgument(rate >= 0, "Rate must be non-negative");
+            this.rate = rate;
+            return this;
+        }
+
+        public Builder duration(Duration duration) {
+            checkArgument(!duration.isNegative() && !duration.isZero(), "Duration must be positive");
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder warmup(Duration warmup) {
+            checkArgument(!warmup.isNegative(), "Warm-up must be non-negative");
+            this.warmup = warmup;
+            return this;
+        }
+
+        public Builder amounts(AmountDistribution amounts) {
+            this.amounts = amounts;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+}
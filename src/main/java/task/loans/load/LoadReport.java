@@ -0,0 +1,75 @@
+package task.loans.load;
+
+import java.time.Duration;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Outcome of a load run: latencies of the requests and throughput.
+ */
+@ParametersAreNonnullByDefault
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final LatencyHistogram latencies;
+    private final long errors;
+    private final long unavailable;
+    private final Duration duration;
+
+    LoadReport(LatencyHistogram latencies, long errors, long unavailable, Duration duration) {
+        this.latencies = latencies;
+        this.errors = errors;
+        this.unavailable = unavailable;
+        this.duration = duration;
+    }
+
+    /**
+     * @return Latencies of the requests in nanoseconds, failed ones included.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getRequests() {
+        return latencies.getTotalCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Number of the requests quoted as unavailable, i.e. exceeding the market supply.
+     */
+    public long getUnavailable() {
+        return unavailable;
+    }
+
+    /**
+     * @return Requests completed per second of the measured duration.
+     */
+    public double getThroughput() {
+        return latencies.getTotalCount() * 1e9 / duration.toNanos();
+    }
+
+    /**
+     * @return Human readable report, latencies in microseconds.
+     */
+    public String format() {
+        StringBuilder report = new StringBuilder()
+                .append(String.format("Requests: %d, errors: %d, unavailable: %d%n",
+                        getRequests(), errors, unavailable))
+                .append(String.format("Throughput: %.1f requests/s%n", getThroughput()))
+                .append(String.format("Latency, us: mean %.1f", latencies.getMean() / 1e3));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(", p%s %.1f", formatPercentile(percentile),
+                    latencies.getValueAtPercentile(percentile) / 1e3));
+        }
+        return report.append(String.format(", max %.1f", latencies.getMax() / 1e3)).toString();
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,69 @@
+package task.loans.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.core.PartitionedCalculator;
+import task.loans.server.QuoteClient;
+
+/**
+ * Quote path under load, used by a single thread.
+ */
+@ParametersAreNonnullByDefault
+public interface QuoteTarget extends Closeable {
+
+    Loan quote(BigDecimal amount) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        // nothing to release
+    }
+
+    /**
+     * Opens one target per load generating thread.
+     */
+    @FunctionalInterface
+    interface Factory {
+        QuoteTarget open() throws IOException;
+    }
+
+    /**
+     * @return Targets calling the calculator in-process; it is shared by all the threads.
+     */
+    static Factory inProcess(LoanCalculator calculator, int term) {
+        return () -> amount -> calculator.calculate(amount, term);
+    }
+
+    /**
+     * @return Targets quoting by the calculator over the partitions; it is shared by all the threads.
+     */
+    static Factory partitioned(PartitionedCalculator calculator, int term) {
+        return () -> amount -> calculator.calculate(amount, term);
+    }
+
+    /**
+     * @return Targets sending one request at a time over their own connection to the quote server.
+     */
+    static Factory remote(InetSocketAddress server, int term) {
+        return () -> {
+            QuoteClient client = new QuoteClient(server);
+            return new QuoteTarget() {
+                @Override
+                public Loan quote(BigDecimal amount) throws IOException {
+                    return client.quote(amount, term);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    client.close();
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package task.loans.partition;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Partition;
+
+/**
+ * Binary partition protocol: fixed-size frames in network byte order, one request at a time per connection.
+ * <p>
+ * Request, {@value #REQUEST_SIZE} bytes:
+ * <pre>
+ *  int  operation: {@value #SUMMARY} or {@value #CUT}
+ *  long amount to cut at, in pence; 0 for the summary
+ * </pre>
+ * Response, {@value #RESPONSE_SIZE} bytes:
+ * <pre>
+ *  int  status: {@value #OK} or {@value #INVALID}
+ *  long number of levels, or rate of the level covering the amount
+ *  long the lowest rate, or amount of the partition's levels below the cut
+ *  long the highest rate, or rate-weighted amount of the levels below the cut
+ *  long total amount, 0 for a cut
+ *  long total rate-weighted amount, 0 for a cut
+ * </pre>
+ * Rates are in thousandths, see {@link Partition}.
+ */
+@ParametersAreNonnullByDefault
+class PartitionProtocol {
+
+    static final int REQUEST_SIZE = 12;
+    static final int RESPONSE_SIZE = 44;
+
+    static final int SUMMARY = 1;
+    static final int CUT = 2;
+
+    static final int OK = 0;
+    static final int INVALID = 1;
+
+    private PartitionProtocol() {
+        // no instantiation
+    }
+
+    /**
+     * Decode request, answer it from the partition and encode response.
+     */
+    static void serve(ByteBuffer in, ByteBuffer out, Partition partition) throws IOException {
+        int operation = in.getInt();
+        long amount = in.getLong();
+        if (operation == SUMMARY) {
+            Partition.Summary summary = partition.getSummary();
+            putResponse(out, OK, summary.getLevels(), summary.getMinRate(), summary.getMaxRate(),
+                    summary.getTotalAmount(), summary.getWeightedSum());
+            return;
+        }
+        if (operation != CUT || amount < 0 || amount > partition.getSummary().getTotalAmount()
+                || partition.getSummary().getLevels() == 0) {
+            putResponse(out, INVALID, 0, 0, 0, 0, 0);
+            return;
+        }
+        Partition.Cut cut = partition.cut(amount);
+        putResponse(out, OK, cut.getRate(), cut.getAmountBelow(), cut.getWeightedSumBelow(), 0, 0);
+    }
+
+    static void putRequest(ByteBuffer out, int operation, long amount) {
+        out.putInt(operation);
+        out.putLong(amount);
+    }
+
+    private static void putResponse(ByteBuffer out, int status, long... values) {
+        out.putInt(status);
+        for (long value : values) {
+            out.putLong(value);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the request was invalid
+     */
+    static Partition.Summary getSummary(ByteBuffer in) {
+        checkStatus(in);
+        return new Partition.Summary((int) in.getLong(), in.getLong(), in.getLong(), in.getLong(), in.getLong());
+    }
+
+    /**
+     * @throws IllegalStateException if the request was invalid
+     */
+    static Partition.Cut getCut(ByteBuffer in) {
+        checkStatus(in);
+        return new Partition.Cut(in.getLong(), in.getLong(), in.getLong());
+    }
+
+    private static void checkStatus(ByteBuffer in) {
+        int status = in.getInt();
+        if (status != OK) {
+            throw new IllegalStateException("Request rejected by the partition with status " + status);
+        }
+    }
+
+    /**
+     * Fill the buffer from the channel, then flip it for reading.
+     *
+     * @throws EOFException if the channel ended first
+     */
+    static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by the peer");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Flip the buffer filled and write it to the channel whole.
+     */
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
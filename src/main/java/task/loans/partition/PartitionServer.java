@@ -0,0 +1,134 @@
+package task.loans.partition;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.Partition;
+
+import static task.loans.partition.PartitionProtocol.REQUEST_SIZE;
+import static task.loans.partition.PartitionProtocol.RESPONSE_SIZE;
+
+/**
+ * Serves a partition of the market to the coordinators, see {@link RemotePartition}.
+ * <p>
+ * A coordinator keeps a few long-lived connections and sends one small request at a time on each,
+ * so every connection is served by its own thread with blocking I/O.
+ */
+@ParametersAreNonnullByDefault
+public class PartitionServer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionServer.class);
+
+    private final Partition partition;
+    private final ServerSocketChannel serverChannel;
+    private final Thread acceptor;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * Create instance and bind it to the address. No connections are accepted until {@link #start()}.
+     *
+     * @param partition partition to serve
+     * @param address   address to listen at, port 0 for any free one
+     * @throws IOException if the server socket could not be opened or bound
+     */
+    public PartitionServer(Partition partition, InetSocketAddress address) throws IOException {
+        this.partition = partition;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        this.acceptor = new Thread(this::accept, "partition-acceptor");
+    }
+
+    /**
+     * Start accepting connections.
+     */
+    public void start() {
+        acceptor.start();
+        logger.debug("Partition server listening at {}: {}", getAddress(), partition.getSummary());
+    }
+
+    /**
+     * @return Address the server is listening at.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Server socket is closed", ex);
+        }
+    }
+
+    /**
+     * Stop accepting, close all the connections and wait for the acceptor to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                connections.add(channel);
+                Thread thread = new Thread(() -> serve(channel),
+                        "partition-connection-" + nextConnection.getAndIncrement());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (ClosedChannelException ex) {
+            // closed
+        } catch (IOException ex) {
+            logger.error("Partition server stopped accepting connections", ex);
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ByteBuffer request = ByteBuffer.allocateDirect(REQUEST_SIZE);
+        ByteBuffer response = ByteBuffer.allocateDirect(RESPONSE_SIZE);
+        try {
+            while (true) {
+                PartitionProtocol.readFully(channel, request);
+                PartitionProtocol.serve(request, response, partition);
+                PartitionProtocol.writeFully(channel, response);
+            }
+        } catch (EOFException | ClosedChannelException ex) {
+            // disconnected
+        } catch (IOException ex) {
+            logger.warn("Partition connection failed", ex);
+        } finally {
+            connections.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close partition connection", ex);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package task.loans.partition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Partition;
+
+import static task.loans.partition.PartitionProtocol.REQUEST_SIZE;
+import static task.loans.partition.PartitionProtocol.RESPONSE_SIZE;
+
+/**
+ * Partition served by a {@link PartitionServer}, possibly in another process or on another node.
+ * <p>
+ * The summary is fetched once on connecting. Every cut takes an idle connection, or opens one if there is none,
+ * and returns it when answered: threads quoting concurrently do not wait for each other, and the number
+ * of connections grows to the number of the threads at most. Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class RemotePartition implements Partition, Closeable {
+
+    private final InetSocketAddress address;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final Partition.Summary summary;
+    private volatile boolean closed;
+
+    private RemotePartition(InetSocketAddress address) throws IOException {
+        this.address = address;
+        Connection connection = new Connection(address);
+        try {
+            this.summary = connection.summary();
+        } catch (IOException | RuntimeException ex) {
+            connection.close();
+            throw ex;
+        }
+        idle.add(connection);
+    }
+
+    /**
+     * Connect to the partition and fetch its summary.
+     *
+     * @param address partition server address
+     * @throws IOException if the connection could not be established
+     */
+    public static RemotePartition connect(InetSocketAddress address) throws IOException {
+        return new RemotePartition(address);
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public Summary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @throws IOException           if the connection failed, it is closed then
+     * @throws IllegalStateException if the partition rejected the amount, the connection is kept
+     */
+    @Override
+    public Cut cut(long amount) throws IOException {
+        if (closed) {
+            throw new IOException("Partition " + address + " is closed");
+        }
+        Connection connection = idle.poll();
+        if (connection == null) {
+            connection = new Connection(address);
+        }
+        try {
+            Cut cut = connection.cut(amount);
+            release(connection);
+            return cut;
+        } catch (IOException ex) {
+            connection.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            release(connection);
+            throw ex;
+        }
+    }
+
+    /**
+     * Close the idle connections, and the busy ones once released.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Connection connection = idle.poll(); connection != null; connection = idle.poll()) {
+            connection.close();
+        }
+    }
+
+    private void release(Connection connection) throws IOException {
+        idle.add(connection);
+        if (closed && idle.remove(connection)) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Connection answering one request at a time, with its buffers.
+     */
+    private static class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final ByteBuffer request = ByteBuffer.allocateDirect(REQUEST_SIZE);
+        private final ByteBuffer response = ByteBuffer.allocateDirect(RESPONSE_SIZE);
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+        }
+
+        Summary summary() throws IOException {
+            return PartitionProtocol.getSummary(exchange(PartitionProtocol.SUMMARY, 0));
+        }
+
+        Cut cut(long amount) throws IOException {
+            return PartitionProtocol.getCut(exchange(PartitionProtocol.CUT, amount));
+        }
+
+        private ByteBuffer exchange(int operation, long amount) throws IOException {
+            PartitionProtocol.putRequest(request, operation, amount);
+            PartitionProtocol.writeFully(channel, request);
+            PartitionProtocol.readFully(channel, response);
+            return response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
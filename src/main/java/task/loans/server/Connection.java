@@ -0,0 +1,80 @@
+package task.loans.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.audit.AuditLog;
+import task.loans.core.QuoteCache;
+
+import static task.loans.server.QuoteProtocol.REQUEST_SIZE;
+import static task.loans.server.QuoteProtocol.RESPONSE_SIZE;
+
+/**
+ * Server side of a client connection, confined to its event loop thread.
+ * <p>
+ * While the responses cannot be written out, the connection stops reading, so a client
+ * which does not read its responses is pushed back by TCP flow control.
+ */
+@ParametersAreNonnullByDefault
+class Connection {
+
+    /**
+     * Number of request frames read at once at most.
+     */
+    private static final int BATCH = 4096;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final QuoteCache quotes;
+    @Nullable
+    private final AuditLog audit;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BATCH * REQUEST_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BATCH * RESPONSE_SIZE);
+
+    Connection(SocketChannel channel, SelectionKey key, QuoteCache quotes, @Nullable AuditLog audit) {
+        this.channel = channel;
+        this.key = key;
+        this.quotes = quotes;
+        this.audit = audit;
+    }
+
+    void onReadable() throws IOException {
+        if (channel.read(in) < 0) {
+            throw new IOException("End of stream");
+        }
+        serve();
+    }
+
+    void onWritable() throws IOException {
+        serve();
+    }
+
+    /**
+     * Quote all the complete request frames buffered, and write the responses out in one go.
+     */
+    private void serve() throws IOException {
+        do {
+            in.flip();
+            while (in.remaining() >= REQUEST_SIZE && out.remaining() >= RESPONSE_SIZE) {
+                QuoteProtocol.serve(in, out, quotes, audit);
+            }
+            in.compact();
+
+            out.flip();
+            channel.write(out);
+            boolean drained = !out.hasRemaining();
+            out.compact();
+            if (!drained) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+        } while (in.position() >= REQUEST_SIZE);
+        key.interestOps(SelectionKey.OP_READ);
+    }
+}
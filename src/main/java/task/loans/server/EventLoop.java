@@ -0,0 +1,138 @@
+package task.loans.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single-threaded selector loop serving its share of the server's connections.
+ */
+@ParametersAreNonnullByDefault
+class EventLoop implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoop.class);
+
+    private final QuoteServer server;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    EventLoop(QuoteServer server, String name) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void registerAcceptor(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Hand the accepted connection over to this loop. Thread-safe.
+     */
+    void register(SocketChannel channel) {
+        pending.add(channel);
+        selector.wakeup();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    void join() {
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                registerPending();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Event loop failed", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerPending() {
+        for (SocketChannel channel = pending.poll(); channel != null; channel = pending.poll()) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key, server.getQuotes(), server.getAudit()));
+            } catch (IOException ex) {
+                logger.warn("Could not register connection", ex);
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (key.isAcceptable()) {
+                server.accept();
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                connection.onReadable();
+            } else if (key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (IOException | CancelledKeyException ex) {
+            logger.debug("Connection closed: {}", ex.getMessage());
+            key.cancel();
+            closeQuietly(key.channel());
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key.channel());
+        }
+        pending.forEach(EventLoop::closeQuietly);
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            logger.warn("Could not close selector", ex);
+        }
+    }
+
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close channel", ex);
+        }
+    }
+}
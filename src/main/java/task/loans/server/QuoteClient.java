@@ -0,0 +1,113 @@
+package task.loans.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.Loan;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.singletonList;
+import static task.loans.server.QuoteProtocol.MAX_TERM;
+import static task.loans.server.QuoteProtocol.REQUEST_SIZE;
+import static task.loans.server.QuoteProtocol.RESPONSE_SIZE;
+
+/**
+ * Blocking client of {@link QuoteServer}, pipelining the requests.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteClient implements Closeable {
+
+    /**
+     * Number of requests in flight at most. Bounded, so that neither side blocks on a full socket buffer
+     * while the other one is blocked the same way.
+     */
+    private static final int WINDOW = 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer requests = ByteBuffer.allocateDirect(WINDOW * REQUEST_SIZE);
+    private final ByteBuffer responses = ByteBuffer.allocateDirect(WINDOW * RESPONSE_SIZE);
+    private int nextId;
+
+    /**
+     * Connect to the server.
+     *
+     * @param address server address
+     * @throws IOException if the connection could not be established
+     */
+    public QuoteClient(InetSocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**
+     * @param amount requested amount, positive, with no fractions of a penny
+     * @param term   number of monthly repayments in range {@code [1, MAX_TERM]}
+     * @return Loan quoted by the server.
+     * @throws IOException if the connection failed
+     */
+    public Loan quote(BigDecimal amount, int term) throws IOException {
+        return quote(singletonList(amount), term).get(0);
+    }
+
+    /**
+     * Quote all the amounts, sending a window of requests before reading any response.
+     *
+     * @param amounts requested amounts, positive, with no fractions of a penny
+     * @param term    number of monthly repayments in range {@code [1, MAX_TERM]}
+     * @return Loans quoted by the server, in the order of the amounts.
+     * @throws IOException if the connection failed
+     */
+    public List<Loan> quote(List<BigDecimal> amounts, int term) throws IOException {
+        checkArgument(term > 0 && term <= MAX_TERM, "Term must be in range [1, %s]", MAX_TERM);
+        List<Loan> loans = new ArrayList<>(amounts.size());
+        for (int from = 0; from < amounts.size(); from += WINDOW) {
+            List<BigDecimal> window = amounts.subList(from, Math.min(from + WINDOW, amounts.size()));
+            int firstId = nextId;
+            send(window, term);
+            receive(window, firstId, loans);
+        }
+        return loans;
+    }
+
+    private void send(List<BigDecimal> window, int term) throws IOException {
+        requests.clear();
+        for (BigDecimal amount : window) {
+            checkArgument(amount.signum() > 0, "Amount must be positive");
+            QuoteProtocol.putRequest(requests, nextId++, amount, term);
+        }
+        requests.flip();
+        while (requests.hasRemaining()) {
+            channel.write(requests);
+        }
+    }
+
+    private void receive(List<BigDecimal> window, int firstId, List<Loan> loans) throws IOException {
+        responses.clear();
+        responses.limit(window.size() * RESPONSE_SIZE);
+        while (responses.hasRemaining()) {
+            if (channel.read(responses) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+        responses.flip();
+        for (int i = 0; i < window.size(); i++) {
+            loans.add(QuoteProtocol.getResponse(responses, firstId + i, window.get(i)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
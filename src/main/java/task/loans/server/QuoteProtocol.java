@@ -0,0 +1,143 @@
+package task.loans.server;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.audit.AuditLog;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.core.QuoteCache;
+
+/**
+ * Binary quote protocol: fixed-size frames in network byte order, no headers, no delimiters.
+ * <p>
+ * Request, {@value #REQUEST_SIZE} bytes:
+ * <pre>
+ *  int  request id, echoed back
+ *  long requested amount, in pence
+ *  int  term, number of monthly repayments in range [1, {@value #MAX_TERM}]
+ * </pre>
+ * Response, {@value #RESPONSE_SIZE} bytes:
+ * <pre>
+ *  int  request id
+ *  int  status: {@value #OK}, {@value #UNAVAILABLE} or {@value #INVALID}
+ *  long effective annual rate, in thousandths (scale {@value #RATE_SCALE}), 0 unless OK
+ *  long monthly repayment, in pence, 0 unless OK
+ *  long total repayment, in pence, 0 unless OK
+ * </pre>
+ * Requests may be pipelined: responses on a connection come in the order of the requests.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteProtocol {
+
+    public static final int REQUEST_SIZE = 16;
+    public static final int RESPONSE_SIZE = 32;
+
+    public static final int OK = 0;
+    public static final int UNAVAILABLE = 1;
+    public static final int INVALID = 2;
+
+    public static final int MAX_TERM = LoanCalculator.MAX_TERM;
+
+    static final int RATE_SCALE = 3;
+    static final int MONEY_SCALE = 2;
+
+    private static final long[] NO_QUOTE = {0, 0, 0};
+
+    private QuoteProtocol() {
+        // no instantiation
+    }
+
+    /**
+     * Encode request frame.
+     *
+     * @param out     destination with at least {@value #REQUEST_SIZE} bytes remaining
+     * @param id      request id
+     * @param amount  requested amount, with no fractions of a penny
+     * @param term    number of monthly repayments
+     * @throws ArithmeticException if the amount is not a whole number of pence
+     */
+    static void putRequest(ByteBuffer out, int id, BigDecimal amount, int term) {
+        out.putInt(id);
+        out.putLong(amount.setScale(MONEY_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        out.putInt(term);
+    }
+
+    /**
+     * Decode request frame, quote it and encode response frame.
+     *
+     * @param in         source with at least {@value #REQUEST_SIZE} bytes remaining
+     * @param out        destination with at least {@value #RESPONSE_SIZE} bytes remaining
+     * @param quotes     market to quote against
+     * @param audit      log to record the loans returned to, {@code null} if none
+     */
+    static void serve(ByteBuffer in, ByteBuffer out, QuoteCache quotes, @Nullable AuditLog audit) {
+        int id = in.getInt();
+        long amount = in.getLong();
+        int term = in.getInt();
+        out.putInt(id);
+        if (amount <= 0 || term <= 0 || term > MAX_TERM) {
+            putQuote(out, INVALID, NO_QUOTE);
+            return;
+        }
+        Loan loan = quotes.calculate(BigDecimal.valueOf(amount, MONEY_SCALE), term);
+        if (audit != null) {
+            audit.record(term, loan);
+        }
+        if (loan.getRate().signum() < 0) {
+            putQuote(out, UNAVAILABLE, NO_QUOTE);
+            return;
+        }
+        out.putInt(OK);
+        out.putLong(unscaled(loan.getRate(), RATE_SCALE));
+        out.putLong(unscaled(loan.getMonthlyRepayment(), MONEY_SCALE));
+        out.putLong(unscaled(loan.getTotalRepayment(), MONEY_SCALE));
+    }
+
+    private static void putQuote(ByteBuffer out, int status, long[] values) {
+        out.putInt(status);
+        for (long value : values) {
+            out.putLong(value);
+        }
+    }
+
+    private static long unscaled(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Decode response frame.
+     *
+     * @param in              source with at least {@value #RESPONSE_SIZE} bytes remaining
+     * @param expectedId      id of the request the response is expected for
+     * @param requestedAmount amount of the request
+     * @return Loan quoted.
+     * @throws IllegalStateException if the response does not match the request or the request was invalid
+     */
+    static Loan getResponse(ByteBuffer in, int expectedId, BigDecimal requestedAmount) {
+        int id = in.getInt();
+        int status = in.getInt();
+        long rate = in.getLong();
+        long monthlyRepayment = in.getLong();
+        long totalRepayment = in.getLong();
+        if (id != expectedId) {
+            throw new IllegalStateException("Response for request " + id + " received instead of " + expectedId);
+        }
+        if (status == UNAVAILABLE) {
+            return Loan.unavailable(requestedAmount);
+        }
+        if (status != OK) {
+            throw new IllegalStateException("Request " + id + " rejected with status " + status);
+        }
+        return Loan.builder()
+                .requestedAmount(requestedAmount)
+                .rate(BigDecimal.valueOf(rate, RATE_SCALE))
+                .monthlyRepayment(BigDecimal.valueOf(monthlyRepayment, MONEY_SCALE))
+                .totalRepayment(BigDecimal.valueOf(totalRepayment, MONEY_SCALE))
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package task.loans.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.audit.AuditLog;
+import task.loans.core.LoanCalculator;
+import task.loans.core.QuoteCache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Non-blocking TCP server quoting loans over {@link QuoteProtocol}.
+ * <p>
+ * Connections are spread round-robin over a number of event loops, each running its own selector
+ * on its own thread. Every request frame read is quoted right away, and all the responses
+ * to the frames of one read are sent back by one write.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteServer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuoteServer.class);
+
+    /**
+     * Number of quotes cached, shared by all the connections.
+     */
+    private static final int QUOTE_CACHE_SLOTS = 4096;
+
+    private final QuoteCache quotes;
+    @Nullable
+    private final AuditLog audit;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Create instance and bind it to the address. No connections are accepted until {@link #start()}.
+     *
+     * @param calculator market to quote against
+     * @param address    address to listen at, port 0 for any free one
+     * @param eventLoops number of event loop threads, positive value
+     * @throws IOException if the server socket could not be opened or bound
+     */
+    public QuoteServer(LoanCalculator calculator, InetSocketAddress address, int eventLoops) throws IOException {
+        this(calculator, address, eventLoops, null);
+    }
+
+    /**
+     * Create instance recording every loan returned to the audit log, and bind it to the address.
+     *
+     * @param audit log to record the loans to, not closed by the server; {@code null} if none
+     * @see #QuoteServer(LoanCalculator, InetSocketAddress, int)
+     */
+    public QuoteServer(LoanCalculator calculator, InetSocketAddress address, int eventLoops,
+                       @Nullable AuditLog audit) throws IOException {
+        checkArgument(eventLoops > 0, "Number of event loops must be positive");
+        this.quotes = new QuoteCache(calculator, QUOTE_CACHE_SLOTS);
+        this.audit = audit;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop(this, "quote-loop-" + i);
+        }
+    }
+
+    /**
+     * Start event loops and accept connections.
+     *
+     * @throws IOException if the server socket could not be registered for accepting
+     */
+    public void start() throws IOException {
+        loops[0].registerAcceptor(serverChannel);
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        logger.debug("Quote server listening at {} with {} event loops", getAddress(), loops.length);
+    }
+
+    /**
+     * @return Address the server is listening at.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Server socket is closed", ex);
+        }
+    }
+
+    QuoteCache getQuotes() {
+        return quotes;
+    }
+
+    @Nullable
+    AuditLog getAudit() {
+        return audit;
+    }
+
+    /**
+     * Accept pending connections, non-blocking.
+     */
+    void accept() throws IOException {
+        for (SocketChannel channel = serverChannel.accept(); channel != null; channel = serverChannel.accept()) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(channel);
+        }
+    }
+
+    /**
+     * Stop accepting, close all the connections and wait for the event loops to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+        for (EventLoop loop : loops) {
+            loop.join();
+        }
+    }
+}
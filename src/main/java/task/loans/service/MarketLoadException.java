@@ -0,0 +1,14 @@
+package task.loans.service;
+
+/**
+ * Market data could not be loaded: not found, not readable or malformed.
+ * The market quoted against stays as it was.
+ */
+public class MarketLoadException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    MarketLoadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
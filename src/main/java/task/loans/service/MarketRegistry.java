@@ -0,0 +1,384 @@
+package task.loans.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import task.loans.core.LoanCalculator;
+import task.loans.core.MarketBook;
+import task.loans.core.OffHeapOrderBook;
+import task.loans.io.CsvInputReader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Markets of many tenants by id, held in memory within a budget: the least recently used ones are paged out.
+ * <p>
+ * A market is loaded from its source on the first request, and its order book is written to the directory
+ * at once, in the {@link OffHeapOrderBook} file format. So paging a market out costs no I/O: its calculator
+ * is just dropped. Paging it back in maps the book file, with no parsing nor aggregation.
+ * <p>
+ * The footprint of a market is the {@linkplain MarketBook#byteSize() size of its book}. Once the markets held
+ * exceed the budget, the least recently requested ones are paged out, all but the market just requested,
+ * which is held even if larger than the whole budget.
+ * <p>
+ * Concurrent requests of a market not held are collapsed into a single load, the others wait for its result.
+ * A market that fails to load or to page in is forgotten: the next request loads it from the source again.
+ * <p>
+ * Instances of this class are thread-safe. Quotes run against the calculators outside of any lock.
+ */
+@ParametersAreNonnullByDefault
+public class MarketRegistry implements Closeable {
+
+    private static final String BOOK_PREFIX = "market-";
+    private static final String BOOK_SUFFIX = ".book";
+
+    private final Function<String, ? extends MarketBook> loader;
+    private final Path directory;
+    private final long memoryBudget;
+
+    /**
+     * All the markets ever loaded and not removed, guarded by {@code this}.
+     */
+    private final Map<String, Market> markets = new HashMap<>();
+
+    /**
+     * Markets held in memory, the least recently requested first, guarded by {@code this}.
+     */
+    private final LinkedHashMap<String, Market> held = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long heldBytes;
+    private long loads;
+    private long pageIns;
+    private long pageOuts;
+    private boolean closed;
+
+    private MarketRegistry(Builder builder) {
+        this.loader = builder.loader;
+        this.directory = builder.directory;
+        this.memoryBudget = builder.memoryBudget;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the calculator of the market, loading it or paging it in if it is not held.
+     *
+     * @param marketId id of the market, as known to the loader
+     * @return Calculator of the market.
+     * @throws MarketLoadException if the market could not be loaded or paged in
+     */
+    public LoanCalculator get(String marketId) throws MarketLoadException {
+        Market market;
+        CompletableFuture<LoanCalculator> loading;
+        boolean first = false;
+        synchronized (this) {
+            checkState(!closed, "Registry is closed");
+            market = markets.computeIfAbsent(marketId, Market::new);
+            if (market.calculator != null) {
+                held.get(marketId); // the most recently requested now
+                return market.calculator;
+            }
+            if (market.loading == null) {
+                market.loading = new CompletableFuture<>();
+                first = true;
+            }
+            loading = market.loading;
+        }
+        if (first) {
+            load(market, loading);
+        }
+        try {
+            return loading.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            throw new MarketLoadException("Could not load market " + marketId + ": " + describe(cause), cause);
+        }
+    }
+
+    /**
+     * Quote loan against the market.
+     *
+     * @param marketId id of the market
+     * @param amount   requested amount
+     * @param term     number of monthly repayments
+     * @return Loan quoted, or rejection if the amount is negative, the term is out of range
+     * or the market could not be loaded.
+     */
+    public QuoteResult quote(String marketId, BigDecimal amount, int term) {
+        String error = QuoteService.validate(amount, term);
+        if (error != null) {
+            return QuoteResult.rejected(error);
+        }
+        try {
+            return QuoteResult.of(get(marketId).calculate(amount, term));
+        } catch (MarketLoadException ex) {
+            return QuoteResult.rejected(ex.getMessage());
+        }
+    }
+
+    /**
+     * Forget the market and delete its book file, so that the next request loads it from the source anew,
+     * e.g. once the source is updated. The requests waiting for a load in progress get its result, not held.
+     *
+     * @param marketId id of the market
+     */
+    public void remove(String marketId) {
+        Path file;
+        synchronized (this) {
+            Market market = markets.remove(marketId);
+            if (market == null) {
+                return;
+            }
+            release(market);
+            file = market.book;
+        }
+        deleteBook(file);
+    }
+
+    /**
+     * @return Number of the markets held in memory.
+     */
+    public synchronized int getHeldMarkets() {
+        return held.size();
+    }
+
+    /**
+     * @return Sum of the footprints of the markets held in memory.
+     */
+    public synchronized long getHeldBytes() {
+        return heldBytes;
+    }
+
+    /**
+     * @return Number of the markets loaded from the source.
+     */
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return Number of the markets paged in from their book files.
+     */
+    public synchronized long getPageIns() {
+        return pageIns;
+    }
+
+    /**
+     * @return Number of the markets paged out to stay within the budget.
+     */
+    public synchronized long getPageOuts() {
+        return pageOuts;
+    }
+
+    /**
+     * Forget all the markets and delete their book files.
+     */
+    @Override
+    public void close() {
+        List<Path> removed = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            markets.values().forEach(market -> removed.add(market.book));
+            markets.clear();
+            held.clear();
+            heldBytes = 0;
+        }
+        removed.forEach(MarketRegistry::deleteBook);
+    }
+
+    /**
+     * Load the market from its book file if it was loaded before, from the source otherwise,
+     * and complete the requests waiting for it.
+     */
+    private void load(Market market, CompletableFuture<LoanCalculator> loading) {
+        Path file;
+        synchronized (this) {
+            file = market.book;
+        }
+        boolean pagedIn = file != null;
+        MarketBook book;
+        LoanCalculator calculator;
+        try {
+            if (pagedIn) {
+                book = OffHeapOrderBook.map(file);
+            } else {
+                book = loader.apply(market.id);
+                file = writeBook(book);
+            }
+            calculator = new LoanCalculator(book);
+        } catch (Throwable ex) {
+            // errors too: the requests waiting must fail, and the next one must load the market anew
+            synchronized (this) {
+                market.loading = null;
+                markets.remove(market.id, market);
+            }
+            loading.completeExceptionally(ex);
+            deleteBook(file);
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+            return;
+        }
+        boolean removed;
+        synchronized (this) {
+            market.loading = null;
+            market.book = file;
+            removed = markets.get(market.id) != market;
+            if (!removed) {
+                market.calculator = calculator;
+                market.footprint = book.byteSize();
+                held.put(market.id, market);
+                heldBytes += market.footprint;
+                if (pagedIn) {
+                    pageIns++;
+                } else {
+                    loads++;
+                }
+                pageOut(market);
+            }
+        }
+        loading.complete(calculator);
+        if (removed) {
+            deleteBook(file);
+        }
+    }
+
+    private Path writeBook(MarketBook book) throws IOException {
+        Path file = Files.createTempFile(directory, BOOK_PREFIX, BOOK_SUFFIX);
+        try {
+            OffHeapOrderBook.write(book, file);
+            return file;
+        } catch (IOException | RuntimeException ex) {
+            deleteBook(file);
+            throw ex;
+        }
+    }
+
+    /**
+     * Page out the least recently requested markets but the one specified until the budget is met.
+     */
+    private void pageOut(Market kept) {
+        Iterator<Market> eldest = held.values().iterator();
+        while (heldBytes > memoryBudget && eldest.hasNext()) {
+            Market market = eldest.next();
+            if (market != kept) {
+                eldest.remove();
+                market.calculator = null;
+                heldBytes -= market.footprint;
+                pageOuts++;
+            }
+        }
+    }
+
+    private void release(Market market) {
+        if (held.remove(market.id, market)) {
+            heldBytes -= market.footprint;
+        }
+        market.calculator = null;
+    }
+
+    /**
+     * Delete the book file, if any, at best: a file left behind is only a waste of the disk.
+     */
+    private static void deleteBook(@Nullable Path file) {
+        if (file != null) {
+            FileUtils.deleteQuietly(file.toFile());
+        }
+    }
+
+    private static String describe(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return String.valueOf(cause.getMessage());
+    }
+
+    /**
+     * Market of a tenant: its book file once loaded, and its calculator while held, guarded by the registry.
+     */
+    private static final class Market {
+        private final String id;
+        @Nullable
+        private LoanCalculator calculator;
+        @Nullable
+        private CompletableFuture<LoanCalculator> loading;
+        @Nullable
+        private Path book;
+        private long footprint;
+
+        Market(String id) {
+            this.id = id;
+        }
+    }
+
+    public static final class Builder {
+        private Function<String, ? extends MarketBook> loader;
+        private Path directory;
+        private long memoryBudget = 256L << 20;
+
+        private Builder() {
+        }
+
+        /**
+         * @param loader source of the market of an id, throwing {@link RuntimeException} if it cannot be loaded
+         */
+        public Builder loader(Function<String, ? extends MarketBook> loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        /**
+         * Load the markets from CSV files.
+         *
+         * @param reader reader of the CSV market data
+         * @param files  market data file of an id, plain or gzip-compressed
+         */
+        public Builder csvFiles(CsvInputReader reader, Function<String, File> files) {
+            return loader(marketId -> reader.readBook(files.apply(marketId)));
+        }
+
+        /**
+         * @param directory existing directory to write the book files of the markets to
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param memoryBudget bytes of the markets held in memory at most, but the one requested last
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            checkArgument(memoryBudget >= 0, "Memory budget must be non-negative");
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        public MarketRegistry build() {
+            checkState(loader != null, "Loader is required");
+            checkState(directory != null, "Directory is required");
+            return new MarketRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package task.loans.service;
+
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import task.loans.core.Loan;
+
+/**
+ * Outcome of a quote request: either the loan quoted, possibly {@link Loan#unavailable unavailable},
+ * or the reason the request was rejected or {@linkplain #isShed() shed}.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteResult {
+
+    private final Loan loan;
+    private final String error;
+    private final boolean shed;
+
+    private QuoteResult(@Nullable Loan loan, @Nullable String error, boolean shed) {
+        this.loan = loan;
+        this.error = error;
+        this.shed = shed;
+    }
+
+    static QuoteResult of(Loan loan) {
+        return new QuoteResult(loan, null, false);
+    }
+
+    static QuoteResult rejected(String error) {
+        return new QuoteResult(null, error, false);
+    }
+
+    static QuoteResult shed(String reason) {
+        return new QuoteResult(null, reason, true);
+    }
+
+    /**
+     * @return {@code true} if the request was quoted, even if the market cannot satisfy it.
+     */
+    public boolean isQuoted() {
+        return loan != null;
+    }
+
+    /**
+     * @return {@code true} if the request was valid but not quoted because of overload, see {@link QuoteScheduler};
+     * it may succeed if retried later.
+     */
+    public boolean isShed() {
+        return shed;
+    }
+
+    public Optional<Loan> getLoan() {
+        return Optional.ofNullable(loan);
+    }
+
+    /**
+     * @return Reason the request was rejected, nothing if it was quoted.
+     */
+    public Optional<String> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("loan", loan)
+                .append("error", error)
+                .append("shed", shed)
+                .toString();
+    }
+}
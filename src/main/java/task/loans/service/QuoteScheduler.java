@@ -0,0 +1,327 @@
+package task.loans.service;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.google.common.base.Ticker;
+import task.loans.core.LoanCalculator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Admission control in front of a {@link QuoteService} for long-running processes: keeps the latency
+ * of the requests answered bounded under bursts of requests, at the cost of shedding some of them.
+ * <p>
+ * Cheap requests are answered at once on the caller thread, never queued nor shed: rejections and the quotes
+ * found in the quote cache. The others are queued with their deadlines to a bounded queue, and calculated
+ * by worker threads in order. A request is {@linkplain QuoteResult#isShed() shed}, i.e. answered without
+ * a calculation, if the queue is full, or if its deadline has passed by the time it is submitted or taken
+ * from the queue: no work is done for the callers which have given up already.
+ * <p>
+ * The number of the workers calculating at once is limited adaptively by the latency of the calculations,
+ * additive increase and multiplicative decrease: per window of {@value #WINDOW} calculations, if their mean
+ * latency exceeds {@value #TOLERANCE} times the lowest mean latency seen, the workers contend for the cores
+ * and the limit is cut by a quarter; otherwise, if the limit was reached in the window, it is raised by one.
+ * The lowest mean drifts up by 1% per window, so that it follows a market getting more expensive to quote.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteScheduler implements Closeable {
+
+    /**
+     * Number of calculations the concurrency limit is adjusted after.
+     */
+    private static final int WINDOW = 64;
+
+    /**
+     * Ratio of the mean latency to the lowest one the concurrency limit is cut at.
+     */
+    private static final double TOLERANCE = 2.0;
+
+    private final QuoteService service;
+    private final Ticker ticker;
+    private final BlockingQueue<Task> queue;
+    private final int maxConcurrency;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder servedCheaply = new LongAdder();
+    private final LongAdder calculated = new LongAdder();
+    private final LongAdder shedQueueFull = new LongAdder();
+    private final LongAdder shedExpired = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int concurrencyLimit;
+    private volatile boolean limitReached;
+    private volatile boolean closed;
+
+    /**
+     * Window of the calculation latencies, guarded by {@code this}.
+     */
+    private int windowCount;
+    private long windowNanos;
+    private double lowestMeanNanos = Double.MAX_VALUE;
+
+    private QuoteScheduler(Builder builder) {
+        this.service = builder.service;
+        this.ticker = builder.ticker;
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.maxConcurrency = builder.maxConcurrency;
+        this.concurrencyLimit = builder.maxConcurrency;
+        for (int i = 0; i < maxConcurrency; i++) {
+            int index = i;
+            Thread worker = new Thread(() -> work(index), "quote-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Quote loan of {@value LoanCalculator#DEFAULT_TERM} months term.
+     *
+     * @see #submit(BigDecimal, int, Duration)
+     */
+    public CompletableFuture<QuoteResult> submit(BigDecimal amount, Duration timeout) {
+        return submit(amount, LoanCalculator.DEFAULT_TERM, timeout);
+    }
+
+    /**
+     * Quote loan against the current market of the service, unless overloaded.
+     *
+     * @param amount  requested amount
+     * @param term    number of monthly repayments
+     * @param timeout time the caller waits for the quote, the request is shed once it has passed
+     * @return Result as {@link QuoteService#quote(BigDecimal, int)}, or shed, or rejected if the calculation
+     * failed; completed already if the request is cheap or shed on submitting, by a worker thread otherwise.
+     * Never completed exceptionally.
+     */
+    public CompletableFuture<QuoteResult> submit(BigDecimal amount, int term, Duration timeout) {
+        QuoteResult cheap = service.quoteCheaply(amount, term);
+        if (cheap != null) {
+            servedCheaply.increment();
+            return CompletableFuture.completedFuture(cheap);
+        }
+        if (closed) {
+            return CompletableFuture.completedFuture(QuoteResult.shed("Scheduler is closed"));
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            shedExpired.increment();
+            return CompletableFuture.completedFuture(QuoteResult.shed("Deadline has passed"));
+        }
+        Task task = new Task(amount, term, ticker.read() + timeout.toNanos());
+        if (!queue.offer(task)) {
+            shedQueueFull.increment();
+            return CompletableFuture.completedFuture(QuoteResult.shed("Queue is full"));
+        }
+        if (closed && queue.remove(task)) {
+            task.result.complete(QuoteResult.shed("Scheduler is closed"));
+        }
+        return task.result;
+    }
+
+    /**
+     * @return Number of the requests waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return Number of the workers allowed to calculate at once currently.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * @return Number of the requests answered on submitting: rejected or cached quotes.
+     */
+    public long getServedCheaply() {
+        return servedCheaply.sum();
+    }
+
+    /**
+     * @return Number of the requests calculated by the workers.
+     */
+    public long getCalculated() {
+        return calculated.sum();
+    }
+
+    /**
+     * @return Number of the requests shed because the queue was full.
+     */
+    public long getShedQueueFull() {
+        return shedQueueFull.sum();
+    }
+
+    /**
+     * @return Number of the requests shed because their deadline had passed, on submitting or in the queue.
+     */
+    public long getShedExpired() {
+        return shedExpired.sum();
+    }
+
+    /**
+     * Stop the workers, waiting for the calculations in progress, and shed the requests queued.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        workers.forEach(Thread::interrupt);
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Task task = queue.poll(); task != null; task = queue.poll()) {
+            task.result.complete(QuoteResult.shed("Scheduler is closed"));
+        }
+    }
+
+    private void work(int index) {
+        try {
+            while (!closed) {
+                awaitTurn(index);
+                Task task = queue.take();
+                long start = ticker.read();
+                if (start - task.deadline >= 0) {
+                    shedExpired.increment();
+                    task.result.complete(QuoteResult.shed("Deadline has passed in the queue"));
+                    continue;
+                }
+                if (inFlight.incrementAndGet() >= concurrencyLimit) {
+                    limitReached = true;
+                }
+                QuoteResult result;
+                try {
+                    result = service.quote(task.amount, task.term);
+                } catch (RuntimeException ex) {
+                    // the caller gets the failure, and the worker goes on with the next request
+                    result = QuoteResult.rejected("Could not quote: " + ex);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                calculated.increment();
+                onCalculated(ticker.read() - start);
+                task.result.complete(result);
+            }
+        } catch (InterruptedException ex) {
+            // closed
+        }
+    }
+
+    /**
+     * Wait while the worker is beyond the concurrency limit.
+     */
+    private synchronized void awaitTurn(int index) throws InterruptedException {
+        while (index >= concurrencyLimit) {
+            wait();
+        }
+    }
+
+    synchronized void onCalculated(long nanos) {
+        windowNanos += nanos;
+        if (++windowCount < WINDOW) {
+            return;
+        }
+        double mean = (double) windowNanos / windowCount;
+        windowCount = 0;
+        windowNanos = 0;
+        lowestMeanNanos = Math.min(lowestMeanNanos * 1.01, mean);
+        if (mean > lowestMeanNanos * TOLERANCE) {
+            concurrencyLimit = Math.max(1, concurrencyLimit * 3 / 4);
+        } else if (limitReached && concurrencyLimit < maxConcurrency) {
+            concurrencyLimit++;
+            notifyAll();
+        }
+        limitReached = false;
+    }
+
+    /**
+     * Request queued with its deadline and the future to complete.
+     */
+    private static final class Task {
+        private final BigDecimal amount;
+        private final int term;
+        private final long deadline;
+        private final CompletableFuture<QuoteResult> result = new CompletableFuture<>();
+
+        Task(BigDecimal amount, int term, long deadline) {
+            this.amount = amount;
+            this.term = term;
+            this.deadline = deadline;
+        }
+    }
+
+    public static final class Builder {
+        private QuoteService service;
+        private Ticker ticker = Ticker.systemTicker();
+        private int maxConcurrency = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * @param service service to quote against, its market may be reloaded at any time
+         */
+        public Builder service(QuoteService service) {
+            this.service = service;
+            return this;
+        }
+
+        /**
+         * @param ticker source of the time the deadlines and the latencies are measured by
+         */
+        Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrency number of the worker threads, the concurrency limit starts with it
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            checkArgument(maxConcurrency > 0, "Concurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity number of requests waiting for the workers at most
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            checkArgument(queueCapacity > 0, "Queue capacity must be positive");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Start the workers.
+         */
+        public QuoteScheduler build() {
+            checkState(service != null, "Service is required");
+            return new QuoteScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package task.loans.service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.LendingOffer;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.core.MarketBook;
+import task.loans.core.MarketStatistics;
+import task.loans.core.QuoteCache;
+import task.loans.io.CsvInputReader;
+
+/**
+ * Quoting library entry point: holds the current market and quotes loans against it.
+ * <p>
+ * Instances of this class are thread-safe. The market is an immutable snapshot replaced as a whole
+ * on load, so quotes run without locks, and every quote sees either the old market or the new one.
+ * Quoting neither throws on bad requests nor logs: rejections are returned, see {@link QuoteResult}.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteService {
+
+    /**
+     * Number of quotes cached per market snapshot.
+     */
+    private static final int QUOTE_CACHE_SLOTS = 4096;
+
+    private final CsvInputReader reader;
+    private volatile QuoteCache market;
+
+    /**
+     * Create service quoting against an empty market until one is loaded.
+     *
+     * @param reader reader of the CSV market data
+     */
+    public QuoteService(CsvInputReader reader) {
+        this.reader = reader;
+        this.market = snapshot(new LoanCalculator(new ArrayList<>()));
+    }
+
+    /**
+     * Replace the market with the one of the CSV file.
+     *
+     * @param csvFile market data, plain or gzip-compressed
+     * @throws MarketLoadException if the file could not be read, the current market is kept then
+     */
+    public void loadMarket(File csvFile) throws MarketLoadException {
+        market = load(() -> new LoanCalculator(reader.readBook(csvFile)), "Could not load market " + csvFile);
+    }
+
+    /**
+     * Replace the market with the one read from the stream up to its end. The stream is not closed.
+     *
+     * @param csvStream market data, plain or gzip-compressed
+     * @throws MarketLoadException if the stream could not be read, the current market is kept then
+     */
+    public void loadMarket(InputStream csvStream) throws MarketLoadException {
+        market = load(() -> new LoanCalculator(reader.readBook(csvStream)), "Could not load market from stream");
+    }
+
+    /**
+     * Replace the market with the offers.
+     *
+     * @param offers offers of the market, copied
+     * @throws MarketLoadException if the offers' values are out of the supported range
+     */
+    public void loadMarket(Collection<LendingOffer> offers) throws MarketLoadException {
+        market = load(() -> new LoanCalculator(new ArrayList<>(offers)), "Could not load offers");
+    }
+
+    /**
+     * Replace the market with the order book.
+     *
+     * @param book market data aggregated by rate levels
+     */
+    public void loadMarket(MarketBook book) {
+        market = snapshot(new LoanCalculator(book));
+    }
+
+    /**
+     * Quote loan of {@value LoanCalculator#DEFAULT_TERM} months term.
+     *
+     * @param amount requested amount
+     * @return Loan quoted, or rejection if the amount is negative.
+     */
+    public QuoteResult quote(BigDecimal amount) {
+        return quote(amount, LoanCalculator.DEFAULT_TERM);
+    }
+
+    /**
+     * Quote loan against the current market.
+     *
+     * @param amount requested amount
+     * @param term   number of monthly repayments
+     * @return Loan quoted, or rejection if the amount is negative or the term is out of range
+     * {@code [1, LoanCalculator.MAX_TERM]}.
+     */
+    public QuoteResult quote(BigDecimal amount, int term) {
+        String error = validate(amount, term);
+        if (error != null) {
+            return QuoteResult.rejected(error);
+        }
+        return QuoteResult.of(market.calculate(amount, term));
+    }
+
+    /**
+     * Answer the request if it costs no calculation: it is rejected or its quote is cached.
+     *
+     * @return The same as {@link #quote(BigDecimal, int)}, or {@code null} if the loan has to be calculated.
+     */
+    @Nullable
+    QuoteResult quoteCheaply(BigDecimal amount, int term) {
+        String error = validate(amount, term);
+        if (error != null) {
+            return QuoteResult.rejected(error);
+        }
+        Loan loan = market.getCached(amount, term);
+        return loan == null ? null : QuoteResult.of(loan);
+    }
+
+    /**
+     * @return Statistics of the current market.
+     */
+    public MarketStatistics getStatistics() {
+        return market.getCalculator().getStatistics();
+    }
+
+    /**
+     * @return Reason to reject the request, or {@code null} if it is valid.
+     */
+    @Nullable
+    static String validate(BigDecimal amount, int term) {
+        if (amount.signum() < 0) {
+            return "Loan amount must be non-negative: " + amount;
+        }
+        if (term <= 0 || term > LoanCalculator.MAX_TERM) {
+            return "Loan term must be in range [1, " + LoanCalculator.MAX_TERM + "]: " + term;
+        }
+        return null;
+    }
+
+    private static QuoteCache snapshot(LoanCalculator calculator) {
+        return new QuoteCache(calculator, QUOTE_CACHE_SLOTS);
+    }
+
+    /**
+     * @return Snapshot of the market loaded.
+     * @throws MarketLoadException wrapping the failure of the loader, with its root cause
+     */
+    private static QuoteCache load(Supplier<LoanCalculator> loader, String failMessage) throws MarketLoadException {
+        try {
+            return snapshot(loader.get());
+        } catch (RuntimeException ex) {
+            throw new MarketLoadException(failMessage + ": " + describe(ex), ex);
+        }
+    }
+
+    private static String describe(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return String.valueOf(cause.getMessage());
+    }
+}
@@ -0,0 +1,450 @@
+package task.loans.simulation;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Monte Carlo stress of a market: quotes the amounts against many randomly perturbed copies of the base market,
+ * and aggregates the distributions of the rates and monthly repayments quoted.
+ * <p>
+ * Every scenario perturbs the base offers independently:
+ * <ul>
+ * <li>all the rates shift by a common normally distributed amount, see {@link Builder#marketShift},
+ * and every rate by its own, see {@link Builder#rateShift}, floored at 0;</li>
+ * <li>every lender withdraws all of its offers with the {@link Builder#dropout} probability;</li>
+ * <li>every amount offered is scaled by a log-normal factor of mean 1, see {@link Builder#amountShock}.</li>
+ * </ul>
+ * The random numbers of a scenario are seeded by the seed and the number of the scenario only,
+ * so the distributions do not depend on the number of threads or the order the scenarios run in.
+ * <p>
+ * Scenarios run in batches of {@value #BATCH} on all the threads. Instead of building a {@link LoanCalculator}
+ * per scenario, every thread reuses its arrays of the perturbed offers: sorts them by rate and quotes all the
+ * amounts in one pass over them, in {@code double}, as the distributions do not need the exact decimal quotes.
+ */
+@ParametersAreNonnullByDefault
+public class MarketSimulator {
+
+    /**
+     * Number of the scenarios a thread takes at once.
+     */
+    static final int BATCH = 1024;
+
+    /**
+     * Resolution of the rates ordering the perturbed offers.
+     */
+    private static final double RATE_QUANTA = 1e9;
+    private static final int MONTHS_IN_YEAR = 12;
+
+    private final long scenarios;
+    private final long seed;
+    private final int threads;
+    private final int term;
+    private final List<BigDecimal> amounts;
+    private final double marketShift;
+    private final double rateShift;
+    private final double dropout;
+    private final double amountShock;
+    private final long reportEvery;
+
+    private MarketSimulator(Builder builder) {
+        this.scenarios = builder.scenarios;
+        this.seed = builder.seed;
+        this.threads = builder.threads;
+        this.term = builder.term;
+        this.amounts = new ArrayList<>(builder.amounts);
+        this.marketShift = builder.marketShift;
+        this.rateShift = builder.rateShift;
+        this.dropout = builder.dropout;
+        this.amountShock = builder.amountShock;
+        this.reportEvery = builder.reportEvery;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run all the scenarios, blocking until they complete.
+     *
+     * @param offers   base market
+     * @param progress receives the distributions every {@link Builder#reportEvery} scenarios completed,
+     *                 on the simulating threads, one report at a time
+     * @return Distributions of the quotes over all the scenarios.
+     * @throws IllegalStateException if a scenario or the progress consumer failed
+     */
+    public SimulationReport run(Collection<LendingOffer> offers, Consumer<SimulationReport> progress)
+            throws InterruptedException {
+        Market market = new Market(offers);
+        Aggregate aggregate = new Aggregate(progress, System.nanoTime());
+        AtomicLong nextBatch = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    Scratch scratch = new Scratch(market);
+                    for (long from = nextBatch.getAndAdd(BATCH); from < scenarios && failure.get() == null;
+                         from = nextBatch.getAndAdd(BATCH)) {
+                        long to = Math.min(scenarios, from + BATCH);
+                        for (long scenario = from; scenario < to; scenario++) {
+                            scratch.simulate(scenario);
+                        }
+                        aggregate.merge(scratch.quotes, to - from);
+                    }
+                } catch (RuntimeException ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    done.countDown();
+                }
+            }, "simulation-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Simulation failed", failure.get());
+        }
+        return aggregate.report();
+    }
+
+    private List<QuoteDistribution> newDistributions() {
+        List<QuoteDistribution> quotes = new ArrayList<>(amounts.size());
+        amounts.forEach(amount -> quotes.add(new QuoteDistribution(amount)));
+        return quotes;
+    }
+
+    /**
+     * @return Monthly repayment of the loan before rounding, see {@link LoanCalculator}.
+     */
+    private double monthlyRepayment(double principal, double annualRate) {
+        if (annualRate == 0) {
+            return principal / term;
+        }
+        double monthlyRate = annualRate / MONTHS_IN_YEAR;
+        double growth = Math.pow(1 + monthlyRate, term);
+        return monthlyRate * principal * growth / (growth - 1);
+    }
+
+    /**
+     * Base offers in primitive arrays, the lenders numbered.
+     */
+    private static class Market {
+        private final double[] rates;
+        private final double[] amounts;
+        private final int[] lenders;
+        private final int lenderCount;
+
+        Market(Collection<LendingOffer> offers) {
+            rates = new double[offers.size()];
+            amounts = new double[offers.size()];
+            lenders = new int[offers.size()];
+            Map<String, Integer> lenderIds = new HashMap<>();
+            int i = 0;
+            for (LendingOffer offer : offers) {
+                rates[i] = offer.getRate().doubleValue();
+                amounts[i] = offer.getAmount().doubleValue();
+                lenders[i] = lenderIds.computeIfAbsent(offer.getLenderName(), name -> lenderIds.size());
+                i++;
+            }
+            lenderCount = lenderIds.size();
+        }
+    }
+
+    /**
+     * Structures of a thread reused from scenario to scenario, and the distributions of its current batch.
+     */
+    private class Scratch {
+        private final Market market;
+        private final ScenarioRandom random = new ScenarioRandom();
+        private final double[] perturbedRates;
+        private final double[] perturbedAmounts;
+        private final boolean[] withdrawn;
+        /**
+         * Quantized rate in the high bits, offer index in the low ones: sorted without boxing.
+         */
+        private final long[] order;
+        private final int indexBits;
+        private final double maxRateKey;
+        /**
+         * Amounts requested ascending, and the indices of their distributions.
+         */
+        private final double[] requested;
+        private final int[] requestedIndex;
+        private final List<QuoteDistribution> quotes = newDistributions();
+
+        Scratch(Market market) {
+            int size = market.rates.length;
+            this.market = market;
+            this.perturbedRates = new double[size];
+            this.perturbedAmounts = new double[size];
+            this.withdrawn = new boolean[market.lenderCount];
+            this.order = new long[size];
+            this.indexBits = size <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(size - 1);
+            this.maxRateKey = Long.MAX_VALUE >>> (indexBits + 1);
+
+            Integer[] ascending = new Integer[amounts.size()];
+            Arrays.setAll(ascending, i -> i);
+            Arrays.sort(ascending, (a, b) -> amounts.get(a).compareTo(amounts.get(b)));
+            this.requested = new double[ascending.length];
+            this.requestedIndex = new int[ascending.length];
+            for (int i = 0; i < ascending.length; i++) {
+                requestedIndex[i] = ascending[i];
+                requested[i] = amounts.get(ascending[i]).doubleValue();
+            }
+        }
+
+        void simulate(long scenario) {
+            random.seed(seed, scenario);
+            double commonShift = marketShift * random.nextGaussian();
+            for (int lender = 0; lender < withdrawn.length; lender++) {
+                withdrawn[lender] = dropout > 0 && random.nextDouble() < dropout;
+            }
+            int size = 0;
+            for (int i = 0; i < perturbedRates.length; i++) {
+                if (withdrawn[market.lenders[i]]) {
+                    continue;
+                }
+                double rate = market.rates[i] + commonShift;
+                if (rateShift > 0) {
+                    rate += rateShift * random.nextGaussian();
+                }
+                double amount = market.amounts[i];
+                if (amountShock > 0) {
+                    amount *= Math.exp(amountShock * random.nextGaussian() - amountShock * amountShock / 2);
+                }
+                perturbedRates[i] = Math.max(0, rate);
+                perturbedAmounts[i] = amount;
+                order[size++] = (long) Math.min(perturbedRates[i] * RATE_QUANTA, maxRateKey) << indexBits | i;
+            }
+            Arrays.sort(order, 0, size);
+            quote(size);
+        }
+
+        /**
+         * Take the cheapest offers fully while they do not cover the next amount requested,
+         * and the remainder from the next one, as {@link LoanCalculator} does.
+         */
+        private void quote(int size) {
+            long indexMask = (1L << indexBits) - 1;
+            double covered = 0;
+            double weightedSum = 0;
+            int next = 0;
+            for (int k = 0; k < size && next < requested.length; k++) {
+                int i = (int) (order[k] & indexMask);
+                while (next < requested.length && covered + perturbedAmounts[i] >= requested[next]) {
+                    double rate = (weightedSum + perturbedRates[i] * (requested[next] - covered)) / requested[next];
+                    quotes.get(requestedIndex[next]).record(rate, monthlyRepayment(requested[next], rate));
+                    next++;
+                }
+                covered += perturbedAmounts[i];
+                weightedSum += perturbedRates[i] * perturbedAmounts[i];
+            }
+            for (; next < requested.length; next++) {
+                quotes.get(requestedIndex[next]).recordUnavailable();
+            }
+        }
+    }
+
+    /**
+     * Distributions over the batches completed, reported as the batches complete.
+     */
+    private class Aggregate {
+        private final Consumer<SimulationReport> progress;
+        private final long start;
+        private final List<QuoteDistribution> quotes = newDistributions();
+        private long completed;
+        private long nextReport = reportEvery;
+
+        Aggregate(Consumer<SimulationReport> progress, long start) {
+            this.progress = progress;
+            this.start = start;
+        }
+
+        /**
+         * Add up the distributions of the batch and reset them.
+         */
+        synchronized void merge(List<QuoteDistribution> batch, long batchScenarios) {
+            for (int i = 0; i < quotes.size(); i++) {
+                quotes.get(i).add(batch.get(i));
+                batch.get(i).reset();
+            }
+            completed += batchScenarios;
+            if (reportEvery > 0 && completed >= nextReport && completed < scenarios) {
+                nextReport = (completed / reportEvery + 1) * reportEvery;
+                progress.accept(report());
+            }
+        }
+
+        synchronized SimulationReport report() {
+            List<QuoteDistribution> copies = new ArrayList<>(quotes.size());
+            quotes.forEach(quote -> copies.add(quote.copy()));
+            return new SimulationReport(completed, scenarios, copies, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * SplitMix64 generator reseeded per scenario, so a scenario draws the same numbers on any thread.
+     */
+    private static class ScenarioRandom {
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+        private long state;
+
+        void seed(long seed, long scenario) {
+            state = mix(seed + scenario * GOLDEN_GAMMA);
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * DOUBLE_UNIT;
+        }
+
+        /**
+         * @return Standard normal value, by the Box-Muller transform.
+         */
+        double nextGaussian() {
+            double u = 1 - nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * nextDouble());
+        }
+
+        private long nextLong() {
+            state += GOLDEN_GAMMA;
+            return mix(state);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    public static final class Builder {
+        private long scenarios = 100_000;
+        private long seed = 42;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int term = LoanCalculator.DEFAULT_TERM;
+        private List<BigDecimal> amounts = new ArrayList<>();
+        private double marketShift;
+        private double rateShift;
+        private double dropout;
+        private double amountShock;
+        private long reportEvery;
+
+        private Builder() {
+        }
+
+        /**
+         * @param scenarios number of the scenarios to simulate, positive value
+         */
+        public Builder scenarios(long scenarios) {
+            checkArgument(scenarios > 0, "Number of scenarios must be positive");
+            this.scenarios = scenarios;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param threads number of simulating threads, positive value; all the cores by default
+         */
+        public Builder threads(int threads) {
+            checkArgument(threads > 0, "Number of threads must be positive");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param term number of monthly repayments, positive value
+         */
+        public Builder term(int term) {
+            checkArgument(term > 0, "Term must be positive");
+            this.term = term;
+            return this;
+        }
+
+        /**
+         * @param amounts amounts to quote in every scenario, positive values
+         */
+        public Builder amounts(List<BigDecimal> amounts) {
+            checkArgument(amounts.stream().allMatch(amount -> amount.signum() > 0), "Amounts must be positive");
+            this.amounts = new ArrayList<>(amounts);
+            return this;
+        }
+
+        /**
+         * @param marketShift standard deviation of the shift of all the rates, non-negative value
+         */
+        public Builder marketShift(double marketShift) {
+            checkArgument(marketShift >= 0, "Market shift must be non-negative");
+            this.marketShift = marketShift;
+            return this;
+        }
+
+        /**
+         * @param rateShift standard deviation of the shift of every rate on its own, non-negative value
+         */
+        public Builder rateShift(double rateShift) {
+            checkArgument(rateShift >= 0, "Rate shift must be non-negative");
+            this.rateShift = rateShift;
+            return this;
+        }
+
+        /**
+         * @param dropout probability of a lender to withdraw all of its offers, in range {@code [0, 1]}
+         */
+        public Builder dropout(double dropout) {
+            checkArgument(dropout >= 0 && dropout <= 1, "Dropout must be in range [0, 1]");
+            this.dropout = dropout;
+            return this;
+        }
+
+        /**
+         * @param amountShock standard deviation of the logarithm of the factor scaling every amount offered,
+         *                    non-negative value
+         */
+        public Builder amountShock(double amountShock) {
+            checkArgument(amountShock >= 0, "Amount shock must be non-negative");
+            this.amountShock = amountShock;
+            return this;
+        }
+
+        /**
+         * @param reportEvery report the progress every that many scenarios, 0 for no progress reports
+         */
+        public Builder reportEvery(long reportEvery) {
+            checkArgument(reportEvery >= 0, "Report interval must be non-negative");
+            this.reportEvery = reportEvery;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if no amounts to quote were set
+         */
+        public MarketSimulator build() {
+            checkState(!amounts.isEmpty(), "Amounts to quote are required");
+            return new MarketSimulator(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package task.loans.simulation;
+
+import java.math.BigDecimal;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.load.LatencyHistogram;
+
+/**
+ * Distribution of the quotes of one amount over the scenarios simulated.
+ * <p>
+ * Rates are counted in millionths and monthly repayments in cents, in histograms reporting any value
+ * with relative error below 0.1%. Instances of this class are not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class QuoteDistribution {
+
+    /**
+     * Number of decimal digits of the rates counted.
+     */
+    static final int RATE_DIGITS = 6;
+
+    private static final double RATE_UNITS = 1e6;
+    private static final int CENT_DIGITS = 2;
+    private static final double CENTS = 100;
+
+    private final BigDecimal amount;
+    private final LatencyHistogram rates = new LatencyHistogram();
+    private final LatencyHistogram monthlyRepayments = new LatencyHistogram();
+    private long unavailable;
+
+    QuoteDistribution(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @param rate             annual rate quoted, non-negative value
+     * @param monthlyRepayment monthly repayment quoted
+     */
+    void record(double rate, double monthlyRepayment) {
+        rates.record(Math.round(rate * RATE_UNITS));
+        monthlyRepayments.record(Math.round(monthlyRepayment * CENTS));
+    }
+
+    /**
+     * Count a scenario whose market could not supply the amount.
+     */
+    void recordUnavailable() {
+        unavailable++;
+    }
+
+    void add(QuoteDistribution other) {
+        rates.add(other.rates);
+        monthlyRepayments.add(other.monthlyRepayments);
+        unavailable += other.unavailable;
+    }
+
+    void reset() {
+        rates.reset();
+        monthlyRepayments.reset();
+        unavailable = 0;
+    }
+
+    QuoteDistribution copy() {
+        QuoteDistribution copy = new QuoteDistribution(amount);
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * @return Requested amount.
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return Number of the scenarios counted, unavailable ones included.
+     */
+    public long getScenarios() {
+        return rates.getTotalCount() + unavailable;
+    }
+
+    /**
+     * @return Number of the scenarios whose market could not supply the amount.
+     */
+    public long getUnavailable() {
+        return unavailable;
+    }
+
+    /**
+     * @return Mean rate of the scenarios which quoted the amount, 0 if none.
+     */
+    public double getMeanRate() {
+        return rates.getMean() / RATE_UNITS;
+    }
+
+    /**
+     * @param percentile percentile in range {@code [0, 100]} of the scenarios which quoted the amount
+     * @return Rate at the percentile, with {@value #RATE_DIGITS} decimal digits; 0 if none quoted.
+     */
+    public BigDecimal getRateAtPercentile(double percentile) {
+        return BigDecimal.valueOf(rates.getValueAtPercentile(percentile), RATE_DIGITS);
+    }
+
+    /**
+     * @param percentile percentile in range {@code [0, 100]} of the scenarios which quoted the amount
+     * @return Monthly repayment at the percentile, in cents precision; 0 if none quoted.
+     */
+    public BigDecimal getMonthlyRepaymentAtPercentile(double percentile) {
+        return BigDecimal.valueOf(monthlyRepayments.getValueAtPercentile(percentile), CENT_DIGITS);
+    }
+}
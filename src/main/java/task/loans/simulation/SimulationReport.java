@@ -0,0 +1,85 @@
+package task.loans.simulation;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Distributions of the quotes over the scenarios simulated so far.
+ */
+@ParametersAreNonnullByDefault
+public class SimulationReport {
+
+    private static final double[] PERCENTILES = {5, 25, 50, 75, 95};
+
+    private final long completed;
+    private final long scenarios;
+    private final List<QuoteDistribution> quotes;
+    private final Duration elapsed;
+
+    SimulationReport(long completed, long scenarios, List<QuoteDistribution> quotes, Duration elapsed) {
+        this.completed = completed;
+        this.scenarios = scenarios;
+        this.quotes = quotes;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return Number of the scenarios simulated so far.
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Number of the scenarios to simulate in total.
+     */
+    public long getScenarios() {
+        return scenarios;
+    }
+
+    public boolean isFinal() {
+        return completed == scenarios;
+    }
+
+    /**
+     * @return Distributions of the quotes, in the order of the amounts requested.
+     */
+    public List<QuoteDistribution> getQuotes() {
+        return quotes;
+    }
+
+    /**
+     * @return Scenarios simulated per second so far.
+     */
+    public double getThroughput() {
+        return completed * 1e9 / Math.max(1, elapsed.toNanos());
+    }
+
+    /**
+     * @return Human readable report, a line per amount.
+     */
+    public String format() {
+        StringBuilder report = new StringBuilder()
+                .append(String.format("Scenarios: %d of %d, %.1f scenarios/s", completed, scenarios, getThroughput()));
+        for (QuoteDistribution quote : quotes) {
+            long quoted = quote.getScenarios() - quote.getUnavailable();
+            report.append(String.format("%nAmount %s: unavailable %.2f%%", quote.getAmount(),
+                    quote.getScenarios() == 0 ? 0 : 100.0 * quote.getUnavailable() / quote.getScenarios()));
+            if (quoted == 0) {
+                continue;
+            }
+            report.append(String.format(", mean rate %.4f, rate", quote.getMeanRate()));
+            for (double percentile : PERCENTILES) {
+                report.append(String.format(" p%d %s", (long) percentile, quote.getRateAtPercentile(percentile)));
+            }
+            report.append(", monthly repayment");
+            for (double percentile : PERCENTILES) {
+                report.append(String.format(" p%d %s", (long) percentile,
+                        quote.getMonthlyRepaymentAtPercentile(percentile)));
+            }
+        }
+        return report.toString();
+    }
+}
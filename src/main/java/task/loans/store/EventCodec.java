@@ -0,0 +1,99 @@
+package task.loans.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.LendingOffer;
+import task.loans.core.MarketEvent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Binary encoding of the market events and offers, shared by the log and the snapshots.
+ * <p>
+ * Decimals are written with their scales, so decoded offers are equal to the encoded ones.
+ */
+@ParametersAreNonnullByDefault
+class EventCodec {
+
+    private static final int MAX_FIELD_LENGTH = 1 << 16;
+
+    private static final MarketEvent.Type[] TYPES = MarketEvent.Type.values();
+
+    private EventCodec() {
+        // no instantiation
+    }
+
+    static void writeEvent(DataOutput out, MarketEvent event) throws IOException {
+        out.writeByte(event.getType().ordinal());
+        out.writeLong(event.getOfferId());
+        if (event.getOffer().isPresent()) {
+            writeOffer(out, event.getOffer().get());
+        }
+    }
+
+    static MarketEvent readEvent(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IOException("Unknown event type " + ordinal);
+        }
+        long offerId = in.readLong();
+        switch (TYPES[ordinal]) {
+            case ADD:
+                return MarketEvent.add(offerId, readOffer(in));
+            case AMEND:
+                return MarketEvent.amend(offerId, readOffer(in));
+            default:
+                return MarketEvent.withdraw(offerId);
+        }
+    }
+
+    static void writeOffer(DataOutput out, LendingOffer offer) throws IOException {
+        writeBytes(out, offer.getLenderName().getBytes(StandardCharsets.UTF_8));
+        writeDecimal(out, offer.getRate());
+        writeDecimal(out, offer.getAmount());
+    }
+
+    static LendingOffer readOffer(DataInput in) throws IOException {
+        String lenderName = new String(readBytes(in), StandardCharsets.UTF_8);
+        BigDecimal rate = readDecimal(in);
+        BigDecimal amount = readDecimal(in);
+        try {
+            return new LendingOffer(lenderName, rate, amount);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid offer", ex);
+        }
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        out.writeInt(value.scale());
+        writeBytes(out, value.unscaledValue().toByteArray());
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        int scale = in.readInt();
+        return new BigDecimal(new BigInteger(readBytes(in)), scale);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        checkArgument(bytes.length <= MAX_FIELD_LENGTH, "Field is longer than %s bytes", MAX_FIELD_LENGTH);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FIELD_LENGTH) {
+            throw new IOException("Invalid field length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,385 @@
+package task.loans.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.LendingOffer;
+import task.loans.core.LiveMarket;
+import task.loans.core.LoanCalculator;
+import task.loans.core.MarketEvent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Durable live market: every change is written to the {@link WriteAheadLog write-ahead log} before it is
+ * acknowledged, and the whole market is periodically written to a snapshot.
+ * <p>
+ * On opening, the latest snapshot is loaded and only the events logged after it are replayed,
+ * so the recovery time is bounded by the snapshot size plus {@link Builder#snapshotEvery} events.
+ * The recovered market holds exactly the same offers, hence quotes exactly the same loans.
+ * <p>
+ * Changes are checked and queued to the log under a lock, then their callers wait for the log outside of it:
+ * concurrent changes are forced to the disk together. A change is applied to the market read only once it
+ * is durable, in the order of the log, so the market read is always the one recovered after a crash.
+ * Changes queued but not durable yet are tracked by their offers, to check the later changes against.
+ * If the log fails, the store fails: neither further changes are accepted nor the market is read any more,
+ * and the store must be reopened to recover it.
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class MarketStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketStore.class);
+
+    private final Path directory;
+    private final long snapshotEvery;
+    private final LiveMarket market;
+    private final WriteAheadLog log;
+    private final Recovery recovery;
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "market-snapshotter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Events logged but not applied yet, in the order of their sequence numbers, and the last one of them
+     * by offer id, guarded by {@code this}.
+     */
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private final Map<Long, Pending> pendingOffers = new HashMap<>();
+
+    /**
+     * Sequence number of the last event applied, i.e. durable, and of the last event logged.
+     */
+    private long sequence;
+    private long logged;
+    private long lastSnapshot;
+    private boolean snapshotScheduled;
+
+    private MarketStore(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.snapshotEvery = builder.snapshotEvery;
+        Files.createDirectories(directory);
+
+        long started = System.nanoTime();
+        Snapshots.Snapshot snapshot = Snapshots.readLatest(directory)
+                .orElseGet(() -> new Snapshots.Snapshot(0, new HashMap<>()));
+        Replay replay = new Replay(new LiveMarket(snapshot.offers), snapshot.sequence);
+        long truncated = 0;
+        Iterator<Path> segments = WriteAheadLog.segments(directory).values().iterator();
+        while (segments.hasNext()) {
+            Path segment = segments.next();
+            long valid = WriteAheadLog.read(segment, replay);
+            long size = Files.size(segment);
+            if (valid < size) {
+                if (segments.hasNext()) {
+                    throw new IOException("Corrupt write-ahead log segment " + segment);
+                }
+                truncate(segment, valid);
+                truncated = size - valid;
+            }
+        }
+        this.market = replay.market;
+        this.sequence = replay.sequence;
+        this.logged = replay.sequence;
+        this.lastSnapshot = snapshot.sequence;
+        this.log = new WriteAheadLog(directory, sequence + 1, builder.maxBatch);
+        this.recovery = new Recovery(snapshot.sequence, replay.events, truncated,
+                Duration.ofNanos(System.nanoTime() - started));
+        logger.debug("Market recovered from {}: {}", directory, recovery);
+    }
+
+    /**
+     * @param directory directory holding the log and the snapshots, created if missing
+     */
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * @return How the market was recovered on opening.
+     */
+    public Recovery getRecovery() {
+        return recovery;
+    }
+
+    /**
+     * Log the change, wait until it is durable, and apply it to the market.
+     *
+     * @param event market change
+     * @return Sequence number of the event.
+     * @throws IllegalArgumentException if the event cannot be applied to the market with the changes logged
+     *                                  before, see {@link LiveMarket#check}
+     * @throws UncheckedIOException     if the event could not be logged, or the store has failed
+     */
+    public long apply(MarketEvent event) {
+        Pending change;
+        synchronized (this) {
+            checkNotFailed();
+            Pending last = pendingOffers.get(event.getOfferId());
+            if (last == null) {
+                market.check(event);
+            } else {
+                LiveMarket.check(event, last.event.getType() != MarketEvent.Type.WITHDRAW);
+            }
+            change = new Pending(logged + 1, event, log.append(logged + 1, event));
+            if (change.durable.isCompletedExceptionally()) {
+                await(change.durable);
+            }
+            logged = change.sequence;
+            pending.add(change);
+            pendingOffers.put(event.getOfferId(), change);
+            if (logged - lastSnapshot >= snapshotEvery && !snapshotScheduled) {
+                snapshotScheduled = true;
+                snapshotter.execute(this::scheduledSnapshot);
+            }
+        }
+        await(change.durable);
+        synchronized (this) {
+            applyDurable();
+        }
+        return change.sequence;
+    }
+
+    /**
+     * @return Calculator quoting loans against the current offers.
+     * @throws UncheckedIOException if the store has failed
+     */
+    public synchronized LoanCalculator getCalculator() {
+        checkNotFailed();
+        return market.getCalculator();
+    }
+
+    /**
+     * @return Copy of the current offers by their ids.
+     * @throws UncheckedIOException if the store has failed
+     */
+    public synchronized Map<Long, LendingOffer> getOffers() {
+        checkNotFailed();
+        return new HashMap<>(market.getOffers());
+    }
+
+    /**
+     * @return Sequence number of the last event applied, i.e. durable.
+     * @throws UncheckedIOException if the store has failed
+     */
+    public synchronized long getSequence() {
+        checkNotFailed();
+        return sequence;
+    }
+
+    /**
+     * Write the market to a snapshot now, then delete the log segments and the snapshots it makes redundant.
+     *
+     * @throws UncheckedIOException if the snapshot could not be written
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            Snapshots.Snapshot snapshot;
+            CompletableFuture<Void> rolled;
+            synchronized (this) {
+                if (logged == lastSnapshot) {
+                    return;
+                }
+                // the events logged are durable once the log is rolled, so the snapshot holds them too
+                LiveMarket logMarket = new LiveMarket(market.getOffers());
+                pending.forEach(change -> logMarket.apply(change.event));
+                snapshot = new Snapshots.Snapshot(logged, logMarket.getOffers());
+                rolled = log.roll(logged + 1);
+            }
+            await(rolled);
+            try {
+                Snapshots.write(directory, snapshot);
+                WriteAheadLog.deleteSegmentsBefore(directory, snapshot.sequence + 1);
+                Snapshots.deleteBefore(directory, snapshot.sequence);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            synchronized (this) {
+                lastSnapshot = snapshot.sequence;
+            }
+        }
+    }
+
+    /**
+     * @return Number of times the log has been forced to the disk since opening.
+     */
+    long syncs() {
+        return log.syncs();
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (UncheckedIOException ex) {
+            logger.warn("Could not write market snapshot", ex);
+        } finally {
+            synchronized (this) {
+                snapshotScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Wait for the scheduled snapshot, if any, and for the log to be written.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /**
+     * Apply the events durable already, in order.
+     */
+    private void applyDurable() {
+        while (!pending.isEmpty() && pending.peek().durable.isDone()
+                && !pending.peek().durable.isCompletedExceptionally()) {
+            Pending change = pending.poll();
+            market.apply(change.event);
+            sequence = change.sequence;
+            pendingOffers.remove(change.event.getOfferId(), change);
+        }
+    }
+
+    /**
+     * Fail if the log has failed, as the changes logged before the failure may not be durable.
+     */
+    private void checkNotFailed() {
+        IOException failure = log.getFailure();
+        if (failure != null) {
+            throw new UncheckedIOException(new IOException("Market store failed, reopen it to recover", failure));
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted waiting for the write-ahead log", ex));
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw new UncheckedIOException(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+        }
+    }
+
+    private static void truncate(Path segment, long length) throws IOException {
+        logger.warn("Truncating torn tail of write-ahead log segment {} at {}", segment, length);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Applies the logged events following the snapshot, checking there is no gap.
+     */
+    private static class Replay implements WriteAheadLog.RecordConsumer {
+        private final LiveMarket market;
+        private long sequence;
+        private long events;
+
+        Replay(LiveMarket market, long sequence) {
+            this.market = market;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void accept(long eventSequence, MarketEvent event) throws IOException {
+            if (eventSequence <= sequence) {
+                return;
+            }
+            if (eventSequence != sequence + 1) {
+                throw new IOException("Events " + (sequence + 1) + " to " + (eventSequence - 1) + " are missing");
+            }
+            try {
+                market.apply(event);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Event " + eventSequence + " does not apply to the market", ex);
+            }
+            sequence = eventSequence;
+            events++;
+        }
+    }
+
+    /**
+     * Event logged, applied once durable.
+     */
+    private static final class Pending {
+        private final long sequence;
+        private final MarketEvent event;
+        private final CompletableFuture<Void> durable;
+
+        Pending(long sequence, MarketEvent event, CompletableFuture<Void> durable) {
+            this.sequence = sequence;
+            this.event = event;
+            this.durable = durable;
+        }
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private long snapshotEvery = 100_000;
+        private int maxBatch = 1024;
+
+        private Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @param events number of events logged between the snapshots, positive value
+         */
+        public Builder snapshotEvery(long events) {
+            checkArgument(events > 0, "Snapshot interval must be positive");
+            this.snapshotEvery = events;
+            return this;
+        }
+
+        /**
+         * @param records number of records forced to the disk at once at most, positive value
+         */
+        public Builder maxBatch(int records) {
+            checkArgument(records > 0, "Batch size must be positive");
+            this.maxBatch = records;
+            return this;
+        }
+
+        /**
+         * Recover the market from the directory and open it for changes.
+         *
+         * @throws IOException if the directory could not be read, or the log is corrupt beyond its tail
+         */
+        public MarketStore open() throws IOException {
+            return new MarketStore(this);
+        }
+    }
+}
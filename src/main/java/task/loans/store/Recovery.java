@@ -0,0 +1,65 @@
+package task.loans.store;
+
+import java.time.Duration;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Outcome of the market recovery on opening a {@link MarketStore}.
+ * Instances of this class are immutable.
+ */
+@ParametersAreNonnullByDefault
+public class Recovery {
+
+    private final long snapshotSequence;
+    private final long replayedEvents;
+    private final long truncatedBytes;
+    private final Duration duration;
+
+    Recovery(long snapshotSequence, long replayedEvents, long truncatedBytes, Duration duration) {
+        this.snapshotSequence = snapshotSequence;
+        this.replayedEvents = replayedEvents;
+        this.truncatedBytes = truncatedBytes;
+        this.duration = duration;
+    }
+
+    /**
+     * @return Sequence number of the last event included in the snapshot loaded, 0 if there was none.
+     */
+    public long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+
+    /**
+     * @return Number of the log events replayed on top of the snapshot.
+     */
+    public long getReplayedEvents() {
+        return replayedEvents;
+    }
+
+    /**
+     * @return Length of the torn or corrupt tail cut off the log, e.g. a record being written during a crash.
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * @return Wall-clock time taken to recover.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("snapshotSequence", snapshotSequence)
+                .append("replayedEvents", replayedEvents)
+                .append("truncatedBytes", truncatedBytes)
+                .append("duration", duration)
+                .toString();
+    }
+}
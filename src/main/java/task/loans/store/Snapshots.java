@@ -0,0 +1,162 @@
+package task.loans.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import task.loans.core.LendingOffer;
+
+import static java.lang.String.format;
+
+/**
+ * Snapshots of the market: all the offers as of some event, named by the sequence number of that event.
+ * <p>
+ * Format: {@code int magic, long sequence, int count, count x (long offer id, offer), long CRC-32 of the rest}.
+ * A snapshot is written to a temporary file, forced to the disk and then atomically renamed,
+ * so a snapshot file found is either complete or not there at all.
+ */
+@ParametersAreNonnullByDefault
+class Snapshots {
+
+    private static final Logger logger = LoggerFactory.getLogger(Snapshots.class);
+
+    private static final int MAGIC = 0x4c4d5331;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Snapshots() {
+        // no instantiation
+    }
+
+    /**
+     * Market offers as of the event of the sequence number.
+     */
+    static class Snapshot {
+        final long sequence;
+        final Map<Long, LendingOffer> offers;
+
+        Snapshot(long sequence, Map<Long, LendingOffer> offers) {
+            this.sequence = sequence;
+            this.offers = offers;
+        }
+    }
+
+    static void write(Path directory, Snapshot snapshot) throws IOException {
+        Path target = path(directory, snapshot.sequence);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(file, BUFFER_SIZE), crc));
+            out.writeInt(MAGIC);
+            out.writeLong(snapshot.sequence);
+            out.writeInt(snapshot.offers.size());
+            for (Map.Entry<Long, LendingOffer> entry : snapshot.offers.entrySet()) {
+                out.writeLong(entry.getKey());
+                EventCodec.writeOffer(out, entry.getValue());
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+    }
+
+    /**
+     * @return The latest readable snapshot, if there is such.
+     */
+    static Optional<Snapshot> readLatest(Path directory) throws IOException {
+        for (Path file : list(directory).descendingMap().values()) {
+            try {
+                return Optional.of(read(file));
+            } catch (IOException ex) {
+                logger.warn("Skipping unreadable snapshot {}: {}", file, ex.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Delete the snapshots older than the one of the sequence number.
+     */
+    static void deleteBefore(Path directory, long sequence) throws IOException {
+        for (Path file : list(directory).headMap(sequence).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Snapshot read(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            CRC32 crc = new CRC32();
+            BufferedInputStream buffered = new BufferedInputStream(stream, BUFFER_SIZE);
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a market snapshot");
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid offers count " + count);
+            }
+            Map<Long, LendingOffer> offers = new HashMap<>(Math.min(count, 1 << 20) * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                offers.put(in.readLong(), EventCodec.readOffer(in));
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(buffered).readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Snapshot(sequence, offers);
+        }
+    }
+
+    private static NavigableMap<Long, Path> list(Path directory) throws IOException {
+        NavigableMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                snapshots.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            }
+        }
+        return snapshots;
+    }
+
+    private static Path path(Path directory, long sequence) {
+        return directory.resolve(format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    /**
+     * Make the renaming durable. Not supported on every platform, hence best effort.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            logger.debug("Could not sync directory {}: {}", directory, ex.getMessage());
+        }
+    }
+}
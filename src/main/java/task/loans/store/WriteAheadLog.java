@@ -0,0 +1,408 @@
+package task.loans.store;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import task.loans.core.MarketEvent;
+
+import static java.lang.String.format;
+
+/**
+ * Append-only log of market events, split into segments named by the sequence number of their first event.
+ * <p>
+ * Record: {@code int length, int CRC-32 of the body, body: long sequence, long durable length, event}.
+ * The durable length is the length of the segment forced to the disk before the batch of the record was written.
+ * <p>
+ * Appends are written and forced to the disk by a single writer thread, in batches: all the records
+ * queued while the previous batch was being forced go to the disk by one write and one {@code fsync}
+ * (group commit). An append completes once its record is durable.
+ * <p>
+ * A crash while a batch is being forced may leave any of its pages on the disk, in any order: a record
+ * of the batch may be torn while a later one is whole. Such records were never acknowledged, so on recovery
+ * the segment is truncated at the first record which is not valid. Only if a valid record after it tells
+ * that the record had been durable before, it is corrupt, and recovery fails rather than drop it.
+ */
+@ParametersAreNonnullByDefault
+class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int DURABLE_OFFSET = HEADER_SIZE + Long.BYTES;
+    private static final int MIN_BODY_SIZE = 2 * Long.BYTES;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final int maxBatch;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * Segment being appended to, confined to the writer thread.
+     */
+    private FileChannel segment;
+    private long segmentFirstSequence;
+    private final CRC32 crc = new CRC32();
+
+    private volatile IOException failure;
+
+    /**
+     * Guarded by {@code this} together with queueing, so that no entry is queued after the request to close.
+     */
+    private boolean closed;
+
+    /**
+     * Open a new segment and start the writer.
+     *
+     * @param directory     log directory
+     * @param firstSequence sequence number of the next event, no segment may hold it or any later one
+     * @param maxBatch      number of records forced to the disk at once at most
+     */
+    WriteAheadLog(Path directory, long firstSequence, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.maxBatch = maxBatch;
+        openSegment(firstSequence);
+        this.writer = new Thread(this::writeLoop, "market-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue the event. Thread-safe; records are written in the order of the calls.
+     *
+     * @return Future completed once the record is durable, or exceptionally if it could not be written.
+     * @throws IllegalArgumentException if the event is too large for a record
+     */
+    CompletableFuture<Void> append(long sequence, MarketEvent event) {
+        ByteBuffer record = encode(sequence, event);
+        return enqueue(new Entry(record, 0));
+    }
+
+    /**
+     * Queue switching to a new segment, so that the events appended later go to that one.
+     *
+     * @param firstSequence sequence number of the next event appended
+     * @return Future completed once the previous segment is durable and the new one is created.
+     */
+    CompletableFuture<Void> roll(long firstSequence) {
+        return enqueue(new Entry(null, firstSequence));
+    }
+
+    /**
+     * @return Number of times the log has been forced to the disk.
+     */
+    long syncs() {
+        return syncs.get();
+    }
+
+    /**
+     * @return Failure to write the log, after which nothing more is written, or {@code null}.
+     */
+    @Nullable
+    IOException getFailure() {
+        return failure;
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(Entry entry) {
+        if (closed) {
+            entry.done.completeExceptionally(new IOException("Write-ahead log is closed"));
+        } else if (failure != null) {
+            entry.done.completeExceptionally(new IOException("Write-ahead log failed", failure));
+        } else {
+            queue.add(entry);
+        }
+        return entry.done;
+    }
+
+    /**
+     * @return Record of the event, to be {@linkplain #seal sealed} once its batch is written.
+     */
+    static ByteBuffer encode(long sequence, MarketEvent event) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            out.writeLong(sequence);
+            out.writeLong(0); // durable length
+            EventCodec.writeEvent(out, event);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        byte[] bytes = body.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        record.putInt(bytes.length).putInt(0).put(bytes);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Set the durable length of the segment to the record, and its checksum.
+     */
+    static void seal(ByteBuffer record, long durable, CRC32 crc) {
+        record.putLong(DURABLE_OFFSET, durable);
+        crc.reset();
+        crc.update(record.array(), record.arrayOffset() + HEADER_SIZE, record.limit() - HEADER_SIZE);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        List<ByteBuffer> records = new ArrayList<>(maxBatch);
+        List<CompletableFuture<Void>> waiting = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                for (Entry entry : batch) {
+                    if (entry.record != null) {
+                        records.add(entry.record);
+                        waiting.add(entry.done);
+                        continue;
+                    }
+                    flush(records, waiting);
+                    if (entry.rollTo < 0) {
+                        closeSegment(entry.done);
+                        return;
+                    }
+                    rollSegment(entry);
+                }
+                flush(records, waiting);
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<ByteBuffer> records, List<CompletableFuture<Void>> waiting) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            long durable = segment.position();
+            for (ByteBuffer record : records) {
+                seal(record, durable, crc);
+            }
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            long remaining = records.stream().mapToLong(ByteBuffer::remaining).sum();
+            while (remaining > 0) {
+                remaining -= segment.write(buffers);
+            }
+            segment.force(false);
+            syncs.incrementAndGet();
+            waiting.forEach(done -> done.complete(null));
+        } catch (IOException ex) {
+            failure = ex;
+            waiting.forEach(done -> done.completeExceptionally(new IOException("Write-ahead log failed", ex)));
+        } finally {
+            records.clear();
+            waiting.clear();
+        }
+    }
+
+    private void rollSegment(Entry entry) {
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (entry.rollTo != segmentFirstSequence) {
+                segment.force(false);
+                segment.close();
+                openSegment(entry.rollTo);
+            }
+            entry.done.complete(null);
+        } catch (IOException ex) {
+            failure = ex;
+            entry.done.completeExceptionally(new IOException("Write-ahead log failed", ex));
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        segment = FileChannel.open(segmentPath(directory, firstSequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentFirstSequence = firstSequence;
+    }
+
+    private void closeSegment(CompletableFuture<Void> done) {
+        try {
+            segment.close();
+            done.complete(null);
+        } catch (IOException ex) {
+            done.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Wait for the queued records to be written, and stop the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        Entry close = new Entry(null, -1);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(close);
+        }
+        try {
+            close.done.get();
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new IOException("Could not close write-ahead log", ex.getCause());
+        }
+    }
+
+    static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return Segments found in the directory by the sequence numbers of their first events.
+     */
+    static SortedMap<Long, Path> segments(Path directory) throws IOException {
+        SortedMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Delete the segments which start before the sequence number, i.e. hold none of the later events
+     * if the log has been rolled over to that sequence number.
+     */
+    static void deleteSegmentsBefore(Path directory, long sequence) throws IOException {
+        for (Path segment : segments(directory).headMap(sequence).values()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Read the records of the segment up to its end or up to its torn tail: a record that is cut short
+     * or fails its checksum, with no valid record after it written once it was durable.
+     *
+     * @param segment  segment file
+     * @param consumer called for every valid record in order
+     * @return Length of the valid part of the segment.
+     * @throws IOException if the file could not be read, a record with valid checksum could not be decoded,
+     *                     or a corrupt record is followed by a valid one written once it was durable
+     */
+    static long read(Path segment, RecordConsumer consumer) throws IOException {
+        long valid = 0;
+        try (InputStream file = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            while (true) {
+                byte[] body;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < MIN_BODY_SIZE || length > MAX_RECORD_SIZE) {
+                        return tornTail(segment, valid);
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException ex) {
+                    return tornTail(segment, valid);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    return tornTail(segment, valid);
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                long sequence = record.readLong();
+                record.readLong(); // durable length
+                consumer.accept(sequence, EventCodec.readEvent(record));
+                valid += HEADER_SIZE + body.length;
+            }
+        }
+    }
+
+    /**
+     * Check that the undecodable record at the position is the torn tail of the segment: that no valid record
+     * starting at any later byte was written once the segment was durable beyond the position. Records
+     * of the batch being forced at a crash may be left whole after torn ones, but a bit flip within
+     * the durable part of the segment must not truncate the records acknowledged after it.
+     *
+     * @return The position.
+     * @throws IOException if there is a valid record after the position, written once it was durable
+     */
+    private static long tornTail(Path segment, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+            CRC32 crc = new CRC32();
+            for (int start = 1; start <= tail.limit() - HEADER_SIZE; start++) {
+                int length = tail.getInt(start);
+                if (length < MIN_BODY_SIZE || length > Math.min(MAX_RECORD_SIZE, tail.limit() - start - HEADER_SIZE)) {
+                    continue;
+                }
+                ByteBuffer body = tail.duplicate();
+                body.limit(start + HEADER_SIZE + length).position(start + HEADER_SIZE);
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() == tail.getInt(start + Integer.BYTES)
+                        && tail.getLong(start + DURABLE_OFFSET) > position) {
+                    throw new IOException(format("Corrupt record at %d of write-ahead log segment %s"
+                            + " is followed by a valid one at %d", position, segment, position + start));
+                }
+            }
+        }
+        return position;
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(long sequence, MarketEvent event) throws IOException;
+    }
+
+    /**
+     * Record to write, or request to roll over ({@code rollTo >= 0}) or to close ({@code rollTo < 0}).
+     */
+    private static class Entry {
+        private final ByteBuffer record;
+        private final long rollTo;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(@Nullable ByteBuffer record, long rollTo) {
+            this.record = record;
+            this.rollTo = rollTo;
+        }
+    }
+}
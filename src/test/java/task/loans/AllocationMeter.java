@@ -0,0 +1,70 @@
+package task.loans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.SkipException;
+
+/**
+ * Measures heap bytes allocated per operation by the current thread, for the allocation budget tests.
+ * <p>
+ * Relies on the per-thread allocation counters of {@link com.sun.management.ThreadMXBean},
+ * the tests are skipped on a JVM which does not provide or enable them.
+ */
+@ParametersAreNonnullByDefault
+public final class AllocationMeter {
+
+    /**
+     * Group of the allocation budget tests.
+     */
+    public static final String GROUP = "allocation";
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 3;
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Run the operation until compiled, then measure it.
+     *
+     * @param operation  operation to measure, allocating nothing itself but in the code under test
+     * @param iterations number of runs per round
+     * @return Bytes allocated per run, the least of a few rounds to dampen the noise.
+     * @throws SkipException if the allocation counters are not available
+     */
+    public static double bytesPerOperation(Runnable operation, int iterations) {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            repeat(operation, iterations);
+        }
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            repeat(operation, iterations);
+            least = Math.min(least, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        return (double) least / iterations;
+    }
+
+    private static void repeat(Runnable operation, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("Per-thread allocation counters are not provided by this JVM");
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            throw new SkipException("Per-thread allocation counters are disabled");
+        }
+        return allocations;
+    }
+}
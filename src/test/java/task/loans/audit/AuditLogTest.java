@@ -0,0 +1,241 @@
+package task.loans.audit;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class AuditLogTest {
+
+    private final LoanCalculator calculator = new LoanCalculator(asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520"))));
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("audit-log");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void recordsOfAllThreads_readBackInSequence() throws Exception {
+        Instant start = Instant.now().minusMillis(1);
+        AuditLog audit = AuditLog.builder().directory(directory).overflow(AuditLog.Overflow.BLOCK).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    audit.record(36, loan(i));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            result.get();
+        }
+        executor.shutdown();
+        audit.close();
+
+        List<AuditRecord> records = readAll();
+        assertThat(records.size(), equalTo(20_000));
+        assertThat(audit.getWritten(), equalTo(20_000L));
+        assertThat(audit.getDropped(), equalTo(0L));
+        int[] counts = new int[5_000];
+        for (int i = 0; i < records.size(); i++) {
+            AuditRecord record = records.get(i);
+            assertThat(record.getSequence(), equalTo((long) i));
+            assertThat(record.getTerm(), equalTo(36));
+            assertThat(record.getTime().isAfter(start), equalTo(true));
+            int amount = record.getLoan().getRequestedAmount().intValueExact() - 1;
+            assertThat(record.getLoan(), equalTo(loan(amount)));
+            counts[amount]++;
+        }
+        for (int count : counts) {
+            assertThat(count, equalTo(4));
+        }
+    }
+
+    @Test
+    public void unavailableLoan_readBackEqual() throws IOException {
+        Loan unavailable = Loan.unavailable(new BigDecimal("15000.005"));
+        try (AuditLog audit = AuditLog.builder().directory(directory).build()) {
+            audit.record(12, unavailable);
+        }
+
+        assertThat(readAll().get(0).getLoan(), equalTo(unavailable));
+    }
+
+    @Test
+    public void smallFiles_rotated() throws IOException {
+        try (AuditLog audit = AuditLog.builder().directory(directory).maxFileSize(4096)
+                .syncInterval(Duration.ZERO).overflow(AuditLog.Overflow.BLOCK).build()) {
+            for (int i = 0; i < 1_000; i++) {
+                audit.record(36, loan(i));
+            }
+        }
+
+        assertThat(AuditLog.files(directory).size(), greaterThan(10));
+        for (Path file : AuditLog.files(directory).values()) {
+            assertThat(Files.size(file), lessThanOrEqualTo(4096L + 100));
+        }
+        List<AuditRecord> records = readAll();
+        assertThat(records.size(), equalTo(1_000));
+        assertThat(records.get(999).getSequence(), equalTo(999L));
+    }
+
+    @Test
+    public void batchesFilled_noRecordLost() throws IOException {
+        AuditLog audit = AuditLog.builder().directory(directory).batchSize(4096)
+                .overflow(AuditLog.Overflow.BLOCK).build();
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                audit.record(36, loan(i));
+            }
+        } finally {
+            audit.close();
+        }
+
+        assertThat(audit.getDropped(), equalTo(0L));
+        assertThat(readAll().size(), equalTo(10_000));
+    }
+
+    @Test
+    public void reopened_sequenceContinues() throws IOException {
+        try (AuditLog audit = AuditLog.builder().directory(directory).build()) {
+            audit.record(36, loan(1));
+            audit.record(36, loan(2));
+        }
+        try (AuditLog audit = AuditLog.builder().directory(directory).build()) {
+            audit.record(36, loan(3));
+        }
+
+        List<AuditRecord> records = readAll();
+        assertThat(records.size(), equalTo(3));
+        assertThat(records.get(2).getSequence(), equalTo(2L));
+        assertThat(records.get(2).getLoan(), equalTo(loan(3)));
+    }
+
+    @Test
+    public void tornTail_validRecordsRead() throws IOException {
+        try (AuditLog audit = AuditLog.builder().directory(directory).build()) {
+            for (int i = 0; i < 10; i++) {
+                audit.record(36, loan(i));
+            }
+        }
+        Path file = AuditLog.files(directory).get(0L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThat(readAll().size(), equalTo(9));
+    }
+
+    @Test
+    public void fullQueue_recordsDroppedNotBlocked() throws IOException {
+        long recorded = 0;
+        AuditLog audit = AuditLog.builder().directory(directory).queueCapacity(2).build();
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                recorded += audit.record(36, loan(i)) ? 1 : 0;
+            }
+        } finally {
+            audit.close();
+        }
+
+        assertThat(audit.getWritten(), equalTo(recorded));
+        assertThat(audit.getDropped(), equalTo(10_000 - recorded));
+        assertThat(readAll().size(), equalTo((int) recorded));
+    }
+
+    @Test
+    public void recordsRacingClose_writtenOrCountedDropped() throws Exception {
+        AuditLog audit = AuditLog.builder().directory(directory).overflow(AuditLog.Overflow.BLOCK).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    audit.record(36, loan(i));
+                }
+            }));
+        }
+        Thread.sleep(5);
+        audit.close();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertThat(audit.getWritten() + audit.getDropped(), equalTo(200_000L));
+        assertThat(readAll().size(), equalTo((int) audit.getWritten()));
+    }
+
+    @Test
+    public void longTerm_readBackEqual() throws IOException {
+        // beyond the range of a short, though quoted loans have terms of LoanCalculator.MAX_TERM at most
+        Loan loan = loan(1);
+        try (AuditLog audit = AuditLog.builder().directory(directory).build()) {
+            audit.record(40_000, loan);
+        }
+
+        AuditRecord record = readAll().get(0);
+        assertThat(record.getTerm(), equalTo(40_000));
+        assertThat(record.getLoan(), equalTo(loan));
+    }
+
+    @Test
+    public void closed_recordDropped() throws IOException {
+        AuditLog audit = AuditLog.builder().directory(directory).build();
+        audit.close();
+
+        assertThat(audit.record(36, loan(1)), equalTo(false));
+        assertThat(audit.getDropped(), equalTo(1L));
+    }
+
+    private Loan loan(int index) {
+        return calculator.calculate(decimal(index + 1), 36);
+    }
+
+    private List<AuditRecord> readAll() throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        AuditReader.read(directory, records::add);
+        return records;
+    }
+}
@@ -0,0 +1,51 @@
+package task.loans.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+@ParametersAreNonnullByDefault
+public class BaselineTest {
+
+    @Test
+    public void versions_comparedAsMaven() {
+        assertThat(Baseline.compareVersions("1.0", "1.0"), equalTo(0));
+        assertThat(Baseline.compareVersions("1.0", "1.0.0"), equalTo(0));
+        assertThat(Baseline.compareVersions("1.2", "1.10"), lessThan(0));
+        assertThat(Baseline.compareVersions("1.0-SNAPSHOT", "1.0"), lessThan(0));
+        assertThat(Baseline.compareVersions("1.0", "1.1-SNAPSHOT"), lessThan(0));
+        assertThat(Baseline.compareVersions("2.0", "1.9.9"), greaterThan(0));
+    }
+
+    @Test
+    public void previous_latestOlderVersion() throws IOException {
+        Path directory = Files.createTempDirectory("baselines");
+        try {
+            for (String version : new String[]{"1.0", "1.2", "1.10", "2.0-SNAPSHOT"}) {
+                Files.createFile(directory.resolve(version + Baseline.SUFFIX));
+            }
+            Files.createFile(directory.resolve("notes.txt"));
+
+            assertThat(Baseline.findPrevious(directory, "1.11-SNAPSHOT"),
+                    equalTo(Optional.of(directory.resolve("1.10.csv"))));
+            assertThat(Baseline.findPrevious(directory, "1.10"), equalTo(Optional.of(directory.resolve("1.2.csv"))));
+            assertThat(Baseline.findPrevious(directory, "2.0"),
+                    equalTo(Optional.of(directory.resolve("2.0-SNAPSHOT.csv"))));
+            assertThat(Baseline.findPrevious(directory, "1.0"), equalTo(Optional.empty()));
+            assertThat(Baseline.findPrevious(directory.resolve("missing"), "1.0"), equalTo(Optional.empty()));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package task.loans.bench;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+@ParametersAreNonnullByDefault
+public class BenchmarkRunnerTest {
+
+    private final BenchmarkRunner runner = BenchmarkRunner.builder()
+            .warmup(Duration.ofMillis(50))
+            .samples(5)
+            .sampleTime(Duration.ofMillis(10))
+            .build();
+
+    @Test
+    public void run_samplesInOrder() {
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("Sleep", invocation -> {
+            Thread.sleep(1);
+            return invocation;
+        });
+        benchmarks.put("Sum", invocation -> invocation * 31L + 7);
+
+        List<BenchmarkResult> results = runner.run(benchmarks, result -> {
+        });
+
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).getName(), equalTo("Sleep"));
+        assertThat(results.get(0).getSamples().length, equalTo(5));
+        assertThat(results.get(0).getMedian(), greaterThan(1e6));
+        assertThat(results.get(0).getMedian(), greaterThan(results.get(1).getMedian()));
+    }
+
+    @Test
+    public void standardSuite_runs() {
+        Map<String, Benchmark> benchmarks = BenchmarkSuite.standard(100);
+        for (Map.Entry<String, Benchmark> benchmark : benchmarks.entrySet()) {
+            assertThat(benchmark.getKey(), runner.run(benchmark.getKey(), benchmark.getValue()).getMedian(),
+                    greaterThan(0.0));
+        }
+    }
+}
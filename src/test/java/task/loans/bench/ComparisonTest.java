@@ -0,0 +1,140 @@
+package task.loans.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+@ParametersAreNonnullByDefault
+public class ComparisonTest {
+
+    @Test
+    public void sameDistribution_unchanged() {
+        Random random = new Random(3);
+        Baseline baseline = baseline(result("LoanCalculator.calculate", random, 1000, 30));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(result("LoanCalculator.calculate", random, 1000, 30)), 0.01, 0.05);
+
+        Comparison.Entry entry = comparison.getEntries().get(0);
+        assertThat(entry.getVerdict(), equalTo(Comparison.Verdict.UNCHANGED));
+        assertThat(entry.getPValue(), greaterThan(0.01));
+        assertThat(comparison.hasRegressions(), equalTo(false));
+    }
+
+    @Test
+    public void slower_regression() {
+        Random random = new Random(5);
+        Baseline baseline = baseline(result("OrderBook.build", random, 1000, 30));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(result("OrderBook.build", random, 1300, 30)), 0.01, 0.05);
+
+        Comparison.Entry entry = comparison.getEntries().get(0);
+        assertThat(entry.getVerdict(), equalTo(Comparison.Verdict.REGRESSION));
+        assertThat(entry.getChange(), closeTo(0.3, 0.05));
+        assertThat(entry.getPValue(), lessThan(0.001));
+        assertThat(comparison.hasRegressions(), equalTo(true));
+    }
+
+    @Test
+    public void faster_improvement() {
+        Random random = new Random(7);
+        Baseline baseline = baseline(result("OrderBook.build", random, 1000, 30));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(result("OrderBook.build", random, 700, 30)), 0.01, 0.05);
+
+        assertThat(comparison.getEntries().get(0).getVerdict(), equalTo(Comparison.Verdict.IMPROVEMENT));
+        assertThat(comparison.hasRegressions(), equalTo(false));
+    }
+
+    @Test
+    public void significantBelowThreshold_unchanged() {
+        Random random = new Random(9);
+        Baseline baseline = baseline(result("OrderBook.build", random, 1000, 200));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(result("OrderBook.build", random, 1030, 200)), 0.01, 0.05);
+
+        Comparison.Entry entry = comparison.getEntries().get(0);
+        assertThat(entry.getPValue(), lessThan(0.01));
+        assertThat(entry.getVerdict(), equalTo(Comparison.Verdict.UNCHANGED));
+    }
+
+    @Test
+    public void fewNoisySamples_unchanged() {
+        Baseline baseline = baseline(new BenchmarkResult("OrderBook.build", new double[]{1000, 1500, 900}));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(new BenchmarkResult("OrderBook.build", new double[]{1400, 1600, 1200})), 0.01, 0.05);
+
+        assertThat(comparison.getEntries().get(0).getVerdict(), equalTo(Comparison.Verdict.UNCHANGED));
+    }
+
+    @Test
+    public void addedAndRemoved() {
+        Random random = new Random(11);
+        Baseline baseline = baseline(result("Old", random, 1000, 10), result("Kept", random, 1000, 10));
+        Comparison comparison = Comparison.of(baseline,
+                Arrays.asList(result("Kept", random, 1000, 10), result("New", random, 1000, 10)), 0.01, 0.05);
+
+        assertThat(comparison.getEntries().stream().map(Comparison.Entry::getVerdict).toArray(),
+                equalTo(new Object[]{Comparison.Verdict.UNCHANGED, Comparison.Verdict.ADDED,
+                        Comparison.Verdict.REMOVED}));
+        assertThat(comparison.format().split(System.lineSeparator()).length, equalTo(4));
+    }
+
+    @Test
+    public void mannWhitney_exactSeparation() {
+        double[] low = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        double[] high = {11, 12, 13, 14, 15, 16, 17, 18, 19, 20};
+
+        // U = 0 of 10 and 10 samples: z = (|0 - 50| - 0.5) / sqrt(175), two-sided p of about 0.00018
+        assertThat(Statistics.mannWhitneyPValue(low, high), closeTo(0.00018, 0.00002));
+        assertThat(Statistics.mannWhitneyPValue(high, low), closeTo(0.00018, 0.00002));
+        assertThat(Statistics.mannWhitneyPValue(low, low), closeTo(1, 0.001));
+    }
+
+    @Test
+    public void baseline_writtenAndRead() throws Exception {
+        Path directory = Files.createTempDirectory("bench");
+        try {
+            Path file = directory.resolve("1.0.csv");
+            BenchmarkResult result = new BenchmarkResult("LoanCalculator.calculate", new double[]{1.5, 2.25, 1000});
+            Baseline.of(Arrays.asList(result)).write(file);
+
+            Baseline read = Baseline.read(file);
+            List<BenchmarkResult> results = read.getResults();
+            assertThat(results.size(), equalTo(1));
+            assertThat(results.get(0).getName(), equalTo("LoanCalculator.calculate"));
+            assertThat(results.get(0).getSamples(), equalTo(new double[]{1.5, 2.25, 1000}));
+            assertThat(read.getEnvironment().keySet(), contains("created", "java", "os", "processors"));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    private static Baseline baseline(BenchmarkResult... results) {
+        return Baseline.of(Arrays.asList(results));
+    }
+
+    /**
+     * @return Result of normally distributed samples with 5% deviation.
+     */
+    private static BenchmarkResult result(String name, Random random, double mean, int samples) {
+        double[] values = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            values[i] = mean * (1 + 0.05 * random.nextGaussian());
+        }
+        return new BenchmarkResult(name, values);
+    }
+}
@@ -1,6 +1,8 @@
 package task.loans.cli;
 
+import java.math.BigDecimal;
 import java.security.Permission;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -11,6 +13,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -93,6 +96,210 @@ public class ParserTest {
         assertThat(params.customSeparator, equalTo('='));
     }
 
+    @Test
+    public void parse_maxRate() {
+        Params params = parser.parse("a", "--max-rate", "0.07");
+        assertThat(params.maxRate, equalTo(new BigDecimal("0.07")));
+        assertThat(params.loanAmount, nullValue());
+    }
+
+    @Test
+    public void parse_maxMonthlyRepayment() {
+        Params params = parser.parse("a", "-m", "300");
+        assertThat(params.maxMonthlyRepayment, equalTo(new BigDecimal("300")));
+    }
+
+    @Test
+    public void parseLoadTest_server() {
+        LoadTestParams params = parser.parseLoadTest("--server", "localhost:7070", "-t", "4", "-r", "5000");
+        assertThat(params.server.getPort(), equalTo(7070));
+        assertThat(params.threads, equalTo(4));
+        assertThat(params.rate, equalTo(5000.0));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseLoadTest_marketAndServer_exits() {
+        parser.parseLoadTest("a", "--server", "localhost:7070");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseLoadTest_malformedAmounts_exits() {
+        parser.parseLoadTest("a", "--amounts", "poisson:3");
+    }
+
+    @Test
+    public void parseLoadTest_partitions() {
+        LoadTestParams params = parser.parseLoadTest("--partitions", "localhost:7071,localhost:7072");
+        assertThat(params.partitions.size(), equalTo(2));
+        assertThat(params.partitions.get(1).getPort(), equalTo(7072));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseLoadTest_serverAndPartitions_exits() {
+        parser.parseLoadTest("--server", "localhost:7070", "--partitions", "localhost:7071");
+    }
+
+    @Test
+    public void parsePartition_rateRange() {
+        PartitionParams params = parser.parsePartition("a", "--rate-from", "0.07", "--rate-to", "0.08", "-p", "7071");
+        assertThat(params.rateFrom, equalTo(new BigDecimal("0.07")));
+        assertThat(params.rateTo, equalTo(new BigDecimal("0.08")));
+        assertThat(params.port, equalTo(7071));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parsePartition_emptyRange_exits() {
+        parser.parsePartition("a", "--rate-from", "0.08", "--rate-to", "0.08");
+    }
+
+    @Test
+    public void parseBench_compare() {
+        BenchParams params = parser.parseBench("--compare", "benchmarks/1.0.csv", "--only", "OrderBook", "-n", "5");
+        assertThat(params.baselineFile, equalTo("benchmarks/1.0.csv"));
+        assertThat(params.only, equalTo("OrderBook"));
+        assertThat(params.samples, equalTo(5));
+        assertThat(params.forks, equalTo(3));
+    }
+
+    @Test
+    public void parseBench_compareWithDirectory() {
+        BenchParams params = parser.parseBench("--compare", "benchmarks", "--version", "1.1-SNAPSHOT");
+        assertThat(params.baselineFile, equalTo("benchmarks"));
+        assertThat(params.version, equalTo("1.1-SNAPSHOT"));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseBench_directoryWithoutVersion_exits() {
+        parser.parseBench("--save", "benchmarks");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseBench_oneSample_exits() {
+        parser.parseBench("-n", "1");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseBench_alphaOutOfRange_exits() {
+        parser.parseBench("--alpha", "1");
+    }
+
+    @Test
+    public void parseSimulate_amountsAndPerturbations() {
+        SimulateParams params = parser.parseSimulate("a", "-a", "1000,2500.5", "-n", "5000", "--dropout", "0.2",
+                "--rate-shift", "0.01");
+        assertThat(params.amounts, contains(new BigDecimal("1000"), new BigDecimal("2500.5")));
+        assertThat(params.scenarios, equalTo(5000L));
+        assertThat(params.dropout, equalTo(0.2));
+        assertThat(params.rateShift, equalTo(0.01));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseSimulate_dropoutAboveOne_exits() {
+        parser.parseSimulate("a", "--dropout", "1.5");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parseSimulate_nonPositiveAmount_exits() {
+        parser.parseSimulate("a", "-a", "1000,0");
+    }
+
+    @Test
+    public void parse_filter() {
+        Params params = parser.parse("a", "--filter");
+        assertThat(params.filter, equalTo(true));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_filterWithMarketFromStdin_exits() {
+        parser.parse("-", "--filter");
+    }
+
+    @Test
+    public void parse_serve() {
+        Params params = parser.parse("a", "--serve", "7070", "--event-loops", "2");
+        assertThat(params.servePort, equalTo(7070));
+        assertThat(params.eventLoops, equalTo(2));
+    }
+
+    @Test
+    public void parse_serveAudited() {
+        Params params = parser.parse("a", "--serve", "7070", "--audit", "audit");
+        assertThat(params.auditDirectory, equalTo("audit"));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_auditNotServing_exits() {
+        parser.parse("a", "-a", "5000", "--audit", "audit");
+    }
+
+    @Test
+    public void parse_validate() {
+        Params params = parser.parse("a", "--validate", "--max-reported", "10");
+        assertThat(params.validate, equalTo(true));
+        assertThat(params.maxReported, equalTo(10));
+    }
+
+    @Test
+    public void parse_amountSkippingInvalid() {
+        Params params = parser.parse("a", "-a", "5000", "--skip-invalid");
+        assertThat(params.skipInvalid, equalTo(true));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_validateSkippingInvalid_exits() {
+        parser.parse("a", "--validate", "--skip-invalid");
+    }
+
+    @Test
+    public void parse_writeBook() {
+        Params params = parser.parse("a", "--write-book", "market.book", "--sort-memory", "16");
+        assertThat(params.bookFile, equalTo("market.book"));
+        assertThat(params.sortMemory, equalTo(16));
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_writeBookAndAmount_exits() {
+        parser.parse("a", "--write-book", "market.book", "-a", "5000");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_writeBookSkippingInvalid_exits() {
+        parser.parse("a", "--write-book", "market.book", "--skip-invalid");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_serveAndAmount_exits() {
+        parser.parse("a", "--serve", "7070", "-a", "5000");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_amountAndMaxRate_exits() {
+        parser.parse("a", "-a", "5000", "-r", "0.07");
+    }
+
+    @Test(expectedExceptions = ExitException.class)
+    public void parse_negativeMaxRate_exits() {
+        parser.parse("a", "-r", "-0.07");
+    }
+
+    @Test(dataProvider = "allowedAmounts")
+    public void allowedAmountNotAbove(String amount, Optional<Integer> expected) {
+        assertThat(Params.allowedAmountNotAbove(new BigDecimal(amount)), equalTo(expected));
+    }
+
+    @DataProvider(name = "allowedAmounts")
+    public static Object[][] allowedAmounts() {
+        return new Object[][]{
+                {"0", Optional.empty()},
+                {"999.99", Optional.empty()},
+                {"1000", Optional.of(1_000)},
+                {"1099.99", Optional.of(1_000)},
+                {"4321.5", Optional.of(4_300)},
+                {"15000", Optional.of(15_000)},
+                {"1000000", Optional.of(15_000)},
+        };
+    }
+
     @Test(expectedExceptions = ExitException.class)
     public void parse_helpEnabled_exits() {
         parser.parse("bga", "--sep", "=", "-h", "-a", "2000");
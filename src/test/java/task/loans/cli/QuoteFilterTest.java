@@ -0,0 +1,138 @@
+package task.loans.cli;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.io.ResultFormatter;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.nCopies;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class QuoteFilterTest {
+
+    private final LoanCalculator calculator = new LoanCalculator(asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520"))));
+
+    private final ResultFormatter formatter = new ResultFormatter();
+    private final QuoteFilter filter = new QuoteFilter(calculator, formatter);
+
+    @Test
+    public void quotePerLine() throws IOException {
+        StringWriter out = new StringWriter();
+        filter.run(new StringReader("1000\n\n 1500 \n1700\n"), out);
+
+        assertThat(lines(out), contains(
+                formatter.formatLine(calculator.calculate(decimal(1000))),
+                formatter.formatLine(calculator.calculate(decimal(1500))),
+                "Lending for the specified amount is currently unavailable"));
+    }
+
+    @Test
+    public void illegalAmount_reportedAndSkipped() throws IOException {
+        StringWriter out = new StringWriter();
+        filter.run(new StringReader("abc\n1050\n1000"), out);
+
+        List<String> lines = lines(out);
+        assertThat(lines, hasSize(3));
+        assertThat(lines.get(0), startsWith("Illegal amount abc"));
+        assertThat(lines.get(1), equalTo("Illegal amount 1050: allowed amount value step is 100"));
+        assertThat(lines.get(2), equalTo(formatter.formatLine(calculator.calculate(decimal(1000)))));
+    }
+
+    @Test
+    public void pipedInput_flushedInBatches() throws IOException {
+        CountingWriter out = new CountingWriter();
+        filter.run(new StringReader(String.join("\n", nCopies(10_000, "1000"))), out);
+
+        assertThat(lines(out.buffer), hasSize(10_000));
+        assertThat(out.flushes, lessThan(10));
+    }
+
+    @Test
+    public void interactiveInput_flushedPerLine() throws IOException {
+        CountingWriter out = new CountingWriter();
+        filter.run(new LineAtATimeReader("1000\n1100\n1200\n"), out);
+
+        assertThat(lines(out.buffer), everyItem(startsWith("Requested amount")));
+        assertThat(out.flushes, equalTo(4));
+    }
+
+    private static List<String> lines(StringWriter out) {
+        return Arrays.asList(out.toString().split(System.lineSeparator()));
+    }
+
+    private static class CountingWriter extends FilterWriter {
+        private final StringWriter buffer;
+        private int flushes;
+
+        CountingWriter() {
+            this(new StringWriter());
+        }
+
+        private CountingWriter(StringWriter buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+            super.flush();
+        }
+    }
+
+    /**
+     * Gives out one line per read, as a terminal does, and has nothing ready in between.
+     */
+    private static class LineAtATimeReader extends Reader {
+        private final String text;
+        private int position;
+
+        LineAtATimeReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int end = Math.min(text.indexOf('\n', position) + 1, position + length);
+            text.getChars(position, end, buffer, offset);
+            int read = end - position;
+            position = end;
+            return read;
+        }
+
+        @Override
+        public boolean ready() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+@ParametersAreNonnullByDefault
+public class BatchPricerTest {
+
+    @Test(dataProvider = "terms")
+    public void randomPairs_sameAsEngine(int term) {
+        int size = 3 * BatchPricer.CHUNK + 17;
+        long[] principals = new long[size];
+        double[] rates = new double[size];
+        Random random = new Random(term);
+        for (int i = 0; i < size; i++) {
+            principals[i] = 1 + random.nextInt(2_000_000_00);
+            rates[i] = BigDecimal.valueOf(random.nextInt(300_000), 6).doubleValue();
+        }
+
+        BatchQuotes quotes = BatchPricer.builder().term(term).verifyEvery(1).build().price(principals, rates);
+
+        assertThat(quotes.getVerified(), equalTo(size));
+        assertThat(quotes.getMismatches().length, equalTo(0));
+        for (int i = 0; i < size; i += 97) {
+            assertSameAsEngine(quotes, i, principals[i], rates[i], term);
+        }
+    }
+
+    @Test
+    public void edgeRates_sameAsEngine() {
+        long[] principals = {100_000, 100_000, 100_000, 1, 50, 1_000_000_000_000L};
+        double[] rates = {0, 1e-12, 1e-7, 0.07, 0.2, 0.5};
+
+        BatchQuotes quotes = BatchPricer.builder().term(LoanCalculator.DEFAULT_TERM).verifyEvery(0).build()
+                .price(principals, rates);
+
+        for (int i = 0; i < principals.length; i++) {
+            assertSameAsEngine(quotes, i, principals[i], rates[i], LoanCalculator.DEFAULT_TERM);
+        }
+        assertThat(quotes.getVerified(), greaterThan(0));
+        assertThat(quotes.getVerified(), lessThan(principals.length));
+        assertThat(quotes.getMismatches().length, equalTo(0));
+    }
+
+    @Test
+    public void knownQuote() {
+        BatchQuotes quotes = BatchPricer.builder().build().price(new long[]{1000_00}, new double[]{0.07});
+
+        assertThat(quotes.getMonthlyRepayment(0), equalTo(30_88L));
+        assertThat(quotes.getTotalRepayment(0), equalTo(1111_58L));
+    }
+
+    @Test
+    public void singleThread_sameAsParallel() {
+        long[] principals = new long[5 * BatchPricer.CHUNK];
+        double[] rates = new double[principals.length];
+        for (int i = 0; i < principals.length; i++) {
+            principals[i] = 1000_00 + i;
+            rates[i] = 0.05 + i * 1e-6;
+        }
+
+        BatchQuotes parallel = BatchPricer.builder().build().price(principals, rates);
+        BatchQuotes sequential = BatchPricer.builder().pool(new ForkJoinPool(1)).build().price(principals, rates);
+
+        for (int i = 0; i < principals.length; i++) {
+            assertThat(parallel.getMonthlyRepayment(i), equalTo(sequential.getMonthlyRepayment(i)));
+            assertThat(parallel.getTotalRepayment(i), equalTo(sequential.getTotalRepayment(i)));
+        }
+        assertThat(parallel.getVerified(), equalTo(sequential.getVerified()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void differentLengths_exception() {
+        BatchPricer.builder().build().price(new long[2], new double[1]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void negativeRate_exception() {
+        BatchPricer.builder().build().price(new long[]{100}, new double[]{-0.01});
+    }
+
+    @DataProvider(name = "terms")
+    public static Object[][] terms() {
+        return new Object[][]{{1}, {12}, {LoanCalculator.DEFAULT_TERM}, {600}};
+    }
+
+    private static void assertSameAsEngine(BatchQuotes quotes, int i, long principal, double rate, int term) {
+        BigDecimal monthly = LoanCalculator.monthlyRepayment(BigDecimal.valueOf(principal, 2),
+                BigDecimal.valueOf(rate), term);
+        assertThat(quotes.getMonthlyRepayment(i), equalTo(monthly.setScale(2, BigDecimal.ROUND_HALF_EVEN)
+                .unscaledValue().longValueExact()));
+        assertThat(quotes.getTotalRepayment(i), equalTo(monthly.multiply(BigDecimal.valueOf(term))
+                .setScale(2, BigDecimal.ROUND_HALF_EVEN).unscaledValue().longValueExact()));
+    }
+}
@@ -0,0 +1,119 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class CheapestLevelsTest {
+
+    private static final BigDecimal MAX_AMOUNT = decimal(15_000);
+
+    @Test
+    public void randomMarkets_sameQuotesUpToMax() {
+        Random random = new Random(31);
+        for (int market = 0; market < 50; market++) {
+            List<LendingOffer> offers = randomOffers(random, 1 + random.nextInt(5_000));
+            CheapestLevels levels = new CheapestLevels(MAX_AMOUNT);
+            offers.forEach(levels::add);
+
+            assertSameQuotes(new LoanCalculator(levels.build()), new LoanCalculator(offers), random);
+            assertThat(levels.getTotalSupply(), comparesEqualTo(new LoanCalculator(offers).getStatistics()
+                    .getTotalSupply()));
+        }
+    }
+
+    /**
+     * Every offer is cheaper than all the ones before: every one evicts, the levels kept stay few.
+     */
+    @Test
+    public void cheaperAndCheaper_expensiveLevelsEvicted() {
+        Random random = new Random(37);
+        List<LendingOffer> offers = randomOffers(random, 20_000);
+        offers.sort(Comparator.comparing(LendingOffer::getRate).reversed());
+        CheapestLevels levels = new CheapestLevels(MAX_AMOUNT);
+        offers.forEach(levels::add);
+
+        assertThat(levels.getLevels(), lessThan(100));
+        assertSameQuotes(new LoanCalculator(levels.build()), new LoanCalculator(offers), random);
+    }
+
+    @Test
+    public void marketBelowMax_allLevelsKept() {
+        List<LendingOffer> offers = new ArrayList<>();
+        offers.add(new LendingOffer("Bob", rate("0.075"), decimal("640")));
+        offers.add(new LendingOffer("Jane", rate("0.069"), decimal("480")));
+        offers.add(new LendingOffer("Fred", rate("0.071"), decimal("520")));
+        offers.add(new LendingOffer("Zero", rate("0.071"), decimal("0")));
+        CheapestLevels levels = new CheapestLevels(MAX_AMOUNT);
+        offers.forEach(levels::add);
+
+        assertThat(levels.getLevels(), equalTo(3));
+        assertThat(levels.getTotalSupply(), comparesEqualTo(decimal("1640")));
+        LoanCalculator calculator = new LoanCalculator(levels.build());
+        assertThat(calculator.calculate(decimal("1000")),
+                equalTo(new LoanCalculator(offers).calculate(decimal("1000"))));
+        assertThat(calculator.calculate(decimal("2000")), equalTo(Loan.unavailable(decimal("2000"))));
+    }
+
+    @Test
+    public void levelsCoveringMax_onlyKept() {
+        CheapestLevels levels = new CheapestLevels(decimal(1000));
+        levels.add(new LendingOffer("Bob", rate("0.075"), decimal("600")));
+        levels.add(new LendingOffer("Jane", rate("0.069"), decimal("600")));
+        levels.add(new LendingOffer("Fred", rate("0.080"), decimal("600")));
+        levels.add(new LendingOffer("Mary", rate("0.060"), decimal("400")));
+
+        assertThat(levels.getLevels(), equalTo(2));
+        assertThat(levels.getTotalSupply(), comparesEqualTo(decimal("2200")));
+        assertThat(new LoanCalculator(levels.build()).getStatistics().getMaxRate().get(),
+                comparesEqualTo(new BigDecimal("0.069")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unquantizedRate_exception() {
+        new CheapestLevels(MAX_AMOUNT).add(new LendingOffer("Bob", new BigDecimal("0.0755"), decimal("640")));
+    }
+
+    private static void assertSameQuotes(LoanCalculator capped, LoanCalculator full, Random random) {
+        List<BigDecimal> amounts = new ArrayList<>(Collections.singletonList(MAX_AMOUNT));
+        for (int i = 0; i < 200; i++) {
+            amounts.add(BigDecimal.valueOf(1 + random.nextInt(1_500_000), 2));
+        }
+        for (BigDecimal amount : amounts) {
+            assertThat(capped.calculate(amount), equalTo(full.calculate(amount)));
+            assertThat(capped.calculate(amount, 12), equalTo(full.calculate(amount, 12)));
+        }
+        for (int i = 0; i < 50; i++) {
+            BigDecimal rate = BigDecimal.valueOf(40 + random.nextInt(120), 3);
+            assertThat(capped.maxAmountAtRate(rate).min(MAX_AMOUNT),
+                    comparesEqualTo(full.maxAmountAtRate(rate).min(MAX_AMOUNT)));
+            BigDecimal repayment = BigDecimal.valueOf(random.nextInt(60_000), 2);
+            assertThat(capped.maxAmountForMonthlyRepayment(repayment).min(MAX_AMOUNT),
+                    comparesEqualTo(full.maxAmountForMonthlyRepayment(repayment).min(MAX_AMOUNT)));
+        }
+    }
+
+    private static List<LendingOffer> randomOffers(Random random, int count) {
+        List<LendingOffer> offers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            offers.add(new LendingOffer("Lender" + i, BigDecimal.valueOf(40 + random.nextInt(160), 3),
+                    BigDecimal.valueOf(random.nextInt(200_00), 2)));
+        }
+        return offers;
+    }
+}
@@ -0,0 +1,150 @@
+package task.loans.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+import static task.loans.core.OffHeapOrderBookTest.assertSameBook;
+import static task.loans.core.OffHeapOrderBookTest.assertSameQuotes;
+
+@ParametersAreNonnullByDefault
+public class ExternalBookBuilderTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("external-book");
+        file = directory.resolve("market.book");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void fanIn_boundedByMemoryAndOpenFiles() {
+        assertThat(ExternalBookBuilder.fanIn(ExternalBookBuilder.MIN_MEMORY), equalTo(7));
+        assertThat(ExternalBookBuilder.fanIn(4L << 20), equalTo(ExternalBookBuilder.MAX_FAN_IN));
+        assertThat(ExternalBookBuilder.fanIn(64L << 20), equalTo(ExternalBookBuilder.MAX_FAN_IN));
+    }
+
+    /**
+     * Far more runs than merged at once: merged in several passes, levels repeated across the runs summed up.
+     */
+    @Test
+    public void manyRuns_sameBookAsInMemory() throws IOException {
+        Random random = new Random(41);
+        OrderBook.Builder inMemory = OrderBook.builder();
+        ExternalBookBuilder builder = new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY);
+        for (int i = 0; i < 200_000; i++) {
+            long rate = random.nextInt(10) == 0 ? 30 + random.nextInt(100) : random.nextInt(1_000_000);
+            long amount = random.nextInt(1_000_000);
+            inMemory.add(rate, amount);
+            builder.add(rate, amount);
+        }
+        assertThat(builder.getRuns(), greaterThan(2 * ExternalBookBuilder.fanIn(ExternalBookBuilder.MIN_MEMORY)));
+
+        OffHeapOrderBook book = builder.write(file);
+        OrderBook expected = inMemory.build();
+        assertSameBook(book, expected);
+        assertSameQuotes(book, expected);
+        assertThat(files(), contains(file));
+    }
+
+    @Test
+    public void singleRun_sameQuotesAsOffers() throws IOException {
+        ExternalBookBuilder builder = new ExternalBookBuilder(directory, 1 << 20);
+        builder.add(new LendingOffer("Bob", rate("0.075"), decimal("640")));
+        builder.add(new LendingOffer("Jane", rate("0.069"), decimal("480")));
+        builder.add(new LendingOffer("Fred", rate("0.071"), decimal("520")));
+        builder.add(new LendingOffer("Mary", rate("0.069"), decimal("170")));
+
+        OffHeapOrderBook book = builder.write(file);
+        assertThat(book.size(), equalTo(3));
+        assertThat(new LoanCalculator(OffHeapOrderBook.map(file)).calculate(decimal(1000)),
+                equalTo(new LoanCalculator(OrderBook.builder()
+                        .add(new LendingOffer("Bob", rate("0.075"), decimal("640")))
+                        .add(new LendingOffer("Jane", rate("0.069"), decimal("650")))
+                        .add(new LendingOffer("Fred", rate("0.071"), decimal("520")))
+                        .build()).calculate(decimal(1000))));
+    }
+
+    @Test
+    public void emptyMarket_emptyBook() throws IOException {
+        OffHeapOrderBook book = new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY).write(file);
+
+        assertThat(book.size(), equalTo(0));
+        assertThat(new LoanCalculator(book).calculate(decimal(1000)), equalTo(Loan.unavailable(decimal(1000))));
+    }
+
+    @Test
+    public void closedUnwritten_runsDeleted() throws IOException {
+        try (ExternalBookBuilder builder = new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY)) {
+            for (int i = 0; i < 10_000; i++) {
+                builder.add(i, 100);
+            }
+            assertThat(builder.getRuns(), greaterThan(0));
+        }
+        assertThat(files(), empty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,
+            expectedExceptionsMessageRegExp = "Market is too large: weighted rate sums overflow")
+    public void weightedSumsOverflow_exception() throws IOException {
+        ExternalBookBuilder builder = new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY);
+        for (int i = 0; i < 10_000; i++) {
+            builder.add(Long.MAX_VALUE / 1_000_000 - i, 1_000);
+        }
+        try {
+            builder.write(file);
+        } finally {
+            assertThat(files(), empty());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void tooLittleMemory_exception() {
+        new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY - 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unquantizedRate_exception() {
+        new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY)
+                .add(new LendingOffer("Bob", new BigDecimal("0.0755"), decimal("640")));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void addAfterWrite_exception() throws IOException {
+        ExternalBookBuilder builder = new ExternalBookBuilder(directory, ExternalBookBuilder.MIN_MEMORY);
+        builder.write(file);
+        builder.add(1, 1);
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package task.loans.core;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+@ParametersAreNonnullByDefault
+public class LenderDictionaryTest {
+
+    @Test
+    public void equalNames_sameId() {
+        LenderDictionary dictionary = new LenderDictionary();
+        int bob = dictionary.intern("Bob");
+
+        assertThat(dictionary.intern(new String("Bob")), equalTo(bob));
+        assertThat(dictionary.intern("Jane"), not(equalTo(bob)));
+        assertThat(dictionary.size(), equalTo(2));
+    }
+
+    @Test
+    public void manyNames_decodedBack() {
+        LenderDictionary dictionary = new LenderDictionary();
+        int names = 100_000;
+        for (int i = 0; i < names; i++) {
+            assertThat(dictionary.intern("Lender ñ" + i), equalTo(i));
+        }
+        for (int i = 0; i < names; i++) {
+            assertThat(dictionary.intern("Lender ñ" + i), equalTo(i));
+            assertThat(dictionary.name(i), equalTo("Lender ñ" + i));
+        }
+        assertThat(dictionary.size(), equalTo(names));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void blankName_throwsException() {
+        new LenderDictionary().intern(" ");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unknownId_throwsException() {
+        new LenderDictionary().name(0);
+    }
+}
@@ -7,13 +7,19 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import task.loans.AllocationMeter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
 
 @ParametersAreNonnullByDefault
 public class LendingOfferTest {
 
+    private int hashes;
+    private int matches;
+
     @Test(dataProvider = "negative", expectedExceptions = IllegalArgumentException.class)
     public void shouldThrowExceptionOnConstruction(String lender, BigDecimal rate, BigDecimal amount) {
         new LendingOffer(lender, rate, amount);
@@ -28,6 +34,55 @@ public class LendingOfferTest {
         assertThat(offer.getAmount(), equalTo(amount));
     }
 
+    @Test
+    public void dictionaryLender_equalToPlainOne() {
+        LenderDictionary dictionary = new LenderDictionary();
+        LendingOffer offer = new LendingOffer(dictionary, dictionary.intern("Bob"), BigDecimal.ONE, BigDecimal.TEN);
+        LendingOffer plain = new LendingOffer("Bob", BigDecimal.ONE, BigDecimal.TEN);
+
+        assertThat(offer.getLenderName(), equalTo("Bob"));
+        assertThat(offer, equalTo(plain));
+        assertThat(plain, equalTo(offer));
+        assertThat(offer.hashCode(), equalTo(plain.hashCode()));
+    }
+
+    @Test
+    public void dictionaryLenders_comparedAcrossDictionaries() {
+        LenderDictionary dictionary = new LenderDictionary();
+        LenderDictionary other = new LenderDictionary();
+        other.intern("Jane");
+        LendingOffer offer = new LendingOffer(dictionary, dictionary.intern("Bob"), BigDecimal.ONE, BigDecimal.TEN);
+        LendingOffer same = new LendingOffer(other, other.intern("Bob"), BigDecimal.ONE, BigDecimal.TEN);
+        // "Aa" and "BB" have equal hash codes
+        LendingOffer collision = new LendingOffer(dictionary, dictionary.intern("Aa"), BigDecimal.ONE, BigDecimal.TEN);
+        LendingOffer colliding = new LendingOffer(other, other.intern("BB"), BigDecimal.ONE, BigDecimal.TEN);
+
+        assertThat(offer, equalTo(same));
+        assertThat(offer.hashCode(), equalTo(same.hashCode()));
+        assertThat(collision.hashCode(), equalTo(colliding.hashCode()));
+        assertThat(collision, not(equalTo(colliding)));
+        assertThat(collision, not(equalTo(new LendingOffer("BB", BigDecimal.ONE, BigDecimal.TEN))));
+    }
+
+    @Test(groups = AllocationMeter.GROUP)
+    public void dictionaryLenders_comparedWithoutDecoding() {
+        LenderDictionary dictionary = new LenderDictionary();
+        LenderDictionary other = new LenderDictionary();
+        LendingOffer offer = new LendingOffer(dictionary, dictionary.intern("Bob"), BigDecimal.ONE, BigDecimal.TEN);
+        LendingOffer same = new LendingOffer(other, other.intern("Bob"), BigDecimal.ONE, BigDecimal.TEN);
+
+        double allocated = AllocationMeter.bytesPerOperation(() -> {
+            hashes += offer.hashCode();
+            matches += offer.equals(same) ? 1 : 0;
+        }, 10_000);
+        assertThat("Bytes allocated per comparison", allocated, lessThan(1.0));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unknownLenderId_throwsException() {
+        new LendingOffer(new LenderDictionary(), 0, BigDecimal.ONE, BigDecimal.TEN);
+    }
+
     @DataProvider(name = "negative")
     public static Object[][] negative() {
         return new Object[][] {
@@ -0,0 +1,68 @@
+package task.loans.core;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class LiveMarketTest {
+
+    private static final LendingOffer BOB = new LendingOffer("Bob", rate("0.075"), decimal("640"));
+    private static final LendingOffer JANE = new LendingOffer("Jane", rate("0.069"), decimal("480"));
+    private static final LendingOffer FRED = new LendingOffer("Fred", rate("0.071"), decimal("520"));
+
+    @Test
+    public void events_appliedToOffers() {
+        LiveMarket market = new LiveMarket();
+        market.apply(MarketEvent.add(1, BOB));
+        market.apply(MarketEvent.add(2, JANE));
+        market.apply(MarketEvent.amend(1, FRED));
+        market.apply(MarketEvent.withdraw(2));
+
+        assertThat(market.getOffers().size(), equalTo(1));
+        assertThat(market.getOffers().get(1L), equalTo(FRED));
+    }
+
+    @Test
+    public void calculator_sameAsForOffers() {
+        LiveMarket market = new LiveMarket();
+        market.apply(MarketEvent.add(1, BOB));
+        market.apply(MarketEvent.add(2, JANE));
+        market.apply(MarketEvent.add(3, FRED));
+
+        assertThat(market.getCalculator().calculate(decimal(1000)),
+                equalTo(new LoanCalculator(Arrays.asList(FRED, BOB, JANE)).calculate(decimal(1000))));
+    }
+
+    @Test
+    public void calculator_reusedUntilChanged() {
+        LiveMarket market = new LiveMarket();
+        market.apply(MarketEvent.add(1, BOB));
+        LoanCalculator calculator = market.getCalculator();
+
+        assertThat(market.getCalculator(), sameInstance(calculator));
+        market.apply(MarketEvent.add(2, JANE));
+        assertThat(market.getCalculator(), not(sameInstance(calculator)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void addExisting_rejected() {
+        LiveMarket market = new LiveMarket();
+        market.apply(MarketEvent.add(1, BOB));
+        market.apply(MarketEvent.add(1, JANE));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void amendMissing_rejected() {
+        new LiveMarket().apply(MarketEvent.amend(1, BOB));
+    }
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.function.Consumer;
 
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -13,11 +14,18 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import org.testng.asserts.SoftAssert;
+import task.loans.AllocationMeter;
 
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static task.loans.core.Money.MONEY_CONTEXT;
 import static task.loans.core.Money.decimal;
 import static task.loans.core.Money.numericallyEqual;
@@ -34,6 +42,11 @@ public class LoanCalculatorTest {
      */
     private static final BigDecimal EPSILON = BigDecimal.valueOf(5e-4);
 
+    /**
+     * Bytes allocated per quote calculated from scratch at most.
+     */
+    private static final double COLD_QUOTE_BUDGET = 16 * 1024;
+
     @Test
     public void requestedMoreThanSupplied_negativeResult() {
         List<LendingOffer> offers = singletonList(new LendingOffer("Dave", rate("0.05"), decimal("100")));
@@ -42,6 +55,146 @@ public class LoanCalculatorTest {
         assertThat(loan.getRate(), lessThan(BigDecimal.ZERO));
     }
 
+    @Test
+    public void shorterTerm_higherMonthlyLowerTotalRepayment() {
+        LoanCalculator calculator = new LoanCalculator(sampleMarket());
+        Loan longer = calculator.calculate(decimal("1000"), LoanCalculator.DEFAULT_TERM);
+        Loan shorter = calculator.calculate(decimal("1000"), 12);
+
+        assertThat(longer, equalTo(calculator.calculate(decimal("1000"))));
+        assertThat(shorter.getRate(), comparesEqualTo(longer.getRate()));
+        assertThat(shorter.getMonthlyRepayment(), greaterThan(longer.getMonthlyRepayment()));
+        assertThat(shorter.getTotalRepayment(), lessThan(longer.getTotalRepayment()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void nonPositiveTerm_rejected() {
+        new LoanCalculator(sampleMarket()).calculate(decimal("1000"), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void termOverMax_rejected() {
+        new LoanCalculator(sampleMarket()).calculate(decimal("1000"), LoanCalculator.MAX_TERM + 1);
+    }
+
+    @Test
+    public void maxAmountAtRate() {
+        LoanCalculator calculator = new LoanCalculator(sampleMarket());
+
+        assertThat(calculator.maxAmountAtRate(rate("0.068")), comparesEqualTo(decimal("0")));
+        assertThat(calculator.maxAmountAtRate(rate("0.069")), comparesEqualTo(decimal("480")));
+        // (480 * 0.069 + x * 0.071) / (480 + x) <= 0.07
+        assertThat(calculator.maxAmountAtRate(rate("0.07")), comparesEqualTo(decimal("960")));
+        // 0.069 and 0.071 levels taken fully, then 140 at 0.074 and 135 at 0.075
+        assertThat(calculator.maxAmountAtRate(rate("0.071")), comparesEqualTo(decimal("1335")));
+        assertThat(calculator.maxAmountAtRate(rate("0.2")), comparesEqualTo(decimal("2330")));
+    }
+
+    @Test
+    public void maxAmountAtRate_partialAmountIsRoundedDown() {
+        LoanCalculator calculator = new LoanCalculator(asList(
+                new LendingOffer("Ann", rate("0.05"), decimal("100")),
+                new LendingOffer("Bob", rate("0.08"), decimal("100"))));
+
+        // (5 + 0.08x) / (100 + x) <= 0.06  =>  x <= 50
+        assertThat(calculator.maxAmountAtRate(rate("0.06")), comparesEqualTo(decimal("150")));
+        // (5 + 0.08x) / (100 + x) <= 0.055  =>  x <= 20
+        assertThat(calculator.maxAmountAtRate(rate("0.055")), comparesEqualTo(decimal("120")));
+        // (5 + 0.08x) / (100 + x) <= 0.07  =>  x <= 200, but only 100 is offered
+        assertThat(calculator.maxAmountAtRate(rate("0.07")), comparesEqualTo(decimal("200")));
+        // (5 + 0.08x) / (100 + x) <= 0.051  =>  x <= 3.44(8)
+        assertThat(calculator.maxAmountAtRate(rate("0.051")), comparesEqualTo(decimal("103.44")));
+    }
+
+    @Test
+    public void maxAmountForMonthlyRepayment() {
+        LoanCalculator calculator = new LoanCalculator(sampleMarket());
+
+        assertThat(calculator.maxAmountForMonthlyRepayment(decimal("0")), comparesEqualTo(decimal("0")));
+        assertThat(calculator.maxAmountForMonthlyRepayment(decimal("10000")), comparesEqualTo(decimal("2330")));
+
+        BigDecimal budget = decimal("30.88");
+        BigDecimal amount = calculator.maxAmountForMonthlyRepayment(budget);
+        assertThat(calculator.calculate(amount).getMonthlyRepayment(), lessThanOrEqualTo(budget));
+        assertThat(calculator.calculate(amount.add(new BigDecimal("0.01"))).getMonthlyRepayment(),
+                greaterThanOrEqualTo(budget));
+        assertThat(amount, greaterThanOrEqualTo(decimal("1000")));
+        assertThat(amount, lessThan(decimal("1000.50")));
+    }
+
+    /**
+     * Cold quotes of a market of a thousand offers: the allocations grow slowly with the market
+     * and the term, the budget is about 1.4 times of what is measured for the longest term.
+     */
+    @Test(groups = AllocationMeter.GROUP, dataProvider = "terms")
+    public void coldQuote_withinAllocationBudget(int term) {
+        Random random = new Random(42);
+        List<LendingOffer> offers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            offers.add(new LendingOffer("Lender" + i, BigDecimal.valueOf(40 + random.nextInt(80), 3),
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), 2)));
+        }
+        LoanCalculator calculator = new LoanCalculator(offers);
+        BigDecimal[] amounts = new BigDecimal[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = BigDecimal.valueOf(1_000_00 + random.nextInt(14_000_00), 2);
+        }
+        int[] next = {0};
+
+        double allocated = AllocationMeter.bytesPerOperation(
+                () -> calculator.calculate(amounts[next[0]++ & amounts.length - 1], term), 10_000);
+        assertThat("Bytes allocated per cold quote", allocated, lessThan(COLD_QUOTE_BUDGET));
+    }
+
+    /**
+     * The compound factor is calculated at a bounded precision, yet the monthly repayments are exactly
+     * the ones of the exact power, for random principals, full-precision rates and terms up to 50 years.
+     */
+    @Test
+    public void monthlyRepayment_sameAsOfExactPower() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            BigDecimal principal = BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2);
+            BigDecimal annualRate = decimal(1 + random.nextInt(1_000_000))
+                    .divide(decimal(3_000_000 + random.nextInt(1_000)), MONEY_CONTEXT);
+            int repayments = 1 + random.nextInt(600);
+
+            assertThat(format("%s at %s for %d months", principal, annualRate, repayments),
+                    LoanCalculator.monthlyRepayment(principal, annualRate, repayments),
+                    comparesEqualTo(exactMonthlyRepayment(principal, annualRate, repayments)));
+        }
+    }
+
+    /**
+     * The compound growth factor of a rate near zero differs from one in its last digits only.
+     */
+    @Test
+    public void monthlyRepayment_nearZeroRate_sameAsOfExactPower() {
+        Random random = new Random(43);
+        for (int i = 0; i < 300; i++) {
+            BigDecimal principal = BigDecimal.valueOf(1 + (long) (random.nextDouble() * 1e12), 2);
+            BigDecimal annualRate = decimal(1 + random.nextInt(1_000_000))
+                    .divide(decimal(3_000_000 + random.nextInt(1_000)), MONEY_CONTEXT)
+                    .scaleByPowerOfTen(-6 - random.nextInt(20));
+            int repayments = 1 + random.nextInt(600);
+
+            assertThat(format("%s at %s for %d months", principal, annualRate, repayments),
+                    LoanCalculator.monthlyRepayment(principal, annualRate, repayments),
+                    comparesEqualTo(exactMonthlyRepayment(principal, annualRate, repayments)));
+        }
+    }
+
+    private static BigDecimal exactMonthlyRepayment(BigDecimal principal, BigDecimal annualRate, int repayments) {
+        BigDecimal monthlyRate = annualRate.divide(decimal(12), MONEY_CONTEXT);
+        BigDecimal r = BigDecimal.ONE.add(monthlyRate).pow(repayments);
+        return monthlyRate.multiply(principal).multiply(r).divide(r.subtract(BigDecimal.ONE), MONEY_CONTEXT);
+    }
+
+    @DataProvider(name = "terms")
+    public static Object[][] terms() {
+        return new Object[][]{{12}, {LoanCalculator.DEFAULT_TERM}, {600}};
+    }
+
     @Test(dataProvider = "calculatorTestCases")
     public void checkResult(List<LendingOffer> offers, Loan expected) {
         Loan actual = new LoanCalculator(offers).calculate(expected.getRequestedAmount());
@@ -102,6 +255,17 @@ public class LoanCalculatorTest {
         };
     }
 
+    private static List<LendingOffer> sampleMarket() {
+        return asList(
+                new LendingOffer("Bob", rate("0.075"), decimal("640")),
+                new LendingOffer("Jane", rate("0.069"), decimal("480")),
+                new LendingOffer("Fred", rate("0.071"), decimal("520")),
+                new LendingOffer("Mary", rate("0.104"), decimal("170")),
+                new LendingOffer("John", rate("0.081"), decimal("320")),
+                new LendingOffer("Dave", rate("0.074"), decimal("140")),
+                new LendingOffer("Angela", rate("0.071"), decimal("60")));
+    }
+
     private static void softlyAssertEquals(Loan actual, Loan expected) {
         SoftAssert softly = new SoftAssert();
         assertApproximatelyEqual(actual.getRequestedAmount(), expected.getRequestedAmount()).accept(softly);
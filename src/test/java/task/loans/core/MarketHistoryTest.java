@@ -0,0 +1,166 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class MarketHistoryTest {
+
+    private static final Instant START = Instant.parse("2026-01-05T09:00:00Z");
+    private static final LendingOffer BOB = new LendingOffer("Bob", rate("0.075"), decimal("640"));
+    private static final LendingOffer JANE = new LendingOffer("Jane", rate("0.069"), decimal("480"));
+    private static final LendingOffer FRED = new LendingOffer("Fred", rate("0.071"), decimal("520"));
+
+    @Test
+    public void quotesAsOf_sameAsCalculatorOfOffersThen() {
+        Random random = new Random(11);
+        MarketHistory history = new MarketHistory();
+        LiveMarket market = new LiveMarket();
+        List<Instant> moments = new ArrayList<>();
+        List<LoanCalculator> calculators = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            MarketEvent event = randomEvent(random, market);
+            Instant at = START.plusSeconds(i);
+            market.apply(event);
+            history.apply(event, at);
+            if (i % 97 == 0) {
+                moments.add(at);
+                calculators.add(new LoanCalculator(new ArrayList<>(market.getOffers().values())));
+            }
+        }
+
+        for (int i = 0; i < moments.size(); i++) {
+            for (String amount : new String[]{"0.01", "100", "1000", "15000", "123456.78"}) {
+                assertThat(history.calculate(decimal(amount), 12, moments.get(i).plusMillis(500)),
+                        equalTo(calculators.get(i).calculate(decimal(amount), 12)));
+            }
+            assertThat(history.getCalculator(moments.get(i)).getStatistics().getLevels(),
+                    equalTo(calculators.get(i).getStatistics().getLevels()));
+        }
+    }
+
+    @Test
+    public void memory_growsWithChangesNotVersions() {
+        Random random = new Random(5);
+        MarketHistory history = new MarketHistory();
+        LiveMarket market = new LiveMarket();
+        int events = 20_000;
+        for (int i = 0; i < events; i++) {
+            MarketEvent event = randomEvent(random, market);
+            market.apply(event);
+            history.apply(event, START.plusSeconds(i));
+        }
+        int levels = history.getCalculator(START.plusSeconds(events)).getStatistics().getLevels();
+
+        int nodes = history.countNodes();
+        assertThat(nodes, lessThan(events * 4 * (32 - Integer.numberOfLeadingZeros(levels))));
+        assertThat(nodes, lessThan(history.getVersions() * levels / 5));
+    }
+
+    @Test
+    public void beforeFirstChange_emptyMarket() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+
+        assertThat(history.calculate(decimal("100"), START.minusNanos(1)), equalTo(Loan.unavailable(decimal("100"))));
+        assertThat(history.calculate(decimal("100"), START),
+                equalTo(new LoanCalculator(Arrays.asList(BOB)).calculate(decimal("100"))));
+    }
+
+    @Test
+    public void sameMoment_latestChangeInForce() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+        history.apply(MarketEvent.amend(1, JANE), START);
+
+        assertThat(history.calculate(decimal("100"), START),
+                equalTo(new LoanCalculator(Arrays.asList(JANE)).calculate(decimal("100"))));
+    }
+
+    @Test
+    public void retainFrom_earlierVersionsDiscarded() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+        history.apply(MarketEvent.add(2, JANE), START.plusSeconds(10));
+        history.apply(MarketEvent.add(3, FRED), START.plusSeconds(20));
+
+        history.retainFrom(START.plusSeconds(15));
+
+        assertThat(history.getVersions(), equalTo(2));
+        assertThat(history.getRetainedFrom(), equalTo(START.plusSeconds(10)));
+        assertThat(history.calculate(decimal("1000"), START.plusSeconds(12)),
+                equalTo(new LoanCalculator(Arrays.asList(BOB, JANE)).calculate(decimal("1000"))));
+        try {
+            history.calculate(decimal("1000"), START.plusSeconds(9));
+            throw new AssertionError("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), equalTo("History before " + START.plusSeconds(10)
+                    + " is not retained, requested " + START.plusSeconds(9)));
+        }
+    }
+
+    @Test
+    public void withdrawnAll_noLevels() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+        history.apply(MarketEvent.add(2, new LendingOffer("Zero", rate("0.075"), decimal("0"))), START);
+        history.apply(MarketEvent.withdraw(1), START);
+
+        assertThat(history.getCalculator(START).getStatistics().getLevels(), equalTo(1));
+
+        history.apply(MarketEvent.withdraw(2), START);
+        assertThat(history.getCalculator(START).getStatistics().getLevels(), equalTo(0));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void changeBeforeLatest_exception() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+        history.apply(MarketEvent.add(2, JANE), START.minusSeconds(1));
+    }
+
+    @Test
+    public void inapplicableEvent_historyUnchanged() {
+        MarketHistory history = new MarketHistory();
+        history.apply(MarketEvent.add(1, BOB), START);
+        try {
+            history.apply(MarketEvent.amend(1, new LendingOffer("Bob", new BigDecimal("0.0755"), decimal("640"))),
+                    START);
+            throw new AssertionError("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), equalTo("Value is not quantized or out of supported range: 0.0755"));
+        }
+
+        assertThat(history.getVersions(), equalTo(2));
+        assertThat(history.getOffers().get(1L), equalTo(BOB));
+        assertThat(history.calculate(decimal("640"), START),
+                equalTo(new LoanCalculator(Arrays.asList(BOB)).calculate(decimal("640"))));
+    }
+
+    private static MarketEvent randomEvent(Random random, LiveMarket market) {
+        long id = random.nextInt(400);
+        if (!market.getOffers().containsKey(id)) {
+            return MarketEvent.add(id, randomOffer(random));
+        }
+        return random.nextBoolean() ? MarketEvent.withdraw(id) : MarketEvent.amend(id, randomOffer(random));
+    }
+
+    private static LendingOffer randomOffer(Random random) {
+        return new LendingOffer("Lender", BigDecimal.valueOf(40 + random.nextInt(160), 3),
+                BigDecimal.valueOf(random.nextInt(200_000), 2));
+    }
+}
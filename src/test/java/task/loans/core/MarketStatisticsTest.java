@@ -0,0 +1,127 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class MarketStatisticsTest {
+
+    private final MarketStatistics statistics = new LoanCalculator(asList(
+            offer("0.075", "640"),
+            offer("0.069", "480"),
+            offer("0.071", "520"),
+            offer("0.104", "170"),
+            offer("0.081", "320"),
+            offer("0.074", "140"),
+            offer("0.071", "60"))).getStatistics();
+
+    @Test
+    public void aggregates() {
+        assertThat(statistics.getLevels(), equalTo(6));
+        assertThat(statistics.getTotalSupply(), comparesEqualTo(decimal("2330")));
+        assertThat(statistics.getMinRate().get(), comparesEqualTo(rate("0.069")));
+        assertThat(statistics.getMaxRate().get(), comparesEqualTo(rate("0.104")));
+        // 176.26 / 2330
+        assertThat(statistics.getAverageRate().get().setScale(6, BigDecimal.ROUND_HALF_EVEN),
+                comparesEqualTo(new BigDecimal("0.075648")));
+    }
+
+    @Test(dataProvider = "percentiles")
+    public void percentileRate(String fraction, String expectedRate) {
+        assertThat(statistics.getPercentileRate(new BigDecimal(fraction)).get(), comparesEqualTo(rate(expectedRate)));
+    }
+
+    @DataProvider(name = "percentiles")
+    public static Object[][] percentiles() {
+        return new Object[][]{
+                {"0", "0.069"},
+                {"0.2", "0.069"},
+                {"0.206", "0.069"},     // 480 / 2330 = 0.20601
+                {"0.2061", "0.071"},
+                {"0.5", "0.074"},
+                {"1", "0.104"},
+        };
+    }
+
+    @Test(dataProvider = "depths")
+    public void depthAt(String rate, String expectedDepth) {
+        assertThat(statistics.getDepthAt(new BigDecimal(rate)), comparesEqualTo(decimal(expectedDepth)));
+    }
+
+    @DataProvider(name = "depths")
+    public static Object[][] depths() {
+        return new Object[][]{
+                {"-1", "0"},
+                {"0.0689", "0"},
+                {"0.069", "480"},
+                {"0.0709", "480"},
+                {"0.071", "1060"},
+                {"0.1", "2160"},
+                {"0.104", "2330"},
+                {"7", "2330"},
+        };
+    }
+
+    @Test(dataProvider = "depthsBelow")
+    public void depthBelow(String rate, String expectedDepth) {
+        assertThat(statistics.getDepthBelow(new BigDecimal(rate)), comparesEqualTo(decimal(expectedDepth)));
+    }
+
+    @DataProvider(name = "depthsBelow")
+    public static Object[][] depthsBelow() {
+        return new Object[][]{
+                {"-1", "0"},
+                {"0.069", "0"},
+                {"0.06901", "480"},
+                {"0.071", "480"},
+                {"0.0711", "1060"},
+                {"0.104", "2160"},
+                {"0.1041", "2330"},
+        };
+    }
+
+    @Test
+    public void depthCurve() {
+        List<MarketStatistics.DepthLevel> depth = statistics.getDepth();
+        assertThat(depth, hasSize(6));
+        assertThat(depth.get(1).getRate(), comparesEqualTo(rate("0.071")));
+        assertThat(depth.get(1).getAmount(), comparesEqualTo(decimal("580")));
+        assertThat(depth.get(1).getCumulativeAmount(), comparesEqualTo(decimal("1060")));
+        assertThat(depth.get(5).getCumulativeAmount(), comparesEqualTo(decimal("2330")));
+    }
+
+    @Test
+    public void emptyMarket() {
+        MarketStatistics empty = new LoanCalculator(Collections.emptyList()).getStatistics();
+        assertThat(empty.getLevels(), equalTo(0));
+        assertThat(empty.getTotalSupply(), comparesEqualTo(BigDecimal.ZERO));
+        assertThat(empty.getMinRate(), equalTo(Optional.empty()));
+        assertThat(empty.getAverageRate(), equalTo(Optional.empty()));
+        assertThat(empty.getPercentileRate(new BigDecimal("0.5")), equalTo(Optional.empty()));
+        assertThat(empty.getDepthAt(rate("0.1")), comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void percentileOutOfRange_throwsException() {
+        statistics.getPercentileRate(new BigDecimal("1.01"));
+    }
+
+    private static LendingOffer offer(String rate, String amount) {
+        return new LendingOffer("Lender", rate(rate), decimal(amount));
+    }
+}
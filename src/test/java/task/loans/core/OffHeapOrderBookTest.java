@@ -0,0 +1,153 @@
+package task.loans.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.AllocationMeter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@ParametersAreNonnullByDefault
+public class OffHeapOrderBookTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("order-book");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void copy_sameLevelsAndQuotes() {
+        OrderBook book = randomBook(5000);
+        OffHeapOrderBook copy = OffHeapOrderBook.copyOf(book);
+
+        assertSameBook(copy, book);
+        assertSameQuotes(copy, book);
+    }
+
+    @Test
+    public void mappedFile_sameLevelsAndQuotes() throws IOException {
+        OrderBook book = randomBook(5000);
+        Path file = directory.resolve("market.book");
+        OffHeapOrderBook.write(book, file);
+
+        OffHeapOrderBook mapped = OffHeapOrderBook.map(file);
+        assertThat(mapped.byteSize(), equalTo(Files.size(file)));
+        assertSameBook(mapped, book);
+        assertSameQuotes(mapped, book);
+    }
+
+    @Test
+    public void emptyBook() {
+        OffHeapOrderBook copy = OffHeapOrderBook.copyOf(OrderBook.builder().build());
+
+        assertThat(copy.size(), equalTo(0));
+        assertThat(copy.totalSupply(), equalTo(0L));
+        assertThat(copy.levelCovering(1), equalTo(0));
+        assertThat(new LoanCalculator(copy).calculate(Money.decimal(1)).getRate().signum(), equalTo(-1));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void truncatedFile_exception() throws IOException {
+        Path file = directory.resolve("market.book");
+        OffHeapOrderBook.write(randomBook(10), file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 8));
+
+        OffHeapOrderBook.map(file);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void notBookFile_exception() throws IOException {
+        Path file = directory.resolve("market.csv");
+        Files.write(file, new byte[64]);
+
+        OffHeapOrderBook.map(file);
+    }
+
+    @Test
+    public void isBook_bookFileOnly() throws IOException {
+        Path book = directory.resolve("market.book");
+        OffHeapOrderBook.write(randomBook(10), book);
+        Path csv = directory.resolve("market.csv");
+        Files.write(csv, "Bob,0.075,640\n".getBytes(StandardCharsets.UTF_8));
+        Path empty = Files.createFile(directory.resolve("empty.csv"));
+
+        assertThat(OffHeapOrderBook.isBook(book), equalTo(true));
+        assertThat(OffHeapOrderBook.isBook(csv), equalTo(false));
+        assertThat(OffHeapOrderBook.isBook(empty), equalTo(false));
+    }
+
+    @Test(groups = AllocationMeter.GROUP)
+    public void quote_noMoreAllocationsThanOnHeap() {
+        OrderBook book = randomBook(100_000);
+        LoanCalculator onHeap = new LoanCalculator(book);
+        LoanCalculator offHeap = new LoanCalculator(OffHeapOrderBook.copyOf(book));
+        BigDecimal amount = Money.decimal(5000);
+
+        double onHeapBytes = AllocationMeter.bytesPerOperation(() -> onHeap.calculate(amount), 10_000);
+        double offHeapBytes = AllocationMeter.bytesPerOperation(() -> offHeap.calculate(amount), 10_000);
+        assertThat("Bytes allocated per quote off heap", offHeapBytes, lessThanOrEqualTo(onHeapBytes + 1));
+    }
+
+    private static OrderBook randomBook(int offers) {
+        Random random = new Random(offers);
+        OrderBook.Builder builder = new OrderBook.Builder(5, 2);
+        for (int i = 0; i < offers; i++) {
+            builder.add(1_000 + random.nextInt(100_000), 1 + random.nextInt(1_000_000));
+        }
+        return builder.build();
+    }
+
+    static void assertSameBook(MarketBook actual, OrderBook expected) {
+        assertThat(actual.size(), equalTo(expected.size()));
+        assertThat(actual.rateScale(), equalTo(expected.rateScale()));
+        assertThat(actual.amountScale(), equalTo(expected.amountScale()));
+        for (int level = 0; level < expected.size(); level++) {
+            assertThat(actual.rate(level), equalTo(expected.rate(level)));
+            assertThat(actual.amount(level), equalTo(expected.amount(level)));
+            assertThat(actual.levelsNotAbove(expected.rate(level)),
+                    equalTo(expected.levelsNotAbove(expected.rate(level))));
+            assertThat(actual.levelsNotAbove(expected.rate(level) - 1),
+                    equalTo(expected.levelsNotAbove(expected.rate(level) - 1)));
+        }
+        for (int level = 0; level <= expected.size(); level++) {
+            assertThat(actual.amountBelow(level), equalTo(expected.amountBelow(level)));
+            assertThat(actual.weightedSumBelow(level), equalTo(expected.weightedSumBelow(level)));
+        }
+        assertThat(actual.totalSupply(), equalTo(expected.totalSupply()));
+    }
+
+    static void assertSameQuotes(MarketBook actual, OrderBook expected) {
+        LoanCalculator actualCalculator = new LoanCalculator(actual);
+        LoanCalculator expectedCalculator = new LoanCalculator(expected);
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            long amount = random.nextInt((int) Math.min(Integer.MAX_VALUE, expected.totalSupply() + 1000));
+            BigDecimal requested = BigDecimal.valueOf(amount, 2);
+            assertThat(actualCalculator.calculate(requested), equalTo(expectedCalculator.calculate(requested)));
+            assertThat(actual.levelCovering(amount), equalTo(expected.levelCovering(amount)));
+        }
+        assertThat(actualCalculator.getStatistics().getAverageRate(),
+                equalTo(expectedCalculator.getStatistics().getAverageRate()));
+    }
+}
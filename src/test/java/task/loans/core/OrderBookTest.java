@@ -0,0 +1,108 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class OrderBookTest {
+
+    @Test
+    public void levelsAreAggregatedAndSortedByRate() {
+        OrderBook book = OrderBook.of(Arrays.asList(
+                offer("0.075", "640"),
+                offer("0.069", "480"),
+                offer("0.071", "520"),
+                offer("0.069", "20.50"),
+                offer("0.071", "60")));
+
+        assertThat(book.size(), equalTo(3));
+        assertThat(book.rateScale(), equalTo(3));
+        assertThat(book.amountScale(), equalTo(2));
+        assertThat(levels(book), equalTo(new long[][]{{69, 50_050}, {71, 58_000}, {75, 64_000}}));
+        assertThat(book.totalSupply(), equalTo(172_050L));
+    }
+
+    @Test
+    public void finerScalesAreKeptExactly() {
+        OrderBook book = OrderBook.of(Arrays.asList(
+                new LendingOffer("Ann", new BigDecimal("0.00001"), new BigDecimal("0.001")),
+                new LendingOffer("Bob", rate("0.1"), decimal("1"))));
+
+        assertThat(book.rateScale(), equalTo(5));
+        assertThat(book.amountScale(), equalTo(3));
+        assertThat(levels(book), equalTo(new long[][]{{1, 1}, {10_000, 1_000}}));
+    }
+
+    @Test
+    public void bucketedAndOutlierLevelsAreMerged() {
+        int edge = OrderBook.Builder.BUCKETS;
+        OrderBook book = new OrderBook.Builder(3, 2)
+                .add(edge + 5, 1)
+                .add(70, 100)
+                .add(edge, 2)
+                .add(edge - 1, 3)
+                .add(0, 0)
+                .add(edge + 5, 4)
+                .add(70, 10)
+                .build();
+
+        assertThat(levels(book), equalTo(new long[][]{
+                {0, 0}, {70, 110}, {edge - 1, 3}, {edge, 2}, {edge + 5, 5}}));
+        assertThat(book.totalSupply(), equalTo(120L));
+    }
+
+    @Test
+    public void manyOutliers() {
+        OrderBook.Builder builder = new OrderBook.Builder(6, 2);
+        for (int i = 0; i < 1_000; i++) {
+            builder.add(100_000 - i % 300, 1).add(i % 50, 2);
+        }
+        OrderBook book = builder.build();
+
+        assertThat(book.size(), equalTo(350));
+        assertThat(book.rate(0), equalTo(0L));
+        assertThat(book.rate(49), equalTo(49L));
+        assertThat(book.rate(50), equalTo(100_000L - 299));
+        assertThat(book.rate(349), equalTo(100_000L));
+        assertThat(book.totalSupply(), equalTo(3_000L));
+    }
+
+    @Test
+    public void emptyMarket() {
+        OrderBook book = OrderBook.of(Collections.emptyList());
+        assertThat(book.size(), equalTo(0));
+        assertThat(book.totalSupply(), equalTo(0L));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void amountOutOfRange_throwsException() {
+        OrderBook.of(Collections.singletonList(offer("0.07", "1e18")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void weightedSumOverflow_throwsException() {
+        OrderBook.of(Arrays.asList(offer("0.07", "9e15"), offer("1.5", "1")));
+    }
+
+    private static LendingOffer offer(String rate, String amount) {
+        return new LendingOffer("Lender", rate(rate), decimal(amount));
+    }
+
+    private static long[][] levels(OrderBook book) {
+        long[][] levels = new long[book.size()][];
+        for (int i = 0; i < book.size(); i++) {
+            levels[i] = new long[]{book.rate(i), book.amount(i)};
+        }
+        return levels;
+    }
+}
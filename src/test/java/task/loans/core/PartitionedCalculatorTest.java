@@ -0,0 +1,91 @@
+package task.loans.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.equalTo;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class PartitionedCalculatorTest {
+
+    private static final List<LendingOffer> OFFERS = asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520")),
+            new LendingOffer("Mary", rate("0.104"), decimal("170")),
+            new LendingOffer("John", rate("0.081"), decimal("320")),
+            new LendingOffer("Dave", rate("0.074"), decimal("140")),
+            new LendingOffer("Angela", rate("0.071"), decimal("60")));
+
+    @Test
+    public void quotes_sameAsCalculatorOfWholeMarket() throws IOException {
+        Random random = new Random(3);
+        List<LendingOffer> offers = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            offers.add(new LendingOffer("Lender", BigDecimal.valueOf(40 + random.nextInt(160), 3),
+                    BigDecimal.valueOf(random.nextInt(200_000), 2)));
+        }
+        LoanCalculator whole = new LoanCalculator(offers);
+        PartitionedCalculator partitioned = new PartitionedCalculator(asList(
+                BookPartition.of(offers, rate("0.120"), null),
+                BookPartition.of(offers, null, rate("0.070")),
+                BookPartition.of(offers, rate("0.070"), rate("0.120"))));
+
+        assertThat(partitioned.getTotalSupply(), comparesEqualTo(whole.getStatistics().getTotalSupply()));
+        for (int i = 0; i < 1_000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(220_000_000), 2);
+            int term = 1 + random.nextInt(60);
+            assertThat(partitioned.calculate(amount, term), equalTo(whole.calculate(amount, term)));
+        }
+    }
+
+    @Test
+    public void cutAtPartitionBoundary_sameAsCalculator() throws IOException {
+        LoanCalculator whole = new LoanCalculator(OFFERS);
+        PartitionedCalculator partitioned = new PartitionedCalculator(asList(
+                BookPartition.of(OFFERS, null, rate("0.072")),
+                BookPartition.of(OFFERS, rate("0.072"), null)));
+
+        for (String amount : new String[]{"0.01", "1059.99", "1060", "1060.01", "1060.001", "2330"}) {
+            assertThat(partitioned.calculate(decimal(amount)), equalTo(whole.calculate(decimal(amount))));
+        }
+    }
+
+    @Test
+    public void moreThanSupplied_unavailable() throws IOException {
+        PartitionedCalculator partitioned = new PartitionedCalculator(asList(BookPartition.of(OFFERS, null, null)));
+
+        assertThat(partitioned.calculate(decimal("2330.01")), equalTo(Loan.unavailable(decimal("2330.01"))));
+    }
+
+    @Test
+    public void emptyPartitions_ignored() throws IOException {
+        PartitionedCalculator partitioned = new PartitionedCalculator(asList(
+                BookPartition.of(OFFERS, rate("0.2"), null),
+                BookPartition.of(OFFERS, null, null),
+                BookPartition.of(OFFERS, null, rate("0.01"))));
+
+        assertThat(partitioned.calculate(decimal("1000")),
+                equalTo(new LoanCalculator(OFFERS).calculate(decimal("1000"))));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,
+            expectedExceptionsMessageRegExp = "Partitions overlap: .*")
+    public void overlappingPartitions_exception() {
+        new PartitionedCalculator(asList(
+                BookPartition.of(OFFERS, null, rate("0.075")),
+                BookPartition.of(OFFERS, rate("0.071"), null)));
+    }
+}
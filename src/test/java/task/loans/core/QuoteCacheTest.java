@@ -0,0 +1,78 @@
+package task.loans.core;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+import task.loans.AllocationMeter;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class QuoteCacheTest {
+
+    private final LoanCalculator calculator = new LoanCalculator(sampleMarket());
+
+    @Test
+    public void repeatedQuote_sameInstance() {
+        QuoteCache quotes = new QuoteCache(calculator, 16);
+        Loan loan = quotes.calculate(decimal("1000"), 36);
+
+        assertThat(loan, equalTo(calculator.calculate(decimal("1000"), 36)));
+        assertThat(quotes.calculate(decimal("1000"), 36), sameInstance(loan));
+    }
+
+    @Test
+    public void differentTerm_differentQuote() {
+        QuoteCache quotes = new QuoteCache(calculator, 16);
+        Loan longer = quotes.calculate(decimal("1000"), 36);
+        Loan shorter = quotes.calculate(decimal("1000"), 12);
+
+        assertThat(shorter, equalTo(calculator.calculate(decimal("1000"), 12)));
+        assertThat(shorter, not(equalTo(longer)));
+        assertThat(quotes.calculate(decimal("1000"), 36), equalTo(longer));
+    }
+
+    @Test
+    public void singleSlot_evictedQuoteCalculatedAgain() {
+        QuoteCache quotes = new QuoteCache(calculator, 1);
+        Loan first = quotes.calculate(decimal("1000"), 36);
+        quotes.calculate(decimal("1500"), 36);
+
+        Loan again = quotes.calculate(decimal("1000"), 36);
+        assertThat(again, not(sameInstance(first)));
+        assertThat(again, equalTo(first));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void zeroCapacity_exception() {
+        new QuoteCache(calculator, 0);
+    }
+
+    @Test(groups = AllocationMeter.GROUP)
+    public void cachedQuote_allocatesNothing() {
+        QuoteCache quotes = new QuoteCache(calculator, 16);
+        BigDecimal amount = decimal("1000");
+        quotes.calculate(amount, 36);
+
+        double allocated = AllocationMeter.bytesPerOperation(() -> quotes.calculate(amount, 36), 100_000);
+        assertThat("Bytes allocated per cached quote", allocated, lessThan(1.0));
+    }
+
+    private static List<LendingOffer> sampleMarket() {
+        return asList(
+                new LendingOffer("Bob", rate("0.075"), decimal("640")),
+                new LendingOffer("Jane", rate("0.069"), decimal("480")),
+                new LendingOffer("Fred", rate("0.071"), decimal("520")),
+                new LendingOffer("Mary", rate("0.104"), decimal("170")));
+    }
+}
@@ -0,0 +1,204 @@
+package task.loans.feed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.LiveMarket;
+import task.loans.core.Loan;
+import task.loans.core.MarketEvent;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class QuoteFeedTest {
+
+    private static final int TERM = 36;
+
+    private LiveMarket market;
+    private QuoteFeed feed;
+
+    @BeforeMethod
+    public void createFeed() {
+        market = new LiveMarket();
+        market.apply(MarketEvent.add(1, offer("0.069", "480")));
+        market.apply(MarketEvent.add(2, offer("0.071", "520")));
+        market.apply(MarketEvent.add(3, offer("0.075", "640")));
+        market.apply(MarketEvent.add(4, offer("0.104", "170")));
+        feed = new QuoteFeed(market, Runnable::run, 4);
+    }
+
+    @Test
+    public void subscribed_currentQuoteFirst() {
+        RecordingSubscriber subscriber = subscribe("1000", Long.MAX_VALUE);
+
+        assertThat(subscriber.quotes, contains(market.getCalculator().calculate(decimal("1000"), TERM)));
+    }
+
+    @Test
+    public void expensiveLevelChanged_smallAmountNotRecalculated() {
+        RecordingSubscriber small = subscribe("300", Long.MAX_VALUE);
+        RecordingSubscriber large = subscribe("1500", Long.MAX_VALUE);
+
+        feed.apply(MarketEvent.add(5, offer("0.072", "100")));
+
+        assertThat(feed.getRecalculations(), equalTo(1L));
+        assertThat(small.quotes, hasSize(1));
+        assertThat(large.quotes, hasSize(2));
+        assertThat(large.quotes.get(1), equalTo(market.getCalculator().calculate(decimal("1500"), TERM)));
+    }
+
+    @Test
+    public void cheapLevelChanged_allRecalculated() {
+        RecordingSubscriber small = subscribe("300", Long.MAX_VALUE);
+        RecordingSubscriber large = subscribe("1500", Long.MAX_VALUE);
+
+        feed.apply(MarketEvent.amend(3, offer("0.05", "640")));
+
+        assertThat(feed.getRecalculations(), equalTo(2L));
+        assertThat(small.quotes, hasSize(2));
+        assertThat(large.quotes, hasSize(2));
+        assertThat(small.quotes.get(1).getRate(), not(equalTo(small.quotes.get(0).getRate())));
+    }
+
+    @Test
+    public void withdrawnExpensiveOffer_unaffectedQuotesNotRecalculated() {
+        RecordingSubscriber small = subscribe("300", Long.MAX_VALUE);
+
+        feed.apply(MarketEvent.withdraw(4));
+
+        assertThat(feed.getRecalculations(), equalTo(0L));
+        assertThat(small.quotes, hasSize(1));
+    }
+
+    @Test
+    public void recalculatedButSameQuote_notPublished() {
+        RecordingSubscriber subscriber = subscribe("300", Long.MAX_VALUE);
+
+        feed.apply(MarketEvent.add(5, offer("0.069", "100")));
+
+        assertThat(feed.getRecalculations(), equalTo(1L));
+        assertThat(subscriber.quotes, hasSize(1));
+    }
+
+    @Test
+    public void unavailableAmount_availableOnceSupplied() {
+        RecordingSubscriber subscriber = subscribe("5000", Long.MAX_VALUE);
+
+        feed.apply(MarketEvent.add(5, offer("0.2", "4000")));
+
+        assertThat(subscriber.quotes, hasSize(2));
+        assertThat(subscriber.quotes.get(0).getRate().signum(), equalTo(-1));
+        assertThat(subscriber.quotes.get(1).getRate().signum(), equalTo(1));
+    }
+
+    @Test
+    public void slowSubscriber_latestQuotesBufferedOthersServed() {
+        RecordingSubscriber slow = subscribe("1500", 1);
+        RecordingSubscriber fast = subscribe("1500", Long.MAX_VALUE);
+
+        for (int i = 0; i < 10; i++) {
+            feed.apply(MarketEvent.add(10 + i, offer("0.06", "100")));
+        }
+
+        assertThat(fast.quotes, hasSize(11));
+        assertThat(slow.quotes, hasSize(1));
+        assertThat(((QuoteSubscription) slow.subscription).getDropped(), equalTo(6L));
+
+        slow.subscription.request(100);
+        assertThat(slow.quotes, hasSize(5));
+        assertThat(slow.quotes.subList(1, 5), equalTo(fast.quotes.subList(7, 11)));
+    }
+
+    @Test
+    public void cancelled_noMoreQuotes() {
+        RecordingSubscriber subscriber = subscribe("1500", Long.MAX_VALUE);
+        subscriber.subscription.cancel();
+
+        feed.apply(MarketEvent.add(5, offer("0.05", "100")));
+
+        assertThat(subscriber.quotes, hasSize(1));
+        assertThat(feed.getRecalculations(), equalTo(0L));
+    }
+
+    @Test
+    public void nonPositiveRequest_error() {
+        RecordingSubscriber subscriber = subscribe("1500", 1);
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void closed_completedAfterBufferedQuotes() {
+        RecordingSubscriber subscriber = subscribe("1500", 0);
+
+        feed.close();
+        assertThat(subscriber.completed, equalTo(false));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.quotes, hasSize(1));
+        assertThat(subscriber.completed, equalTo(true));
+
+        RecordingSubscriber late = subscribe("1500", 1);
+        assertThat(late.error, instanceOf(IllegalStateException.class));
+    }
+
+    private RecordingSubscriber subscribe(String amount, long initialRequest) {
+        RecordingSubscriber subscriber = new RecordingSubscriber(initialRequest);
+        feed.quotes(decimal(amount), TERM).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private static LendingOffer offer(String rate, String amount) {
+        return new LendingOffer("Lender", rate(rate), decimal(amount));
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Loan> {
+        private final long initialRequest;
+        private final List<Loan> quotes = new ArrayList<>();
+        private Flow.Subscription subscription;
+        @Nullable
+        private Throwable error;
+        private boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Loan item) {
+            quotes.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -1,20 +1,35 @@
 package task.loans.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import task.loans.core.LendingOffer;
+import task.loans.core.MarketStatistics;
+import task.loans.core.OrderBook;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 @ParametersAreNonnullByDefault
 public class CsvInputReaderTest {
@@ -22,6 +37,7 @@ public class CsvInputReaderTest {
     private final File valid = getResourceAsFile("valid.csv");
     private final File validNoHeader = getResourceAsFile("valid_no_header.csv");
     private final File validTabSep = getResourceAsFile("valid_tab_sep.csv");
+    private final File validGzipped = getResourceAsFile("valid.csv.gz");
 
     @Test
     public void valid_skipLine_parsesFine() {
@@ -45,6 +61,93 @@ public class CsvInputReaderTest {
         assertThat(actual, equalTo(expected));
     }
 
+    @Test
+    public void validGzipped_resultEqualsToValid() {
+        List<LendingOffer> expected = new CsvInputReader(true).read(valid);
+        List<LendingOffer> actual = new CsvInputReader(true).read(validGzipped);
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void plainStream_resultEqualsToValid() throws IOException {
+        List<LendingOffer> expected = new CsvInputReader(true).read(valid);
+        try (InputStream in = new ByteArrayInputStream(Files.readAllBytes(valid.toPath()))) {
+            assertThat(new CsvInputReader(true).read(in), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void gzippedChannel_resultEqualsToValid() throws IOException {
+        List<LendingOffer> expected = new CsvInputReader(true).read(valid);
+        byte[] gzipped = gzip(Files.readAllBytes(valid.toPath()));
+        List<LendingOffer> actual = new CsvInputReader(true)
+                .read(Channels.newChannel(new ByteArrayInputStream(gzipped)));
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void largeGzippedStream_readsAllRows() throws IOException {
+        int rows = 100_000;
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            csv.append("Lender").append(i).append(",0.0").append(i % 90 + 10).append(',').append(i % 1000).append('\n');
+        }
+        byte[] gzipped = gzip(csv.toString().getBytes("utf-8"));
+        List<LendingOffer> offers = new CsvInputReader(false).read(new ByteArrayInputStream(gzipped));
+        assertThat(offers, hasSize(rows));
+        assertThat(offers.get(rows - 1).getLenderName(), equalTo("Lender" + (rows - 1)));
+    }
+
+    @Test
+    public void repeatedValues_sharedAcrossOffers() throws IOException {
+        String csv = "Zoë,0.07,100\nBob,0.07,200\nZoë,0.071,100\n";
+        List<LendingOffer> offers = new CsvInputReader(false).read(new ByteArrayInputStream(csv.getBytes("utf-8")));
+
+        assertThat(offers.get(0), equalTo(new LendingOffer("Zoë", new BigDecimal("0.070"), new BigDecimal("100.00"))));
+        assertThat(offers.get(2).getLenderName(), equalTo("Zoë"));
+        assertThat(offers.get(0).getRate(), sameInstance(offers.get(1).getRate()));
+        assertThat(offers.get(0).getAmount(), sameInstance(offers.get(2).getAmount()));
+    }
+
+    @Test
+    public void readBook_aggregatesAllRows() {
+        OrderBook book = new CsvInputReader(true).readBook(validGzipped);
+        MarketStatistics statistics = new MarketStatistics(book);
+        assertThat(statistics.getLevels(), equalTo(6));
+        assertThat(statistics.getTotalSupply(), comparesEqualTo(new BigDecimal("2330")));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void truncatedGzip_throwsException() throws IOException {
+        byte[] gzipped = gzip(Files.readAllBytes(valid.toPath()));
+        byte[] truncated = Arrays.copyOf(gzipped, gzipped.length / 2);
+        new CsvInputReader(true).read(new ByteArrayInputStream(truncated));
+    }
+
+    /**
+     * The data is still being inflated from the channel when the first row fails: the channel stays open.
+     */
+    @Test
+    public void invalidGzippedRow_channelNotClosed() throws IOException {
+        StringBuilder csv = new StringBuilder("Bob,rate,640\n");
+        while (csv.length() <= MarketInput.BUFFER_SIZE) {
+            csv.append("Bob,0.075,640\n");
+        }
+        Pipe pipe = Pipe.open();
+        try (OutputStream out = new GZIPOutputStream(Channels.newOutputStream(pipe.sink()), true)) {
+            out.write(csv.toString().getBytes("utf-8"));
+            out.flush();
+            try {
+                new CsvInputReader(false).read(pipe.source());
+                throw new AssertionError("Exception expected");
+            } catch (RuntimeException ex) {
+                assertThat(pipe.source().isOpen(), equalTo(true));
+            }
+        } finally {
+            pipe.source().close();
+        }
+    }
+
     @Test(expectedExceptions = RuntimeException.class)
     public void fileNotFound_throwsException() {
         new CsvInputReader(false).read(new File("non.existent"));
@@ -66,6 +169,14 @@ public class CsvInputReaderTest {
                 .iterator();
     }
 
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
     private static File getResourceAsFile(String resourceName) {
         return new File(CsvInputReaderTest.class.getResource(resourceName).getFile());
     }
@@ -0,0 +1,231 @@
+package task.loans.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import task.loans.core.LoanCalculator;
+import task.loans.core.OrderBook;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static task.loans.core.Money.decimal;
+
+@ParametersAreNonnullByDefault
+public class CsvValidatorTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    public void validFile_sameBookAsReader() throws IOException {
+        File valid = getResourceAsFile("valid.csv");
+        ValidationReport report = CsvValidator.builder().skipFirstLine(true).build().readBook(valid);
+
+        assertThat(report.getRows(), equalTo(7L));
+        assertThat(report.getInvalidRows(), equalTo(0L));
+        assertSameQuotes(report.getBook().get(), new CsvInputReader(true).readBook(valid));
+    }
+
+    @Test
+    public void validGzipped_sameAsPlain() throws IOException {
+        ValidationReport report = CsvValidator.builder().skipFirstLine(true).build()
+                .readBook(getResourceAsFile("valid.csv.gz"));
+
+        assertThat(report.getValidRows(), equalTo(7L));
+        assertSameQuotes(report.getBook().get(), new CsvInputReader(true).readBook(getResourceAsFile("valid.csv")));
+    }
+
+    @DataProvider
+    public static Object[][] invalid() {
+        return new Object[][]{
+                {"invalid_1.csv", "[Line 2: Expected 3 cells, found 4]"},
+                {"invalid_2.csv", "[Line 2: Rate is not a decimal: AAAA, Line 3: Amount is not a decimal: AAA]"},
+                {"invalid_3.csv", "[Line 1: Expected 3 cells, found 6]"},
+                {"invalid_4.csv", "[Line 1: Expected 3 cells, found 1, Line 2: Expected 3 cells, found 1]"},
+        };
+    }
+
+    @Test(dataProvider = "invalid")
+    public void invalidFile_everyRowReported(String resource, String expected) throws IOException {
+        ValidationReport report = CsvValidator.builder().build().validate(getResourceAsFile(resource));
+
+        assertThat(report.getReported().toString(), equalTo(expected));
+        assertThat(report.getBook().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void rowsChecked_asReaderAccepts() throws IOException {
+        String csv = "Lender,Rate,Available\r\n"
+                + "Bob,0.075,640\r\n"
+                + "\"Jane \"\"J\"\" Doe\",\"0.069\",480\n"
+                + "  ,0.071,520\n"
+                + "Fred,0.071\n"
+                + "Mary,-0.104,170\n"
+                + "Zero,-0.0001,1E+2\n"
+                + "John,0.081,-320\n"
+                + "Huge,0.081,1E999999999\n"
+                + "Long,0.081,99999999999999999999\n"
+                + "Dave,0.074,\"140\n"
+                + "\n"
+                + "Angela,0.071,60";
+        ValidationReport report = CsvValidator.builder().skipFirstLine(true).pool(pool).build()
+                .readBook(stream(csv));
+
+        assertThat(report.getRows(), equalTo(12L));
+        assertThat(report.getReported().stream().map(Object::toString).collect(Collectors.toList()), contains(
+                "Line 4: Lender name is blank",
+                "Line 5: Expected 3 cells, found 2",
+                "Line 6: Rate is negative: -0.104",
+                "Line 8: Amount is negative: -320",
+                "Line 9: Amount is not a decimal: 1E999999999",
+                "Line 10: Amount is out of supported range: 99999999999999999999",
+                "Line 11: Quote is not closed",
+                "Line 12: Expected 3 cells, found 1"));
+        assertSameQuotes(report.getBook().get(), new CsvInputReader(true).readBook(stream("Lender,Rate,Available\n"
+                + "Bob,0.075,640\n"
+                + "Jane,0.069,480\n"
+                + "Zero,0,100\n"
+                + "Angela,0.071,60\n")));
+    }
+
+    /**
+     * Backslashes escape the next character, even out of quotes, and a quote inside a cell opens a quoted field,
+     * as the reader parses them.
+     */
+    @Test
+    public void escapedRows_checkedAsReaderParses() throws IOException {
+        String valid = "Bob\\,0.075,640\n"
+                + "Jane,0.0\\69,480\n"
+                + "\"Fred \\\"F\\\" Doe\",0.071,520\n"
+                + "C\\\\D,\"0.07\\4\",140\n";
+        ValidationReport report = CsvValidator.builder().pool(pool).build()
+                .readBook(stream(valid + "Ma\"ry,0.104,170\n" + "John,0.0\\\\81,320\n"));
+
+        assertThat(report.getReported().stream().map(Object::toString).collect(Collectors.toList()), contains(
+                "Line 5: Quote is not closed",
+                "Line 6: Rate is not a decimal: 0.0\\81"));
+        assertSameQuotes(report.getBook().get(), new CsvInputReader(false).readBook(stream(valid)));
+    }
+
+    /**
+     * Blocks of a few lines each, parsed in parallel: line numbers, counts and the book are the same as
+     * of a single block.
+     */
+    @Test
+    public void manyBlocks_sameAsOneBlock() throws IOException {
+        Random random = new Random(23);
+        StringBuilder csv = new StringBuilder("Lender,Rate,Available\n");
+        for (int i = 0; i < 20_000; i++) {
+            int kind = random.nextInt(50);
+            if (kind == 0) {
+                csv.append("Bad,x").append(i).append(",100\n");
+            } else if (kind == 1) {
+                csv.append(new String(new char[random.nextInt(300)]).replace('\0', 'L')).append(i)
+                        .append(",0.07,1\n");
+            } else {
+                csv.append("Lender").append(i).append(",0.").append(40 + random.nextInt(100)).append(',')
+                        .append(random.nextInt(10_000)).append('.').append(random.nextInt(10)).append('\n');
+            }
+        }
+        ValidationReport single = CsvValidator.builder().skipFirstLine(true).maxReported(Integer.MAX_VALUE)
+                .blockSize(1 << 24).build().readBook(stream(csv.toString()));
+        ValidationReport blocks = CsvValidator.builder().skipFirstLine(true).maxReported(Integer.MAX_VALUE)
+                .blockSize(64).pool(pool).build().readBook(stream(csv.toString()));
+
+        assertThat(single.getInvalidRows(), equalTo((long) single.getReported().size()));
+        assertThat(blocks.getRows(), equalTo(20_000L));
+        assertThat(blocks.getInvalidRows(), equalTo(single.getInvalidRows()));
+        assertThat(blocks.getReported().toString(), equalTo(single.getReported().toString()));
+        assertSameQuotes(blocks.getBook().get(), single.getBook().get());
+    }
+
+    @Test
+    public void moreInvalidThanLimit_firstReported() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            csv.append(i % 2 == 0 ? "Bob,0.075,640\n" : "Bob,rate,640\n");
+        }
+        ValidationReport report = CsvValidator.builder().maxReported(3).blockSize(100).pool(pool).build()
+                .validate(stream(csv.toString()));
+
+        assertThat(report.getInvalidRows(), equalTo(500L));
+        assertThat(report.isTruncated(), equalTo(true));
+        assertThat(report.getReported().stream().map(ValidationReport.InvalidRow::getLine)
+                .collect(Collectors.toList()), contains(1L, 3L, 5L));
+    }
+
+    @Test
+    public void gzippedStream_validated() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write("Bob\t0.075\t640\nJane\t0,069\t480\n".getBytes(StandardCharsets.UTF_8));
+        }
+        ValidationReport report = CsvValidator.builder().separator('\t').build()
+                .validate(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertThat(report.getReported().toString(), equalTo("[Line 2: Rate is not a decimal: 0,069]"));
+    }
+
+    /**
+     * Strings of the decimal alphabet are decimals exactly if {@link BigDecimal} parses them,
+     * unless their exponents are beyond the limit.
+     */
+    @Test
+    public void isDecimal_sameAsBigDecimal() {
+        Random random = new Random(29);
+        String alphabet = "0123456789+-.eE";
+        for (int i = 0; i < 100_000; i++) {
+            char[] chars = new char[random.nextInt(7)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            String text = new String(chars);
+            BigDecimal parsed;
+            try {
+                parsed = new BigDecimal(text);
+            } catch (NumberFormatException ex) {
+                parsed = null;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            if (parsed == null || Math.abs(parsed.scale()) < 90) {
+                assertThat(text, CsvValidator.isDecimal(bytes, 0, bytes.length), equalTo(parsed != null));
+            } else if (Math.abs(parsed.scale()) > 110) {
+                assertThat(text, CsvValidator.isDecimal(bytes, 0, bytes.length), equalTo(false));
+            }
+        }
+    }
+
+    private static void assertSameQuotes(OrderBook actual, OrderBook expected) {
+        LoanCalculator actualCalculator = new LoanCalculator(actual);
+        LoanCalculator expectedCalculator = new LoanCalculator(expected);
+        assertThat(actualCalculator.getStatistics().getLevels(),
+                equalTo(expectedCalculator.getStatistics().getLevels()));
+        for (String amount : new String[]{"0.01", "100", "1000", "15000", "123456.78", "1000000"}) {
+            assertThat(actualCalculator.calculate(decimal(amount)),
+                    equalTo(expectedCalculator.calculate(decimal(amount))));
+        }
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static File getResourceAsFile(String resourceName) {
+        return new File(CsvValidatorTest.class.getResource(resourceName).getFile());
+    }
+}
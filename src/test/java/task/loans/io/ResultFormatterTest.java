@@ -9,15 +9,22 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import org.apache.commons.io.IOUtils;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import task.loans.AllocationMeter;
 import task.loans.core.Loan;
 
 import static java.util.Arrays.stream;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
 
 @ParametersAreNonnullByDefault
 public class ResultFormatterTest {
 
+    /**
+     * Bytes allocated per formatted quote at most.
+     */
+    private static final double FORMAT_BUDGET = 6 * 1024;
+
     private static final String referentialResult = readResultFromResource().trim();
 
     private ResultFormatter formatter = new ResultFormatter();
@@ -27,6 +34,24 @@ public class ResultFormatterTest {
         assertThat(formatter.format(loan), equalTo(referentialResult));
     }
 
+    @Test(dataProvider = "results")
+    public void checkLineFormat(Loan loan) {
+        assertThat(formatter.formatLine(loan), equalTo(referentialResult.replaceAll("\\R", "; ")));
+    }
+
+    @Test(groups = AllocationMeter.GROUP)
+    public void format_withinAllocationBudget() {
+        Loan loan = Loan.builder()
+                .requestedAmount(dec("1000"))
+                .rate(dec("0.07"))
+                .monthlyRepayment(dec("30.78"))
+                .totalRepayment(dec("1108.10"))
+                .build();
+
+        double allocated = AllocationMeter.bytesPerOperation(() -> formatter.format(loan), 10_000);
+        assertThat("Bytes allocated per formatted quote", allocated, lessThan(FORMAT_BUDGET));
+    }
+
     @DataProvider(name = "results")
     public static Iterator<Object> results() {
         return stream(new String[][]{
@@ -0,0 +1,52 @@
+package task.loans.io;
+
+import java.io.File;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+import task.loans.core.MarketStatistics;
+import task.loans.core.OrderBook;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+@ParametersAreNonnullByDefault
+public class StatisticsFormatterTest {
+
+    private final MarketStatistics statistics = new MarketStatistics(new CsvInputReader(true)
+            .readBook(new File(StatisticsFormatterTest.class.getResource("valid.csv").getFile())));
+
+    @Test
+    public void summary() {
+        String json = new StatisticsFormatter(false).format(statistics);
+
+        assertThat(json, startsWith("{"));
+        assertThat(json, endsWith("}"));
+        assertThat(json, containsString("\"levels\": 6,"));
+        assertThat(json, containsString("\"totalSupply\": 2330.00,"));
+        assertThat(json, containsString("\"minRate\": 0.069,"));
+        assertThat(json, containsString("\"maxRate\": 0.104,"));
+        assertThat(json, containsString("\"p50\": 0.074"));
+        assertThat(json, not(containsString("depth")));
+    }
+
+    @Test
+    public void withDepth() {
+        String json = new StatisticsFormatter(true).format(statistics);
+
+        assertThat(json, containsString("{\"rate\": 0.071, \"amount\": 580.00, \"cumulativeAmount\": 1060.00},"));
+        assertThat(json, containsString("{\"rate\": 0.104, \"amount\": 170.00, \"cumulativeAmount\": 2330.00}\n  ]"));
+    }
+
+    @Test
+    public void emptyMarket() {
+        String json = new StatisticsFormatter(true).format(new MarketStatistics(OrderBook.builder().build()));
+
+        assertThat(json, containsString("\"averageRate\": null,"));
+        assertThat(json, containsString("\"depth\": [\n  ]"));
+    }
+}
@@ -0,0 +1,113 @@
+package task.loans.load;
+
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@ParametersAreNonnullByDefault
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValues_exact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getValueAtPercentile(50), equalTo(50L));
+        assertThat(histogram.getValueAtPercentile(99), equalTo(99L));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(100L));
+        assertThat(histogram.getMean(), closeTo(50.5, 1e-9));
+    }
+
+    @Test
+    public void largeValues_withinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new Random(3).longs(100_000, 1, 1L << 40).sorted().toArray();
+        for (long value : values) {
+            histogram.record(value);
+        }
+
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 99.99}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertThat(reported, greaterThanOrEqualTo(exact));
+            assertThat((double) reported, lessThanOrEqualTo(exact * 1.001));
+        }
+        assertThat(histogram.getValueAtPercentile(100), equalTo(values[values.length - 1]));
+    }
+
+    @Test
+    public void reset_emptyAgain() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000_000);
+        histogram.reset();
+        histogram.record(7);
+
+        assertThat(histogram.getTotalCount(), equalTo(1L));
+        assertThat(histogram.getMax(), equalTo(7L));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(7L));
+    }
+
+    @Test
+    public void bucketBounds_consistent() {
+        for (long value : new long[]{0, 2047, 2048, 4095, 4096, 1_000_000_007L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.highestEquivalent(index), greaterThanOrEqualTo(value));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestEquivalent(index - 1), lessThanOrEqualTo(value - 1));
+            }
+        }
+    }
+
+    /**
+     * The range of the top bucket, and of the ones past it, ends beyond the greatest long: saturated, not wrapped.
+     */
+    @Test
+    public void highestEquivalent_nonDecreasingUpToMaxValue() {
+        int top = LatencyHistogram.index(Long.MAX_VALUE);
+        for (int index = 1; index <= top + 2; index++) {
+            assertThat(LatencyHistogram.highestEquivalent(index),
+                    greaterThanOrEqualTo(LatencyHistogram.highestEquivalent(index - 1)));
+        }
+        assertThat(LatencyHistogram.highestEquivalent(top - 1), lessThanOrEqualTo(Long.MAX_VALUE - 1));
+        assertThat(LatencyHistogram.highestEquivalent(top), equalTo(Long.MAX_VALUE));
+        assertThat(LatencyHistogram.highestEquivalent(top + 1), equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void topBucket_reportedAsRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE - 1);
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getValueAtPercentile(50), equalTo(Long.MAX_VALUE));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void added_sameAsRecordedTogether() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        LatencyHistogram both = new LatencyHistogram();
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(1_000_000);
+            (i % 2 == 0 ? first : second).record(value);
+            both.record(value);
+        }
+        first.add(second);
+
+        assertThat(first.getTotalCount(), equalTo(both.getTotalCount()));
+        assertThat(first.getMax(), equalTo(both.getMax()));
+        assertThat(first.getValueAtPercentile(99.9), equalTo(both.getValueAtPercentile(99.9)));
+    }
+}
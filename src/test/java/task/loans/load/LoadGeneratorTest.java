@@ -0,0 +1,97 @@
+package task.loans.load;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.Test;
+import task.loans.core.Loan;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@ParametersAreNonnullByDefault
+public class LoadGeneratorTest {
+
+    private static final Loan QUOTE = Loan.unavailable(BigDecimal.ONE);
+
+    @Test
+    public void targetRate_scheduledRequestsSent() throws InterruptedException {
+        LoadReport report = LoadGenerator.builder()
+                .threads(2)
+                .rate(1_000)
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(500))
+                .build()
+                .run(() -> amount -> QUOTE);
+
+        assertThat(report.getRequests(), allOf(greaterThanOrEqualTo(490L), lessThanOrEqualTo(510L)));
+        assertThat(report.getUnavailable(), equalTo(report.getRequests()));
+        assertThat(report.getErrors(), equalTo(0L));
+        assertThat(report.format(), containsString("p99.99"));
+    }
+
+    @Test
+    public void stall_delaysScheduledRequests() throws InterruptedException {
+        AtomicBoolean stalled = new AtomicBoolean();
+        LoadReport report = LoadGenerator.builder()
+                .rate(1_000)
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(500))
+                .build()
+                .run(() -> amount -> {
+                    if (!stalled.getAndSet(true)) {
+                        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+                    }
+                    return QUOTE;
+                });
+
+        // the ~100 requests scheduled during the stall wait for it, so the stall is not a single outlier
+        assertThat(report.getLatencies().getValueAtPercentile(90), greaterThan(TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void failures_countedAsErrors() throws InterruptedException {
+        LoadReport report = LoadGenerator.builder()
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(100))
+                .build()
+                .run(() -> amount -> {
+                    throw new IllegalStateException("rejected");
+                });
+
+        assertThat(report.getRequests(), greaterThan(0L));
+        assertThat(report.getErrors(), equalTo(report.getRequests()));
+    }
+
+    @Test
+    public void distributions_withinBounds() {
+        Random random = new Random(1);
+        AmountDistribution uniform = AmountDistribution.parse("uniform:1000:1000.05");
+        AmountDistribution normal = AmountDistribution.parse("normal:5000:3000");
+        for (int i = 0; i < 1_000; i++) {
+            BigDecimal amount = uniform.next(random);
+            assertThat(amount, allOf(greaterThanOrEqualTo(new BigDecimal("1000")),
+                    lessThanOrEqualTo(new BigDecimal("1000.05"))));
+            assertThat(amount.scale(), equalTo(2));
+            assertThat(normal.next(random), allOf(greaterThan(BigDecimal.ZERO),
+                    lessThanOrEqualTo(new BigDecimal("10000"))));
+        }
+        assertThat(AmountDistribution.parse("fixed:1500").next(random), equalTo(new BigDecimal("1500.00")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void malformedDistribution_throwsException() {
+        AmountDistribution.parse("uniform:1000");
+    }
+}
@@ -0,0 +1,138 @@
+package task.loans.partition;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import task.loans.core.BookPartition;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.core.Partition;
+import task.loans.core.PartitionedCalculator;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class PartitionServerTest {
+
+    private static final List<LendingOffer> OFFERS = asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520")),
+            new LendingOffer("Mary", rate("0.104"), decimal("170")),
+            new LendingOffer("John", rate("0.081"), decimal("320")),
+            new LendingOffer("Dave", rate("0.074"), decimal("140")),
+            new LendingOffer("Angela", rate("0.071"), decimal("60")));
+
+    private final List<BookPartition> local = asList(
+            BookPartition.of(OFFERS, null, rate("0.072")),
+            BookPartition.of(OFFERS, rate("0.072"), rate("0.080")),
+            BookPartition.of(OFFERS, rate("0.080"), null));
+    private final List<PartitionServer> servers = new ArrayList<>();
+
+    @BeforeClass
+    public void startServers() throws IOException {
+        for (BookPartition partition : local) {
+            PartitionServer server = new PartitionServer(partition, new InetSocketAddress("localhost", 0));
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServers() throws IOException {
+        for (PartitionServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void remotePartition_sameAsLocal() throws IOException {
+        try (RemotePartition remote = RemotePartition.connect(servers.get(1).getAddress())) {
+            Partition partition = local.get(1);
+            assertThat(remote.getSummary(), equalTo(partition.getSummary()));
+            for (long amount = 0; amount <= partition.getSummary().getTotalAmount(); amount += 999) {
+                assertThat(remote.cut(amount), equalTo(partition.cut(amount)));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentQuotes_sameAsCalculator() throws Exception {
+        LoanCalculator calculator = new LoanCalculator(OFFERS);
+        List<RemotePartition> remotes = connectAll();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PartitionedCalculator partitioned = new PartitionedCalculator(remotes);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                tasks.add(() -> {
+                    for (int cents = 1 + offset; cents <= 240_000; cents += 997) {
+                        BigDecimal amount = BigDecimal.valueOf(cents, 2);
+                        assertThat(partitioned.calculate(amount, 24), equalTo(calculator.calculate(amount, 24)));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+            for (RemotePartition remote : remotes) {
+                remote.close();
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void amountAboveTotal_exception() throws IOException {
+        try (RemotePartition remote = RemotePartition.connect(servers.get(0).getAddress())) {
+            remote.cut(remote.getSummary().getTotalAmount() + 1);
+        }
+    }
+
+    @Test
+    public void rejectedAmount_connectionKept() throws IOException {
+        try (RemotePartition remote = RemotePartition.connect(servers.get(0).getAddress())) {
+            try {
+                remote.cut(-1);
+                throw new AssertionError("Exception expected");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+            assertThat(remote.cut(0), equalTo(local.get(0).cut(0)));
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void closed_exception() throws IOException {
+        RemotePartition remote = RemotePartition.connect(servers.get(2).getAddress());
+        remote.close();
+        remote.cut(0);
+    }
+
+    private List<RemotePartition> connectAll() throws IOException {
+        List<RemotePartition> remotes = new ArrayList<>();
+        for (PartitionServer server : servers) {
+            remotes.add(RemotePartition.connect(server.getAddress()));
+        }
+        return remotes;
+    }
+}
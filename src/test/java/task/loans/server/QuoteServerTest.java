@@ -0,0 +1,160 @@
+package task.loans.server;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import task.loans.audit.AuditLog;
+import task.loans.audit.AuditReader;
+import task.loans.audit.AuditRecord;
+import task.loans.core.LendingOffer;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class QuoteServerTest {
+
+    private final LoanCalculator calculator = new LoanCalculator(asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520")),
+            new LendingOffer("Mary", rate("0.104"), decimal("170")),
+            new LendingOffer("John", rate("0.081"), decimal("320")),
+            new LendingOffer("Dave", rate("0.074"), decimal("140")),
+            new LendingOffer("Angela", rate("0.071"), decimal("60"))));
+
+    private QuoteServer server;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = new QuoteServer(calculator, new InetSocketAddress("localhost", 0), 2);
+        server.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void singleQuote_sameAsCalculated() throws IOException {
+        try (QuoteClient client = new QuoteClient(server.getAddress())) {
+            assertSameQuote(client.quote(decimal("1000"), 36), calculator.calculate(decimal("1000"), 36));
+            assertSameQuote(client.quote(decimal("1000.01"), 12), calculator.calculate(decimal("1000.01"), 12));
+        }
+    }
+
+    @Test
+    public void moreThanSupplied_unavailable() throws IOException {
+        try (QuoteClient client = new QuoteClient(server.getAddress())) {
+            assertSameQuote(client.quote(decimal("2331"), 36), Loan.unavailable(decimal("2331")));
+        }
+    }
+
+    @Test
+    public void pipelinedQuotes_inOrderOfRequests() throws IOException {
+        List<BigDecimal> amounts = amounts(10_000);
+        try (QuoteClient client = new QuoteClient(server.getAddress())) {
+            List<Loan> loans = client.quote(amounts, 24);
+
+            assertThat(loans, hasSize(amounts.size()));
+            for (int i = 0; i < amounts.size(); i++) {
+                assertSameQuote(loans.get(i), calculator.calculate(amounts.get(i), 24));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentClients_servedIndependently() throws Exception {
+        List<BigDecimal> amounts = amounts(3_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Loan>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Callable<List<Loan>> task = () -> {
+                    try (QuoteClient client = new QuoteClient(server.getAddress())) {
+                        return client.quote(amounts, 36);
+                    }
+                };
+                futures.add(executor.submit(task));
+            }
+            for (Future<List<Loan>> future : futures) {
+                List<Loan> loans = future.get();
+                for (int i = 0; i < amounts.size(); i++) {
+                    assertSameQuote(loans.get(i), calculator.calculate(amounts.get(i), 36));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void audited_everyLoanReturnedRecorded() throws IOException {
+        Path directory = Files.createTempDirectory("quote-audit");
+        try {
+            List<BigDecimal> amounts = amounts(500);
+            try (AuditLog audit = AuditLog.builder().directory(directory).overflow(AuditLog.Overflow.BLOCK).build();
+                 QuoteServer audited = new QuoteServer(calculator, new InetSocketAddress("localhost", 0), 1, audit)) {
+                audited.start();
+                try (QuoteClient client = new QuoteClient(audited.getAddress())) {
+                    client.quote(amounts, 24);
+                    client.quote(decimal("2331"), 24);
+                }
+            }
+
+            List<AuditRecord> records = new ArrayList<>();
+            AuditReader.read(directory, records::add);
+            assertThat(records, hasSize(amounts.size() + 1));
+            for (int i = 0; i < amounts.size(); i++) {
+                assertSameQuote(records.get(i).getLoan(), calculator.calculate(amounts.get(i), 24));
+            }
+            assertSameQuote(records.get(amounts.size()).getLoan(), Loan.unavailable(decimal("2331")));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void termOutOfRange_rejectedByClient() throws IOException {
+        try (QuoteClient client = new QuoteClient(server.getAddress())) {
+            client.quote(decimal("1000"), QuoteProtocol.MAX_TERM + 1);
+        }
+    }
+
+    private static List<BigDecimal> amounts(int count) {
+        List<BigDecimal> amounts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            amounts.add(BigDecimal.valueOf(i * 77L % 240_000 + 1, 2));
+        }
+        return amounts;
+    }
+
+    private static void assertSameQuote(Loan actual, Loan expected) {
+        assertThat(actual.getRequestedAmount(), comparesEqualTo(expected.getRequestedAmount()));
+        assertThat(actual.getRate(), comparesEqualTo(expected.getRate()));
+        assertThat(actual.getMonthlyRepayment(), comparesEqualTo(expected.getMonthlyRepayment()));
+        assertThat(actual.getTotalRepayment(), comparesEqualTo(expected.getTotalRepayment()));
+    }
+}
@@ -0,0 +1,316 @@
+package task.loans.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.core.OrderBook;
+import task.loans.io.CsvInputReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static task.loans.core.Money.decimal;
+
+@ParametersAreNonnullByDefault
+public class MarketRegistryTest {
+
+    private static final int LEVELS = 100;
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    private Path directory;
+    private MarketRegistry registry;
+
+    @BeforeMethod
+    public void createRegistry() throws IOException {
+        directory = Files.createTempDirectory("market-registry");
+        loads.clear();
+        registry = registry(2 * market("a").byteSize());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        registry.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void secondRequest_heldNotLoaded() throws MarketLoadException {
+        LoanCalculator first = registry.get("a");
+
+        assertThat(registry.get("a"), sameInstance(first));
+        assertThat(loads("a"), equalTo(1));
+        assertThat(registry.getHeldMarkets(), equalTo(1));
+        assertThat(registry.getHeldBytes(), equalTo(market("a").byteSize()));
+        assertSameQuotes(first, new LoanCalculator(market("a")));
+    }
+
+    @Test
+    public void overBudget_leastRecentlyUsedPagedOut() throws MarketLoadException {
+        registry.get("a");
+        registry.get("b");
+        registry.get("a");
+        registry.get("c");
+
+        assertThat(registry.getHeldMarkets(), equalTo(2));
+        assertThat(registry.getPageOuts(), equalTo(1L));
+        assertThat(registry.getHeldBytes(), equalTo(market("a").byteSize() + market("c").byteSize()));
+
+        // b was requested least recently: paged out, and paged in from its book file, not the source
+        LoanCalculator pagedIn = registry.get("b");
+        assertThat(loads("b"), equalTo(1));
+        assertThat(registry.getLoads(), equalTo(3L));
+        assertThat(registry.getPageIns(), equalTo(1L));
+        assertSameQuotes(pagedIn, new LoanCalculator(market("b")));
+
+        // then a was
+        registry.get("c");
+        registry.get("a");
+        assertThat(registry.getPageIns(), equalTo(2L));
+        assertThat(loads("a"), equalTo(1));
+    }
+
+    @Test
+    public void marketOverWholeBudget_heldAlone() throws MarketLoadException {
+        registry.close();
+        registry = registry(0);
+
+        LoanCalculator a = registry.get("a");
+        assertThat(registry.getHeldMarkets(), equalTo(1));
+        assertThat(registry.get("a"), sameInstance(a));
+
+        registry.get("b");
+        assertThat(registry.getHeldMarkets(), equalTo(1));
+        assertThat(registry.getPageOuts(), equalTo(1L));
+    }
+
+    @Test
+    public void concurrentFirstRequests_singleLoad() throws Exception {
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        registry.close();
+        registry = MarketRegistry.builder()
+                .directory(directory)
+                .loader(marketId -> {
+                    requested.countDown();
+                    await(released);
+                    return load(marketId);
+                })
+                .build();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<LoanCalculator>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> registry.get("a")));
+            }
+            assertThat(requested.await(10, TimeUnit.SECONDS), equalTo(true));
+            Thread.sleep(100);
+            released.countDown();
+
+            LoanCalculator first = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<LoanCalculator> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS), sameInstance(first));
+            }
+            assertThat(loads("a"), equalTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoad_forgottenAndRetried() throws MarketLoadException {
+        AtomicInteger attempts = new AtomicInteger();
+        registry.close();
+        registry = MarketRegistry.builder()
+                .directory(directory)
+                .loader(marketId -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalArgumentException("Market is too large");
+                    }
+                    return load(marketId);
+                })
+                .build();
+
+        String error = null;
+        try {
+            registry.get("a");
+        } catch (MarketLoadException ex) {
+            error = ex.getMessage();
+        }
+        assertThat(error, equalTo("Could not load market a: Market is too large"));
+        assertThat(registry.getHeldMarkets(), equalTo(0));
+        assertThat(registry.get("a").getStatistics().getLevels(), equalTo(LEVELS));
+        assertThat(attempts.get(), equalTo(2));
+    }
+
+    @Test
+    public void errorLoading_waitersFailedAndRetried() throws Exception {
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        registry.close();
+        registry = MarketRegistry.builder()
+                .directory(directory)
+                .loader(marketId -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        requested.countDown();
+                        await(released);
+                        throw new OutOfMemoryError("Java heap space");
+                    }
+                    return load(marketId);
+                })
+                .build();
+
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        AtomicReference<Throwable> waiterFailure = new AtomicReference<>();
+        Thread first = request("a", firstFailure);
+        assertThat(requested.await(10, TimeUnit.SECONDS), equalTo(true));
+        Thread waiter = request("a", waiterFailure);
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+        released.countDown();
+        first.join(10_000);
+        waiter.join(10_000);
+
+        assertThat(firstFailure.get(), instanceOf(OutOfMemoryError.class));
+        assertThat(waiterFailure.get(), instanceOf(MarketLoadException.class));
+        assertThat(waiterFailure.get().getMessage(), equalTo("Could not load market a: Java heap space"));
+        assertThat(registry.get("a").getStatistics().getLevels(), equalTo(LEVELS));
+        assertThat(attempts.get(), equalTo(2));
+    }
+
+    @Test
+    public void quote_validatedAndUnknownMarketRejected() throws IOException {
+        Path csv = directory.resolve("a.csv");
+        Files.write(csv, "Bob,0.075,640\nJane,0.069,480\nFred,0.071,520\n".getBytes(StandardCharsets.UTF_8));
+        registry.close();
+        registry = MarketRegistry.builder()
+                .directory(directory)
+                .csvFiles(new CsvInputReader(false), marketId -> new File(directory.toFile(), marketId + ".csv"))
+                .build();
+
+        QuoteResult quoted = registry.quote("a", decimal(1000), LoanCalculator.DEFAULT_TERM);
+        assertThat(quoted.isQuoted(), equalTo(true));
+        assertThat(quoted.getLoan().get(), equalTo(new LoanCalculator(new CsvInputReader(false).read(csv.toFile()))
+                .calculate(decimal(1000))));
+
+        assertThat(registry.quote("a", decimal(-1), 36).getError().get(), containsString("non-negative"));
+        assertThat(registry.quote("a", decimal(1000), 1_000_000_000).getError().get(),
+                containsString("must be in range"));
+        assertThat(registry.quote("b", decimal(1000), 36).getError().get(),
+                containsString("Could not load market b"));
+    }
+
+    @Test
+    public void removed_loadedFromSourceAgain() throws MarketLoadException {
+        registry.get("a");
+        registry.remove("a");
+
+        assertThat(registry.getHeldMarkets(), equalTo(0));
+        assertThat(registry.getHeldBytes(), equalTo(0L));
+        registry.get("a");
+        assertThat(loads("a"), equalTo(2));
+    }
+
+    @Test
+    public void closed_bookFilesDeleted() throws MarketLoadException, IOException {
+        registry.get("a");
+        registry.get("b");
+        registry.get("c");
+        registry.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.collect(Collectors.toList()), empty());
+        }
+    }
+
+    private MarketRegistry registry(long memoryBudget) {
+        return MarketRegistry.builder()
+                .directory(directory)
+                .memoryBudget(memoryBudget)
+                .loader(this::load)
+                .build();
+    }
+
+    private OrderBook load(String marketId) {
+        loads.computeIfAbsent(marketId, id -> new AtomicInteger()).incrementAndGet();
+        return market(marketId);
+    }
+
+    private int loads(String marketId) {
+        return loads.getOrDefault(marketId, new AtomicInteger()).get();
+    }
+
+    /**
+     * @return Random market of {@value #LEVELS} levels, the same for the same id.
+     */
+    private static OrderBook market(String marketId) {
+        Random random = new Random(marketId.hashCode());
+        OrderBook.Builder builder = OrderBook.builder();
+        for (int level = 0; level < LEVELS; level++) {
+            builder.add(new LendingOffer("Lender" + level, BigDecimal.valueOf(40 + level, 3),
+                    BigDecimal.valueOf(random.nextInt(100_000), 2)));
+        }
+        return builder.build();
+    }
+
+    private static void assertSameQuotes(LoanCalculator actual, LoanCalculator expected) {
+        for (int amount = 500; amount <= 50_000; amount += 500) {
+            assertThat(actual.calculate(decimal(amount)), equalTo(expected.calculate(decimal(amount))));
+        }
+        assertThat(actual.getStatistics().getTotalSupply(), equalTo(expected.getStatistics().getTotalSupply()));
+    }
+
+    private Thread request(String marketId, AtomicReference<Throwable> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                registry.get(marketId);
+            } catch (MarketLoadException | Error ex) {
+                failure.set(ex);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
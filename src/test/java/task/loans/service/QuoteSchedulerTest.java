@@ -0,0 +1,280 @@
+package task.loans.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.io.CsvInputReader;
+import task.loans.load.LatencyHistogram;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static task.loans.core.Money.decimal;
+
+@ParametersAreNonnullByDefault
+public class QuoteSchedulerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuoteSchedulerTest.class);
+
+    private static final Duration TIMEOUT = Duration.ofMillis(50);
+
+    private final AtomicLong now = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return now.get();
+        }
+    };
+
+    private QuoteService service;
+    private List<LendingOffer> offers;
+
+    @BeforeMethod
+    public void createService() throws MarketLoadException {
+        now.set(0);
+        Random random = new Random(17);
+        offers = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            offers.add(new LendingOffer("Lender" + i, BigDecimal.valueOf(40 + random.nextInt(160), 3),
+                    BigDecimal.valueOf(random.nextInt(200_000), 2)));
+        }
+        service = new QuoteService(new CsvInputReader(false));
+        service.loadMarket(offers);
+    }
+
+    @Test
+    public void calculated_sameAsService() throws Exception {
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(service).maxConcurrency(2).build()) {
+            QuoteResult result = scheduler.submit(decimal("12345.67"), 24, TIMEOUT).get(10, TimeUnit.SECONDS);
+
+            assertThat(result.getLoan().get(), equalTo(new LoanCalculator(offers).calculate(decimal("12345.67"), 24)));
+            assertThat(scheduler.getCalculated(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void cachedAndRejected_answeredOnSubmitting() {
+        service.quote(decimal("1000"));
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(service).build()) {
+            CompletableFuture<QuoteResult> cached = scheduler.submit(decimal("1000"), Duration.ZERO);
+            CompletableFuture<QuoteResult> rejected = scheduler.submit(decimal("-1"), Duration.ZERO);
+
+            assertThat(cached.isDone(), equalTo(true));
+            assertThat(cached.join().isQuoted(), equalTo(true));
+            assertThat(rejected.join().getError().get(), containsString("non-negative"));
+            assertThat(rejected.join().isShed(), equalTo(false));
+            assertThat(scheduler.getServedCheaply(), equalTo(2L));
+        }
+    }
+
+    @Test
+    public void deadlinePassed_shed() {
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(service).build()) {
+            QuoteResult result = scheduler.submit(decimal("1000"), Duration.ZERO).join();
+
+            assertThat(result.isShed(), equalTo(true));
+            assertThat(result.isQuoted(), equalTo(false));
+            assertThat(scheduler.getShedExpired(), equalTo(1L));
+            assertThat(scheduler.getCalculated(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void closed_queuedShed() {
+        QuoteScheduler scheduler = QuoteScheduler.builder().service(service).maxConcurrency(1).build();
+        List<CompletableFuture<QuoteResult>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(scheduler.submit(BigDecimal.valueOf(100_00 + i, 2), Duration.ofMinutes(1)));
+        }
+        scheduler.close();
+
+        assertThat(scheduler.submit(decimal("5000"), TIMEOUT).join().getError().get(), containsString("closed"));
+        for (CompletableFuture<QuoteResult> result : results) {
+            assertThat(result.isDone(), equalTo(true));
+        }
+        assertThat(scheduler.getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    public void latencyGrows_concurrencyLimitCut() {
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(service).maxConcurrency(8).build()) {
+            for (int i = 0; i < 64; i++) {
+                scheduler.onCalculated(10_000);
+            }
+            assertThat(scheduler.getConcurrencyLimit(), equalTo(8));
+
+            for (int i = 0; i < 64; i++) {
+                scheduler.onCalculated(30_000);
+            }
+            assertThat(scheduler.getConcurrencyLimit(), equalTo(6));
+        }
+    }
+
+    @Test
+    public void queueFull_shedNotQueued() throws Exception {
+        StalledService stalled = new StalledService(offers);
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(stalled)
+                .maxConcurrency(1).queueCapacity(2).ticker(ticker).build()) {
+            CompletableFuture<QuoteResult> calculating = scheduler.submit(decimal("1001"), TIMEOUT);
+            stalled.awaitCalculating();
+            List<CompletableFuture<QuoteResult>> queued = Arrays.asList(
+                    scheduler.submit(decimal("1002"), TIMEOUT), scheduler.submit(decimal("1003"), TIMEOUT));
+            QuoteResult shed = scheduler.submit(decimal("1004"), TIMEOUT).join();
+
+            assertThat(shed.isShed(), equalTo(true));
+            assertThat(shed.getError().get(), containsString("Queue is full"));
+            assertThat(scheduler.getShedQueueFull(), equalTo(1L));
+            stalled.release();
+            assertThat(calculating.get(10, TimeUnit.SECONDS).isQuoted(), equalTo(true));
+            for (CompletableFuture<QuoteResult> result : queued) {
+                assertThat(result.get(10, TimeUnit.SECONDS).isQuoted(), equalTo(true));
+            }
+            assertThat(scheduler.getCalculated(), equalTo(3L));
+        }
+    }
+
+    @Test
+    public void deadlinePassedInQueue_shedNotCalculated() throws Exception {
+        StalledService stalled = new StalledService(offers);
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(stalled)
+                .maxConcurrency(1).ticker(ticker).build()) {
+            CompletableFuture<QuoteResult> calculating = scheduler.submit(decimal("1001"), TIMEOUT);
+            stalled.awaitCalculating();
+            CompletableFuture<QuoteResult> expiring = scheduler.submit(decimal("1002"), TIMEOUT);
+            CompletableFuture<QuoteResult> waiting = scheduler.submit(decimal("1003"), TIMEOUT.multipliedBy(3));
+            now.addAndGet(2 * TIMEOUT.toNanos());
+            stalled.release();
+
+            QuoteResult shed = expiring.get(10, TimeUnit.SECONDS);
+            assertThat(shed.isShed(), equalTo(true));
+            assertThat(shed.getError().get(), containsString("Deadline has passed in the queue"));
+            assertThat(calculating.get(10, TimeUnit.SECONDS).isQuoted(), equalTo(true));
+            assertThat(waiting.get(10, TimeUnit.SECONDS).isQuoted(), equalTo(true));
+            assertThat(scheduler.getShedExpired(), equalTo(1L));
+            assertThat(scheduler.getCalculated(), equalTo(2L));
+        }
+    }
+
+    @Test
+    public void calculationFailed_rejectedAndWorkerKept() throws Exception {
+        QuoteService failing = new QuoteService(new CsvInputReader(false)) {
+            @Override
+            public QuoteResult quote(BigDecimal amount, int term) {
+                if (amount.compareTo(decimal("1001")) == 0) {
+                    throw new IllegalStateException("Market is broken");
+                }
+                return super.quote(amount, term);
+            }
+        };
+        failing.loadMarket(offers);
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(failing)
+                .maxConcurrency(1).ticker(ticker).build()) {
+            QuoteResult failed = scheduler.submit(decimal("1001"), TIMEOUT).get(10, TimeUnit.SECONDS);
+            QuoteResult next = scheduler.submit(decimal("1002"), TIMEOUT).get(10, TimeUnit.SECONDS);
+
+            assertThat(failed.isQuoted(), equalTo(false));
+            assertThat(failed.isShed(), equalTo(false));
+            assertThat(failed.getError().get(), containsString("Market is broken"));
+            assertThat(next.getLoan().get(), equalTo(new LoanCalculator(offers).calculate(decimal("1002"))));
+        }
+    }
+
+    /**
+     * Requests are submitted much faster than they can be calculated: the queue would grow without a limit,
+     * and so would the latency. The requests answered are answered within about their timeout, the rest are shed.
+     * Measured by the wall clock, so run by the perf profile only.
+     */
+    @Test(groups = "perf")
+    public void overload_p99Bounded() throws Exception {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long submitted = 0;
+        int queueCapacity = 8192;
+        try (QuoteScheduler scheduler = QuoteScheduler.builder().service(service).queueCapacity(queueCapacity)
+                .build()) {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            for (long amount = 1_000_00; System.nanoTime() < end; amount += 7) {
+                long start = System.nanoTime();
+                CompletableFuture<?> answered = scheduler.submit(BigDecimal.valueOf(amount, 2), TIMEOUT)
+                        .thenAccept(result -> {
+                            if (result.isQuoted()) {
+                                synchronized (latencies) {
+                                    latencies.record(System.nanoTime() - start);
+                                }
+                            }
+                        });
+                if (!answered.isDone()) {
+                    pending.add(answered);
+                }
+                if (pending.size() > 2 * queueCapacity) {
+                    pending.removeIf(CompletableFuture::isDone);
+                }
+                submitted++;
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+            logger.info("Submitted {}: calculated {}, shed {} as the queue was full and {} as expired, "
+                            + "p99 {} ms, max {} ms, concurrency limit {}", submitted, scheduler.getCalculated(),
+                    scheduler.getShedQueueFull(), scheduler.getShedExpired(),
+                    latencies.getValueAtPercentile(99) / 1e6, latencies.getMax() / 1e6,
+                    scheduler.getConcurrencyLimit());
+            assertThat(scheduler.getCalculated() + scheduler.getShedQueueFull() + scheduler.getShedExpired(),
+                    equalTo(submitted));
+            assertThat(scheduler.getShedQueueFull() + scheduler.getShedExpired(), greaterThan(submitted / 2));
+            assertThat(latencies.getTotalCount(), equalTo(scheduler.getCalculated()));
+        }
+        assertThat(latencies.getValueAtPercentile(99), lessThan(2 * TIMEOUT.toNanos()));
+    }
+
+    /**
+     * Service whose calculations wait until released, holding the workers.
+     */
+    private static final class StalledService extends QuoteService {
+        private final CountDownLatch calculating = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        StalledService(List<LendingOffer> offers) throws MarketLoadException {
+            super(new CsvInputReader(false));
+            loadMarket(offers);
+        }
+
+        @Override
+        public QuoteResult quote(BigDecimal amount, int term) {
+            calculating.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+            return super.quote(amount, term);
+        }
+
+        void awaitCalculating() throws InterruptedException {
+            assertThat(calculating.await(10, TimeUnit.SECONDS), equalTo(true));
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package task.loans.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+import task.loans.io.CsvInputReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class QuoteServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuoteServiceTest.class);
+
+    private static final List<LendingOffer> MARKET_A = Arrays.asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520")));
+
+    private static final List<LendingOffer> MARKET_B = Arrays.asList(
+            new LendingOffer("Mary", rate("0.104"), decimal("1700")),
+            new LendingOffer("John", rate("0.081"), decimal("320")));
+
+    private QuoteService service;
+
+    @BeforeMethod
+    public void createService() {
+        service = new QuoteService(new CsvInputReader(false));
+    }
+
+    @Test
+    public void emptyMarket_unavailable() {
+        QuoteResult result = service.quote(decimal("1000"));
+
+        assertThat(result.isQuoted(), equalTo(true));
+        assertThat(result.getLoan().get().getRate().signum(), equalTo(-1));
+    }
+
+    @Test
+    public void offersLoaded_quotedAsCalculator() throws MarketLoadException {
+        service.loadMarket(MARKET_A);
+
+        assertThat(service.quote(decimal("1000"), 12).getLoan().get(),
+                equalTo(new LoanCalculator(MARKET_A).calculate(decimal("1000"), 12)));
+        assertThat(service.getStatistics().getTotalSupply(), comparesEqualTo(decimal("1640")));
+    }
+
+    @Test
+    public void streamLoaded() throws MarketLoadException {
+        service.loadMarket(new ByteArrayInputStream("Bob,0.075,640\nJane,0.069,480\nFred,0.071,520\n"
+                .getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(service.quote(decimal("1000")).getLoan().get(),
+                equalTo(new LoanCalculator(MARKET_A).calculate(decimal("1000"))));
+    }
+
+    @Test
+    public void invalidRequests_rejectedWithoutException() {
+        QuoteResult negative = service.quote(decimal("-1"));
+        QuoteResult noTerm = service.quote(decimal("1000"), 0);
+
+        assertThat(negative.isQuoted(), equalTo(false));
+        assertThat(negative.getError().get(), containsString("non-negative"));
+        assertThat(noTerm.getError().get(), containsString("must be in range"));
+    }
+
+    @Test
+    public void termTooLong_rejectedWithoutException() throws MarketLoadException {
+        service.loadMarket(MARKET_A);
+
+        assertThat(service.quote(decimal("500"), LoanCalculator.MAX_TERM).isQuoted(), equalTo(true));
+        assertThat(service.quote(decimal("500"), LoanCalculator.MAX_TERM + 1).getError().get(),
+                containsString("must be in range"));
+        assertThat(service.quote(decimal("500"), 1_000_000_000).getError().get(),
+                containsString("must be in range"));
+    }
+
+    @Test
+    public void missingFile_exceptionAndMarketKept() throws MarketLoadException {
+        service.loadMarket(MARKET_A);
+        try {
+            service.loadMarket(new File("no-such-market.csv"));
+            throw new AssertionError("Exception expected");
+        } catch (MarketLoadException ex) {
+            assertThat(ex.getMessage(), containsString("no-such-market.csv"));
+        }
+
+        assertThat(service.getStatistics().getTotalSupply(), comparesEqualTo(decimal("1640")));
+    }
+
+    @Test(expectedExceptions = MarketLoadException.class)
+    public void malformedStream_exception() throws MarketLoadException {
+        service.loadMarket(new ByteArrayInputStream("Bob,abc,640\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Quoting threads see either of the markets swapped concurrently, never a mix or an error.
+     */
+    @Test
+    public void concurrentQuotesAndLoads_consistentResults() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        List<BigDecimal> amounts = new ArrayList<>();
+        for (int amount = 100; amount <= 2000; amount += 100) {
+            amounts.add(decimal(amount));
+        }
+        LoanCalculator a = new LoanCalculator(MARKET_A);
+        LoanCalculator b = new LoanCalculator(MARKET_B);
+        service.loadMarket(MARKET_A);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<Long>> quoters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                quoters.add(executor.submit(() -> {
+                    long quotes = 0;
+                    for (int i = offset; running.get(); i++) {
+                        BigDecimal amount = amounts.get(i % amounts.size());
+                        Loan loan = service.quote(amount).getLoan().get();
+                        assertThat(loan, anyOf(equalTo(a.calculate(amount)), equalTo(b.calculate(amount))));
+                        quotes++;
+                    }
+                    return quotes;
+                }));
+            }
+            Future<?> loader = executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    service.loadMarket(i % 2 == 0 ? MARKET_B : MARKET_A);
+                }
+                return null;
+            });
+            loader.get(30, TimeUnit.SECONDS);
+            running.set(false);
+            for (Future<Long> quoter : quoters) {
+                assertThat(quoter.get(30, TimeUnit.SECONDS), greaterThan(0L));
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Quoting takes no locks, so the throughput grows with the threads up to the cores.
+     * Measured by the wall clock, so run by the perf profile only.
+     */
+    @Test(groups = "perf")
+    public void throughput_scalesWithCores() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<LendingOffer> offers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            offers.add(new LendingOffer("Lender" + i, BigDecimal.valueOf(40 + i % 80, 3), decimal(100 + i)));
+        }
+        service.loadMarket(offers);
+
+        measureThroughput(1);
+        measureThroughput(cores);
+        double single = measureThroughput(1);
+        double all = measureThroughput(cores);
+        logger.info("Quotes per second: {} on 1 thread, {} on {} threads", (long) single, (long) all, cores);
+
+        assertThat(all / single, greaterThanOrEqualTo(0.5 * Math.min(cores, 4)));
+    }
+
+    /**
+     * @return Quotes per second of distinct amounts, mostly missing the cache.
+     */
+    private double measureThroughput(int threads) throws Exception {
+        long duration = TimeUnit.MILLISECONDS.toNanos(500);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    long quotes = 0;
+                    long end = System.nanoTime() + duration;
+                    for (long amount = 1_000_00 + seed * 7_919; System.nanoTime() < end; amount += 101) {
+                        service.quote(BigDecimal.valueOf(amount % 5_000_00, 2));
+                        quotes++;
+                    }
+                    return quotes;
+                }));
+            }
+            start.countDown();
+            long total = 0;
+            for (Future<Long> worker : workers) {
+                total += worker.get();
+            }
+            return total * 1e9 / duration;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package task.loans.simulation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.Loan;
+import task.loans.core.LoanCalculator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static task.loans.core.Money.decimal;
+import static task.loans.core.Money.rate;
+
+@ParametersAreNonnullByDefault
+public class MarketSimulatorTest {
+
+    private static final List<LendingOffer> MARKET = Arrays.asList(
+            new LendingOffer("Bob", rate("0.075"), decimal("640")),
+            new LendingOffer("Jane", rate("0.069"), decimal("480")),
+            new LendingOffer("Fred", rate("0.071"), decimal("520")),
+            new LendingOffer("Mary", rate("0.104"), decimal("170")),
+            new LendingOffer("John", rate("0.081"), decimal("320")),
+            new LendingOffer("Dave", rate("0.074"), decimal("140")),
+            new LendingOffer("Angela", rate("0.071"), decimal("60")));
+
+    private static final List<BigDecimal> AMOUNTS = Arrays.asList(decimal("1000"), decimal("300"), decimal("2300"));
+
+    @Test
+    public void noPerturbations_baseQuotes() throws InterruptedException {
+        SimulationReport report = MarketSimulator.builder()
+                .amounts(AMOUNTS)
+                .scenarios(100)
+                .build()
+                .run(MARKET, progress -> { });
+
+        LoanCalculator calculator = new LoanCalculator(MARKET);
+        for (QuoteDistribution quote : report.getQuotes()) {
+            Loan loan = calculator.calculate(quote.getAmount());
+            assertThat(quote.getScenarios(), equalTo(100L));
+            assertThat(quote.getUnavailable(), equalTo(0L));
+            assertThat(quote.getRateAtPercentile(5), comparesEqualTo(quote.getRateAtPercentile(95)));
+            assertThat(quote.getRateAtPercentile(50).doubleValue(), closeTo(loan.getRate().doubleValue(), 0.0006));
+            assertThat(quote.getMonthlyRepaymentAtPercentile(50).doubleValue(),
+                    closeTo(loan.getMonthlyRepayment().doubleValue(), loan.getMonthlyRepayment().doubleValue() / 1e3));
+        }
+    }
+
+    @Test
+    public void amountsAboveSupply_unavailable() throws InterruptedException {
+        SimulationReport report = MarketSimulator.builder()
+                .amounts(Arrays.asList(decimal("2331"), decimal("2330")))
+                .scenarios(10)
+                .build()
+                .run(MARKET, progress -> { });
+
+        assertThat(report.getQuotes().get(0).getUnavailable(), equalTo(10L));
+        assertThat(report.getQuotes().get(1).getUnavailable(), equalTo(0L));
+    }
+
+    @Test
+    public void sameSeed_sameDistributionsOnAnyThreads() throws InterruptedException {
+        SimulationReport single = simulator(1).build().run(MARKET, progress -> { });
+        SimulationReport parallel = simulator(3).build().run(MARKET, progress -> { });
+
+        for (int i = 0; i < AMOUNTS.size(); i++) {
+            QuoteDistribution expected = single.getQuotes().get(i);
+            QuoteDistribution actual = parallel.getQuotes().get(i);
+            assertThat(actual.getUnavailable(), equalTo(expected.getUnavailable()));
+            for (double percentile : new double[]{1, 25, 50, 75, 99}) {
+                assertThat(actual.getRateAtPercentile(percentile),
+                        comparesEqualTo(expected.getRateAtPercentile(percentile)));
+                assertThat(actual.getMonthlyRepaymentAtPercentile(percentile),
+                        comparesEqualTo(expected.getMonthlyRepaymentAtPercentile(percentile)));
+            }
+        }
+    }
+
+    @Test
+    public void perturbations_spreadQuotes() throws InterruptedException {
+        SimulationReport report = simulator(2).build().run(MARKET, progress -> { });
+
+        QuoteDistribution large = report.getQuotes().get(2);
+        assertThat(large.getUnavailable(), greaterThan(0L));
+        assertThat(large.getUnavailable(), lessThan(large.getScenarios()));
+        QuoteDistribution small = report.getQuotes().get(1);
+        assertThat(small.getRateAtPercentile(5), lessThan(small.getRateAtPercentile(95)));
+        assertThat(small.getMeanRate(), closeTo(0.069, 0.01));
+    }
+
+    @Test
+    public void fullDropout_allUnavailable() throws InterruptedException {
+        SimulationReport report = simulator(2).dropout(1).build().run(MARKET, progress -> { });
+
+        report.getQuotes().forEach(quote -> assertThat(quote.getUnavailable(), equalTo(quote.getScenarios())));
+        assertThat(report.format(), containsString("unavailable 100.00%"));
+    }
+
+    @Test
+    public void progress_reportedAsScenariosComplete() throws InterruptedException {
+        List<SimulationReport> reports = new ArrayList<>();
+        SimulationReport report = simulator(2).reportEvery(MarketSimulator.BATCH * 2).build()
+                .run(MARKET, reports::add);
+
+        assertThat(reports.size(), equalTo(9));
+        for (int i = 1; i < reports.size(); i++) {
+            assertThat(reports.get(i).getCompleted(), greaterThan(reports.get(i - 1).getCompleted()));
+            assertThat(reports.get(i).isFinal(), equalTo(false));
+        }
+        assertThat(report.isFinal(), equalTo(true));
+        assertThat(report.getQuotes().get(0).getScenarios(), equalTo(20_000L));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failingProgress_simulationFails() throws InterruptedException {
+        simulator(2).reportEvery(1).build().run(MARKET, progress -> {
+            throw new IllegalArgumentException("rejected");
+        });
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void noAmounts_exception() {
+        MarketSimulator.builder().build();
+    }
+
+    private static MarketSimulator.Builder simulator(int threads) {
+        return MarketSimulator.builder()
+                .amounts(AMOUNTS)
+                .scenarios(20_000)
+                .seed(7)
+                .threads(threads)
+                .marketShift(0.002)
+                .rateShift(0.005)
+                .dropout(0.1)
+                .amountShock(0.2);
+    }
+}
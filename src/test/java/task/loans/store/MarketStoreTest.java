@@ -0,0 +1,332 @@
+package task.loans.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import task.loans.core.LendingOffer;
+import task.loans.core.LoanCalculator;
+import task.loans.core.MarketEvent;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static task.loans.core.Money.decimal;
+
+@ParametersAreNonnullByDefault
+public class MarketStoreTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("market-store");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void reopened_sameMarketSameQuotes() throws IOException {
+        Map<Long, LendingOffer> offers;
+        List<BigDecimal> rates;
+        try (MarketStore store = MarketStore.builder(directory).snapshotEvery(100).open()) {
+            applyRandomEvents(store, 1_000, new Random(7));
+            offers = store.getOffers();
+            rates = quotedRates(store.getCalculator());
+        }
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getOffers(), equalTo(offers));
+            assertThat(quotedRates(store.getCalculator()), equalTo(rates));
+            assertThat(store.getSequence(), equalTo(1_000L));
+            assertThat(store.getRecovery().getSnapshotSequence(), greaterThan(0L));
+            assertThat(store.getRecovery().getReplayedEvents(), lessThan(1_000L));
+        }
+    }
+
+    @Test
+    public void snapshotTaken_nothingToReplay() throws IOException {
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            applyRandomEvents(store, 300, new Random(11));
+            store.snapshot();
+        }
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getRecovery().getSnapshotSequence(), equalTo(300L));
+            assertThat(store.getRecovery().getReplayedEvents(), equalTo(0L));
+            assertThat(WriteAheadLog.segments(directory).firstKey(), equalTo(301L));
+        }
+    }
+
+    @Test
+    public void reopenedTwice_eventsKeptAcrossRestarts() throws IOException {
+        Random random = new Random(13);
+        Map<Long, LendingOffer> offers;
+        try (MarketStore store = MarketStore.builder(directory).snapshotEvery(70).open()) {
+            applyRandomEvents(store, 200, random);
+        }
+        try (MarketStore store = MarketStore.builder(directory).snapshotEvery(70).open()) {
+            applyRandomEvents(store, 200, random);
+            offers = store.getOffers();
+        }
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getOffers(), equalTo(offers));
+            assertThat(store.getSequence(), equalTo(400L));
+        }
+    }
+
+    @Test
+    public void tornTail_truncatedOnRecovery() throws IOException {
+        Map<Long, LendingOffer> offers;
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            applyRandomEvents(store, 50, new Random(17));
+            offers = store.getOffers();
+        }
+        Path last = WriteAheadLog.segments(directory).values().stream().reduce((a, b) -> b).get();
+        long size = Files.size(last);
+        Files.write(last, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getOffers(), equalTo(offers));
+            assertThat(store.getRecovery().getTruncatedBytes(), equalTo(7L));
+            assertThat(Files.size(last), equalTo(size));
+        }
+    }
+
+    /**
+     * A crash while a batch is being forced: its first record is torn, its second one is on the disk whole,
+     * but neither was acknowledged.
+     */
+    @Test
+    public void tornBatch_truncatedOnRecovery() throws IOException {
+        Map<Long, LendingOffer> offers;
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            applyRandomEvents(store, 50, new Random(23));
+            offers = store.getOffers();
+        }
+        Path last = WriteAheadLog.segments(directory).values().stream().reduce((a, b) -> b).get();
+        long size = Files.size(last);
+        CRC32 crc = new CRC32();
+        ByteBuffer torn = WriteAheadLog.encode(51, MarketEvent.add(1_000_001, offer("Bob", "0.07", "100")));
+        WriteAheadLog.seal(torn, size, crc);
+        torn.put(torn.limit() - 1, (byte) (torn.get(torn.limit() - 1) ^ 1));
+        ByteBuffer whole = WriteAheadLog.encode(52, MarketEvent.add(1_000_002, offer("Jane", "0.069", "100")));
+        WriteAheadLog.seal(whole, size, crc);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.APPEND)) {
+            channel.write(new ByteBuffer[]{torn, whole});
+        }
+
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getOffers(), equalTo(offers));
+            assertThat(store.getSequence(), equalTo(50L));
+            assertThat(store.getRecovery().getTruncatedBytes(), equalTo((long) torn.limit() + whole.limit()));
+            assertThat(Files.size(last), equalTo(size));
+        }
+    }
+
+    @Test
+    public void corruptRecordBeforeValidOnes_recoveryFails() throws IOException {
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            applyRandomEvents(store, 50, new Random(19));
+        }
+        Path last = WriteAheadLog.segments(directory).values().stream().reduce((a, b) -> b).get();
+        byte[] bytes = Files.readAllBytes(last);
+        bytes[12] ^= 1; // within the first record's body
+        Files.write(last, bytes);
+
+        String error = null;
+        try {
+            MarketStore.builder(directory).open().close();
+            throw new AssertionError("Corrupt log recovered");
+        } catch (IOException ex) {
+            error = ex.getMessage();
+        }
+        assertThat(error, startsWith("Corrupt record at 0 of write-ahead log segment"));
+        assertThat(Files.readAllBytes(last), equalTo(bytes));
+    }
+
+    @Test
+    public void appendFailed_eventNotApplied() throws IOException {
+        MarketStore store = MarketStore.builder(directory).open();
+        store.apply(MarketEvent.add(1, offer("Bob", "0.07", "100")));
+        store.close();
+        try {
+            store.apply(MarketEvent.add(2, offer("Jane", "0.069", "100")));
+            throw new AssertionError("Event accepted by closed log");
+        } catch (UncheckedIOException expected) {
+            // rejected before the market changed
+        }
+        assertThat(store.getSequence(), equalTo(1L));
+        assertThat(store.getOffers().keySet(), contains(1L));
+    }
+
+    @Test
+    public void appendsRacingClose_allCompleted() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, 1, 16);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<List<CompletableFuture<Void>>>> appenders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            appenders.add(executor.submit(() -> {
+                List<CompletableFuture<Void>> appended = new ArrayList<>();
+                for (long id = 1; !stopped.get(); id++) {
+                    appended.add(log.append(id, MarketEvent.withdraw(id)));
+                }
+                return appended;
+            }));
+        }
+        Thread.sleep(50);
+        log.close();
+        stopped.set(true);
+        executor.shutdown();
+
+        for (Future<List<CompletableFuture<Void>>> appender : appenders) {
+            for (CompletableFuture<Void> appended : appender.get()) {
+                assertThat(appended.isDone(), equalTo(true));
+            }
+        }
+    }
+
+    @Test
+    public void invalidEvent_rejectedNotLogged() throws IOException {
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            store.apply(MarketEvent.add(1, offer("Bob", "0.07", "100")));
+            try {
+                store.apply(MarketEvent.withdraw(2));
+                throw new AssertionError("Withdrawal of a missing offer accepted");
+            } catch (IllegalArgumentException expected) {
+                // nothing is logged
+            }
+        }
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getSequence(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void concurrentChanges_forcedToDiskTogether() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long first = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (long id = first; id < first + perThread; id++) {
+                        store.apply(MarketEvent.add(id, offer("Lender" + id, "0.07", "10")));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            assertThat(store.getSequence(), equalTo((long) threads * perThread));
+            assertThat(store.syncs(), lessThan((long) threads * perThread));
+        }
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            assertThat(store.getOffers().size(), equalTo(threads * perThread));
+        }
+    }
+
+    /**
+     * The market read holds no event which is not on the disk yet, so a crash cannot take back what was read.
+     */
+    @Test
+    public void concurrentChanges_readOnceLogged() throws Exception {
+        int threads = 4;
+        int perThread = 300;
+        try (MarketStore store = MarketStore.builder(directory).open()) {
+            Path segment = WriteAheadLog.segments(directory).values().stream().reduce((a, b) -> b).get();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long first = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (long id = first; id < first + perThread; id++) {
+                        store.apply(MarketEvent.add(id, offer("Lender" + id, "0.07", "10")));
+                    }
+                }));
+            }
+            Path copy = directory.resolve("copy");
+            while (!futures.stream().allMatch(Future::isDone)) {
+                long read = store.getSequence();
+                // the file as it is at one moment, not while being read
+                Files.write(copy, Files.readAllBytes(segment));
+                long[] logged = {0};
+                WriteAheadLog.read(copy, (sequence, event) -> logged[0] = sequence);
+                assertThat(logged[0], greaterThanOrEqualTo(read));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            assertThat(store.getSequence(), equalTo((long) threads * perThread));
+            assertThat(store.getOffers().size(), equalTo(threads * perThread));
+        }
+    }
+
+    private static void applyRandomEvents(MarketStore store, int count, Random random) {
+        List<Long> ids = new ArrayList<>(store.getOffers().keySet());
+        long nextId = ids.stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        for (int i = 0; i < count; i++) {
+            int kind = ids.isEmpty() ? 0 : random.nextInt(3);
+            if (kind == 0) {
+                store.apply(MarketEvent.add(nextId, randomOffer(random)));
+                ids.add(nextId++);
+            } else if (kind == 1) {
+                store.apply(MarketEvent.amend(ids.get(random.nextInt(ids.size())), randomOffer(random)));
+            } else {
+                store.apply(MarketEvent.withdraw(ids.remove(random.nextInt(ids.size()))));
+            }
+        }
+    }
+
+    private static LendingOffer randomOffer(Random random) {
+        return new LendingOffer("Lender" + random.nextInt(100),
+                BigDecimal.valueOf(40 + random.nextInt(80), 3),
+                BigDecimal.valueOf(random.nextInt(100_000), 2));
+    }
+
+    private static List<BigDecimal> quotedRates(LoanCalculator calculator) {
+        List<BigDecimal> rates = new ArrayList<>();
+        for (int amount = 1_000; amount <= 15_000; amount += 100) {
+            rates.add(calculator.calculate(decimal(amount)).getRate());
+        }
+        return rates;
+    }
+
+    private static LendingOffer offer(String lender, String rate, String amount) {
+        return new LendingOffer(lender, new BigDecimal(rate), new BigDecimal(amount));
+    }
+}